@@ -0,0 +1,559 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Asynchronous front end to a GeodeticCalculator. Individual requests are
+ * queued and drained in micro-batches by tasks running on a caller supplied
+ * Executor, so that the primitive batch solvers of GeodeticCalculator do the
+ * actual work. Any Executor may be used, including one that runs each task on
+ * its own virtual thread.
+ * </p>
+ * <p>
+ * The number of requests that have been accepted but not yet completed is
+ * bounded. Once that limit is reached, callers block until earlier requests
+ * complete. This provides backpressure to producers and caps the memory held
+ * by queued requests. Futures are completed on the executor's threads.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class AsyncGeodeticCalculator
+{
+	/** The calculator that performs the batch solutions. */
+	private final GeodeticCalculator mCalculator;
+
+	/** Reference ellipsoid for all calculations. */
+	private final Ellipsoid mEllipsoid;
+
+	/** Executor that runs the draining tasks. */
+	private final Executor mExecutor;
+
+	/** Largest number of requests solved in a single batch. */
+	private final int mMaxBatchSize;
+
+	/** Largest number of tasks draining a single queue at once. */
+	private final int mParallelism;
+
+	/** Permits for requests accepted but not yet completed. */
+	private final Semaphore mInFlight;
+
+	/** Queue of inverse problems. */
+	private final Stage mInverseStage = new Stage()
+	{
+		@Override
+		double[][] allocateScratch()
+		{
+			return new double[][] { new double[2 * mMaxBatchSize], new double[2 * mMaxBatchSize], new double[3 * mMaxBatchSize] };
+		}
+
+		@Override
+		void solve(Request[] batch, int count, double[][] scratch)
+		{
+			double[] starts = scratch[0];
+			double[] ends = scratch[1];
+			double[] outputs = scratch[2];
+
+			for (int i = 0; i < count; i++)
+			{
+				InverseRequest request = (InverseRequest) batch[i];
+				starts[2 * i] = request.mStartLatitude;
+				starts[2 * i + 1] = request.mStartLongitude;
+				ends[2 * i] = request.mEndLatitude;
+				ends[2 * i + 1] = request.mEndLongitude;
+			}
+
+			mCalculator.calculateGeodeticCurves(mEllipsoid, starts, ends, count, outputs);
+		}
+
+		@Override
+		void complete(Request request, int index, double[][] scratch)
+		{
+			double[] outputs = scratch[2];
+
+			((InverseRequest) request).mFuture.complete(new GeodeticCurve(outputs[3 * index], outputs[3 * index + 1], outputs[3 * index + 2]));
+		}
+	};
+
+	/** Queue of direct problems. */
+	private final Stage mDirectStage = new Stage()
+	{
+		@Override
+		double[][] allocateScratch()
+		{
+			return new double[][] { new double[2 * mMaxBatchSize], new double[mMaxBatchSize], new double[mMaxBatchSize], new double[2 * mMaxBatchSize] };
+		}
+
+		@Override
+		void solve(Request[] batch, int count, double[][] scratch)
+		{
+			double[] starts = scratch[0];
+			double[] bearings = scratch[1];
+			double[] distances = scratch[2];
+			double[] outputs = scratch[3];
+
+			for (int i = 0; i < count; i++)
+			{
+				DirectRequest request = (DirectRequest) batch[i];
+				starts[2 * i] = request.mStartLatitude;
+				starts[2 * i + 1] = request.mStartLongitude;
+				bearings[i] = request.mStartBearing;
+				distances[i] = request.mDistance;
+			}
+
+			mCalculator.calculateEndingCoordinates(mEllipsoid, starts, bearings, distances, count, outputs, null);
+		}
+
+		@Override
+		void complete(Request request, int index, double[][] scratch)
+		{
+			double[] outputs = scratch[3];
+
+			((DirectRequest) request).mFuture.complete(new GlobalCoordinates(outputs[2 * index], outputs[2 * index + 1]));
+		}
+	};
+
+	/**
+	 * Create a new AsyncGeodeticCalculator that drains each queue with as many
+	 * tasks as there are available processors.
+	 * 
+	 * @param calculator
+	 *            calculator that performs the batch solutions
+	 * @param ellipsoid
+	 *            reference ellipsoid for all calculations
+	 * @param executor
+	 *            executor that runs the draining tasks
+	 * @param maxBatchSize
+	 *            largest number of requests solved in a single batch
+	 * @param maxInFlight
+	 *            largest number of requests accepted but not yet completed
+	 */
+	public AsyncGeodeticCalculator(GeodeticCalculator calculator, Ellipsoid ellipsoid, Executor executor, int maxBatchSize, int maxInFlight)
+	{
+		this(calculator, ellipsoid, executor, maxBatchSize, maxInFlight, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a new AsyncGeodeticCalculator.
+	 * 
+	 * @param calculator
+	 *            calculator that performs the batch solutions
+	 * @param ellipsoid
+	 *            reference ellipsoid for all calculations
+	 * @param executor
+	 *            executor that runs the draining tasks
+	 * @param maxBatchSize
+	 *            largest number of requests solved in a single batch
+	 * @param maxInFlight
+	 *            largest number of requests accepted but not yet completed
+	 *            (must be at least 'maxBatchSize')
+	 * @param parallelism
+	 *            largest number of tasks draining a queue at the same time
+	 */
+	public AsyncGeodeticCalculator(GeodeticCalculator calculator, Ellipsoid ellipsoid, Executor executor, int maxBatchSize, int maxInFlight, int parallelism)
+	{
+		if (maxBatchSize < 1) throw new IllegalArgumentException("maxBatchSize must be positive");
+		if (maxInFlight < maxBatchSize) throw new IllegalArgumentException("maxInFlight must be at least maxBatchSize");
+		if (parallelism < 1) throw new IllegalArgumentException("parallelism must be positive");
+
+		mCalculator = calculator;
+		mEllipsoid = ellipsoid;
+		mExecutor = executor;
+		mMaxBatchSize = maxBatchSize;
+		mParallelism = parallelism;
+		mInFlight = new Semaphore(maxInFlight);
+	}
+
+	/**
+	 * Asynchronously calculate the geodetic curve between two points. This
+	 * blocks while the in-flight limit is reached.
+	 * 
+	 * @param start
+	 *            starting coordinates
+	 * @param end
+	 *            ending coordinates
+	 * @return future solution to the inverse geodetic problem
+	 */
+	public CompletableFuture<GeodeticCurve> calculateGeodeticCurve(GlobalCoordinates start, GlobalCoordinates end)
+	{
+		InverseRequest request = new InverseRequest(start, end);
+
+		mInverseStage.submit(request, request.mFuture);
+
+		return request.mFuture;
+	}
+
+	/**
+	 * Asynchronously calculate the destination after traveling a specified
+	 * distance, and a specified starting bearing, for an initial location.
+	 * This blocks while the in-flight limit is reached.
+	 * 
+	 * @param start
+	 *            starting location
+	 * @param startBearing
+	 *            starting bearing (degrees)
+	 * @param distance
+	 *            distance to travel (meters)
+	 * @return future solution to the direct geodetic problem
+	 */
+	public CompletableFuture<GlobalCoordinates> calculateEndingGlobalCoordinates(GlobalCoordinates start, double startBearing, double distance)
+	{
+		DirectRequest request = new DirectRequest(start, startBearing, distance);
+
+		mDirectStage.submit(request, request.mFuture);
+
+		return request.mFuture;
+	}
+
+	/**
+	 * Asynchronously solve the inverse geodetic problem for a batch of
+	 * coordinate pairs, using the array layout of
+	 * GeodeticCalculator.calculateGeodeticCurves(). The work is split into
+	 * chunks no larger than the maximum batch size, and this blocks while the
+	 * in-flight limit is reached.
+	 * 
+	 * @param starts
+	 *            starting coordinates (2 * count elements)
+	 * @param ends
+	 *            ending coordinates (2 * count elements)
+	 * @param count
+	 *            number of coordinate pairs
+	 * @return future array of 3 * count solution elements
+	 */
+	public CompletableFuture<double[]> calculateGeodeticCurves(double[] starts, double[] ends, int count)
+	{
+		double[] curves = new double[3 * count];
+		CompletableFuture<?>[] chunks = new CompletableFuture<?>[(count + mMaxBatchSize - 1) / mMaxBatchSize];
+
+		for (int c = 0; c < chunks.length; c++)
+		{
+			int first = c * mMaxBatchSize;
+			int size = Math.min(mMaxBatchSize, count - first);
+			CompletableFuture<Void> chunk = new CompletableFuture<Void>();
+
+			chunks[c] = chunk;
+
+			if (!acquire(size, chunk)) break;
+
+			try
+			{
+				mExecutor.execute(() ->
+				{
+					try
+					{
+						double[] chunkStarts = new double[2 * size];
+						double[] chunkEnds = new double[2 * size];
+						double[] chunkCurves = new double[3 * size];
+
+						System.arraycopy(starts, 2 * first, chunkStarts, 0, 2 * size);
+						System.arraycopy(ends, 2 * first, chunkEnds, 0, 2 * size);
+						mCalculator.calculateGeodeticCurves(mEllipsoid, chunkStarts, chunkEnds, size, chunkCurves);
+						System.arraycopy(chunkCurves, 0, curves, 3 * first, 3 * size);
+						mInFlight.release(size);
+						chunk.complete(null);
+					}
+					catch (Throwable ex)
+					{
+						// errors too, or the permits and the future are lost
+						mInFlight.release(size);
+						chunk.completeExceptionally(ex);
+					}
+				});
+			}
+			catch (RejectedExecutionException ex)
+			{
+				mInFlight.release(size);
+				chunk.completeExceptionally(ex);
+				break;
+			}
+		}
+
+		for (int c = 0; c < chunks.length; c++)
+		{
+			if (chunks[c] == null) chunks[c] = CompletableFuture.completedFuture(null);
+		}
+
+		return CompletableFuture.allOf(chunks).thenApply(ignored -> curves);
+	}
+
+	/**
+	 * Get the number of requests that may still be accepted without blocking.
+	 * 
+	 * @return available in-flight capacity
+	 */
+	public int getAvailableCapacity()
+	{
+		return mInFlight.availablePermits();
+	}
+
+	/**
+	 * Acquire in-flight permits, failing the supplied future if the caller is
+	 * interrupted while waiting.
+	 * 
+	 * @param permits
+	 *            number of permits required
+	 * @param future
+	 *            future to fail on interruption
+	 * @return 'true' if the permits were acquired
+	 */
+	private boolean acquire(int permits, CompletableFuture<?> future)
+	{
+		try
+		{
+			mInFlight.acquire(permits);
+			return true;
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			future.completeExceptionally(ex);
+			return false;
+		}
+	}
+
+	/**
+	 * A queue of requests of one kind along with the logic for draining it in
+	 * micro-batches.
+	 */
+	private abstract class Stage
+	{
+		/** Pending requests. */
+		private final ConcurrentLinkedQueue<Request> mQueue = new ConcurrentLinkedQueue<Request>();
+
+		/** Number of tasks currently draining the queue. */
+		private final AtomicInteger mActive = new AtomicInteger();
+
+		/**
+		 * Allocate the scratch arrays reused by a draining task.
+		 * 
+		 * @return scratch arrays sized for the maximum batch size
+		 */
+		abstract double[][] allocateScratch();
+
+		/**
+		 * Solve a batch of requests, leaving the solutions in the scratch
+		 * arrays.
+		 * 
+		 * @param batch
+		 *            requests to solve
+		 * @param count
+		 *            number of requests in the batch
+		 * @param scratch
+		 *            arrays returned by allocateScratch()
+		 */
+		abstract void solve(Request[] batch, int count, double[][] scratch);
+
+		/**
+		 * Complete the future of a solved request.
+		 * 
+		 * @param request
+		 *            request to complete
+		 * @param index
+		 *            index of the request in the batch
+		 * @param scratch
+		 *            arrays holding the solutions
+		 */
+		abstract void complete(Request request, int index, double[][] scratch);
+
+		/**
+		 * Queue a request and make sure someone will drain it.
+		 * 
+		 * @param request
+		 *            request to queue
+		 * @param future
+		 *            future of the request
+		 */
+		void submit(Request request, CompletableFuture<?> future)
+		{
+			if (!acquire(1, future)) return;
+
+			mQueue.offer(request);
+			schedule();
+		}
+
+		/**
+		 * Start another draining task if there is pending work and the
+		 * parallelism limit allows it.
+		 */
+		private void schedule()
+		{
+			for (;;)
+			{
+				int active = mActive.get();
+
+				if ((active >= mParallelism) || mQueue.isEmpty()) return;
+
+				if (mActive.compareAndSet(active, active + 1)) break;
+			}
+
+			try
+			{
+				mExecutor.execute(this::drain);
+			}
+			catch (RejectedExecutionException ex)
+			{
+				mActive.decrementAndGet();
+
+				Request request;
+				while ((request = mQueue.poll()) != null)
+				{
+					request.fail(ex);
+					mInFlight.release();
+				}
+			}
+		}
+
+		/**
+		 * Solve queued requests in batches until the queue is empty.
+		 */
+		private void drain()
+		{
+			Request[] batch = new Request[mMaxBatchSize];
+			double[][] scratch = null;
+
+			for (;;)
+			{
+				int count = 0;
+				Request request;
+
+				while ((count < mMaxBatchSize) && ((request = mQueue.poll()) != null))
+				{
+					batch[count++] = request;
+				}
+
+				if (count == 0)
+				{
+					mActive.decrementAndGet();
+
+					// a request may have arrived after we last looked
+					schedule();
+					return;
+				}
+
+				// let another task help if the queue is still backed up
+				schedule();
+
+				Throwable failure = null;
+
+				// errors too, or the batch never completes and its permits
+				// are lost
+				try
+				{
+					if (scratch == null) scratch = allocateScratch();
+					solve(batch, count, scratch);
+				}
+				catch (Throwable ex)
+				{
+					failure = ex;
+				}
+
+				// free capacity before callbacks run so they can submit more work
+				mInFlight.release(count);
+
+				for (int i = 0; i < count; i++)
+				{
+					if (failure != null) batch[i].fail(failure);
+					else complete(batch[i], i, scratch);
+
+					batch[i] = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Base class of a queued request.
+	 */
+	private static abstract class Request
+	{
+		/**
+		 * Fail the request.
+		 * 
+		 * @param ex
+		 *            cause of the failure
+		 */
+		abstract void fail(Throwable ex);
+	}
+
+	/**
+	 * A queued inverse problem.
+	 */
+	private static final class InverseRequest extends Request
+	{
+		final double mStartLatitude;
+		final double mStartLongitude;
+		final double mEndLatitude;
+		final double mEndLongitude;
+		final CompletableFuture<GeodeticCurve> mFuture = new CompletableFuture<GeodeticCurve>();
+
+		InverseRequest(GlobalCoordinates start, GlobalCoordinates end)
+		{
+			mStartLatitude = start.getLatitude();
+			mStartLongitude = start.getLongitude();
+			mEndLatitude = end.getLatitude();
+			mEndLongitude = end.getLongitude();
+		}
+
+		@Override
+		void fail(Throwable ex)
+		{
+			mFuture.completeExceptionally(ex);
+		}
+	}
+
+	/**
+	 * A queued direct problem.
+	 */
+	private static final class DirectRequest extends Request
+	{
+		final double mStartLatitude;
+		final double mStartLongitude;
+		final double mStartBearing;
+		final double mDistance;
+		final CompletableFuture<GlobalCoordinates> mFuture = new CompletableFuture<GlobalCoordinates>();
+
+		DirectRequest(GlobalCoordinates start, double startBearing, double distance)
+		{
+			mStartLatitude = start.getLatitude();
+			mStartLongitude = start.getLongitude();
+			mStartBearing = startBearing;
+			mDistance = distance;
+		}
+
+		@Override
+		void fail(Throwable ex)
+		{
+			mFuture.completeExceptionally(ex);
+		}
+	}
+}
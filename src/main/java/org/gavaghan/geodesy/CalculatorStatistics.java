@@ -0,0 +1,270 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Usage statistics of one or more GeodeticCalculators: how many solutions
+ * they found, how far the inverse solutions measured, how often solutions
+ * failed to converge or came out NaN, and how long solutions took.
+ * </p>
+ * <p>
+ * A calculator only records statistics if one is passed to its constructor.
+ * Without one, the cost is a single test for null per solution. With one,
+ * each solution also reads the clock twice.
+ * </p>
+ * <p>
+ * Counters are LongAdders and DoubleAdders rather than atomics, so the
+ * threads sharing a calculator, or sharing one CalculatorStatistics between
+ * many calculators, update separate cells instead of contending for one.
+ * The values are summed only when read, by the getters or by export().
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class CalculatorStatistics
+{
+	/** Number of inverse solutions. */
+	private final LongAdder mInverseCount = new LongAdder();
+
+	/** Number of direct solutions. */
+	private final LongAdder mDirectCount = new LongAdder();
+
+	/** Number of GeodeticCurve objects created. */
+	private final LongAdder mCurveCount = new LongAdder();
+
+	/** Number of three dimensional measurements. */
+	private final LongAdder mMeasurementCount = new LongAdder();
+
+	/** Number of solutions that ran out of iterations. */
+	private final LongAdder mNonConvergenceCount = new LongAdder();
+
+	/** Number of solutions that came out NaN. */
+	private final LongAdder mNaNCount = new LongAdder();
+
+	/** Sum of the ellipsoidal distances of the inverse solutions. */
+	private final DoubleAdder mDistance = new DoubleAdder();
+
+	/** Latencies of inverse solutions. */
+	private final LatencyHistogram mInverseLatency = new LatencyHistogram();
+
+	/** Latencies of direct solutions, per call. */
+	private final LatencyHistogram mDirectLatency = new LatencyHistogram();
+
+	/**
+	 * Record an inverse solution.
+	 * 
+	 * @param distance
+	 *            ellipsoidal distance found (meters)
+	 * @param nanos
+	 *            time taken
+	 */
+	void recordInverse(double distance, long nanos)
+	{
+		mInverseCount.increment();
+		mInverseLatency.record(nanos);
+
+		if (Double.isNaN(distance)) mNaNCount.increment();
+		else mDistance.add(distance);
+	}
+
+	/**
+	 * Record a call that found direct solutions for one or more distances
+	 * along the same geodesic.
+	 * 
+	 * @param count
+	 *            number of solutions
+	 * @param nans
+	 *            number of solutions that came out NaN
+	 * @param nanos
+	 *            time taken for all of them
+	 */
+	void recordDirect(int count, int nans, long nanos)
+	{
+		mDirectCount.add(count);
+		mDirectLatency.record(nanos);
+
+		if (nans > 0) mNaNCount.add(nans);
+	}
+
+	/**
+	 * Record the creation of a GeodeticCurve.
+	 */
+	void recordCurve()
+	{
+		mCurveCount.increment();
+	}
+
+	/**
+	 * Record a three dimensional measurement.
+	 */
+	void recordMeasurement()
+	{
+		mMeasurementCount.increment();
+	}
+
+	/**
+	 * Record a solution that ran out of iterations.
+	 */
+	void recordNonConvergence()
+	{
+		mNonConvergenceCount.increment();
+	}
+
+	/**
+	 * Get the number of inverse solutions, including those behind
+	 * measurements, midpoints and intermediate coordinates.
+	 * 
+	 * @return number of inverse solutions
+	 */
+	public long getInverseCount()
+	{
+		return mInverseCount.sum();
+	}
+
+	/**
+	 * Get the number of direct solutions. Each intermediate point counts as
+	 * one.
+	 * 
+	 * @return number of direct solutions
+	 */
+	public long getDirectCount()
+	{
+		return mDirectCount.sum();
+	}
+
+	/**
+	 * Get the number of GeodeticCurve objects created.
+	 * 
+	 * @return number of curves
+	 */
+	public long getCurveCount()
+	{
+		return mCurveCount.sum();
+	}
+
+	/**
+	 * Get the number of three dimensional measurements.
+	 * 
+	 * @return number of measurements
+	 */
+	public long getMeasurementCount()
+	{
+		return mMeasurementCount.sum();
+	}
+
+	/**
+	 * Get the number of solutions that ran out of iterations, whatever the
+	 * precision profile then did about it.
+	 * 
+	 * @return number of solutions
+	 */
+	public long getNonConvergenceCount()
+	{
+		return mNonConvergenceCount.sum();
+	}
+
+	/**
+	 * Get the number of solutions that came out NaN, from NaN input or from
+	 * the precision profile.
+	 * 
+	 * @return number of solutions
+	 */
+	public long getNaNCount()
+	{
+		return mNaNCount.sum();
+	}
+
+	/**
+	 * Get the sum of the ellipsoidal distances found by inverse solutions.
+	 * 
+	 * @return total distance in meters
+	 */
+	public double getTotalDistance()
+	{
+		return mDistance.sum();
+	}
+
+	/**
+	 * Get the latencies of inverse solutions.
+	 * 
+	 * @return the histogram
+	 */
+	public LatencyHistogram getInverseLatency()
+	{
+		return mInverseLatency;
+	}
+
+	/**
+	 * Get the latencies of direct solutions. A call that solves for several
+	 * distances along one geodesic is recorded once.
+	 * 
+	 * @return the histogram
+	 */
+	public LatencyHistogram getDirectLatency()
+	{
+		return mDirectLatency;
+	}
+
+	/**
+	 * Hand every statistic to an exporter.
+	 * 
+	 * @param exporter
+	 *            receives the statistics
+	 */
+	public void export(StatisticsExporter exporter)
+	{
+		exporter.counter("geodesy_inverse_solutions_total", "Inverse geodetic solutions", getInverseCount());
+		exporter.counter("geodesy_direct_solutions_total", "Direct geodetic solutions", getDirectCount());
+		exporter.counter("geodesy_curves_total", "GeodeticCurve objects created", getCurveCount());
+		exporter.counter("geodesy_measurements_total", "Three dimensional geodetic measurements", getMeasurementCount());
+		exporter.counter("geodesy_non_convergences_total", "Solutions that ran out of iterations", getNonConvergenceCount());
+		exporter.counter("geodesy_nan_results_total", "Solutions that came out NaN", getNaNCount());
+		exporter.counter("geodesy_distance_meters_total", "Sum of inverse ellipsoidal distances", getTotalDistance());
+		exporter.histogram("geodesy_inverse_latency_nanoseconds", "Time per inverse solution", mInverseLatency);
+		exporter.histogram("geodesy_direct_latency_nanoseconds", "Time per direct solution call", mDirectLatency);
+	}
+
+	/**
+	 * Reset every statistic to zero. Values recorded while resetting may be
+	 * lost.
+	 */
+	public void reset()
+	{
+		mInverseCount.reset();
+		mDirectCount.reset();
+		mCurveCount.reset();
+		mMeasurementCount.reset();
+		mNonConvergenceCount.reset();
+		mNaNCount.reset();
+		mDistance.reset();
+		mInverseLatency.reset();
+		mDirectLatency.reset();
+	}
+}
@@ -0,0 +1,235 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * Concurrent front end to an AsyncGeodeticCalculator that coalesces identical
+ * requests. While a request for a given start and end (or start, bearing and
+ * distance) is in flight, further identical requests share its result rather
+ * than being solved again. Distinct requests flow through to the
+ * AsyncGeodeticCalculator, which groups whatever has queued up into batches
+ * for the primitive solvers.
+ * </p>
+ * <p>
+ * No locks are held while waiting, so the class is safe to call from large
+ * numbers of virtual threads. Callers only block when the underlying
+ * AsyncGeodeticCalculator applies backpressure.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class CoalescingGeodeticCalculator
+{
+	/** Calculator that solves the distinct requests. */
+	private final AsyncGeodeticCalculator mCalculator;
+
+	/** Futures of inverse problems currently in flight. */
+	private final ConcurrentMap<Key, CompletableFuture<GeodeticCurve>> mInverse = new ConcurrentHashMap<Key, CompletableFuture<GeodeticCurve>>();
+
+	/** Futures of direct problems currently in flight. */
+	private final ConcurrentMap<Key, CompletableFuture<GlobalCoordinates>> mDirect = new ConcurrentHashMap<Key, CompletableFuture<GlobalCoordinates>>();
+
+	/**
+	 * Create a new CoalescingGeodeticCalculator.
+	 * 
+	 * @param calculator
+	 *            calculator that solves the distinct requests
+	 */
+	public CoalescingGeodeticCalculator(AsyncGeodeticCalculator calculator)
+	{
+		mCalculator = calculator;
+	}
+
+	/**
+	 * Asynchronously calculate the geodetic curve between two points, sharing
+	 * the result of an identical request that is already in flight.
+	 * 
+	 * @param start
+	 *            starting coordinates
+	 * @param end
+	 *            ending coordinates
+	 * @return future solution to the inverse geodetic problem
+	 */
+	public CompletableFuture<GeodeticCurve> calculateGeodeticCurve(GlobalCoordinates start, GlobalCoordinates end)
+	{
+		Key key = new Key(start.getLatitude(), start.getLongitude(), end.getLatitude(), end.getLongitude());
+		CompletableFuture<GeodeticCurve> shared = mInverse.get(key);
+
+		if (shared == null)
+		{
+			CompletableFuture<GeodeticCurve> mine = new CompletableFuture<GeodeticCurve>();
+
+			shared = mInverse.putIfAbsent(key, mine);
+
+			if (shared == null)
+			{
+				shared = mine;
+
+				try
+				{
+					forward(mCalculator.calculateGeodeticCurve(start, end), mine, mInverse, key);
+				}
+				catch (Throwable ex)
+				{
+					// don't leave later callers waiting on a future that is
+					// never completed
+					mInverse.remove(key, mine);
+					mine.completeExceptionally(ex);
+					throw ex;
+				}
+			}
+		}
+
+		// GeodeticCurve is immutable, but each caller gets its own future
+		return shared.thenApply(curve -> curve);
+	}
+
+	/**
+	 * Asynchronously calculate the destination after traveling a specified
+	 * distance, and a specified starting bearing, for an initial location,
+	 * sharing the result of an identical request that is already in flight.
+	 * 
+	 * @param start
+	 *            starting location
+	 * @param startBearing
+	 *            starting bearing (degrees)
+	 * @param distance
+	 *            distance to travel (meters)
+	 * @return future solution to the direct geodetic problem
+	 */
+	public CompletableFuture<GlobalCoordinates> calculateEndingGlobalCoordinates(GlobalCoordinates start, double startBearing, double distance)
+	{
+		Key key = new Key(start.getLatitude(), start.getLongitude(), startBearing, distance);
+		CompletableFuture<GlobalCoordinates> shared = mDirect.get(key);
+
+		if (shared == null)
+		{
+			CompletableFuture<GlobalCoordinates> mine = new CompletableFuture<GlobalCoordinates>();
+
+			shared = mDirect.putIfAbsent(key, mine);
+
+			if (shared == null)
+			{
+				shared = mine;
+
+				try
+				{
+					forward(mCalculator.calculateEndingGlobalCoordinates(start, startBearing, distance), mine, mDirect, key);
+				}
+				catch (Throwable ex)
+				{
+					// don't leave later callers waiting on a future that is
+					// never completed
+					mDirect.remove(key, mine);
+					mine.completeExceptionally(ex);
+					throw ex;
+				}
+			}
+		}
+
+		// GlobalCoordinates is mutable, so every caller gets a private copy
+		return shared.thenApply(coords -> new GlobalCoordinates(coords.getLatitude(), coords.getLongitude()));
+	}
+
+	/**
+	 * Get the number of distinct requests currently in flight.
+	 * 
+	 * @return number of distinct requests in flight
+	 */
+	public int getInFlightCount()
+	{
+		return mInverse.size() + mDirect.size();
+	}
+
+	/**
+	 * Complete a shared future from the calculator's future and then retire
+	 * its key so later requests are solved afresh.
+	 * 
+	 * @param source
+	 *            future returned by the calculator
+	 * @param shared
+	 *            future shared by coalesced requests
+	 * @param map
+	 *            map holding the shared future
+	 * @param key
+	 *            key of the shared future
+	 */
+	static private <T> void forward(CompletableFuture<T> source, CompletableFuture<T> shared, ConcurrentMap<Key, CompletableFuture<T>> map, Key key)
+	{
+		source.whenComplete((result, ex) ->
+		{
+			map.remove(key, shared);
+
+			if (ex != null) shared.completeExceptionally(ex);
+			else shared.complete(result);
+		});
+	}
+
+	/**
+	 * Identity of a request, compared bit for bit.
+	 */
+	static private final class Key
+	{
+		private final long m1;
+		private final long m2;
+		private final long m3;
+		private final long m4;
+
+		Key(double v1, double v2, double v3, double v4)
+		{
+			m1 = Double.doubleToLongBits(v1);
+			m2 = Double.doubleToLongBits(v2);
+			m3 = Double.doubleToLongBits(v3);
+			m4 = Double.doubleToLongBits(v4);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			long hash = m1;
+
+			hash = hash * 31 + m2;
+			hash = hash * 31 + m3;
+			hash = hash * 31 + m4;
+
+			return (int) (hash ^ (hash >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key)) return false;
+
+			Key other = (Key) obj;
+
+			return (m1 == other.m1) && (m2 == other.m2) && (m3 == other.m3) && (m4 == other.m4);
+		}
+	}
+}
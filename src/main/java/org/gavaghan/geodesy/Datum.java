@@ -0,0 +1,270 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+/**
+ * <p>
+ * Encapsulation of a geodetic datum: a reference ellipsoid and the seven
+ * parameter Helmert transformation that carries its earth centered, earth
+ * fixed coordinates to WGS84.
+ * </p>
+ * <p>
+ * The parameters follow the position vector convention (EPSG method 9606).
+ * Translations are in meters, rotations in arc seconds and the scale
+ * correction in parts per million. Constants derived from the ellipsoid and
+ * the parameters are computed once when the datum is created.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class Datum
+{
+	/** Radians per arc second. */
+	static private final double ARC_SECOND = Math.PI / (180.0 * 3600.0);
+
+	/** The WGS84 datum. */
+	static public final Datum WGS84 = new Datum("WGS84", Ellipsoid.WGS84, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0);
+
+	/** The NAD83 datum, taken as coincident with WGS84 (good to about a meter). */
+	static public final Datum NAD83 = new Datum("NAD83", Ellipsoid.GRS80, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0);
+
+	/** The WGS72 datum. */
+	static public final Datum WGS72 = new Datum("WGS72", Ellipsoid.WGS72, 0.0, 0.0, 4.5, 0.0, 0.0, 0.554, 0.2263);
+
+	/** The OSGB36 datum used by the Ordnance Survey of Great Britain. */
+	static public final Datum OSGB36 = new Datum("OSGB36", Ellipsoid.Airy1830, 446.448, -125.157, 542.060, 0.1502, 0.2470, 0.8421, -20.4894);
+
+	/** The ED50 datum (a three parameter, western Europe average). */
+	static public final Datum ED50 = new Datum("ED50", Ellipsoid.International1924, -87.0, -98.0, -121.0, 0.0, 0.0, 0.0, 0.0);
+
+	/** Name of the datum. */
+	private final String mName;
+
+	/** Reference ellipsoid. */
+	private final Ellipsoid mEllipsoid;
+
+	/** X translation to WGS84 (meters). */
+	private final double mTx;
+
+	/** Y translation to WGS84 (meters). */
+	private final double mTy;
+
+	/** Z translation to WGS84 (meters). */
+	private final double mTz;
+
+	/** Rotation about the X axis to WGS84 (arc seconds). */
+	private final double mRx;
+
+	/** Rotation about the Y axis to WGS84 (arc seconds). */
+	private final double mRy;
+
+	/** Rotation about the Z axis to WGS84 (arc seconds). */
+	private final double mRz;
+
+	/** Scale correction to WGS84 (parts per million). */
+	private final double mScale;
+
+	/** Semi major axis (meters). */
+	final double mA;
+
+	/** Semi minor axis (meters). */
+	final double mB;
+
+	/** Eccentricity squared. */
+	final double mE2;
+
+	/** Second eccentricity squared. */
+	final double mEp2;
+
+	/**
+	 * Transformation to WGS84 as a row major 3x4 matrix: the rotation and
+	 * scale in the first three columns and the translation in the last.
+	 */
+	final double[] mToWGS84 = new double[12];
+
+	/**
+	 * Create a new Datum.
+	 * 
+	 * @param name
+	 *            name of the datum
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 * @param tx
+	 *            X translation to WGS84 (meters)
+	 * @param ty
+	 *            Y translation to WGS84 (meters)
+	 * @param tz
+	 *            Z translation to WGS84 (meters)
+	 * @param rx
+	 *            rotation about the X axis to WGS84 (arc seconds)
+	 * @param ry
+	 *            rotation about the Y axis to WGS84 (arc seconds)
+	 * @param rz
+	 *            rotation about the Z axis to WGS84 (arc seconds)
+	 * @param scale
+	 *            scale correction to WGS84 (parts per million)
+	 */
+	public Datum(String name, Ellipsoid ellipsoid, double tx, double ty, double tz, double rx, double ry, double rz, double scale)
+	{
+		if (name == null) throw new IllegalArgumentException("name must not be null");
+		if (ellipsoid == null) throw new IllegalArgumentException("ellipsoid must not be null");
+
+		mName = name;
+		mEllipsoid = ellipsoid;
+		mTx = tx;
+		mTy = ty;
+		mTz = tz;
+		mRx = rx;
+		mRy = ry;
+		mRz = rz;
+		mScale = scale;
+
+		double f = ellipsoid.getFlattening();
+
+		mA = ellipsoid.getSemiMajorAxis();
+		mB = ellipsoid.getSemiMinorAxis();
+		mE2 = f * (2.0 - f);
+		mEp2 = mE2 / (1.0 - mE2);
+
+		double m = 1.0 + scale * 1e-6;
+		double x = rx * ARC_SECOND;
+		double y = ry * ARC_SECOND;
+		double z = rz * ARC_SECOND;
+
+		mToWGS84[0] = m;
+		mToWGS84[1] = -m * z;
+		mToWGS84[2] = m * y;
+		mToWGS84[3] = tx;
+		mToWGS84[4] = m * z;
+		mToWGS84[5] = m;
+		mToWGS84[6] = -m * x;
+		mToWGS84[7] = ty;
+		mToWGS84[8] = -m * y;
+		mToWGS84[9] = m * x;
+		mToWGS84[10] = m;
+		mToWGS84[11] = tz;
+	}
+
+	/**
+	 * Get the name of the datum.
+	 * 
+	 * @return name
+	 */
+	public String getName()
+	{
+		return mName;
+	}
+
+	/**
+	 * Get the reference ellipsoid.
+	 * 
+	 * @return reference ellipsoid
+	 */
+	public Ellipsoid getEllipsoid()
+	{
+		return mEllipsoid;
+	}
+
+	/**
+	 * Get the X translation to WGS84.
+	 * 
+	 * @return X translation (meters)
+	 */
+	public double getTranslationX()
+	{
+		return mTx;
+	}
+
+	/**
+	 * Get the Y translation to WGS84.
+	 * 
+	 * @return Y translation (meters)
+	 */
+	public double getTranslationY()
+	{
+		return mTy;
+	}
+
+	/**
+	 * Get the Z translation to WGS84.
+	 * 
+	 * @return Z translation (meters)
+	 */
+	public double getTranslationZ()
+	{
+		return mTz;
+	}
+
+	/**
+	 * Get the rotation about the X axis to WGS84.
+	 * 
+	 * @return X rotation (arc seconds)
+	 */
+	public double getRotationX()
+	{
+		return mRx;
+	}
+
+	/**
+	 * Get the rotation about the Y axis to WGS84.
+	 * 
+	 * @return Y rotation (arc seconds)
+	 */
+	public double getRotationY()
+	{
+		return mRy;
+	}
+
+	/**
+	 * Get the rotation about the Z axis to WGS84.
+	 * 
+	 * @return Z rotation (arc seconds)
+	 */
+	public double getRotationZ()
+	{
+		return mRz;
+	}
+
+	/**
+	 * Get the scale correction to WGS84.
+	 * 
+	 * @return scale correction (parts per million)
+	 */
+	public double getScale()
+	{
+		return mScale;
+	}
+
+	/**
+	 * Get the name of the datum.
+	 * 
+	 * @return name
+	 */
+	@Override
+	public String toString()
+	{
+		return mName;
+	}
+}
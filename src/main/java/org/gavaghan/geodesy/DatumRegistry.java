@@ -0,0 +1,203 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * Registry of ellipsoids and datums by name, and cache of the
+ * transformations between datums.
+ * </p>
+ * <p>
+ * Names are matched without regard to case. The ellipsoids declared on
+ * Ellipsoid and the datums declared on Datum are registered from the start.
+ * Registering a name again replaces the earlier entry. All methods are safe
+ * to call from any thread.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class DatumRegistry
+{
+	/** Ellipsoids by upper case name. */
+	static private final ConcurrentMap<String, Ellipsoid> sEllipsoids = new ConcurrentHashMap<String, Ellipsoid>();
+
+	/** Datums by upper case name. */
+	static private final ConcurrentMap<String, Datum> sDatums = new ConcurrentHashMap<String, Datum>();
+
+	/** Transformations by source datum, then target datum. */
+	static private final ConcurrentMap<Datum, ConcurrentMap<Datum, DatumTransformation>> sTransformations = new ConcurrentHashMap<Datum, ConcurrentMap<Datum, DatumTransformation>>();
+
+	static
+	{
+		registerEllipsoid("WGS84", Ellipsoid.WGS84);
+		registerEllipsoid("GRS80", Ellipsoid.GRS80);
+		registerEllipsoid("GRS67", Ellipsoid.GRS67);
+		registerEllipsoid("ANS", Ellipsoid.ANS);
+		registerEllipsoid("WGS72", Ellipsoid.WGS72);
+		registerEllipsoid("Clarke1858", Ellipsoid.Clarke1858);
+		registerEllipsoid("Clarke1880", Ellipsoid.Clarke1880);
+		registerEllipsoid("Airy1830", Ellipsoid.Airy1830);
+		registerEllipsoid("International1924", Ellipsoid.International1924);
+		registerEllipsoid("Sphere", Ellipsoid.Sphere);
+
+		registerDatum(Datum.WGS84);
+		registerDatum(Datum.NAD83);
+		registerDatum(Datum.WGS72);
+		registerDatum(Datum.OSGB36);
+		registerDatum(Datum.ED50);
+	}
+
+	/**
+	 * Disallow instantiation.
+	 */
+	private DatumRegistry()
+	{
+	}
+
+	/**
+	 * Register an ellipsoid.
+	 * 
+	 * @param name
+	 *            name of the ellipsoid
+	 * @param ellipsoid
+	 *            the ellipsoid
+	 */
+	static public void registerEllipsoid(String name, Ellipsoid ellipsoid)
+	{
+		if (ellipsoid == null) throw new IllegalArgumentException("ellipsoid must not be null");
+
+		sEllipsoids.put(key(name), ellipsoid);
+	}
+
+	/**
+	 * Look up an ellipsoid.
+	 * 
+	 * @param name
+	 *            name of the ellipsoid
+	 * @return the ellipsoid, or null if none is registered under that name
+	 */
+	static public Ellipsoid getEllipsoid(String name)
+	{
+		return sEllipsoids.get(key(name));
+	}
+
+	/**
+	 * Register a datum under its name.
+	 * 
+	 * @param datum
+	 *            the datum
+	 */
+	static public void registerDatum(Datum datum)
+	{
+		if (datum == null) throw new IllegalArgumentException("datum must not be null");
+
+		sDatums.put(key(datum.getName()), datum);
+	}
+
+	/**
+	 * Look up a datum.
+	 * 
+	 * @param name
+	 *            name of the datum
+	 * @return the datum, or null if none is registered under that name
+	 */
+	static public Datum getDatum(String name)
+	{
+		return sDatums.get(key(name));
+	}
+
+	/**
+	 * Get the transformation between two datums. The transformation is built
+	 * on first use and shared after that.
+	 * 
+	 * @param source
+	 *            datum positions are given in
+	 * @param target
+	 *            datum positions are transformed to
+	 * @return the transformation
+	 */
+	static public DatumTransformation getTransformation(Datum source, Datum target)
+	{
+		ConcurrentMap<Datum, DatumTransformation> targets = sTransformations.get(source);
+
+		if (targets == null)
+		{
+			targets = new ConcurrentHashMap<Datum, DatumTransformation>();
+			ConcurrentMap<Datum, DatumTransformation> existing = sTransformations.putIfAbsent(source, targets);
+			if (existing != null) targets = existing;
+		}
+
+		DatumTransformation transformation = targets.get(target);
+
+		if (transformation == null)
+		{
+			transformation = new DatumTransformation(source, target);
+			DatumTransformation existing = targets.putIfAbsent(target, transformation);
+			if (existing != null) transformation = existing;
+		}
+
+		return transformation;
+	}
+
+	/**
+	 * Get the transformation between two registered datums.
+	 * 
+	 * @param source
+	 *            name of the datum positions are given in
+	 * @param target
+	 *            name of the datum positions are transformed to
+	 * @return the transformation
+	 * @throws IllegalArgumentException
+	 *             if either datum isn't registered
+	 */
+	static public DatumTransformation getTransformation(String source, String target)
+	{
+		Datum from = getDatum(source);
+		Datum to = getDatum(target);
+
+		if (from == null) throw new IllegalArgumentException("unknown datum: " + source);
+		if (to == null) throw new IllegalArgumentException("unknown datum: " + target);
+
+		return getTransformation(from, to);
+	}
+
+	/**
+	 * Build the lookup key for a name.
+	 * 
+	 * @param name
+	 *            name to look up
+	 * @return key
+	 */
+	static private String key(String name)
+	{
+		if (name == null) throw new IllegalArgumentException("name must not be null");
+
+		return name.toUpperCase(Locale.ROOT);
+	}
+}
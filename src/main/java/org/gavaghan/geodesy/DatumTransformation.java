@@ -0,0 +1,222 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+/**
+ * <p>
+ * Transforms positions from one datum to another through earth centered,
+ * earth fixed coordinates.
+ * </p>
+ * <p>
+ * Each position is converted to cartesian coordinates on the source
+ * ellipsoid, carried through the source datum's Helmert transformation to
+ * WGS84 and the exact inverse of the target datum's, and converted back to a
+ * position on the target ellipsoid. The two Helmert transformations are
+ * combined into a single affine transformation when the DatumTransformation
+ * is created, so each position costs one matrix product and two coordinate
+ * conversions.
+ * </p>
+ * <p>
+ * Instances are immutable and may be shared between threads.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class DatumTransformation
+{
+	/** Source datum. */
+	private final Datum mSource;
+
+	/** Target datum. */
+	private final Datum mTarget;
+
+	/** Combined transformation as a row major 3x4 matrix. */
+	private final double[] mMatrix = new double[12];
+
+	/**
+	 * Create a new DatumTransformation.
+	 * 
+	 * @param source
+	 *            datum positions are given in
+	 * @param target
+	 *            datum positions are transformed to
+	 */
+	public DatumTransformation(Datum source, Datum target)
+	{
+		if (source == null) throw new IllegalArgumentException("source must not be null");
+		if (target == null) throw new IllegalArgumentException("target must not be null");
+
+		mSource = source;
+		mTarget = target;
+
+		double[] s = source.mToWGS84;
+		double[] t = target.mToWGS84;
+
+		// invert the rotation and scale of the target
+		double i00 = t[5] * t[10] - t[6] * t[9];
+		double i01 = t[2] * t[9] - t[1] * t[10];
+		double i02 = t[1] * t[6] - t[2] * t[5];
+		double i10 = t[6] * t[8] - t[4] * t[10];
+		double i11 = t[0] * t[10] - t[2] * t[8];
+		double i12 = t[2] * t[4] - t[0] * t[6];
+		double i20 = t[4] * t[9] - t[5] * t[8];
+		double i21 = t[1] * t[8] - t[0] * t[9];
+		double i22 = t[0] * t[5] - t[1] * t[4];
+		double det = t[0] * i00 + t[1] * i10 + t[2] * i20;
+		double[] inverse = { i00 / det, i01 / det, i02 / det, i10 / det, i11 / det, i12 / det, i20 / det, i21 / det, i22 / det };
+
+		// combined = inverse(target) * (source * x + source translation - target translation)
+		for (int row = 0; row < 3; row++)
+		{
+			for (int col = 0; col < 3; col++)
+			{
+				mMatrix[4 * row + col] = inverse[3 * row] * s[col] + inverse[3 * row + 1] * s[4 + col] + inverse[3 * row + 2] * s[8 + col];
+			}
+
+			mMatrix[4 * row + 3] = inverse[3 * row] * (s[3] - t[3]) + inverse[3 * row + 1] * (s[7] - t[7]) + inverse[3 * row + 2] * (s[11] - t[11]);
+		}
+	}
+
+	/**
+	 * Get the source datum.
+	 * 
+	 * @return datum positions are given in
+	 */
+	public Datum getSource()
+	{
+		return mSource;
+	}
+
+	/**
+	 * Get the target datum.
+	 * 
+	 * @return datum positions are transformed to
+	 */
+	public Datum getTarget()
+	{
+		return mTarget;
+	}
+
+	/**
+	 * Transform a position.
+	 * 
+	 * @param position
+	 *            position in the source datum
+	 * @return position in the target datum
+	 */
+	public GlobalPosition transform(GlobalPosition position)
+	{
+		double[] result = new double[3];
+
+		transform(position.getLatitude(), position.getLongitude(), position.getElevation(), result, 0, result);
+
+		return new GlobalPosition(result[0], result[1], result[2]);
+	}
+
+	/**
+	 * Transform a batch of positions held in primitive arrays. Positions are
+	 * latitude (degrees), longitude (degrees) and elevation (meters) triples.
+	 * 'results' may be the same array as 'positions'.
+	 * 
+	 * @param positions
+	 *            positions in the source datum (3 * count elements)
+	 * @param count
+	 *            number of positions
+	 * @param results
+	 *            receives the positions in the target datum (3 * count
+	 *            elements)
+	 */
+	public void transformPositions(double[] positions, int count, double[] results)
+	{
+		double[] xyz = new double[3];
+
+		for (int i = 0; i < count; i++)
+		{
+			int j = 3 * i;
+
+			transform(positions[j], positions[j + 1], positions[j + 2], results, j, xyz);
+		}
+	}
+
+	/**
+	 * Transform a batch of coordinates on the source ellipsoid held in
+	 * primitive arrays of interleaved latitude/longitude pairs (degrees). The
+	 * elevations of the transformed coordinates above the target ellipsoid are
+	 * discarded. 'results' may be the same array as 'coordinates'.
+	 * 
+	 * @param coordinates
+	 *            coordinates in the source datum (2 * count elements)
+	 * @param count
+	 *            number of coordinates
+	 * @param results
+	 *            receives the coordinates in the target datum (2 * count
+	 *            elements)
+	 */
+	public void transformCoordinates(double[] coordinates, int count, double[] results)
+	{
+		double[] position = new double[3];
+
+		for (int i = 0; i < count; i++)
+		{
+			int j = 2 * i;
+
+			transform(coordinates[j], coordinates[j + 1], 0.0, position, 0, position);
+
+			results[j] = position[0];
+			results[j + 1] = position[1];
+		}
+	}
+
+	/**
+	 * Transform one position.
+	 * 
+	 * @param latitude
+	 *            latitude in the source datum (degrees)
+	 * @param longitude
+	 *            longitude in the source datum (degrees)
+	 * @param elevation
+	 *            elevation above the source ellipsoid (meters)
+	 * @param result
+	 *            receives the latitude, longitude and elevation in the target
+	 *            datum
+	 * @param offset
+	 *            index of the latitude in 'result'
+	 * @param xyz
+	 *            scratch space of 3 elements; may be 'result' if 'offset' is
+	 *            zero
+	 */
+	private void transform(double latitude, double longitude, double elevation, double[] result, int offset, double[] xyz)
+	{
+		double[] m = mMatrix;
+
+		Geocentric.toCartesian(mSource.mA, mSource.mE2, latitude, longitude, elevation, xyz, 0);
+
+		double x = xyz[0];
+		double y = xyz[1];
+		double z = xyz[2];
+
+		Geocentric.toGeodetic(mTarget.mA, mTarget.mB, mTarget.mE2, mTarget.mEp2, m[0] * x + m[1] * y + m[2] * z + m[3], m[4] * x + m[5] * y + m[6] * z + m[7], m[8] * x + m[9] * y + m[10] * z + m[11], result, offset);
+	}
+}
@@ -0,0 +1,139 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * <p>
+ * Solves one tile of a PartitionedDistanceMatrix. A worker sees nothing but
+ * bytes, so it can run in the same process, in another process, or on
+ * another machine behind any transport that carries a ByteBuffer each way.
+ * </p>
+ * <p>
+ * A tile request is little-endian: the tile index (int), the semi major axis
+ * and flattening of the ellipsoid (doubles), the number of origins and of
+ * destinations (ints), then the origins and the destinations as interleaved
+ * latitude/longitude doubles. The response holds the tile index, the number
+ * of origins and of destinations (ints), then the ellipsoidal distances in
+ * meters row by row as doubles.
+ * </p>
+ * <p>
+ * Workers hold no state besides their calculator, so one worker may process
+ * any number of requests at the same time.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class DistanceMatrixWorker
+{
+	/** Bytes in a request before the coordinates. */
+	static final int REQUEST_HEADER_SIZE = 28;
+
+	/** Bytes in a response before the distances. */
+	static final int RESPONSE_HEADER_SIZE = 12;
+
+	/** Bytes of each distance in a response. */
+	static final int CELL_SIZE = MappedDistanceMatrix.CELL_SIZE;
+
+	/**
+	 * Largest response (bytes). Every response is a single heap buffer, and
+	 * one is held for each tile in flight, so this is kept far below the 2 GB
+	 * limit of a ByteBuffer.
+	 */
+	static final int MAX_RESPONSE_SIZE = RESPONSE_HEADER_SIZE + CELL_SIZE * (1 << 24);
+
+	/** The calculator that solves the inverse problems. */
+	private final GeodeticCalculator mCalculator;
+
+	/**
+	 * Create a new DistanceMatrixWorker.
+	 * 
+	 * @param calculator
+	 *            calculator that solves the inverse problems
+	 */
+	public DistanceMatrixWorker(GeodeticCalculator calculator)
+	{
+		if (calculator == null) throw new IllegalArgumentException("calculator must not be null");
+
+		mCalculator = calculator;
+	}
+
+	/**
+	 * Solve a tile.
+	 * 
+	 * @param request
+	 *            the tile request, from its position to its limit
+	 * @return the response, ready to read
+	 */
+	public ByteBuffer process(ByteBuffer request)
+	{
+		ByteBuffer in = request.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		if (in.remaining() < REQUEST_HEADER_SIZE) throw new IllegalArgumentException("truncated tile request");
+
+		int tile = in.getInt();
+		double a = in.getDouble();
+		double f = in.getDouble();
+		int originCount = in.getInt();
+		int destinationCount = in.getInt();
+
+		if ((originCount < 0) || (destinationCount < 0) || (in.remaining() != 16L * (originCount + destinationCount)))
+		{
+			throw new IllegalArgumentException("malformed tile request");
+		}
+
+		double[] origins = new double[2 * originCount];
+		double[] destinations = new double[2 * destinationCount];
+		GeodesyCodec.read(in, origins, 0, origins.length);
+		GeodesyCodec.read(in, destinations, 0, destinations.length);
+
+		long size = RESPONSE_HEADER_SIZE + (long) CELL_SIZE * originCount * destinationCount;
+		if (size > MAX_RESPONSE_SIZE) throw new IllegalArgumentException("tile too large");
+
+		Ellipsoid ellipsoid = Ellipsoid.fromAAndF(a, f);
+		double[] row = new double[destinationCount];
+		ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+
+		out.putInt(tile);
+		out.putInt(originCount);
+		out.putInt(destinationCount);
+
+		for (int i = 0; i < originCount; i++)
+		{
+			double latitude = origins[2 * i];
+			double longitude = origins[2 * i + 1];
+
+			for (int j = 0; j < destinationCount; j++)
+				mCalculator.calculateEllipsoidalDistance(ellipsoid, latitude, longitude, destinations[2 * j], destinations[2 * j + 1], row, j);
+
+			GeodesyCodec.write(out, row, 0, destinationCount);
+		}
+
+		out.flip();
+		return out;
+	}
+}
@@ -88,6 +88,12 @@ public class Ellipsoid implements Serializable
 	/** The Clarke1880 ellipsoid. */
 	static public final Ellipsoid Clarke1880 = fromAAndInverseF(6378249.145, 293.465);
 
+	/** The Airy1830 ellipsoid. */
+	static public final Ellipsoid Airy1830 = fromAAndInverseF(6377563.396, 299.3249646);
+
+	/** The International1924 ellipsoid. */
+	static public final Ellipsoid International1924 = fromAAndInverseF(6378388.0, 297.0);
+
 	/** A spherical "ellipsoid". */
 	static public final Ellipsoid Sphere = fromAAndF(6371000, 0.0);
 
@@ -0,0 +1,68 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+/**
+ * <p>
+ * Fused multiply-add for the Hermite interpolation in ReducedLatitudeTable,
+ * which is its only caller. The Vincenty series themselves don't use it.
+ * </p>
+ * <p>
+ * This is the baseline version for Java 8, which multiplies and adds
+ * separately. The library jar is a multi-release jar, and on Java 9 and
+ * later a version built from src/main/java9 that calls Math.fma() is loaded
+ * instead. That version rounds once rather than twice, so interpolated
+ * values may differ in the last bit between the two. It is only faster on
+ * CPUs with FMA instructions; elsewhere Math.fma() falls back to a much
+ * slower software path.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+final class FusedMath
+{
+	/**
+	 * Disallow instantiation.
+	 */
+	private FusedMath()
+	{
+	}
+
+	/**
+	 * Calculate a * b + c.
+	 * 
+	 * @param a
+	 *            first factor
+	 * @param b
+	 *            second factor
+	 * @param c
+	 *            addend
+	 * @return a * b + c
+	 */
+	static double fma(double a, double b, double c)
+	{
+		return a * b + c;
+	}
+}
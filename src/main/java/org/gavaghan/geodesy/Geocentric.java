@@ -0,0 +1,206 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+/**
+ * Utility methods for converting between geodetic coordinates and earth
+ * centered, earth fixed (ECEF) cartesian coordinates.
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class Geocentric
+{
+	/**
+	 * Disallow instantiation.
+	 */
+	private Geocentric()
+	{
+	}
+
+	/**
+	 * Convert a position to earth centered, earth fixed cartesian coordinates.
+	 * The X axis passes through latitude 0, longitude 0, the Y axis through
+	 * latitude 0, longitude 90E, and the Z axis through the north pole.
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 * @param latitude
+	 *            latitude in degrees
+	 * @param longitude
+	 *            longitude in degrees
+	 * @param elevation
+	 *            elevation, in meters, above the reference ellipsoid
+	 * @param xyz
+	 *            receives the X, Y, and Z coordinates in meters
+	 * @param offset
+	 *            index of the X coordinate in 'xyz'
+	 */
+	static public void toCartesian(Ellipsoid ellipsoid, double latitude, double longitude, double elevation, double[] xyz, int offset)
+	{
+		double f = ellipsoid.getFlattening();
+
+		toCartesian(ellipsoid.getSemiMajorAxis(), f * (2.0 - f), latitude, longitude, elevation, xyz, offset);
+	}
+
+	/**
+	 * Convert earth centered, earth fixed cartesian coordinates to a position.
+	 * Uses Bowring's formula, which is accurate to well under a millimeter for
+	 * any position within a few thousand kilometers of the ellipsoid.
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 * @param x
+	 *            X coordinate in meters
+	 * @param y
+	 *            Y coordinate in meters
+	 * @param z
+	 *            Z coordinate in meters
+	 * @param position
+	 *            receives the latitude (degrees), longitude (degrees) and
+	 *            elevation (meters)
+	 * @param offset
+	 *            index of the latitude in 'position'
+	 */
+	static public void toGeodetic(Ellipsoid ellipsoid, double x, double y, double z, double[] position, int offset)
+	{
+		double a = ellipsoid.getSemiMajorAxis();
+		double b = ellipsoid.getSemiMinorAxis();
+		double f = ellipsoid.getFlattening();
+		double e2 = f * (2.0 - f);
+
+		toGeodetic(a, b, e2, e2 / (1.0 - e2), x, y, z, position, offset);
+	}
+
+	/**
+	 * Convert a position to cartesian coordinates on an ellipsoid described by
+	 * its constants. See toCartesian().
+	 * 
+	 * @param a
+	 *            semi major axis (meters)
+	 * @param e2
+	 *            eccentricity squared
+	 * @param latitude
+	 *            latitude in degrees
+	 * @param longitude
+	 *            longitude in degrees
+	 * @param elevation
+	 *            elevation, in meters, above the ellipsoid
+	 * @param xyz
+	 *            receives the X, Y, and Z coordinates in meters
+	 * @param offset
+	 *            index of the X coordinate in 'xyz'
+	 */
+	static void toCartesian(double a, double e2, double latitude, double longitude, double elevation, double[] xyz, int offset)
+	{
+		double phi = Angle.toRadians(latitude);
+		double lambda = Angle.toRadians(longitude);
+		double sinPhi = Math.sin(phi);
+		double cosPhi = Math.cos(phi);
+
+		// prime vertical radius of curvature
+		double n = a / Math.sqrt(1.0 - e2 * sinPhi * sinPhi);
+		double r = (n + elevation) * cosPhi;
+
+		xyz[offset] = r * Math.cos(lambda);
+		xyz[offset + 1] = r * Math.sin(lambda);
+		xyz[offset + 2] = (n * (1.0 - e2) + elevation) * sinPhi;
+	}
+
+	/**
+	 * Convert a position to cartesian coordinates exactly as toCartesian()
+	 * does, but with StrictMath, so the result is the same on every JVM.
+	 * 
+	 * @param a
+	 *            semi major axis (meters)
+	 * @param e2
+	 *            eccentricity squared
+	 * @param latitude
+	 *            latitude in degrees
+	 * @param longitude
+	 *            longitude in degrees
+	 * @param elevation
+	 *            elevation, in meters, above the ellipsoid
+	 * @param xyz
+	 *            receives the X, Y, and Z coordinates in meters
+	 * @param offset
+	 *            index of the X coordinate in 'xyz'
+	 */
+	static strictfp void toCartesianStrict(double a, double e2, double latitude, double longitude, double elevation, double[] xyz, int offset)
+	{
+		double phi = Angle.toRadians(latitude);
+		double lambda = Angle.toRadians(longitude);
+		double sinPhi = StrictMath.sin(phi);
+		double cosPhi = StrictMath.cos(phi);
+
+		// prime vertical radius of curvature
+		double n = a / Math.sqrt(1.0 - e2 * sinPhi * sinPhi);
+		double r = (n + elevation) * cosPhi;
+
+		xyz[offset] = r * StrictMath.cos(lambda);
+		xyz[offset + 1] = r * StrictMath.sin(lambda);
+		xyz[offset + 2] = (n * (1.0 - e2) + elevation) * sinPhi;
+	}
+
+	/**
+	 * Convert cartesian coordinates to a position on an ellipsoid described by
+	 * its constants. See toGeodetic().
+	 * 
+	 * @param a
+	 *            semi major axis (meters)
+	 * @param b
+	 *            semi minor axis (meters)
+	 * @param e2
+	 *            eccentricity squared
+	 * @param ep2
+	 *            second eccentricity squared
+	 * @param x
+	 *            X coordinate in meters
+	 * @param y
+	 *            Y coordinate in meters
+	 * @param z
+	 *            Z coordinate in meters
+	 * @param position
+	 *            receives the latitude (degrees), longitude (degrees) and
+	 *            elevation (meters)
+	 * @param offset
+	 *            index of the latitude in 'position'
+	 */
+	static void toGeodetic(double a, double b, double e2, double ep2, double x, double y, double z, double[] position, int offset)
+	{
+		double p = Math.sqrt(x * x + y * y);
+
+		// parametric latitude of the point
+		double theta = Math.atan2(z * a, p * b);
+		double sinTheta = Math.sin(theta);
+		double cosTheta = Math.cos(theta);
+
+		double phi = Math.atan2(z + ep2 * b * sinTheta * sinTheta * sinTheta, p - e2 * a * cosTheta * cosTheta * cosTheta);
+		double sinPhi = Math.sin(phi);
+
+		position[offset] = Angle.toDegrees(phi);
+		position[offset + 1] = Angle.toDegrees(Math.atan2(y, x));
+		position[offset + 2] = p * Math.cos(phi) + z * sinPhi - a * Math.sqrt(1.0 - e2 * sinPhi * sinPhi);
+	}
+}
@@ -0,0 +1,470 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+/**
+ * <p>
+ * Calculates latitude/longitude bounding boxes of geodesic circles (all
+ * points within a distance of a center) and of geodesic segments, for
+ * pre-filtering spatial queries.
+ * </p>
+ * <p>
+ * A box is written as four doubles: south, west, north and east, in degrees.
+ * Longitudes are canonical, so a box that crosses the antimeridian has a
+ * western edge greater than its eastern edge. A box that contains a pole
+ * extends to that pole and spans every longitude, from -180 to +180.
+ * splitAtAntimeridian() turns boxes into plain ranges suitable for SQL
+ * BETWEEN clauses or index scans.
+ * </p>
+ * <p>
+ * The boxes are exact rather than padded. The northern and southern edges of
+ * a circle are reached along its center's meridian. Its eastern and western
+ * edges are reached where the geodesic from the center arrives heading due
+ * east or west, which is found with a few direct solutions. The extremes of
+ * latitude on a segment are its endpoints unless it passes through a vertex,
+ * whose latitude follows directly from Clairaut's relation. Segments between
+ * nearly antipodal points whose inverse solution doesn't converge are given
+ * the whole globe.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class GeodesicBounds
+{
+	/** Number of elements in a box. */
+	static public final int BOX_SIZE = 4;
+
+	/** Index of the southern edge in a box. */
+	static public final int SOUTH = 0;
+
+	/** Index of the western edge in a box. */
+	static public final int WEST = 1;
+
+	/** Index of the northern edge in a box. */
+	static public final int NORTH = 2;
+
+	/** Index of the eastern edge in a box. */
+	static public final int EAST = 3;
+
+	/** Convergence tolerance of the starting bearing to a circle's eastern edge (degrees). */
+	static private final double TOLERANCE = 1e-11;
+
+	/** Most iterations allowed for the starting bearing. */
+	static private final int MAX_ITERATIONS = 16;
+
+	/**
+	 * Vertices this close to a pole (degrees) count as reaching it, since the
+	 * longitudes computed so near a pole are meaningless.
+	 */
+	static private final double POLE_TOLERANCE = 1e-9;
+
+	/**
+	 * Widening of a circle's longitude extent (degrees) to cover rounding in
+	 * the direct solutions, about a tenth of a micrometer.
+	 */
+	static private final double EXTENT_PADDING = 1e-12;
+
+	/** Calculator for the direct and inverse solutions. */
+	private final GeodeticCalculator mCalculator;
+
+	/** Reference ellipsoid. */
+	private final Ellipsoid mEllipsoid;
+
+	/** Mean radius of the ellipsoid, for the spherical first guess. */
+	private final double mRadius;
+
+	/**
+	 * Create a new GeodesicBounds.
+	 * 
+	 * @param calculator
+	 *            calculator for the direct and inverse solutions
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 */
+	public GeodesicBounds(GeodeticCalculator calculator, Ellipsoid ellipsoid)
+	{
+		mCalculator = calculator;
+		mEllipsoid = ellipsoid;
+		mRadius = (2.0 * ellipsoid.getSemiMajorAxis() + ellipsoid.getSemiMinorAxis()) / 3.0;
+	}
+
+	/**
+	 * Calculate the bounding box of all points within a distance of a center.
+	 * 
+	 * @param center
+	 *            center of the circle
+	 * @param radius
+	 *            radius of the circle in meters
+	 * @return the box (BOX_SIZE elements)
+	 */
+	public double[] calculateCircleBounds(GlobalCoordinates center, double radius)
+	{
+		double[] box = new double[BOX_SIZE];
+
+		circleBounds(center.getLatitude(), center.getLongitude(), radius, box, 0);
+
+		return box;
+	}
+
+	/**
+	 * Calculate the bounding box of all points within a distance of a center
+	 * given as primitives.
+	 * 
+	 * @param latitude
+	 *            latitude of the center (degrees)
+	 * @param longitude
+	 *            longitude of the center (degrees)
+	 * @param radius
+	 *            radius of the circle in meters
+	 * @param box
+	 *            receives the box (BOX_SIZE elements from 'offset')
+	 * @param offset
+	 *            index of the southern edge in 'box'
+	 */
+	public void circleBounds(double latitude, double longitude, double radius, double[] box, int offset)
+	{
+		if (!(radius >= 0.0)) throw new IllegalArgumentException("radius must not be negative");
+
+		// the box itself is scratch space for the direct solutions: the
+		// longitude extent is found first, through SOUTH and WEST
+		double extent = (Math.abs(latitude) >= 90.0) ? 180.0 : longitudeExtent(latitude, longitude, radius, box, offset);
+
+		// head north, then south; a path that overshoots a pole comes back
+		// heading the other way
+		boolean northPole = (Math.cos(Angle.toRadians(mCalculator.calculateEndingCoordinates(mEllipsoid, latitude, longitude, 0.0, radius, box, offset + NORTH))) <= 0.0);
+		if (northPole || (latitude >= 90.0)) box[offset + NORTH] = 90.0;
+
+		boolean southPole = (Math.cos(Angle.toRadians(mCalculator.calculateEndingCoordinates(mEllipsoid, latitude, longitude, 180.0, radius, box, offset + SOUTH))) >= 0.0);
+		if (southPole || (latitude <= -90.0)) box[offset + SOUTH] = -90.0;
+
+		if (northPole || southPole || (extent >= 180.0))
+		{
+			box[offset + WEST] = -180.0;
+			box[offset + EAST] = 180.0;
+		}
+		else
+		{
+			if (extent > 0.0) extent += EXTENT_PADDING;
+
+			box[offset + WEST] = GlobalCoordinates.canonicalLongitude(longitude - extent);
+			box[offset + EAST] = GlobalCoordinates.canonicalLongitude(longitude + extent);
+		}
+	}
+
+	/**
+	 * Calculate the bounding boxes of many circles held in primitive arrays.
+	 * 
+	 * @param centers
+	 *            interleaved latitude/longitude pairs of the centers (2 *
+	 *            count elements)
+	 * @param radii
+	 *            radius of each circle in meters (count elements)
+	 * @param count
+	 *            number of circles
+	 * @param boxes
+	 *            receives the boxes (BOX_SIZE * count elements)
+	 */
+	public void circleBounds(double[] centers, double[] radii, int count, double[] boxes)
+	{
+		for (int i = 0; i < count; i++)
+			circleBounds(centers[2 * i], centers[2 * i + 1], radii[i], boxes, BOX_SIZE * i);
+	}
+
+	/**
+	 * Calculate the bounding box of the geodesic segment between two points.
+	 * 
+	 * @param start
+	 *            first end of the segment
+	 * @param end
+	 *            second end of the segment
+	 * @return the box (BOX_SIZE elements)
+	 */
+	public double[] calculateSegmentBounds(GlobalCoordinates start, GlobalCoordinates end)
+	{
+		double[] box = new double[BOX_SIZE];
+
+		segmentBounds(start.getLatitude(), start.getLongitude(), end.getLatitude(), end.getLongitude(), box, 0);
+
+		return box;
+	}
+
+	/**
+	 * Calculate the bounding box of the geodesic segment between two points
+	 * given as primitives.
+	 * 
+	 * @param latitude1
+	 *            latitude of the first end (degrees)
+	 * @param longitude1
+	 *            longitude of the first end (degrees)
+	 * @param latitude2
+	 *            latitude of the second end (degrees)
+	 * @param longitude2
+	 *            longitude of the second end (degrees)
+	 * @param box
+	 *            receives the box (BOX_SIZE elements from 'offset')
+	 * @param offset
+	 *            index of the southern edge in 'box'
+	 */
+	public void segmentBounds(double latitude1, double longitude1, double latitude2, double longitude2, double[] box, int offset)
+	{
+		longitude1 = GlobalCoordinates.canonicalLongitude(longitude1);
+		longitude2 = GlobalCoordinates.canonicalLongitude(longitude2);
+
+		// the curve is scratch space in the box
+		int iterations = mCalculator.calculateGeodeticCurveIterations(mEllipsoid, latitude1, longitude1, latitude2, longitude2, box, offset);
+
+		// nearly antipodal points may not converge, and then the path isn't
+		// known well enough to bound
+		if (iterations >= mCalculator.getPrecisionProfile().getInverseMaxIterations())
+		{
+			box[offset + SOUTH] = -90.0;
+			box[offset + WEST] = -180.0;
+			box[offset + NORTH] = 90.0;
+			box[offset + EAST] = 180.0;
+			return;
+		}
+		double azimuth = Angle.toRadians(box[offset + 1]);
+		double reverseAzimuth = Angle.toRadians(box[offset + 2]);
+
+		double south = Math.min(latitude1, latitude2);
+		double north = Math.max(latitude1, latitude2);
+		double cosAzimuth = Math.cos(azimuth);
+		double cosReverse = Math.cos(reverseAzimuth);
+
+		// heading north at the start and south at the end means passing the
+		// northern vertex, and the other way around for the southern one
+		if ((cosAzimuth > 0.0) && (cosReverse > 0.0)) north = vertexLatitude(latitude1, azimuth);
+		else if ((cosAzimuth < 0.0) && (cosReverse < 0.0)) south = -vertexLatitude(latitude1, azimuth);
+
+		if (north > 90.0 - POLE_TOLERANCE) north = 90.0;
+		if (south < -90.0 + POLE_TOLERANCE) south = -90.0;
+
+		box[offset + SOUTH] = south;
+		box[offset + NORTH] = north;
+
+		// longitude changes monotonically along a geodesic
+		double sinAzimuth = Math.sin(azimuth);
+		double change = GlobalCoordinates.canonicalLongitude(longitude2 - longitude1);
+
+		if ((north >= 90.0) || (south <= -90.0))
+		{
+			box[offset + WEST] = -180.0;
+			box[offset + EAST] = 180.0;
+		}
+		else if ((sinAzimuth > 0.0) || (Double.isNaN(sinAzimuth) && (change > 0.0)))
+		{
+			box[offset + WEST] = longitude1;
+			box[offset + EAST] = longitude2;
+		}
+		else if ((sinAzimuth < 0.0) || (Double.isNaN(sinAzimuth) && (change < 0.0)))
+		{
+			box[offset + WEST] = longitude2;
+			box[offset + EAST] = longitude1;
+		}
+		else
+		{
+			box[offset + WEST] = longitude1;
+			box[offset + EAST] = longitude1;
+		}
+	}
+
+	/**
+	 * Calculate the bounding boxes of many segments held in primitive arrays.
+	 * 
+	 * @param starts
+	 *            first ends of the segments (2 * count elements)
+	 * @param ends
+	 *            second ends of the segments (2 * count elements)
+	 * @param count
+	 *            number of segments
+	 * @param boxes
+	 *            receives the boxes (BOX_SIZE * count elements)
+	 */
+	public void segmentBounds(double[] starts, double[] ends, int count, double[] boxes)
+	{
+		for (int i = 0; i < count; i++)
+			segmentBounds(starts[2 * i], starts[2 * i + 1], ends[2 * i], ends[2 * i + 1], boxes, BOX_SIZE * i);
+	}
+
+	/**
+	 * Determine whether a box contains a point.
+	 * 
+	 * @param box
+	 *            the box
+	 * @param offset
+	 *            index of the southern edge in 'box'
+	 * @param latitude
+	 *            latitude of the point (degrees)
+	 * @param longitude
+	 *            longitude of the point (degrees)
+	 * @return true if the point is within the box or on its edge
+	 */
+	static public boolean contains(double[] box, int offset, double latitude, double longitude)
+	{
+		if ((latitude < box[offset + SOUTH]) || (latitude > box[offset + NORTH])) return false;
+
+		double west = box[offset + WEST];
+		double east = box[offset + EAST];
+		if ((west == -180.0) && (east == 180.0)) return true;
+
+		longitude = GlobalCoordinates.canonicalLongitude(longitude);
+
+		return (west <= east) ? ((longitude >= west) && (longitude <= east)) : ((longitude >= west) || (longitude <= east));
+	}
+
+	/**
+	 * Split boxes that cross the antimeridian in two, so that every box
+	 * written has its western edge at or below its eastern edge and can be
+	 * used as a pair of plain ranges. Boxes that don't cross are copied
+	 * unchanged.
+	 * 
+	 * @param boxes
+	 *            boxes to split (BOX_SIZE * count elements)
+	 * @param count
+	 *            number of boxes
+	 * @param split
+	 *            receives the split boxes (up to 2 * BOX_SIZE * count
+	 *            elements)
+	 * @param sources
+	 *            receives the index of the box each split box came from (up to
+	 *            2 * count elements), or null
+	 * @return number of split boxes written
+	 */
+	static public int splitAtAntimeridian(double[] boxes, int count, double[] split, int[] sources)
+	{
+		int written = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			int in = BOX_SIZE * i;
+			double west = boxes[in + WEST];
+			double east = boxes[in + EAST];
+
+			if (west <= east)
+			{
+				System.arraycopy(boxes, in, split, BOX_SIZE * written, BOX_SIZE);
+				if (sources != null) sources[written] = i;
+				written++;
+			}
+			else
+			{
+				int out = BOX_SIZE * written;
+				split[out + SOUTH] = boxes[in + SOUTH];
+				split[out + WEST] = west;
+				split[out + NORTH] = boxes[in + NORTH];
+				split[out + EAST] = 180.0;
+				if (sources != null) sources[written] = i;
+				written++;
+
+				out = BOX_SIZE * written;
+				split[out + SOUTH] = boxes[in + SOUTH];
+				split[out + WEST] = -180.0;
+				split[out + NORTH] = boxes[in + NORTH];
+				split[out + EAST] = east;
+				if (sources != null) sources[written] = i;
+				written++;
+			}
+		}
+
+		return written;
+	}
+
+	/**
+	 * Find how far east of its center a circle that contains neither pole
+	 * reaches. The geodesic from the center to the easternmost point arrives
+	 * heading due east, so the starting bearing is adjusted by the secant
+	 * method until the direct solution's final bearing is 90 degrees.
+	 * 
+	 * @param latitude
+	 *            latitude of the center (degrees)
+	 * @param longitude
+	 *            longitude of the center (degrees)
+	 * @param radius
+	 *            radius of the circle in meters
+	 * @param scratch
+	 *            scratch space for the direct solutions (2 elements from
+	 *            'offset')
+	 * @param offset
+	 *            index of the first scratch element
+	 * @return longitude extent in degrees, or 180 if the circle reaches past
+	 *         a pole
+	 */
+	private double longitudeExtent(double latitude, double longitude, double radius, double[] scratch, int offset)
+	{
+		if (radius == 0.0) return 0.0;
+
+		// first guess from a right spherical triangle with the pole
+		double r = radius / mRadius;
+		double phi = Angle.toRadians(latitude);
+		double c = Math.tan(r) * Math.tan(Math.abs(phi));
+		if (!(r < Math.PI / 2.0) || !(c < 1.0)) return 180.0;
+
+		double bearing0 = Angle.toDegrees(Math.acos(c));
+		if (latitude < 0.0) bearing0 = 180.0 - bearing0;
+
+		double error0 = mCalculator.calculateEndingCoordinates(mEllipsoid, latitude, longitude, bearing0, radius, scratch, offset) - 90.0;
+		if (error0 == 0.0) return Math.abs(GlobalCoordinates.canonicalLongitude(scratch[offset + 1] - longitude));
+
+		double bearing1 = bearing0 + ((bearing0 < 90.0) ? 1e-4 : -1e-4);
+		double error1 = mCalculator.calculateEndingCoordinates(mEllipsoid, latitude, longitude, bearing1, radius, scratch, offset) - 90.0;
+
+		for (int i = 0; (i < MAX_ITERATIONS) && (error1 != 0.0) && (error1 != error0); i++)
+		{
+			double next = bearing1 - error1 * (bearing1 - bearing0) / (error1 - error0);
+			if (next <= 0.0) next = bearing1 / 2.0;
+			else if (next >= 180.0) next = (bearing1 + 180.0) / 2.0;
+
+			bearing0 = bearing1;
+			error0 = error1;
+			bearing1 = next;
+			error1 = mCalculator.calculateEndingCoordinates(mEllipsoid, latitude, longitude, bearing1, radius, scratch, offset) - 90.0;
+
+			if (Math.abs(bearing1 - bearing0) < TOLERANCE) break;
+		}
+
+		return Math.abs(GlobalCoordinates.canonicalLongitude(scratch[offset + 1] - longitude));
+	}
+
+	/**
+	 * Calculate the latitude of the vertex of the geodesic through a point,
+	 * where it runs due east or west, from Clairaut's relation.
+	 * 
+	 * @param latitude
+	 *            latitude of the point (degrees)
+	 * @param azimuth
+	 *            azimuth of the geodesic at the point (radians)
+	 * @return latitude of the vertex in degrees, from 0 to 90
+	 */
+	private double vertexLatitude(double latitude, double azimuth)
+	{
+		double f = mEllipsoid.getFlattening();
+		double beta = Math.atan((1.0 - f) * Math.tan(Angle.toRadians(latitude)));
+		double cosBeta0 = Math.abs(Math.sin(azimuth)) * Math.cos(beta);
+		double sinBeta0 = Math.sqrt(Math.max(0.0, 1.0 - cosBeta0 * cosBeta0));
+
+		return Angle.toDegrees(Math.atan2(sinBeta0, (1.0 - f) * cosBeta0));
+	}
+}
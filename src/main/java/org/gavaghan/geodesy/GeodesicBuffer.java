@@ -0,0 +1,355 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Generates polygons approximating geodesic circles (all points within a
+ * distance of a center) and corridors (all points within a distance of a
+ * polyline). Vertices are written as interleaved latitude/longitude pairs in
+ * degrees and are ordered clockwise when viewed from above.
+ * </p>
+ * <p>
+ * The number of vertices adapts to the requested maximum chord error: the
+ * largest distance allowed between the true boundary and a polygon edge. All
+ * vertices around a point are found with a single fan of direct solutions, so
+ * the work that depends only on the point is done once.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class GeodesicBuffer
+{
+	/** Fewest vertices used for a full circle. */
+	static private final int MIN_CIRCLE_VERTICES = 8;
+
+	/** Most vertices used for a full circle. */
+	static private final int MAX_CIRCLE_VERTICES = 1 << 16;
+
+	/** Calculator for the direct and inverse solutions. */
+	private final GeodeticCalculator mCalculator;
+
+	/** Reference ellipsoid. */
+	private final Ellipsoid mEllipsoid;
+
+	/**
+	 * Create a new GeodesicBuffer.
+	 * 
+	 * @param calculator
+	 *            calculator for the direct and inverse solutions
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 */
+	public GeodesicBuffer(GeodeticCalculator calculator, Ellipsoid ellipsoid)
+	{
+		mCalculator = calculator;
+		mEllipsoid = ellipsoid;
+	}
+
+	/**
+	 * <p>
+	 * Get the number of vertices needed to approximate a circle so that no
+	 * polygon edge strays further than 'maxError' from the true circle.
+	 * </p>
+	 * <p>
+	 * On a sphere of radius R, a circle of geodesic radius r has the curvature
+	 * of a plane circle of radius R sin(r/R). An n sided polygon inscribed in
+	 * a circle of radius c deviates from it by c (1 - cos(pi/n)), which is
+	 * solved for n.
+	 * </p>
+	 * 
+	 * @param radius
+	 *            radius of the circle in meters
+	 * @param maxError
+	 *            maximum chord error in meters
+	 * @return number of vertices
+	 */
+	public int getCircleVertexCount(double radius, double maxError)
+	{
+		double earthRadius = mEllipsoid.getSemiMajorAxis();
+		double planar = earthRadius * Math.sin(Math.min(radius / earthRadius, Math.PI / 2.0));
+
+		if (!(maxError < planar)) return MIN_CIRCLE_VERTICES;
+
+		double n = Math.ceil(Math.PI / Math.acos(1.0 - maxError / planar));
+
+		return (int) Math.max(MIN_CIRCLE_VERTICES, Math.min(MAX_CIRCLE_VERTICES, n));
+	}
+
+	/**
+	 * Generate a polygon approximating a geodesic circle into a caller
+	 * supplied array. The first vertex lies due north of the center.
+	 * 
+	 * @param center
+	 *            center of the circle
+	 * @param radius
+	 *            radius of the circle in meters
+	 * @param maxError
+	 *            maximum chord error in meters
+	 * @param latLon
+	 *            receives the vertices; must have room for
+	 *            getCircleVertexCount() of them
+	 * @param offset
+	 *            index of the first vertex in 'latLon'
+	 * @return number of vertices written
+	 */
+	public int circle(GlobalCoordinates center, double radius, double maxError, double[] latLon, int offset)
+	{
+		int n = getCircleVertexCount(radius, maxError);
+
+		mCalculator.calculateEndingCoordinates(mEllipsoid, center, 0.0, 360.0 / n, n, radius, latLon, offset);
+
+		return n;
+	}
+
+	/**
+	 * Generate a polygon approximating a geodesic circle.
+	 * 
+	 * @param center
+	 *            center of the circle
+	 * @param radius
+	 *            radius of the circle in meters
+	 * @param maxError
+	 *            maximum chord error in meters
+	 * @return interleaved latitude/longitude pairs of the vertices
+	 */
+	public double[] circle(GlobalCoordinates center, double radius, double maxError)
+	{
+		double[] latLon = new double[2 * getCircleVertexCount(radius, maxError)];
+
+		circle(center, radius, maxError, latLon, 0);
+
+		return latLon;
+	}
+
+	/**
+	 * Generate polygons approximating geodesic circles of a common radius
+	 * around many centers. The rings are packed one after another into the
+	 * returned array.
+	 * 
+	 * @param centers
+	 *            interleaved latitude/longitude pairs of the centers (2 * count
+	 *            elements)
+	 * @param count
+	 *            number of circles
+	 * @param radius
+	 *            radius of the circles in meters
+	 * @param maxError
+	 *            maximum chord error in meters
+	 * @param ringStarts
+	 *            receives the index of the first vertex of each ring, followed
+	 *            by the total vertex count (count + 1 elements)
+	 * @return interleaved latitude/longitude pairs of the vertices
+	 */
+	public double[] circles(double[] centers, int count, double radius, double maxError, int[] ringStarts)
+	{
+		int n = getCircleVertexCount(radius, maxError);
+		double[] latLon = new double[2 * n * count];
+		GlobalCoordinates center = new GlobalCoordinates(0.0, 0.0);
+
+		for (int i = 0; i < count; i++)
+		{
+			center.setLatitude(centers[2 * i]);
+			center.setLongitude(centers[2 * i + 1]);
+
+			ringStarts[i] = i * n;
+			mCalculator.calculateEndingCoordinates(mEllipsoid, center, 0.0, 360.0 / n, n, radius, latLon, i * n);
+		}
+
+		ringStarts[count] = count * n;
+
+		return latLon;
+	}
+
+	/**
+	 * <p>
+	 * Generate a polygon approximating the corridor of all points within a
+	 * distance of a polyline. The ends of the corridor are rounded, as are the
+	 * outside corners where the polyline turns.
+	 * </p>
+	 * <p>
+	 * The inside of each turn is formed by the two offset points of the
+	 * adjoining segments, so sharp turns produce a small self intersection on
+	 * that side. Consecutive duplicate points in the polyline are ignored.
+	 * </p>
+	 * 
+	 * @param polyline
+	 *            interleaved latitude/longitude pairs of the polyline
+	 *            (2 * count elements)
+	 * @param count
+	 *            number of points in the polyline
+	 * @param halfWidth
+	 *            distance from the polyline to the edge of the corridor in
+	 *            meters
+	 * @param maxError
+	 *            maximum chord error in meters
+	 * @return interleaved latitude/longitude pairs of the vertices
+	 */
+	public double[] corridor(double[] polyline, int count, double halfWidth, double maxError)
+	{
+		// drop consecutive duplicates
+		double[] points = new double[2 * count];
+		int n = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			if ((n > 0) && (points[2 * n - 2] == polyline[2 * i]) && (points[2 * n - 1] == polyline[2 * i + 1])) continue;
+
+			points[2 * n] = polyline[2 * i];
+			points[2 * n + 1] = polyline[2 * i + 1];
+			n++;
+		}
+
+		if (n == 0) return new double[0];
+
+		GlobalCoordinates vertex = new GlobalCoordinates(points[0], points[1]);
+
+		if (n == 1) return circle(vertex, halfWidth, maxError);
+
+		// heading leaving each point, and heading arriving at each point
+		double[] curves = new double[3 * (n - 1)];
+		double[] ends = Arrays.copyOfRange(points, 2, 2 * n);
+
+		mCalculator.calculateGeodeticCurves(mEllipsoid, points, ends, n - 1, curves);
+
+		double[] departing = new double[n];
+		double[] arriving = new double[n];
+
+		for (int i = 0; i < n - 1; i++)
+		{
+			departing[i] = curves[3 * i + 1];
+			arriving[i + 1] = curves[3 * i + 2] + 180.0;
+		}
+
+		departing[n - 1] = arriving[n - 1];
+		arriving[0] = departing[0];
+
+		double step = 360.0 / getCircleVertexCount(halfWidth, maxError);
+		Polygon polygon = new Polygon();
+
+		// left side walking forward
+		for (int i = 0; i < n - 1; i++)
+		{
+			vertex.setLatitude(points[2 * i]);
+			vertex.setLongitude(points[2 * i + 1]);
+
+			double from = arriving[i] - 90.0;
+
+			polygon.fan(vertex, from, turn(from, departing[i] - 90.0), step, halfWidth, true);
+		}
+
+		// far end cap
+		vertex.setLatitude(points[2 * n - 2]);
+		vertex.setLongitude(points[2 * n - 1]);
+		polygon.fan(vertex, arriving[n - 1] - 90.0, 180.0, step, halfWidth, true);
+
+		// right side walking back
+		for (int i = n - 2; i > 0; i--)
+		{
+			vertex.setLatitude(points[2 * i]);
+			vertex.setLongitude(points[2 * i + 1]);
+
+			double from = departing[i] + 90.0;
+
+			polygon.fan(vertex, from, turn(from, arriving[i] + 90.0), step, halfWidth, true);
+		}
+
+		// near end cap, stopping short of the first vertex
+		vertex.setLatitude(points[0]);
+		vertex.setLongitude(points[1]);
+		polygon.fan(vertex, departing[0] + 90.0, 180.0, step, halfWidth, false);
+
+		return polygon.toArray();
+	}
+
+	/**
+	 * Get the clockwise sweep from one bearing to another.
+	 * 
+	 * @param from
+	 *            starting bearing in degrees
+	 * @param to
+	 *            ending bearing in degrees
+	 * @return sweep in degrees; negative for a counterclockwise turn
+	 */
+	static private double turn(double from, double to)
+	{
+		double sweep = (to - from) % 360.0;
+
+		if (sweep > 180.0) sweep -= 360.0;
+		else if (sweep <= -180.0) sweep += 360.0;
+
+		return sweep;
+	}
+
+	/**
+	 * Growable list of vertices.
+	 */
+	private final class Polygon
+	{
+		private double[] mLatLon = new double[64];
+		private int mCount;
+
+		/**
+		 * Append vertices around a point. A clockwise sweep is traced as an arc
+		 * at the given angular step; a counterclockwise sweep is the inside of
+		 * a turn and only its two end points are added.
+		 */
+		void fan(GlobalCoordinates center, double from, double sweep, double step, double distance, boolean includeLast)
+		{
+			int n;
+			double increment;
+
+			if (sweep > 0.0)
+			{
+				n = 1 + (int) Math.ceil(sweep / step);
+				increment = sweep / (n - 1);
+			}
+			else if (sweep < 0.0)
+			{
+				n = 2;
+				increment = sweep;
+			}
+			else
+			{
+				n = 1;
+				increment = 0.0;
+			}
+
+			if (!includeLast) n--;
+
+			if (2 * (mCount + n) > mLatLon.length) mLatLon = Arrays.copyOf(mLatLon, Math.max(2 * mLatLon.length, 2 * (mCount + n)));
+
+			mCalculator.calculateEndingCoordinates(mEllipsoid, center, from, increment, n, distance, mLatLon, mCount);
+			mCount += n;
+		}
+
+		double[] toArray()
+		{
+			return Arrays.copyOf(mLatLon, 2 * mCount);
+		}
+	}
+}
@@ -0,0 +1,508 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+/**
+ * <p>
+ * Finds where two geodesics intersect and when two tracks moving along
+ * geodesics make their closest approach.
+ * </p>
+ * <p>
+ * Intersections are found by iteration. The inverse solution between the
+ * current point on each geodesic gives the sides and angles of a triangle.
+ * The triangle is solved on a sphere of the mean radius and the direct
+ * solution moves each point along its own geodesic by the spherical answer.
+ * As the points close in on the intersection, the triangle shrinks and the
+ * spherical approximation improves, so few iterations are needed.
+ * </p>
+ * <p>
+ * Closest approach is found by Newton steps on the time. At each step the
+ * separation and the velocities of the two tracks are expressed in the local
+ * plane at the first track, and the time is moved to where the separation
+ * would be least if the velocities held. The search starts at time zero and
+ * finds the first minimum of the separation that isn't before it.
+ * </p>
+ * <p>
+ * The batch methods reuse scratch space across pairs so that no objects are
+ * created per pair.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class GeodesicIntersection
+{
+	/** Number of elements written by intersect(). */
+	static public final int INTERSECTION_SIZE = 4;
+
+	/** Index of the latitude of the intersection in a result. */
+	static public final int LATITUDE = 0;
+
+	/** Index of the longitude of the intersection in a result. */
+	static public final int LONGITUDE = 1;
+
+	/** Index of the signed distance along the first geodesic in a result. */
+	static public final int DISTANCE_1 = 2;
+
+	/** Index of the signed distance along the second geodesic in a result. */
+	static public final int DISTANCE_2 = 3;
+
+	/** Number of elements written by closestApproach(). */
+	static public final int APPROACH_SIZE = 6;
+
+	/** Index of the time of closest approach in a result. */
+	static public final int TIME = 0;
+
+	/** Index of the separation at closest approach in a result. */
+	static public final int SEPARATION = 1;
+
+	/** Index of the latitude of the first track at closest approach. */
+	static public final int LATITUDE_1 = 2;
+
+	/** Index of the longitude of the first track at closest approach. */
+	static public final int LONGITUDE_1 = 3;
+
+	/** Index of the latitude of the second track at closest approach. */
+	static public final int LATITUDE_2 = 4;
+
+	/** Index of the longitude of the second track at closest approach. */
+	static public final int LONGITUDE_2 = 5;
+
+	/** Correction (meters) small enough to stop iterating. */
+	static private final double TOLERANCE = 0.0001;
+
+	/** Most iterations attempted. */
+	static private final int MAX_ITERATIONS = 16;
+
+	/** Geodesics closer than this to parallel (radians) don't intersect. */
+	static private final double PARALLEL = 1e-12;
+
+	/** Calculator for the direct and inverse solutions. */
+	private final GeodeticCalculator mCalculator;
+
+	/** Reference ellipsoid. */
+	private final Ellipsoid mEllipsoid;
+
+	/** Mean radius of the ellipsoid, for the spherical approximations. */
+	private final double mRadius;
+
+	/**
+	 * Create a new GeodesicIntersection.
+	 * 
+	 * @param calculator
+	 *            calculator for the direct and inverse solutions
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 */
+	public GeodesicIntersection(GeodeticCalculator calculator, Ellipsoid ellipsoid)
+	{
+		mCalculator = calculator;
+		mEllipsoid = ellipsoid;
+		mRadius = (2.0 * ellipsoid.getSemiMajorAxis() + ellipsoid.getSemiMinorAxis()) / 3.0;
+	}
+
+	/**
+	 * Calculate the intersection of two geodesics, each given by a point and a
+	 * bearing. Two geodesics cross at more than one place; the crossing
+	 * nearest the two starting points is found, which may lie behind either of
+	 * them.
+	 * 
+	 * @param start1
+	 *            point on the first geodesic
+	 * @param bearing1
+	 *            bearing of the first geodesic at start1 (degrees)
+	 * @param start2
+	 *            point on the second geodesic
+	 * @param bearing2
+	 *            bearing of the second geodesic at start2 (degrees)
+	 * @return the intersection, or null if the geodesics are parallel
+	 */
+	public GlobalCoordinates calculateIntersection(GlobalCoordinates start1, double bearing1, GlobalCoordinates start2, double bearing2)
+	{
+		double[] result = new double[INTERSECTION_SIZE];
+
+		if (!intersect(start1.getLatitude(), start1.getLongitude(), bearing1, start2.getLatitude(), start2.getLongitude(), bearing2, result, 0, new double[3])) return null;
+
+		return new GlobalCoordinates(result[LATITUDE], result[LONGITUDE]);
+	}
+
+	/**
+	 * <p>
+	 * Calculate the intersection of two geodesics, each given by a point and a
+	 * bearing. See calculateIntersection().
+	 * </p>
+	 * <p>
+	 * The result is written to 'result' starting at 'offset', at the positions
+	 * given by LATITUDE, LONGITUDE, DISTANCE_1 and DISTANCE_2. The distances
+	 * are measured along each geodesic from its starting point and are
+	 * negative when the intersection lies behind it. If the geodesics are
+	 * parallel, every element is NaN.
+	 * </p>
+	 * 
+	 * @param latitude1
+	 *            latitude of the point on the first geodesic (degrees)
+	 * @param longitude1
+	 *            longitude of the point on the first geodesic (degrees)
+	 * @param bearing1
+	 *            bearing of the first geodesic (degrees)
+	 * @param latitude2
+	 *            latitude of the point on the second geodesic (degrees)
+	 * @param longitude2
+	 *            longitude of the point on the second geodesic (degrees)
+	 * @param bearing2
+	 *            bearing of the second geodesic (degrees)
+	 * @param result
+	 *            receives INTERSECTION_SIZE elements
+	 * @param offset
+	 *            index of the first element written
+	 * @return true if the geodesics intersect
+	 */
+	public boolean intersect(double latitude1, double longitude1, double bearing1, double latitude2, double longitude2, double bearing2, double[] result, int offset)
+	{
+		return intersect(latitude1, longitude1, bearing1, latitude2, longitude2, bearing2, result, offset, new double[3]);
+	}
+
+	/**
+	 * Calculate the intersections of many pairs of geodesics. Each geodesic is
+	 * a triple of latitude, longitude and bearing (degrees). See intersect().
+	 * 
+	 * @param geodesics1
+	 *            first geodesic of each pair, 3 * count elements
+	 * @param geodesics2
+	 *            second geodesic of each pair, 3 * count elements
+	 * @param count
+	 *            number of pairs
+	 * @param results
+	 *            receives INTERSECTION_SIZE * count elements
+	 */
+	public void intersect(double[] geodesics1, double[] geodesics2, int count, double[] results)
+	{
+		double[] scratch = new double[3];
+
+		for (int i = 0; i < count; i++)
+		{
+			int j = 3 * i;
+
+			intersect(geodesics1[j], geodesics1[j + 1], geodesics1[j + 2], geodesics2[j], geodesics2[j + 1], geodesics2[j + 2], results, INTERSECTION_SIZE * i, scratch);
+		}
+	}
+
+	/**
+	 * Calculate the closest approach of two tracks moving at constant speed
+	 * along geodesics.
+	 * 
+	 * @param start1
+	 *            position of the first track at time zero
+	 * @param bearing1
+	 *            bearing of the first track at time zero (degrees)
+	 * @param speed1
+	 *            speed of the first track (meters per unit of time)
+	 * @param start2
+	 *            position of the second track at time zero
+	 * @param bearing2
+	 *            bearing of the second track at time zero (degrees)
+	 * @param speed2
+	 *            speed of the second track (meters per unit of time)
+	 * @param horizon
+	 *            latest time considered
+	 * @return time of closest approach, from zero to horizon
+	 */
+	public double calculateClosestApproachTime(GlobalCoordinates start1, double bearing1, double speed1, GlobalCoordinates start2, double bearing2, double speed2, double horizon)
+	{
+		double[] result = new double[APPROACH_SIZE];
+
+		closestApproach(start1.getLatitude(), start1.getLongitude(), bearing1, speed1, start2.getLatitude(), start2.getLongitude(), bearing2, speed2, horizon, result, 0, new double[3]);
+
+		return result[TIME];
+	}
+
+	/**
+	 * <p>
+	 * Calculate the closest approach of two tracks moving at constant speed
+	 * along geodesics.
+	 * </p>
+	 * <p>
+	 * The result is written to 'result' starting at 'offset', at the positions
+	 * given by TIME, SEPARATION, LATITUDE_1, LONGITUDE_1, LATITUDE_2 and
+	 * LONGITUDE_2. Time is in the unit the speeds are given in and lies
+	 * between zero and 'horizon'. Separation is the ellipsoidal distance
+	 * between the tracks at that time.
+	 * </p>
+	 * 
+	 * @param latitude1
+	 *            latitude of the first track at time zero (degrees)
+	 * @param longitude1
+	 *            longitude of the first track at time zero (degrees)
+	 * @param bearing1
+	 *            bearing of the first track at time zero (degrees)
+	 * @param speed1
+	 *            speed of the first track (meters per unit of time)
+	 * @param latitude2
+	 *            latitude of the second track at time zero (degrees)
+	 * @param longitude2
+	 *            longitude of the second track at time zero (degrees)
+	 * @param bearing2
+	 *            bearing of the second track at time zero (degrees)
+	 * @param speed2
+	 *            speed of the second track (meters per unit of time)
+	 * @param horizon
+	 *            latest time considered
+	 * @param result
+	 *            receives APPROACH_SIZE elements
+	 * @param offset
+	 *            index of the first element written
+	 */
+	public void closestApproach(double latitude1, double longitude1, double bearing1, double speed1, double latitude2, double longitude2, double bearing2, double speed2, double horizon, double[] result, int offset)
+	{
+		closestApproach(latitude1, longitude1, bearing1, speed1, latitude2, longitude2, bearing2, speed2, horizon, result, offset, new double[3]);
+	}
+
+	/**
+	 * Calculate the closest approaches of many pairs of tracks. Each track is
+	 * a quad of latitude, longitude, bearing (degrees) and speed. See
+	 * closestApproach().
+	 * 
+	 * @param tracks1
+	 *            first track of each pair, 4 * count elements
+	 * @param tracks2
+	 *            second track of each pair, 4 * count elements
+	 * @param count
+	 *            number of pairs
+	 * @param horizon
+	 *            latest time considered
+	 * @param results
+	 *            receives APPROACH_SIZE * count elements
+	 */
+	public void closestApproaches(double[] tracks1, double[] tracks2, int count, double horizon, double[] results)
+	{
+		double[] scratch = new double[3];
+
+		for (int i = 0; i < count; i++)
+		{
+			int j = 4 * i;
+
+			closestApproach(tracks1[j], tracks1[j + 1], tracks1[j + 2], tracks1[j + 3], tracks2[j], tracks2[j + 1], tracks2[j + 2], tracks2[j + 3], horizon, results, APPROACH_SIZE * i, scratch);
+		}
+	}
+
+	/**
+	 * Calculate the intersection of two geodesics using caller supplied
+	 * scratch space. See intersect().
+	 * 
+	 * @param latitude1
+	 *            latitude of the point on the first geodesic (degrees)
+	 * @param longitude1
+	 *            longitude of the point on the first geodesic (degrees)
+	 * @param bearing1
+	 *            bearing of the first geodesic (degrees)
+	 * @param latitude2
+	 *            latitude of the point on the second geodesic (degrees)
+	 * @param longitude2
+	 *            longitude of the point on the second geodesic (degrees)
+	 * @param bearing2
+	 *            bearing of the second geodesic (degrees)
+	 * @param result
+	 *            receives INTERSECTION_SIZE elements
+	 * @param offset
+	 *            index of the first element written
+	 * @param scratch
+	 *            scratch space of 3 elements
+	 * @return true if the geodesics intersect
+	 */
+	private boolean intersect(double latitude1, double longitude1, double bearing1, double latitude2, double longitude2, double bearing2, double[] result, int offset, double[] scratch)
+	{
+		double distance1 = 0.0;
+		double distance2 = 0.0;
+
+		for (int i = 0; i < MAX_ITERATIONS; i++)
+		{
+			mCalculator.calculateGeodeticCurve(mEllipsoid, latitude1, longitude1, latitude2, longitude2, scratch, 0);
+
+			double delta = scratch[0] / mRadius;
+
+			if (delta == 0.0) break;
+
+			// Place the first point at (1,0,0) and the second on the equator,
+			// then intersect the great circles that leave them at the same
+			// angles the geodesics make with the line between them.
+			double r1 = Angle.toRadians(bearing1 - scratch[1]);
+			double r2 = Angle.toRadians(bearing2 - scratch[2]);
+			double cosDelta = Math.cos(delta);
+			double sinDelta = Math.sin(delta);
+			double cosR1 = Math.cos(r1);
+			double sinR1 = Math.sin(r1);
+			double cosR2 = Math.cos(r2);
+			double sinR2 = Math.sin(r2);
+
+			// tangent of the second great circle
+			double tx = cosR2 * sinDelta;
+			double ty = -cosR2 * cosDelta;
+			double tz = sinR2;
+
+			// normal of the second great circle
+			double nx = sinDelta * tz;
+			double ny = -cosDelta * tz;
+			double nz = cosDelta * ty - sinDelta * tx;
+
+			// intersection is the cross product of the normals (0,sinR1,cosR1)
+			// and (nx,ny,nz)
+			double px = sinR1 * nz - cosR1 * ny;
+			double py = cosR1 * nx;
+			double pz = -sinR1 * nx;
+			double norm = Math.sqrt(px * px + py * py + pz * pz);
+
+			if (!(norm >= PARALLEL))
+			{
+				for (int j = 0; j < INTERSECTION_SIZE; j++)
+					result[offset + j] = Double.NaN;
+				return false;
+			}
+
+			// angles along each great circle to the intersection
+			double sigma1 = Math.atan2(cosR1 * py - sinR1 * pz, px);
+			double sigma2 = Math.atan2(tx * px + ty * py + tz * pz, cosDelta * px + sinDelta * py);
+
+			// use the antipode if it is nearer
+			double other1 = Math.atan2(sinR1 * pz - cosR1 * py, -px);
+			double other2 = Math.atan2(-(tx * px + ty * py + tz * pz), -(cosDelta * px + sinDelta * py));
+
+			if (Math.abs(other1) + Math.abs(other2) < Math.abs(sigma1) + Math.abs(sigma2))
+			{
+				sigma1 = other1;
+				sigma2 = other2;
+			}
+
+			double step1 = mRadius * sigma1;
+			double step2 = mRadius * sigma2;
+
+			bearing1 = mCalculator.calculateEndingCoordinates(mEllipsoid, latitude1, longitude1, bearing1, step1, scratch, 0);
+			latitude1 = scratch[0];
+			longitude1 = scratch[1];
+			distance1 += step1;
+
+			bearing2 = mCalculator.calculateEndingCoordinates(mEllipsoid, latitude2, longitude2, bearing2, step2, scratch, 0);
+			latitude2 = scratch[0];
+			longitude2 = scratch[1];
+			distance2 += step2;
+
+			if (!(Math.max(Math.abs(step1), Math.abs(step2)) >= TOLERANCE)) break;
+		}
+
+		result[offset + LATITUDE] = latitude1;
+		result[offset + LONGITUDE] = longitude1;
+		result[offset + DISTANCE_1] = distance1;
+		result[offset + DISTANCE_2] = distance2;
+
+		return true;
+	}
+
+	/**
+	 * Calculate the closest approach of two tracks using caller supplied
+	 * scratch space. See closestApproach().
+	 * 
+	 * @param latitude1
+	 *            latitude of the first track at time zero (degrees)
+	 * @param longitude1
+	 *            longitude of the first track at time zero (degrees)
+	 * @param bearing1
+	 *            bearing of the first track at time zero (degrees)
+	 * @param speed1
+	 *            speed of the first track (meters per unit of time)
+	 * @param latitude2
+	 *            latitude of the second track at time zero (degrees)
+	 * @param longitude2
+	 *            longitude of the second track at time zero (degrees)
+	 * @param bearing2
+	 *            bearing of the second track at time zero (degrees)
+	 * @param speed2
+	 *            speed of the second track (meters per unit of time)
+	 * @param horizon
+	 *            latest time considered
+	 * @param result
+	 *            receives APPROACH_SIZE elements
+	 * @param offset
+	 *            index of the first element written
+	 * @param scratch
+	 *            scratch space of 3 elements
+	 */
+	private void closestApproach(double latitude1, double longitude1, double bearing1, double speed1, double latitude2, double longitude2, double bearing2, double speed2, double horizon, double[] result, int offset, double[] scratch)
+	{
+		double time = 0.0;
+		double separation = 0.0;
+		double lat1 = latitude1;
+		double lon1 = longitude1;
+		double lat2 = latitude2;
+		double lon2 = longitude2;
+
+		for (int i = 0; i < MAX_ITERATIONS; i++)
+		{
+			double course1 = bearing1;
+			double course2 = bearing2;
+
+			if (time > 0.0)
+			{
+				course1 = mCalculator.calculateEndingCoordinates(mEllipsoid, latitude1, longitude1, bearing1, speed1 * time, scratch, 0);
+				lat1 = scratch[0];
+				lon1 = scratch[1];
+
+				course2 = mCalculator.calculateEndingCoordinates(mEllipsoid, latitude2, longitude2, bearing2, speed2 * time, scratch, 0);
+				lat2 = scratch[0];
+				lon2 = scratch[1];
+			}
+
+			mCalculator.calculateGeodeticCurve(mEllipsoid, lat1, lon1, lat2, lon2, scratch, 0);
+
+			separation = scratch[0];
+
+			if (separation == 0.0) break;
+
+			// separation and velocities in the local plane at the first
+			// track; the second course is carried over as an angle to the
+			// geodesic joining the tracks
+			double azimuth = Angle.toRadians(scratch[1]);
+			double heading2 = azimuth + Angle.toRadians(course2 - scratch[2] - 180.0);
+			double heading1 = Angle.toRadians(course1);
+			double rx = separation * Math.sin(azimuth);
+			double ry = separation * Math.cos(azimuth);
+			double wx = speed2 * Math.sin(heading2) - speed1 * Math.sin(heading1);
+			double wy = speed2 * Math.cos(heading2) - speed1 * Math.cos(heading1);
+			double ww = wx * wx + wy * wy;
+
+			if (ww == 0.0) break;
+
+			double next = Math.min(Math.max(time - (rx * wx + ry * wy) / ww, 0.0), horizon);
+
+			if (!(Math.abs(next - time) * Math.sqrt(ww) >= TOLERANCE)) break;
+
+			time = next;
+		}
+
+		result[offset + TIME] = time;
+		result[offset + SEPARATION] = separation;
+		result[offset + LATITUDE_1] = lat1;
+		result[offset + LONGITUDE_1] = lon1;
+		result[offset + LATITUDE_2] = lat2;
+		result[offset + LONGITUDE_2] = lon2;
+	}
+}
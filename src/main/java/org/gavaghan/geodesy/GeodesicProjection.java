@@ -0,0 +1,635 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * Projects points onto geodesics to find cross track and along track
+ * distances on the ellipsoid.
+ * </p>
+ * <p>
+ * The foot of the perpendicular from a point to a geodesic is found by
+ * iteration. From the current estimate of the foot, the inverse solution to
+ * the point gives a distance and the angle it makes with the geodesic. A
+ * right spherical triangle turns those into a correction along the geodesic,
+ * which the direct solution applies. Each step is exact on the ellipsoid and
+ * the spherical approximation only affects the size of the correction, so the
+ * corrections shrink rapidly and the foot is typically found in two or three
+ * iterations. The cross track distance is the final inverse distance, so it
+ * carries the full accuracy of Vincenty's formulae.
+ * </p>
+ * <p>
+ * For map matching, one point can be projected onto many segments, or many
+ * points onto their own candidate segments, in primitive arrays. The
+ * reduced latitude of each point is then found once rather than in every
+ * inverse solution that ends there.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class GeodesicProjection
+{
+	/** Number of elements written by projectOntoSegment(). */
+	static public final int RESULT_SIZE = 5;
+
+	/** Index of the signed cross track distance in a result. */
+	static public final int CROSS_TRACK = 0;
+
+	/** Index of the along track distance in a result. */
+	static public final int ALONG_TRACK = 1;
+
+	/** Index of the along track fraction in a result. */
+	static public final int FRACTION = 2;
+
+	/** Index of the latitude of the projected point in a result. */
+	static public final int LATITUDE = 3;
+
+	/** Index of the longitude of the projected point in a result. */
+	static public final int LONGITUDE = 4;
+
+	/** Along track correction (meters) small enough to stop iterating. */
+	static private final double TOLERANCE = 0.0001;
+
+	/** Most iterations attempted. */
+	static private final int MAX_ITERATIONS = 16;
+
+	/** Points projected by each task of a parallel batch. */
+	static private final int BLOCK = 64;
+
+	/** Calculator for the direct and inverse solutions. */
+	private final GeodeticCalculator mCalculator;
+
+	/** Reference ellipsoid. */
+	private final Ellipsoid mEllipsoid;
+
+	/** Mean radius of the ellipsoid, for the spherical corrections. */
+	private final double mRadius;
+
+	/**
+	 * Create a new GeodesicProjection.
+	 * 
+	 * @param calculator
+	 *            calculator for the direct and inverse solutions
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 */
+	public GeodesicProjection(GeodeticCalculator calculator, Ellipsoid ellipsoid)
+	{
+		mCalculator = calculator;
+		mEllipsoid = ellipsoid;
+		mRadius = (2.0 * ellipsoid.getSemiMajorAxis() + ellipsoid.getSemiMinorAxis()) / 3.0;
+	}
+
+	/**
+	 * Calculate the signed cross track distance from a point to the geodesic
+	 * through two other points. The distance is positive when the point lies
+	 * to the right of the geodesic, looking from start toward end.
+	 * 
+	 * @param start
+	 *            first point on the geodesic
+	 * @param end
+	 *            second point on the geodesic
+	 * @param point
+	 *            point to measure
+	 * @return signed cross track distance in meters
+	 */
+	public double calculateCrossTrackDistance(GlobalCoordinates start, GlobalCoordinates end, GlobalCoordinates point)
+	{
+		double[] result = new double[RESULT_SIZE];
+
+		projectOntoGeodesic(start.getLatitude(), start.getLongitude(), end.getLatitude(), end.getLongitude(), point.getLatitude(), point.getLongitude(), result, 0, new double[3]);
+
+		return result[CROSS_TRACK];
+	}
+
+	/**
+	 * Calculate the along track distance from the start of a geodesic to the
+	 * foot of the perpendicular dropped from a point. The distance is negative
+	 * when the foot lies behind the start.
+	 * 
+	 * @param start
+	 *            first point on the geodesic
+	 * @param end
+	 *            second point on the geodesic
+	 * @param point
+	 *            point to project
+	 * @return along track distance in meters
+	 */
+	public double calculateAlongTrackDistance(GlobalCoordinates start, GlobalCoordinates end, GlobalCoordinates point)
+	{
+		double[] result = new double[RESULT_SIZE];
+
+		projectOntoGeodesic(start.getLatitude(), start.getLongitude(), end.getLatitude(), end.getLongitude(), point.getLatitude(), point.getLongitude(), result, 0, new double[3]);
+
+		return result[ALONG_TRACK];
+	}
+
+	/**
+	 * <p>
+	 * Project a point onto the segment of geodesic between two points. If the
+	 * foot of the perpendicular falls outside the segment, the nearer end of
+	 * the segment is used instead and the cross track distance becomes the
+	 * distance to that end (still signed by side).
+	 * </p>
+	 * <p>
+	 * The result is written to 'result' starting at 'offset', at the positions
+	 * given by CROSS_TRACK, ALONG_TRACK, FRACTION, LATITUDE and LONGITUDE.
+	 * FRACTION is the along track distance as a fraction of the segment
+	 * length.
+	 * </p>
+	 * 
+	 * @param latitude1
+	 *            latitude of the start of the segment (degrees)
+	 * @param longitude1
+	 *            longitude of the start of the segment (degrees)
+	 * @param latitude2
+	 *            latitude of the end of the segment (degrees)
+	 * @param longitude2
+	 *            longitude of the end of the segment (degrees)
+	 * @param latitude
+	 *            latitude of the point (degrees)
+	 * @param longitude
+	 *            longitude of the point (degrees)
+	 * @param result
+	 *            receives RESULT_SIZE elements
+	 * @param offset
+	 *            index of the first element written
+	 */
+	public void projectOntoSegment(double latitude1, double longitude1, double latitude2, double longitude2, double latitude, double longitude, double[] result, int offset)
+	{
+		projectOntoSegment(latitude1, longitude1, latitude2, longitude2, latitude, longitude, result, offset, new double[3]);
+	}
+
+	/**
+	 * <p>
+	 * Project one point, such as a GPS fix, onto many segments held in
+	 * primitive arrays, such as the candidate roads near it.
+	 * </p>
+	 * <p>
+	 * Segment i runs from the latitude/longitude pair at element 2i of
+	 * 'starts' to the pair at element 2i of 'ends'. Each projection is written
+	 * as in projectOntoSegment(), starting at element RESULT_SIZE * i of
+	 * 'results', and is identical to what projectOntoSegment() gives. The
+	 * reduced latitude of the point is found once and shared by every
+	 * inverse solution that ends there. If the segments are used again, pass
+	 * their curves from GeodeticCalculator.calculateGeodeticCurves() so the
+	 * inverse solution of each segment is not repeated either.
+	 * </p>
+	 * 
+	 * @param latitude
+	 *            latitude of the point (degrees)
+	 * @param longitude
+	 *            longitude of the point (degrees)
+	 * @param starts
+	 *            starts of the segments (2 * count elements)
+	 * @param ends
+	 *            ends of the segments (2 * count elements)
+	 * @param curves
+	 *            curves of the segments (3 * count elements), or null to
+	 *            calculate them
+	 * @param count
+	 *            number of segments
+	 * @param results
+	 *            receives the projections (RESULT_SIZE * count elements)
+	 */
+	public void projectOntoSegments(double latitude, double longitude, double[] starts, double[] ends, double[] curves, int count, double[] results)
+	{
+		double[] reduced = new double[2];
+		double[] curve = new double[3];
+
+		mCalculator.reducedLatitude(mEllipsoid, latitude, reduced, 0);
+
+		for (int i = 0; i < count; i++)
+			projectOntoSegment(starts, ends, curves, i, latitude, longitude, reduced, results, RESULT_SIZE * i, curve);
+	}
+
+	/**
+	 * <p>
+	 * Project many points onto their own candidate segments, as a map
+	 * matcher does with a trace of GPS fixes and the roads near each fix.
+	 * </p>
+	 * <p>
+	 * Fix i is the latitude/longitude pair at element 2i of 'fixes'. Its
+	 * candidates are the segments listed in 'candidates' from index
+	 * candidateStarts[i] up to candidateStarts[i + 1], so 'candidateStarts'
+	 * has fixCount + 1 elements. Candidate k is projected as by
+	 * projectOntoSegments() and written starting at element RESULT_SIZE * k of
+	 * 'results'.
+	 * </p>
+	 * 
+	 * @param fixes
+	 *            the points (2 * fixCount elements)
+	 * @param fixCount
+	 *            number of points
+	 * @param candidateStarts
+	 *            index in 'candidates' of the first candidate of each point,
+	 *            and the end (fixCount + 1 elements)
+	 * @param candidates
+	 *            segment indexes of the candidates
+	 * @param starts
+	 *            starts of all segments
+	 * @param ends
+	 *            ends of all segments
+	 * @param curves
+	 *            curves of all segments, or null to calculate them
+	 * @param results
+	 *            receives the projections (RESULT_SIZE elements per
+	 *            candidate)
+	 */
+	public void projectOntoCandidates(double[] fixes, int fixCount, int[] candidateStarts, int[] candidates, double[] starts, double[] ends, double[] curves, double[] results)
+	{
+		projectOntoCandidates(fixes, 0, fixCount, candidateStarts, candidates, starts, ends, curves, results);
+	}
+
+	/**
+	 * Project many points onto their own candidate segments on the common
+	 * fork-join pool. See projectOntoCandidates().
+	 * 
+	 * @param fixes
+	 *            the points (2 * fixCount elements)
+	 * @param fixCount
+	 *            number of points
+	 * @param candidateStarts
+	 *            index in 'candidates' of the first candidate of each point,
+	 *            and the end (fixCount + 1 elements)
+	 * @param candidates
+	 *            segment indexes of the candidates
+	 * @param starts
+	 *            starts of all segments
+	 * @param ends
+	 *            ends of all segments
+	 * @param curves
+	 *            curves of all segments, or null to calculate them
+	 * @param results
+	 *            receives the projections (RESULT_SIZE elements per
+	 *            candidate)
+	 */
+	public void projectOntoCandidatesParallel(final double[] fixes, final int fixCount, final int[] candidateStarts, final int[] candidates, final double[] starts, final double[] ends, final double[] curves, final double[] results)
+	{
+		int blocks = (fixCount + BLOCK - 1) / BLOCK;
+
+		IntStream.range(0, blocks).parallel().forEach(block -> {
+			int from = block * BLOCK;
+
+			projectOntoCandidates(fixes, from, Math.min(BLOCK, fixCount - from), candidateStarts, candidates, starts, ends, curves, results);
+		});
+	}
+
+	/**
+	 * Project a range of points onto their candidate segments.
+	 * 
+	 * @param fixes
+	 *            the points
+	 * @param from
+	 *            index of the first point
+	 * @param count
+	 *            number of points
+	 * @param candidateStarts
+	 *            index in 'candidates' of the first candidate of each point,
+	 *            and the end
+	 * @param candidates
+	 *            segment indexes of the candidates
+	 * @param starts
+	 *            starts of all segments
+	 * @param ends
+	 *            ends of all segments
+	 * @param curves
+	 *            curves of all segments, or null
+	 * @param results
+	 *            receives the projections
+	 */
+	private void projectOntoCandidates(double[] fixes, int from, int count, int[] candidateStarts, int[] candidates, double[] starts, double[] ends, double[] curves, double[] results)
+	{
+		double[] reduced = new double[2];
+		double[] curve = new double[3];
+
+		for (int i = from; i < from + count; i++)
+		{
+			double latitude = fixes[2 * i];
+			double longitude = fixes[2 * i + 1];
+
+			mCalculator.reducedLatitude(mEllipsoid, latitude, reduced, 0);
+
+			for (int k = candidateStarts[i]; k < candidateStarts[i + 1]; k++)
+				projectOntoSegment(starts, ends, curves, candidates[k], latitude, longitude, reduced, results, RESULT_SIZE * k, curve);
+		}
+	}
+
+	/**
+	 * Project a point onto a segment, using caller supplied scratch space. See
+	 * projectOntoSegment().
+	 * 
+	 * @param latitude1
+	 *            latitude of the start of the segment (degrees)
+	 * @param longitude1
+	 *            longitude of the start of the segment (degrees)
+	 * @param latitude2
+	 *            latitude of the end of the segment (degrees)
+	 * @param longitude2
+	 *            longitude of the end of the segment (degrees)
+	 * @param latitude
+	 *            latitude of the point (degrees)
+	 * @param longitude
+	 *            longitude of the point (degrees)
+	 * @param result
+	 *            receives RESULT_SIZE elements
+	 * @param offset
+	 *            index of the first element written
+	 * @param curve
+	 *            scratch space of 3 elements
+	 */
+	void projectOntoSegment(double latitude1, double longitude1, double latitude2, double longitude2, double latitude, double longitude, double[] result, int offset, double[] curve)
+	{
+		mCalculator.calculateGeodeticCurve(mEllipsoid, latitude1, longitude1, latitude2, longitude2, curve, 0);
+
+		projectOntoSegment(latitude1, longitude1, latitude2, longitude2, curve[0], curve[1], latitude, longitude, null, result, offset, curve);
+	}
+
+	/**
+	 * Project a point onto one of many segments held in primitive arrays.
+	 * 
+	 * @param starts
+	 *            starts of the segments
+	 * @param ends
+	 *            ends of the segments
+	 * @param curves
+	 *            curves of the segments, or null to calculate them
+	 * @param segment
+	 *            index of the segment
+	 * @param latitude
+	 *            latitude of the point (degrees)
+	 * @param longitude
+	 *            longitude of the point (degrees)
+	 * @param reduced
+	 *            sine and cosine of the reduced latitude of the point
+	 * @param result
+	 *            receives RESULT_SIZE elements
+	 * @param offset
+	 *            index of the first element written
+	 * @param curve
+	 *            scratch space of 3 elements
+	 */
+	private void projectOntoSegment(double[] starts, double[] ends, double[] curves, int segment, double latitude, double longitude, double[] reduced, double[] result, int offset, double[] curve)
+	{
+		double latitude1 = starts[2 * segment];
+		double longitude1 = starts[2 * segment + 1];
+		double latitude2 = ends[2 * segment];
+		double longitude2 = ends[2 * segment + 1];
+		double length;
+		double bearing;
+
+		if (curves != null)
+		{
+			length = curves[3 * segment];
+			bearing = curves[3 * segment + 1];
+		}
+		else
+		{
+			mCalculator.calculateGeodeticCurve(mEllipsoid, latitude1, longitude1, latitude2, longitude2, curve, 0);
+			length = curve[0];
+			bearing = curve[1];
+		}
+
+		projectOntoSegment(latitude1, longitude1, latitude2, longitude2, length, bearing, latitude, longitude, reduced, result, offset, curve);
+	}
+
+	/**
+	 * Project a point onto a segment whose length and bearing are known.
+	 * 
+	 * @param latitude1
+	 *            latitude of the start of the segment (degrees)
+	 * @param longitude1
+	 *            longitude of the start of the segment (degrees)
+	 * @param latitude2
+	 *            latitude of the end of the segment (degrees)
+	 * @param longitude2
+	 *            longitude of the end of the segment (degrees)
+	 * @param length
+	 *            length of the segment (meters)
+	 * @param bearing
+	 *            bearing of the segment at its start (degrees)
+	 * @param latitude
+	 *            latitude of the point (degrees)
+	 * @param longitude
+	 *            longitude of the point (degrees)
+	 * @param reduced
+	 *            sine and cosine of the reduced latitude of the point, or
+	 *            null
+	 * @param result
+	 *            receives RESULT_SIZE elements
+	 * @param offset
+	 *            index of the first element written
+	 * @param curve
+	 *            scratch space of 3 elements
+	 */
+	private void projectOntoSegment(double latitude1, double longitude1, double latitude2, double longitude2, double length, double bearing, double latitude, double longitude, double[] reduced, double[] result, int offset, double[] curve)
+	{
+		projectOntoGeodesic(latitude1, longitude1, length, bearing, latitude, longitude, reduced, result, offset, curve);
+
+		double along = result[offset + ALONG_TRACK];
+
+		if ((length == 0.0) || (along <= 0.0))
+		{
+			clamp(latitude1, longitude1, 0.0, 0.0, latitude, longitude, reduced, result, offset, curve);
+		}
+		else if (along >= length)
+		{
+			clamp(latitude2, longitude2, length, 1.0, latitude, longitude, reduced, result, offset, curve);
+		}
+		else
+		{
+			result[offset + FRACTION] = along / length;
+		}
+	}
+
+	/**
+	 * Project a point onto the full geodesic through two points. Writes all
+	 * result elements except FRACTION.
+	 * 
+	 * @param latitude1
+	 *            latitude of the first point on the geodesic (degrees)
+	 * @param longitude1
+	 *            longitude of the first point on the geodesic (degrees)
+	 * @param latitude2
+	 *            latitude of the second point on the geodesic (degrees)
+	 * @param longitude2
+	 *            longitude of the second point on the geodesic (degrees)
+	 * @param latitude
+	 *            latitude of the point (degrees)
+	 * @param longitude
+	 *            longitude of the point (degrees)
+	 * @param result
+	 *            receives the projection
+	 * @param offset
+	 *            index of the first element written
+	 * @param curve
+	 *            scratch space of 3 elements
+	 */
+	private void projectOntoGeodesic(double latitude1, double longitude1, double latitude2, double longitude2, double latitude, double longitude, double[] result, int offset, double[] curve)
+	{
+		mCalculator.calculateGeodeticCurve(mEllipsoid, latitude1, longitude1, latitude2, longitude2, curve, 0);
+
+		projectOntoGeodesic(latitude1, longitude1, curve[0], curve[1], latitude, longitude, null, result, offset, curve);
+	}
+
+	/**
+	 * Project a point onto the full geodesic leaving a point with a known
+	 * bearing. Writes all result elements except FRACTION.
+	 * 
+	 * @param latitude1
+	 *            latitude of the first point on the geodesic (degrees)
+	 * @param longitude1
+	 *            longitude of the first point on the geodesic (degrees)
+	 * @param length
+	 *            distance to the second point on the geodesic (meters); if
+	 *            zero, the geodesic is undefined and the first point is taken
+	 *            as the foot
+	 * @param bearing
+	 *            bearing of the geodesic at the first point (degrees)
+	 * @param latitude
+	 *            latitude of the point (degrees)
+	 * @param longitude
+	 *            longitude of the point (degrees)
+	 * @param reduced
+	 *            sine and cosine of the reduced latitude of the point, or
+	 *            null
+	 * @param result
+	 *            receives the projection
+	 * @param offset
+	 *            index of the first element written
+	 * @param curve
+	 *            scratch space of 3 elements
+	 */
+	private void projectOntoGeodesic(double latitude1, double longitude1, double length, double bearing, double latitude, double longitude, double[] reduced, double[] result, int offset, double[] curve)
+	{
+		double footLatitude = latitude1;
+		double footLongitude = longitude1;
+		double along = 0.0;
+		double cross = 0.0;
+
+		if (length > 0.0)
+		{
+			for (int i = 0; i < MAX_ITERATIONS; i++)
+			{
+				curveToPoint(footLatitude, footLongitude, latitude, longitude, reduced, curve);
+
+				double distance = curve[0];
+
+				if (distance == 0.0)
+				{
+					cross = 0.0;
+					break;
+				}
+
+				double angle = Angle.toRadians(curve[1] - bearing);
+				double sigma = distance / mRadius;
+				double correction = mRadius * Math.atan2(Math.sin(sigma) * Math.cos(angle), Math.cos(sigma));
+
+				cross = (Math.sin(angle) < 0.0) ? -distance : distance;
+
+				if (!(Math.abs(correction) >= TOLERANCE)) break;
+
+				// slide the foot along the geodesic
+				bearing = mCalculator.calculateEndingCoordinates(mEllipsoid, footLatitude, footLongitude, bearing, correction, curve, 0);
+				footLatitude = curve[0];
+				footLongitude = curve[1];
+				along += correction;
+			}
+		}
+		else
+		{
+			curveToPoint(latitude1, longitude1, latitude, longitude, reduced, curve);
+			cross = curve[0];
+		}
+
+		result[offset + CROSS_TRACK] = cross;
+		result[offset + ALONG_TRACK] = along;
+		result[offset + LATITUDE] = footLatitude;
+		result[offset + LONGITUDE] = footLongitude;
+	}
+
+	/**
+	 * Calculate the curve from a point to the point being projected.
+	 * 
+	 * @param latitude1
+	 *            latitude of the starting point (degrees)
+	 * @param longitude1
+	 *            longitude of the starting point (degrees)
+	 * @param latitude
+	 *            latitude of the point being projected (degrees)
+	 * @param longitude
+	 *            longitude of the point being projected (degrees)
+	 * @param reduced
+	 *            sine and cosine of the reduced latitude of the point being
+	 *            projected, or null
+	 * @param curve
+	 *            receives the curve
+	 */
+	private void curveToPoint(double latitude1, double longitude1, double latitude, double longitude, double[] reduced, double[] curve)
+	{
+		if (reduced == null) mCalculator.calculateGeodeticCurve(mEllipsoid, latitude1, longitude1, latitude, longitude, curve, 0);
+		else mCalculator.calculateGeodeticCurve(mEllipsoid, latitude1, longitude1, latitude, longitude, reduced, curve, 0);
+	}
+
+	/**
+	 * Replace a projection with the distance to an end of the segment.
+	 * 
+	 * @param endLatitude
+	 *            latitude of the end (degrees)
+	 * @param endLongitude
+	 *            longitude of the end (degrees)
+	 * @param along
+	 *            along track distance of the end (meters)
+	 * @param fraction
+	 *            along track fraction of the end
+	 * @param latitude
+	 *            latitude of the point (degrees)
+	 * @param longitude
+	 *            longitude of the point (degrees)
+	 * @param reduced
+	 *            sine and cosine of the reduced latitude of the point, or
+	 *            null
+	 * @param result
+	 *            projection to replace
+	 * @param offset
+	 *            index of the first element of the projection
+	 * @param curve
+	 *            scratch space of 3 elements
+	 */
+	private void clamp(double endLatitude, double endLongitude, double along, double fraction, double latitude, double longitude, double[] reduced, double[] result, int offset, double[] curve)
+	{
+		double side = (result[offset + CROSS_TRACK] < 0.0) ? -1.0 : 1.0;
+
+		curveToPoint(endLatitude, endLongitude, latitude, longitude, reduced, curve);
+
+		result[offset + CROSS_TRACK] = side * curve[0];
+		result[offset + ALONG_TRACK] = along;
+		result[offset + FRACTION] = fraction;
+		result[offset + LATITUDE] = endLatitude;
+		result[offset + LONGITUDE] = endLongitude;
+	}
+}
@@ -0,0 +1,423 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import java.util.Spliterator;
+import java.util.function.DoubleConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <p>
+ * Streams of geodetic calculations over primitive coordinate arrays.
+ * </p>
+ * <p>
+ * Coordinates are interleaved latitude/longitude pairs in degrees. The
+ * spliterators split by halving their range of indexes and report SIZED and
+ * SUBSIZED, so a parallel stream divides the work evenly across the fork-join
+ * pool without boxing a single coordinate. Each distance is solved only when
+ * the stream consumes it.
+ * </p>
+ * <p>
+ * The streams returned here are sequential; call parallel() on them to spread
+ * the calculations over the common pool. The arrays must not be modified
+ * while a stream over them is in use.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class GeodesicStreams
+{
+	/**
+	 * Disallow instantiation.
+	 */
+	private GeodesicStreams()
+	{
+	}
+
+	/**
+	 * Stream the ellipsoidal distances from an origin to each of a set of
+	 * targets.
+	 * 
+	 * @param calculator
+	 *            calculator for the inverse solutions
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 * @param origin
+	 *            starting point of every distance
+	 * @param targets
+	 *            ending coordinates (2 * count elements)
+	 * @param count
+	 *            number of targets
+	 * @return distances in meters, in the order of the targets
+	 */
+	static public DoubleStream distances(GeodeticCalculator calculator, Ellipsoid ellipsoid, GlobalCoordinates origin, double[] targets, int count)
+	{
+		return StreamSupport.doubleStream(distanceSpliterator(calculator, ellipsoid, origin, targets, count), false);
+	}
+
+	/**
+	 * Stream the ellipsoidal distances between corresponding elements of two
+	 * coordinate arrays.
+	 * 
+	 * @param calculator
+	 *            calculator for the inverse solutions
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 * @param starts
+	 *            starting coordinates (2 * count elements)
+	 * @param ends
+	 *            ending coordinates (2 * count elements)
+	 * @param count
+	 *            number of coordinate pairs
+	 * @return distances in meters, in the order of the pairs
+	 */
+	static public DoubleStream distances(GeodeticCalculator calculator, Ellipsoid ellipsoid, double[] starts, double[] ends, int count)
+	{
+		return StreamSupport.doubleStream(distanceSpliterator(calculator, ellipsoid, starts, ends, count), false);
+	}
+
+	/**
+	 * Stream the ellipsoidal distances between consecutive points of a track.
+	 * Summing the stream gives the length of the track.
+	 * 
+	 * @param calculator
+	 *            calculator for the inverse solutions
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 * @param track
+	 *            coordinates of the track (2 * count elements)
+	 * @param count
+	 *            number of points in the track
+	 * @return count - 1 distances in meters, in the order of the legs
+	 */
+	static public DoubleStream pairwiseDistances(GeodeticCalculator calculator, Ellipsoid ellipsoid, double[] track, int count)
+	{
+		return StreamSupport.doubleStream(pairwiseDistanceSpliterator(calculator, ellipsoid, track, count), false);
+	}
+
+	/**
+	 * Create a spliterator over the ellipsoidal distances from an origin to
+	 * each of a set of targets.
+	 * 
+	 * @param calculator
+	 *            calculator for the inverse solutions
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 * @param origin
+	 *            starting point of every distance
+	 * @param targets
+	 *            ending coordinates (2 * count elements)
+	 * @param count
+	 *            number of targets
+	 * @return spliterator over count distances in meters
+	 */
+	static public Spliterator.OfDouble distanceSpliterator(GeodeticCalculator calculator, Ellipsoid ellipsoid, GlobalCoordinates origin, double[] targets, int count)
+	{
+		checkCount(targets, count);
+
+		return new OriginSpliterator(calculator, ellipsoid, origin.getLatitude(), origin.getLongitude(), targets, 0, count);
+	}
+
+	/**
+	 * Create a spliterator over the ellipsoidal distances between
+	 * corresponding elements of two coordinate arrays.
+	 * 
+	 * @param calculator
+	 *            calculator for the inverse solutions
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 * @param starts
+	 *            starting coordinates (2 * count elements)
+	 * @param ends
+	 *            ending coordinates (2 * count elements)
+	 * @param count
+	 *            number of coordinate pairs
+	 * @return spliterator over count distances in meters
+	 */
+	static public Spliterator.OfDouble distanceSpliterator(GeodeticCalculator calculator, Ellipsoid ellipsoid, double[] starts, double[] ends, int count)
+	{
+		checkCount(starts, count);
+		checkCount(ends, count);
+
+		return new PairSpliterator(calculator, ellipsoid, starts, ends, 0, 0, count);
+	}
+
+	/**
+	 * Create a spliterator over the ellipsoidal distances between consecutive
+	 * points of a track.
+	 * 
+	 * @param calculator
+	 *            calculator for the inverse solutions
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 * @param track
+	 *            coordinates of the track (2 * count elements)
+	 * @param count
+	 *            number of points in the track
+	 * @return spliterator over count - 1 distances in meters
+	 */
+	static public Spliterator.OfDouble pairwiseDistanceSpliterator(GeodeticCalculator calculator, Ellipsoid ellipsoid, double[] track, int count)
+	{
+		checkCount(track, count);
+
+		// the ends are the same array, one point further along
+		return new PairSpliterator(calculator, ellipsoid, track, track, 2, 0, Math.max(count - 1, 0));
+	}
+
+	/**
+	 * Check that an array holds enough coordinates.
+	 * 
+	 * @param coordinates
+	 *            interleaved latitude/longitude pairs
+	 * @param count
+	 *            number of coordinates required
+	 */
+	static private void checkCount(double[] coordinates, int count)
+	{
+		if ((count < 0) || (2L * count > coordinates.length)) throw new IllegalArgumentException("count out of range: " + count);
+	}
+
+	/**
+	 * Spliterator over a range of distances. Subclasses solve one distance at
+	 * a time into a scratch element owned by the spliterator.
+	 */
+	static private abstract class DistanceSpliterator implements Spliterator.OfDouble
+	{
+		/** Calculator for the inverse solutions. */
+		protected final GeodeticCalculator mCalculator;
+
+		/** Reference ellipsoid. */
+		protected final Ellipsoid mEllipsoid;
+
+		/** Receives each distance. */
+		protected final double[] mDistance = new double[1];
+
+		/** Index of the next distance. */
+		private int mIndex;
+
+		/** Index one past the last distance. */
+		private final int mFence;
+
+		/**
+		 * Create a new DistanceSpliterator.
+		 * 
+		 * @param calculator
+		 *            calculator for the inverse solutions
+		 * @param ellipsoid
+		 *            reference ellipsoid
+		 * @param index
+		 *            index of the first distance
+		 * @param fence
+		 *            index one past the last distance
+		 */
+		DistanceSpliterator(GeodeticCalculator calculator, Ellipsoid ellipsoid, int index, int fence)
+		{
+			mCalculator = calculator;
+			mEllipsoid = ellipsoid;
+			mIndex = index;
+			mFence = fence;
+		}
+
+		/**
+		 * Solve a distance into mDistance[0].
+		 * 
+		 * @param index
+		 *            index of the distance
+		 */
+		abstract void solve(int index);
+
+		/**
+		 * Create a spliterator over part of the range.
+		 * 
+		 * @param index
+		 *            index of the first distance
+		 * @param fence
+		 *            index one past the last distance
+		 * @return the new spliterator
+		 */
+		abstract DistanceSpliterator create(int index, int fence);
+
+		@Override
+		public boolean tryAdvance(DoubleConsumer action)
+		{
+			if (mIndex >= mFence) return false;
+
+			solve(mIndex++);
+			action.accept(mDistance[0]);
+
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(DoubleConsumer action)
+		{
+			int fence = mFence;
+
+			for (int i = mIndex; i < fence; i++)
+			{
+				solve(i);
+				action.accept(mDistance[0]);
+			}
+
+			mIndex = fence;
+		}
+
+		@Override
+		public Spliterator.OfDouble trySplit()
+		{
+			int middle = (mIndex + mFence) >>> 1;
+
+			if (middle <= mIndex) return null;
+
+			DistanceSpliterator prefix = create(mIndex, middle);
+			mIndex = middle;
+
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize()
+		{
+			return mFence - mIndex;
+		}
+
+		@Override
+		public int characteristics()
+		{
+			return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+		}
+	}
+
+	/**
+	 * Distances from a fixed origin to an array of targets.
+	 */
+	static private final class OriginSpliterator extends DistanceSpliterator
+	{
+		/** Latitude of the origin. */
+		private final double mLatitude;
+
+		/** Longitude of the origin. */
+		private final double mLongitude;
+
+		/** Ending coordinates. */
+		private final double[] mTargets;
+
+		/**
+		 * Create a new OriginSpliterator.
+		 * 
+		 * @param calculator
+		 *            calculator for the inverse solutions
+		 * @param ellipsoid
+		 *            reference ellipsoid
+		 * @param latitude
+		 *            latitude of the origin
+		 * @param longitude
+		 *            longitude of the origin
+		 * @param targets
+		 *            ending coordinates
+		 * @param index
+		 *            index of the first distance
+		 * @param fence
+		 *            index one past the last distance
+		 */
+		OriginSpliterator(GeodeticCalculator calculator, Ellipsoid ellipsoid, double latitude, double longitude, double[] targets, int index, int fence)
+		{
+			super(calculator, ellipsoid, index, fence);
+			mLatitude = latitude;
+			mLongitude = longitude;
+			mTargets = targets;
+		}
+
+		@Override
+		void solve(int index)
+		{
+			mCalculator.calculateEllipsoidalDistance(mEllipsoid, mLatitude, mLongitude, mTargets[2 * index], mTargets[2 * index + 1], mDistance, 0);
+		}
+
+		@Override
+		DistanceSpliterator create(int index, int fence)
+		{
+			return new OriginSpliterator(mCalculator, mEllipsoid, mLatitude, mLongitude, mTargets, index, fence);
+		}
+	}
+
+	/**
+	 * Distances between corresponding elements of two coordinate arrays. The
+	 * ends may be read from an offset, so a track can be paired with itself.
+	 */
+	static private final class PairSpliterator extends DistanceSpliterator
+	{
+		/** Starting coordinates. */
+		private final double[] mStarts;
+
+		/** Ending coordinates. */
+		private final double[] mEnds;
+
+		/** Index in 'mEnds' of the latitude of the end of distance zero. */
+		private final int mEndOffset;
+
+		/**
+		 * Create a new PairSpliterator.
+		 * 
+		 * @param calculator
+		 *            calculator for the inverse solutions
+		 * @param ellipsoid
+		 *            reference ellipsoid
+		 * @param starts
+		 *            starting coordinates
+		 * @param ends
+		 *            ending coordinates
+		 * @param endOffset
+		 *            index in 'ends' of the end of distance zero
+		 * @param index
+		 *            index of the first distance
+		 * @param fence
+		 *            index one past the last distance
+		 */
+		PairSpliterator(GeodeticCalculator calculator, Ellipsoid ellipsoid, double[] starts, double[] ends, int endOffset, int index, int fence)
+		{
+			super(calculator, ellipsoid, index, fence);
+			mStarts = starts;
+			mEnds = ends;
+			mEndOffset = endOffset;
+		}
+
+		@Override
+		void solve(int index)
+		{
+			int i = 2 * index;
+			int j = mEndOffset + 2 * index;
+
+			mCalculator.calculateEllipsoidalDistance(mEllipsoid, mStarts[i], mStarts[i + 1], mEnds[j], mEnds[j + 1], mDistance, 0);
+		}
+
+		@Override
+		DistanceSpliterator create(int index, int fence)
+		{
+			return new PairSpliterator(mCalculator, mEllipsoid, mStarts, mEnds, mEndOffset, index, fence);
+		}
+	}
+}
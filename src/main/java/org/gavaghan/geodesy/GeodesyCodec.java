@@ -0,0 +1,559 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * <p>
+ * Compact binary encoding of coordinates, positions, curves and tracks,
+ * read from and written to a ByteBuffer without Java serialization.
+ * </p>
+ * <p>
+ * Single values are fixed width records of little-endian IEEE doubles:
+ * </p>
+ * <ul>
+ * <li>GlobalCoordinates - latitude, longitude (COORDINATES_SIZE bytes)</li>
+ * <li>GlobalPosition - latitude, longitude, elevation (POSITION_SIZE
+ * bytes)</li>
+ * <li>GeodeticCurve - ellipsoidal distance, azimuth, reverse azimuth
+ * (CURVE_SIZE bytes)</li>
+ * <li>GeodeticMeasurement - ellipsoidal distance, azimuth, reverse azimuth,
+ * elevation change (MEASUREMENT_SIZE bytes)</li>
+ * </ul>
+ * <p>
+ * The bulk methods move primitive arrays in the same layouts used by the
+ * batch methods of GeodeticCalculator, so a batch of curves can be written
+ * straight from the array it was solved into. The byte order of the buffer
+ * is ignored and left as it was found.
+ * </p>
+ * <p>
+ * Tracks are encoded more tightly. Each coordinate is rounded to
+ * TRACK_RESOLUTION degrees (about a centimeter on the ground) and stored as
+ * the zig-zag varint difference from the previous point, so closely spaced
+ * points cost two or three bytes each.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class GeodesyCodec
+{
+	/** Bytes in an encoded GlobalCoordinates. */
+	static public final int COORDINATES_SIZE = 16;
+
+	/** Bytes in an encoded GlobalPosition. */
+	static public final int POSITION_SIZE = 24;
+
+	/** Bytes in an encoded GeodeticCurve. */
+	static public final int CURVE_SIZE = 24;
+
+	/** Bytes in an encoded GeodeticMeasurement. */
+	static public final int MEASUREMENT_SIZE = 32;
+
+	/** Resolution (degrees) of the coordinates in an encoded track. */
+	static public final double TRACK_RESOLUTION = 1e-7;
+
+	/** Track units per degree. */
+	static private final double TRACK_SCALE = 1e7;
+
+	/**
+	 * Disallow instantiation.
+	 */
+	private GeodesyCodec()
+	{
+	}
+
+	/**
+	 * Write a GlobalCoordinates.
+	 * 
+	 * @param buffer
+	 *            receives COORDINATES_SIZE bytes
+	 * @param coordinates
+	 *            value to write
+	 */
+	static public void write(ByteBuffer buffer, GlobalCoordinates coordinates)
+	{
+		putDouble(buffer, coordinates.getLatitude());
+		putDouble(buffer, coordinates.getLongitude());
+	}
+
+	/**
+	 * Write a GlobalPosition.
+	 * 
+	 * @param buffer
+	 *            receives POSITION_SIZE bytes
+	 * @param position
+	 *            value to write
+	 */
+	static public void write(ByteBuffer buffer, GlobalPosition position)
+	{
+		putDouble(buffer, position.getLatitude());
+		putDouble(buffer, position.getLongitude());
+		putDouble(buffer, position.getElevation());
+	}
+
+	/**
+	 * Write a GeodeticCurve.
+	 * 
+	 * @param buffer
+	 *            receives CURVE_SIZE bytes
+	 * @param curve
+	 *            value to write
+	 */
+	static public void write(ByteBuffer buffer, GeodeticCurve curve)
+	{
+		putDouble(buffer, curve.getEllipsoidalDistance());
+		putDouble(buffer, curve.getAzimuth());
+		putDouble(buffer, curve.getReverseAzimuth());
+	}
+
+	/**
+	 * Write a GeodeticMeasurement.
+	 * 
+	 * @param buffer
+	 *            receives MEASUREMENT_SIZE bytes
+	 * @param measurement
+	 *            value to write
+	 */
+	static public void write(ByteBuffer buffer, GeodeticMeasurement measurement)
+	{
+		putDouble(buffer, measurement.getEllipsoidalDistance());
+		putDouble(buffer, measurement.getAzimuth());
+		putDouble(buffer, measurement.getReverseAzimuth());
+		putDouble(buffer, measurement.getElevationChange());
+	}
+
+	/**
+	 * Read a GlobalCoordinates.
+	 * 
+	 * @param buffer
+	 *            supplies COORDINATES_SIZE bytes
+	 * @return the value read
+	 */
+	static public GlobalCoordinates readCoordinates(ByteBuffer buffer)
+	{
+		double latitude = getDouble(buffer);
+		double longitude = getDouble(buffer);
+
+		return new GlobalCoordinates(latitude, longitude);
+	}
+
+	/**
+	 * Read a GlobalPosition.
+	 * 
+	 * @param buffer
+	 *            supplies POSITION_SIZE bytes
+	 * @return the value read
+	 */
+	static public GlobalPosition readPosition(ByteBuffer buffer)
+	{
+		double latitude = getDouble(buffer);
+		double longitude = getDouble(buffer);
+		double elevation = getDouble(buffer);
+
+		return new GlobalPosition(latitude, longitude, elevation);
+	}
+
+	/**
+	 * Read a GeodeticCurve.
+	 * 
+	 * @param buffer
+	 *            supplies CURVE_SIZE bytes
+	 * @return the value read
+	 */
+	static public GeodeticCurve readCurve(ByteBuffer buffer)
+	{
+		double distance = getDouble(buffer);
+		double azimuth = getDouble(buffer);
+		double reverseAzimuth = getDouble(buffer);
+
+		return new GeodeticCurve(distance, azimuth, reverseAzimuth);
+	}
+
+	/**
+	 * Read a GeodeticMeasurement.
+	 * 
+	 * @param buffer
+	 *            supplies MEASUREMENT_SIZE bytes
+	 * @return the value read
+	 */
+	static public GeodeticMeasurement readMeasurement(ByteBuffer buffer)
+	{
+		double distance = getDouble(buffer);
+		double azimuth = getDouble(buffer);
+		double reverseAzimuth = getDouble(buffer);
+		double elevationChange = getDouble(buffer);
+
+		return new GeodeticMeasurement(distance, azimuth, reverseAzimuth, elevationChange);
+	}
+
+	/**
+	 * Write an array of GeodeticCurves.
+	 * 
+	 * @param buffer
+	 *            receives CURVE_SIZE * count bytes
+	 * @param curves
+	 *            values to write
+	 * @param offset
+	 *            index of the first value
+	 * @param count
+	 *            number of values
+	 */
+	static public void write(ByteBuffer buffer, GeodeticCurve[] curves, int offset, int count)
+	{
+		for (int i = offset; i < offset + count; i++)
+			write(buffer, curves[i]);
+	}
+
+	/**
+	 * Read into an array of GeodeticCurves.
+	 * 
+	 * @param buffer
+	 *            supplies CURVE_SIZE * count bytes
+	 * @param curves
+	 *            receives the values
+	 * @param offset
+	 *            index of the first value
+	 * @param count
+	 *            number of values
+	 */
+	static public void readCurves(ByteBuffer buffer, GeodeticCurve[] curves, int offset, int count)
+	{
+		for (int i = offset; i < offset + count; i++)
+			curves[i] = readCurve(buffer);
+	}
+
+	/**
+	 * Write an array of GlobalPositions.
+	 * 
+	 * @param buffer
+	 *            receives POSITION_SIZE * count bytes
+	 * @param positions
+	 *            values to write
+	 * @param offset
+	 *            index of the first value
+	 * @param count
+	 *            number of values
+	 */
+	static public void write(ByteBuffer buffer, GlobalPosition[] positions, int offset, int count)
+	{
+		for (int i = offset; i < offset + count; i++)
+			write(buffer, positions[i]);
+	}
+
+	/**
+	 * Read into an array of GlobalPositions.
+	 * 
+	 * @param buffer
+	 *            supplies POSITION_SIZE * count bytes
+	 * @param positions
+	 *            receives the values
+	 * @param offset
+	 *            index of the first value
+	 * @param count
+	 *            number of values
+	 */
+	static public void readPositions(ByteBuffer buffer, GlobalPosition[] positions, int offset, int count)
+	{
+		for (int i = offset; i < offset + count; i++)
+			positions[i] = readPosition(buffer);
+	}
+
+	/**
+	 * Write doubles from a primitive array, such as interleaved coordinates or
+	 * the curves produced by GeodeticCalculator.calculateGeodeticCurves().
+	 * Records written this way can be read back one at a time with the
+	 * matching read method.
+	 * 
+	 * @param buffer
+	 *            receives 8 * count bytes
+	 * @param values
+	 *            values to write
+	 * @param offset
+	 *            index of the first value
+	 * @param count
+	 *            number of values (not records)
+	 */
+	static public void write(ByteBuffer buffer, double[] values, int offset, int count)
+	{
+		int position = buffer.position();
+
+		littleEndian(buffer).asDoubleBuffer().put(values, offset, count);
+		buffer.position(position + 8 * count);
+	}
+
+	/**
+	 * Read doubles into a primitive array. See write(ByteBuffer, double[],
+	 * int, int).
+	 * 
+	 * @param buffer
+	 *            supplies 8 * count bytes
+	 * @param values
+	 *            receives the values
+	 * @param offset
+	 *            index of the first value
+	 * @param count
+	 *            number of values (not records)
+	 */
+	static public void read(ByteBuffer buffer, double[] values, int offset, int count)
+	{
+		int position = buffer.position();
+
+		littleEndian(buffer).asDoubleBuffer().get(values, offset, count);
+		buffer.position(position + 8 * count);
+	}
+
+	/**
+	 * Encode a track of interleaved latitude/longitude pairs. Coordinates are
+	 * rounded to TRACK_RESOLUTION degrees.
+	 * 
+	 * @param buffer
+	 *            receives the encoded track
+	 * @param track
+	 *            coordinates of the track (degrees)
+	 * @param offset
+	 *            index of the first latitude in 'track'
+	 * @param count
+	 *            number of points
+	 */
+	static public void writeTrack(ByteBuffer buffer, double[] track, int offset, int count)
+	{
+		long latitude = 0;
+		long longitude = 0;
+
+		putVarint(buffer, count);
+
+		for (int i = 0; i < count; i++)
+		{
+			long nextLatitude = Math.round(track[offset + 2 * i] * TRACK_SCALE);
+			long nextLongitude = Math.round(track[offset + 2 * i + 1] * TRACK_SCALE);
+
+			putVarint(buffer, zigZag(nextLatitude - latitude));
+			putVarint(buffer, zigZag(nextLongitude - longitude));
+
+			latitude = nextLatitude;
+			longitude = nextLongitude;
+		}
+	}
+
+	/**
+	 * Decode a track into a new array.
+	 * 
+	 * @param buffer
+	 *            supplies the encoded track
+	 * @return interleaved latitude/longitude pairs (degrees)
+	 */
+	static public double[] readTrack(ByteBuffer buffer)
+	{
+		int count = readTrackCount(buffer);
+		double[] track = new double[2 * count];
+
+		readTrackPoints(buffer, track, 0, count);
+
+		return track;
+	}
+
+	/**
+	 * Decode a track into an existing array.
+	 * 
+	 * @param buffer
+	 *            supplies the encoded track
+	 * @param track
+	 *            receives interleaved latitude/longitude pairs (degrees)
+	 * @param offset
+	 *            index in 'track' of the first latitude
+	 * @return number of points decoded
+	 * @throws IllegalArgumentException
+	 *             if the track doesn't fit, in which case only the point
+	 *             count has been read from 'buffer'
+	 */
+	static public int readTrack(ByteBuffer buffer, double[] track, int offset)
+	{
+		int count = readTrackCount(buffer);
+
+		if (offset + 2L * count > track.length) throw new IllegalArgumentException("track of " + count + " points doesn't fit");
+
+		readTrackPoints(buffer, track, offset, count);
+
+		return count;
+	}
+
+	/**
+	 * Read the point count at the start of an encoded track. Every point
+	 * takes at least two bytes, so a count the rest of the buffer can't hold
+	 * is rejected before anything is allocated for it.
+	 * 
+	 * @param buffer
+	 *            supplies the encoded track
+	 * @return number of points
+	 * @throws IllegalArgumentException
+	 *             if the count is negative or more than 'buffer' can hold
+	 */
+	static private int readTrackCount(ByteBuffer buffer)
+	{
+		long count = getVarint(buffer);
+
+		if (count < 0) throw new IllegalArgumentException("negative track length: " + count);
+		if (count > buffer.remaining() / 2) throw new IllegalArgumentException("track of " + count + " points is longer than the buffer");
+
+		return (int) count;
+	}
+
+	/**
+	 * Read the points of an encoded track.
+	 * 
+	 * @param buffer
+	 *            supplies the points
+	 * @param track
+	 *            receives interleaved latitude/longitude pairs (degrees)
+	 * @param offset
+	 *            index in 'track' of the first latitude
+	 * @param count
+	 *            number of points
+	 */
+	static private void readTrackPoints(ByteBuffer buffer, double[] track, int offset, int count)
+	{
+		long latitude = 0;
+		long longitude = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			latitude += unZigZag(getVarint(buffer));
+			longitude += unZigZag(getVarint(buffer));
+
+			track[offset + 2 * i] = latitude / TRACK_SCALE;
+			track[offset + 2 * i + 1] = longitude / TRACK_SCALE;
+		}
+	}
+
+	/**
+	 * Get a little-endian view of the remaining bytes of a buffer.
+	 * 
+	 * @param buffer
+	 *            buffer to view
+	 * @return the view, starting at the position of 'buffer'
+	 */
+	static private ByteBuffer littleEndian(ByteBuffer buffer)
+	{
+		return buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Write a little-endian double.
+	 * 
+	 * @param buffer
+	 *            receives 8 bytes
+	 * @param value
+	 *            value to write
+	 */
+	static private void putDouble(ByteBuffer buffer, double value)
+	{
+		long bits = Double.doubleToRawLongBits(value);
+
+		buffer.putLong((buffer.order() == ByteOrder.LITTLE_ENDIAN) ? bits : Long.reverseBytes(bits));
+	}
+
+	/**
+	 * Read a little-endian double.
+	 * 
+	 * @param buffer
+	 *            supplies 8 bytes
+	 * @return the value read
+	 */
+	static private double getDouble(ByteBuffer buffer)
+	{
+		long bits = buffer.getLong();
+
+		return Double.longBitsToDouble((buffer.order() == ByteOrder.LITTLE_ENDIAN) ? bits : Long.reverseBytes(bits));
+	}
+
+	/**
+	 * Write an unsigned varint, seven bits per byte, low bits first.
+	 * 
+	 * @param buffer
+	 *            receives up to 10 bytes
+	 * @param value
+	 *            value to write
+	 */
+	static private void putVarint(ByteBuffer buffer, long value)
+	{
+		while ((value & ~0x7FL) != 0)
+		{
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+
+		buffer.put((byte) value);
+	}
+
+	/**
+	 * Read an unsigned varint.
+	 * 
+	 * @param buffer
+	 *            supplies up to 10 bytes
+	 * @return the value read
+	 */
+	static private long getVarint(ByteBuffer buffer)
+	{
+		long value = 0;
+
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			byte b = buffer.get();
+
+			value |= (long) (b & 0x7F) << shift;
+
+			if (b >= 0) return value;
+		}
+
+		throw new IllegalArgumentException("malformed varint");
+	}
+
+	/**
+	 * Map a signed value to an unsigned one so that small magnitudes stay
+	 * small.
+	 * 
+	 * @param value
+	 *            signed value
+	 * @return zig-zag encoded value
+	 */
+	static private long zigZag(long value)
+	{
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/**
+	 * Reverse zigZag().
+	 * 
+	 * @param value
+	 *            zig-zag encoded value
+	 * @return signed value
+	 */
+	static private long unZigZag(long value)
+	{
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -29,51 +29,1025 @@ package org.gavaghan.geodesy;
  * inverse geodetic problems.
  * </p>
  * 
+ * <p>
+ * A calculator built with a deterministic PrecisionProfile evaluates every
+ * trigonometric function with StrictMath instead of Math, so its results are
+ * bit-for-bit identical on every JVM and processor. This costs some
+ * throughput, since StrictMath is not intrinsified.
+ * </p>
+ * 
+ * <p>
+ * A calculator built with a CalculatorStatistics counts and times every
+ * solution it finds. Without one, it only tests for null.
+ * </p>
+ * 
  * @see <a target="_blank" href="http://www.ngs.noaa.gov/PUBS_LIB/inverse.pdf">Vincenty's original publication</a> on the NOAA website.
  * 
  * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
  */
-public class GeodeticCalculator
+public strictfp class GeodeticCalculator
 {
 	private final double TwoPi = 2.0 * Math.PI;
 
+	/** Convergence tolerances and limits. */
+	private final PrecisionProfile mProfile;
+
+	/** Reduced latitude table, or null. */
+	private final ReducedLatitudeTable mTable;
+
+	/** True to evaluate trigonometric functions with StrictMath. */
+	private final boolean mDeterministic;
+
+	/** Usage statistics, or null to record none. */
+	private final CalculatorStatistics mStatistics;
+
+	/**
+	 * Largest angular distance on the auxiliary sphere (radians) solved by
+	 * the short hop direct solution, which needs no iteration.
+	 */
+	static private final double SHORT_SIGMA = 1.0e-3;
+
+	/** The single fraction of a midpoint. */
+	static private final double[] MIDPOINT = { 0.5 };
+
+	/**
+	 * Create a new GeodeticCalculator that works to full precision.
+	 */
+	public GeodeticCalculator()
+	{
+		this(PrecisionProfile.DEFAULT);
+	}
+
+	/**
+	 * Create a new GeodeticCalculator that iterates according to a precision
+	 * profile. Coarser profiles stop iterating sooner.
+	 * 
+	 * @param profile
+	 *            convergence tolerances and limits
+	 */
+	public GeodeticCalculator(PrecisionProfile profile)
+	{
+		this(profile, null);
+	}
+
+	/**
+	 * Create a new GeodeticCalculator that iterates according to a precision
+	 * profile and looks up reduced latitudes in a table. The table is used
+	 * only by inverse solutions on the ellipsoid it describes; other
+	 * ellipsoids are solved as usual. It is not used at all under a
+	 * deterministic profile, because its interpolation rounds differently
+	 * where fused multiply-add is available.
+	 * 
+	 * @param profile
+	 *            convergence tolerances and limits
+	 * @param table
+	 *            reduced latitude table, or null for none
+	 */
+	public GeodeticCalculator(PrecisionProfile profile, ReducedLatitudeTable table)
+	{
+		this(profile, table, null);
+	}
+
+	/**
+	 * Create a new GeodeticCalculator that records usage statistics. One
+	 * CalculatorStatistics may be shared by many calculators.
+	 * 
+	 * @param profile
+	 *            convergence tolerances and limits
+	 * @param table
+	 *            reduced latitude table, or null for none
+	 * @param statistics
+	 *            receives usage statistics, or null to record none
+	 */
+	public GeodeticCalculator(PrecisionProfile profile, ReducedLatitudeTable table, CalculatorStatistics statistics)
+	{
+		if (profile == null) throw new IllegalArgumentException("profile must not be null");
+
+		mProfile = profile;
+		mTable = table;
+		mDeterministic = profile.isDeterministic();
+		mStatistics = statistics;
+	}
+
+	/**
+	 * Get the precision profile of this calculator.
+	 * 
+	 * @return convergence tolerances and limits
+	 */
+	public PrecisionProfile getPrecisionProfile()
+	{
+		return mProfile;
+	}
+
+	/**
+	 * Get the reduced latitude table of this calculator.
+	 * 
+	 * @return reduced latitude table, or null for none
+	 */
+	public ReducedLatitudeTable getReducedLatitudeTable()
+	{
+		return mTable;
+	}
+
+	/**
+	 * Get the usage statistics of this calculator.
+	 * 
+	 * @return usage statistics, or null if none are recorded
+	 */
+	public CalculatorStatistics getStatistics()
+	{
+		return mStatistics;
+	}
+
+	/**
+	 * Calculate the destination and final bearing after traveling a specified
+	 * distance, and a specified starting bearing, for an initial location. This
+	 * is the solution to the direct geodetic problem.
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param start
+	 *            starting location
+	 * @param startBearing
+	 *            starting bearing (degrees)
+	 * @param distance
+	 *            distance to travel (meters)
+	 * @param endBearing
+	 *            bearing at destination (degrees) element at index 0 will be
+	 *            populated with the result
+	 * @return solution to the direct geodetic problem
+	 */
+	public GlobalCoordinates calculateEndingGlobalCoordinates(Ellipsoid ellipsoid, GlobalCoordinates start, double startBearing, double distance, double[] endBearing)
+	{
+		double[] coords = new double[2];
+
+		double f = ellipsoid.getFlattening();
+		double tanU1 = (1.0 - f) * tan(Angle.toRadians(start.getLatitude()));
+		double alpha2 = direct(ellipsoid.getSemiMajorAxis(), ellipsoid.getSemiMinorAxis(), f, tanU1, start.getLongitude(), startBearing, distance, coords, 0);
+
+		if ((endBearing != null) && (endBearing.length > 0))
+		{
+			endBearing[0] = alpha2;
+		}
+
+		return new GlobalCoordinates(coords[0], coords[1]);
+	}
+
+	/**
+	 * Calculate the destination after traveling a specified distance, and a
+	 * specified starting bearing, for an initial location. This is the solution
+	 * to the direct geodetic problem.
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param start
+	 *            starting location
+	 * @param startBearing
+	 *            starting bearing (degrees)
+	 * @param distance
+	 *            distance to travel (meters)
+	 * @return solution to the direct geodetic problem
+	 */
+	public GlobalCoordinates calculateEndingGlobalCoordinates(Ellipsoid ellipsoid, GlobalCoordinates start, double startBearing, double distance)
+	{
+		return calculateEndingGlobalCoordinates(ellipsoid, start, startBearing, distance, null);
+	}
+
+	/**
+	 * Calculate the destination and final bearing after traveling a specified
+	 * distance, and a specified starting bearing, for an initial location given
+	 * as primitives. The ending latitude and canonicalized longitude are
+	 * written to 'ends' at 'offset' and 'offset + 1', so no objects are
+	 * created.
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param latitude
+	 *            starting latitude (degrees)
+	 * @param longitude
+	 *            starting longitude (degrees)
+	 * @param startBearing
+	 *            starting bearing (degrees)
+	 * @param distance
+	 *            distance to travel (meters)
+	 * @param ends
+	 *            receives the ending coordinates
+	 * @param offset
+	 *            index of the ending latitude in 'ends'
+	 * @return bearing at destination (degrees)
+	 */
+	public double calculateEndingCoordinates(Ellipsoid ellipsoid, double latitude, double longitude, double startBearing, double distance, double[] ends, int offset)
+	{
+		double f = ellipsoid.getFlattening();
+		double tanU1 = (1.0 - f) * tan(Angle.toRadians(latitude));
+
+		return direct(ellipsoid.getSemiMajorAxis(), ellipsoid.getSemiMinorAxis(), f, tanU1, longitude, startBearing, distance, ends, offset);
+	}
+
+	/**
+	 * <p>
+	 * Solve the direct geodetic problem for a batch of starting points held in
+	 * primitive arrays. No intermediate objects are created, so this is the
+	 * preferred entry point for bulk workloads.
+	 * </p>
+	 * <p>
+	 * Coordinates are interleaved latitude/longitude pairs in degrees, so the
+	 * i'th point occupies elements 2i and 2i+1. Ending longitudes are
+	 * canonicalized in the same way as GlobalCoordinates.
+	 * </p>
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param starts
+	 *            starting coordinates (2 * count elements)
+	 * @param bearings
+	 *            starting bearings in degrees (count elements)
+	 * @param distances
+	 *            distances to travel in meters (count elements)
+	 * @param count
+	 *            number of problems to solve
+	 * @param ends
+	 *            receives the ending coordinates (2 * count elements)
+	 * @param endBearings
+	 *            receives the bearings at the destinations in degrees (count
+	 *            elements), or null if they are not needed
+	 */
+	public void calculateEndingCoordinates(Ellipsoid ellipsoid, double[] starts, double[] bearings, double[] distances, int count, double[] ends, double[] endBearings)
+	{
+		double a = ellipsoid.getSemiMajorAxis();
+		double b = ellipsoid.getSemiMinorAxis();
+		double f = ellipsoid.getFlattening();
+
+		for (int i = 0; i < count; i++)
+		{
+			double tanU1 = (1.0 - f) * tan(Angle.toRadians(starts[2 * i]));
+			double alpha2 = direct(a, b, f, tanU1, starts[2 * i + 1], bearings[i], distances[i], ends, 2 * i);
+
+			if (endBearings != null) endBearings[i] = alpha2;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Calculate the destinations after traveling the same distance from a
+	 * single starting point along a fan of evenly spaced bearings. Quantities
+	 * that depend only on the starting point are calculated once, which makes
+	 * this well suited to tracing circles and arcs.
+	 * </p>
+	 * <p>
+	 * The i'th bearing is firstBearing + i * bearingStep, and its destination is
+	 * written as an interleaved latitude/longitude pair starting at element
+	 * 2 * (offset + i) of 'ends'.
+	 * </p>
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param start
+	 *            starting location
+	 * @param firstBearing
+	 *            first starting bearing (degrees)
+	 * @param bearingStep
+	 *            increment between successive bearings (degrees)
+	 * @param count
+	 *            number of bearings
+	 * @param distance
+	 *            distance to travel (meters)
+	 * @param ends
+	 *            receives the ending coordinates
+	 * @param offset
+	 *            index of the first destination in 'ends'
+	 */
+	public void calculateEndingCoordinates(Ellipsoid ellipsoid, GlobalCoordinates start, double firstBearing, double bearingStep, int count, double distance, double[] ends, int offset)
+	{
+		double a = ellipsoid.getSemiMajorAxis();
+		double b = ellipsoid.getSemiMinorAxis();
+		double f = ellipsoid.getFlattening();
+		double tanU1 = (1.0 - f) * tan(Angle.toRadians(start.getLatitude()));
+
+		for (int i = 0; i < count; i++)
+		{
+			direct(a, b, f, tanU1, start.getLongitude(), firstBearing + i * bearingStep, distance, ends, 2 * (offset + i));
+		}
+	}
+
+	/**
+	 * Calculate the point halfway along the geodesic between two points.
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param start
+	 *            starting coordinates
+	 * @param end
+	 *            ending coordinates
+	 * @return coordinates of the midpoint
+	 */
+	public GlobalCoordinates calculateMidpoint(Ellipsoid ellipsoid, GlobalCoordinates start, GlobalCoordinates end)
+	{
+		double[] coords = new double[2];
+
+		interpolate(ellipsoid, start.getLatitude(), start.getLongitude(), end.getLatitude(), end.getLongitude(), MIDPOINT, 1, coords, 0);
+
+		return new GlobalCoordinates(coords[0], coords[1]);
+	}
+
+	/**
+	 * <p>
+	 * Calculate points at fractions of the way along the geodesic between two
+	 * points. The inverse problem is solved once and the constants of the
+	 * resulting geodesic are shared by every fraction, so this is much cheaper
+	 * than a direct solution per fraction.
+	 * </p>
+	 * <p>
+	 * A fraction of 0 is the starting point and 1 is the ending point.
+	 * Fractions outside that range extrapolate along the same geodesic. The
+	 * coordinates are written as latitude/longitude pairs starting at
+	 * 'offset'.
+	 * </p>
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param latitude1
+	 *            starting latitude (degrees)
+	 * @param longitude1
+	 *            starting longitude (degrees)
+	 * @param latitude2
+	 *            ending latitude (degrees)
+	 * @param longitude2
+	 *            ending longitude (degrees)
+	 * @param fractions
+	 *            fractions of the distance between the points
+	 * @param count
+	 *            number of fractions
+	 * @param coords
+	 *            receives the coordinates (2 * count elements from 'offset')
+	 * @param offset
+	 *            index of the first latitude in 'coords'
+	 */
+	public void calculateIntermediateCoordinates(Ellipsoid ellipsoid, double latitude1, double longitude1, double latitude2, double longitude2, double[] fractions, int count, double[] coords, int offset)
+	{
+		interpolate(ellipsoid, latitude1, longitude1, latitude2, longitude2, fractions, count, coords, offset);
+	}
+
+	/**
+	 * Calculate points at the same fractions of the way along the geodesics
+	 * between many pairs of points. The coordinates for each pair are written
+	 * together, so those for pair 'i' start at index 2 * count * i. See
+	 * calculateIntermediateCoordinates().
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param starts
+	 *            starting coordinates (2 * pairs elements)
+	 * @param ends
+	 *            ending coordinates (2 * pairs elements)
+	 * @param pairs
+	 *            number of coordinate pairs
+	 * @param fractions
+	 *            fractions of the distance between each pair
+	 * @param count
+	 *            number of fractions
+	 * @param coords
+	 *            receives the coordinates (2 * count * pairs elements)
+	 */
+	public void calculateIntermediateCoordinates(Ellipsoid ellipsoid, double[] starts, double[] ends, int pairs, double[] fractions, int count, double[] coords)
+	{
+		for (int i = 0; i < pairs; i++)
+		{
+			interpolate(ellipsoid, starts[2 * i], starts[2 * i + 1], ends[2 * i], ends[2 * i + 1], fractions, count, coords, 2 * count * i);
+		}
+	}
+
+	/**
+	 * Calculate the midpoints of the geodesics between many pairs of points.
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param starts
+	 *            starting coordinates (2 * count elements)
+	 * @param ends
+	 *            ending coordinates (2 * count elements)
+	 * @param count
+	 *            number of coordinate pairs
+	 * @param midpoints
+	 *            receives the midpoints (2 * count elements)
+	 */
+	public void calculateMidpoints(Ellipsoid ellipsoid, double[] starts, double[] ends, int count, double[] midpoints)
+	{
+		calculateIntermediateCoordinates(ellipsoid, starts, ends, count, MIDPOINT, 1, midpoints);
+	}
+
+	/**
+	 * Solve the inverse problem between two points, then the direct problem
+	 * for fractions of the distance along the geodesic.
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param latitude1
+	 *            starting latitude (degrees)
+	 * @param longitude1
+	 *            starting longitude (degrees)
+	 * @param latitude2
+	 *            ending latitude (degrees)
+	 * @param longitude2
+	 *            ending longitude (degrees)
+	 * @param fractions
+	 *            fractions of the distance between the points
+	 * @param count
+	 *            number of fractions
+	 * @param coords
+	 *            receives the coordinates
+	 * @param offset
+	 *            index of the first latitude in 'coords'
+	 */
+	private void interpolate(Ellipsoid ellipsoid, double latitude1, double longitude1, double latitude2, double longitude2, double[] fractions, int count, double[] coords, int offset)
+	{
+		if (count < 1) return;
+
+		double a = ellipsoid.getSemiMajorAxis();
+		double b = ellipsoid.getSemiMinorAxis();
+		double f = ellipsoid.getFlattening();
+		double tanU1 = (1.0 - f) * tan(Angle.toRadians(latitude1));
+
+		// the distance and azimuth fit in the first output pair until the
+		// direct solution overwrites them
+		inverse(a, b, f, latitude1, longitude1, latitude2, longitude2, coords, offset, 2);
+		direct(a, b, f, tanU1, longitude1, coords[offset + 1], coords[offset], fractions, count, coords, offset);
+	}
+
+	/**
+	 * Calculate the geodetic curve between two points on a specified reference
+	 * ellipsoid. This is the solution to the inverse geodetic problem.
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param start
+	 *            starting coordinates
+	 * @param end
+	 *            ending coordinates
+	 * @return solution to the inverse geodetic problem
+	 */
+	public GeodeticCurve calculateGeodeticCurve(Ellipsoid ellipsoid, GlobalCoordinates start, GlobalCoordinates end)
+	{
+		double[] curve = new double[3];
+
+		inverse(ellipsoid.getSemiMajorAxis(), ellipsoid.getSemiMinorAxis(), ellipsoid.getFlattening(), start.getLatitude(), start.getLongitude(), end.getLatitude(), end.getLongitude(), curve, 0, 3);
+
+		if (mStatistics != null) mStatistics.recordCurve();
+
+		return new GeodeticCurve(curve[0], curve[1], curve[2]);
+	}
+
+	/**
+	 * Calculate the geodetic curve between two points given as primitives. The
+	 * ellipsoidal distance (meters), azimuth (degrees) and reverse azimuth
+	 * (degrees) are written to 'curve' starting at 'offset', so no objects are
+	 * created.
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param latitude1
+	 *            starting latitude (degrees)
+	 * @param longitude1
+	 *            starting longitude (degrees)
+	 * @param latitude2
+	 *            ending latitude (degrees)
+	 * @param longitude2
+	 *            ending longitude (degrees)
+	 * @param curve
+	 *            receives the solution (3 elements from 'offset')
+	 * @param offset
+	 *            index of the ellipsoidal distance in 'curve'
+	 */
+	public void calculateGeodeticCurve(Ellipsoid ellipsoid, double latitude1, double longitude1, double latitude2, double longitude2, double[] curve, int offset)
+	{
+		inverse(ellipsoid.getSemiMajorAxis(), ellipsoid.getSemiMinorAxis(), ellipsoid.getFlattening(), latitude1, longitude1, latitude2, longitude2, curve, offset, 3);
+	}
+
+	/**
+	 * Calculate the geodetic curve exactly as calculateGeodeticCurve() does
+	 * and report how many iterations it took. Used by the performance
+	 * regression tests to catch changes that slow down convergence.
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param latitude1
+	 *            starting latitude (degrees)
+	 * @param longitude1
+	 *            starting longitude (degrees)
+	 * @param latitude2
+	 *            ending latitude (degrees)
+	 * @param longitude2
+	 *            ending longitude (degrees)
+	 * @param curve
+	 *            receives the solution (3 elements from 'offset')
+	 * @param offset
+	 *            index of the ellipsoidal distance in 'curve'
+	 * @return number of iterations performed
+	 */
+	int calculateGeodeticCurveIterations(Ellipsoid ellipsoid, double latitude1, double longitude1, double latitude2, double longitude2, double[] curve, int offset)
+	{
+		return inverse(ellipsoid.getSemiMajorAxis(), ellipsoid.getSemiMinorAxis(), ellipsoid.getFlattening(), latitude1, longitude1, latitude2, longitude2, curve, offset, 3);
+	}
+
+	/**
+	 * Calculate the sine and cosine of the reduced latitude of a point, for
+	 * reuse by calculateGeodeticCurve() when many curves end at that point.
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param latitude
+	 *            latitude of the point (degrees)
+	 * @param reduced
+	 *            receives the sine and cosine (2 elements from 'offset')
+	 * @param offset
+	 *            index of the sine in 'reduced'
+	 */
+	void reducedLatitude(Ellipsoid ellipsoid, double latitude, double[] reduced, int offset)
+	{
+		double U = atan((1.0 - ellipsoid.getFlattening()) * tan(Angle.toRadians(latitude)));
+
+		reduced[offset] = sin(U);
+		reduced[offset + 1] = cos(U);
+	}
+
+	/**
+	 * Calculate the geodetic curve to a point whose reduced latitude has been
+	 * found by reducedLatitude(). The result is identical to that of
+	 * calculateGeodeticCurve(), and is found with four fewer transcendental
+	 * functions.
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param latitude1
+	 *            starting latitude (degrees)
+	 * @param longitude1
+	 *            starting longitude (degrees)
+	 * @param latitude2
+	 *            ending latitude (degrees)
+	 * @param longitude2
+	 *            ending longitude (degrees)
+	 * @param reduced
+	 *            sine and cosine of the reduced latitude of the ending point
+	 * @param curve
+	 *            receives the solution (3 elements from 'offset')
+	 * @param offset
+	 *            index of the ellipsoidal distance in 'curve'
+	 */
+	void calculateGeodeticCurve(Ellipsoid ellipsoid, double latitude1, double longitude1, double latitude2, double longitude2, double[] reduced, double[] curve, int offset)
+	{
+		inverse(ellipsoid.getSemiMajorAxis(), ellipsoid.getSemiMinorAxis(), ellipsoid.getFlattening(), latitude1, longitude1, latitude2, longitude2, reduced[0], reduced[1], curve, offset, 3);
+	}
+
+	/**
+	 * Calculate only the ellipsoidal distance between two points given as
+	 * primitives. The azimuths are never evaluated.
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param latitude1
+	 *            starting latitude (degrees)
+	 * @param longitude1
+	 *            starting longitude (degrees)
+	 * @param latitude2
+	 *            ending latitude (degrees)
+	 * @param longitude2
+	 *            ending longitude (degrees)
+	 * @param distances
+	 *            receives the ellipsoidal distance in meters
+	 * @param offset
+	 *            index of the ellipsoidal distance in 'distances'
+	 */
+	public void calculateEllipsoidalDistance(Ellipsoid ellipsoid, double latitude1, double longitude1, double latitude2, double longitude2, double[] distances, int offset)
+	{
+		inverse(ellipsoid.getSemiMajorAxis(), ellipsoid.getSemiMinorAxis(), ellipsoid.getFlattening(), latitude1, longitude1, latitude2, longitude2, distances, offset, 1);
+	}
+
+	/**
+	 * <p>
+	 * Solve the inverse geodetic problem for a batch of coordinate pairs held
+	 * in primitive arrays. No intermediate objects are created, so this is the
+	 * preferred entry point for bulk workloads.
+	 * </p>
+	 * <p>
+	 * Coordinates are interleaved latitude/longitude pairs in degrees, so the
+	 * i'th point occupies elements 2i and 2i+1. Each result is written as a
+	 * triple of ellipsoidal distance (meters), azimuth (degrees) and reverse
+	 * azimuth (degrees) starting at element 3i of 'curves'.
+	 * </p>
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param starts
+	 *            starting coordinates (2 * count elements)
+	 * @param ends
+	 *            ending coordinates (2 * count elements)
+	 * @param count
+	 *            number of coordinate pairs
+	 * @param curves
+	 *            receives the solutions (3 * count elements)
+	 */
+	public void calculateGeodeticCurves(Ellipsoid ellipsoid, double[] starts, double[] ends, int count, double[] curves)
+	{
+		double a = ellipsoid.getSemiMajorAxis();
+		double b = ellipsoid.getSemiMinorAxis();
+		double f = ellipsoid.getFlattening();
+
+		for (int i = 0; i < count; i++)
+		{
+			inverse(a, b, f, starts[2 * i], starts[2 * i + 1], ends[2 * i], ends[2 * i + 1], curves, 3 * i, 3);
+		}
+	}
+
+	/**
+	 * Calculate only the ellipsoidal distances for a batch of coordinate pairs
+	 * held in primitive arrays. This is cheaper than calculateGeodeticCurves()
+	 * because the azimuths are never evaluated.
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param starts
+	 *            starting coordinates (2 * count elements)
+	 * @param ends
+	 *            ending coordinates (2 * count elements)
+	 * @param count
+	 *            number of coordinate pairs
+	 * @param distances
+	 *            receives the ellipsoidal distances in meters (count elements)
+	 */
+	public void calculateEllipsoidalDistances(Ellipsoid ellipsoid, double[] starts, double[] ends, int count, double[] distances)
+	{
+		double a = ellipsoid.getSemiMajorAxis();
+		double b = ellipsoid.getSemiMinorAxis();
+		double f = ellipsoid.getFlattening();
+
+		for (int i = 0; i < count; i++)
+		{
+			inverse(a, b, f, starts[2 * i], starts[2 * i + 1], ends[2 * i], ends[2 * i + 1], distances, i, 1);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Calculate the three dimensional geodetic measurement between two
+	 * positions measured in reference to a specified ellipsoid.
+	 * </p>
+	 * <p>
+	 * This calculation is performed by first computing a new ellipsoid by
+	 * expanding or contracting the reference ellipsoid such that the new
+	 * ellipsoid passes through the average elevation of the two positions. A
+	 * geodetic curve across the new ellisoid is calculated. The point-to-point
+	 * distance is calculated as the hypotenuse of a right triangle where the
+	 * length of one side is the ellipsoidal distance and the other is the
+	 * difference in elevation.
+	 * </p>
+	 * 
+	 * @param refEllipsoid
+	 *            reference ellipsoid to use
+	 * @param start
+	 *            starting position
+	 * @param end
+	 *            ending position
+	 * @return solution to the inverse geodetic problem
+	 */
+	public GeodeticMeasurement calculateGeodeticMeasurement(Ellipsoid refEllipsoid, GlobalPosition start, GlobalPosition end)
+	{
+		double[] curve = new double[3];
+
+		measure(refEllipsoid, start.getLatitude(), start.getLongitude(), start.getElevation(), end.getLatitude(), end.getLongitude(), end.getElevation(), curve, 0);
+
+		// return the measurement
+		return new GeodeticMeasurement(curve[0], curve[1], curve[2], end.getElevation() - start.getElevation());
+	}
+
+	/**
+	 * <p>
+	 * Calculate three dimensional geodetic measurements for a batch of position
+	 * pairs held in primitive arrays. Each pair is measured exactly as
+	 * calculateGeodeticMeasurement() would, but without creating intermediate
+	 * ellipsoids or results.
+	 * </p>
+	 * <p>
+	 * Positions are interleaved latitude/longitude/elevation triples (degrees,
+	 * degrees, meters), so the i'th position occupies elements 3i to 3i+2. Each
+	 * result is written as ellipsoidal distance (meters), azimuth (degrees),
+	 * reverse azimuth (degrees) and point-to-point distance (meters) starting at
+	 * element 4i of 'measurements'.
+	 * </p>
+	 * 
+	 * @param refEllipsoid
+	 *            reference ellipsoid to use
+	 * @param starts
+	 *            starting positions (3 * count elements)
+	 * @param ends
+	 *            ending positions (3 * count elements)
+	 * @param count
+	 *            number of position pairs
+	 * @param measurements
+	 *            receives the measurements (4 * count elements)
+	 */
+	public void calculateGeodeticMeasurements(Ellipsoid refEllipsoid, double[] starts, double[] ends, int count, double[] measurements)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			double elev1 = starts[3 * i + 2];
+			double elev2 = ends[3 * i + 2];
+			int o = 4 * i;
+
+			measure(refEllipsoid, starts[3 * i], starts[3 * i + 1], elev1, ends[3 * i], ends[3 * i + 1], elev2, measurements, o);
+
+			double s = measurements[o];
+			double elevationChange = elev2 - elev1;
+
+			measurements[o + 3] = Math.sqrt(s * s + elevationChange * elevationChange);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Calculate the straight line distance through space between two
+	 * positions, by converting both to earth centered cartesian coordinates.
+	 * This needs no iteration.
+	 * </p>
+	 * <p>
+	 * This is a different quantity from the point-to-point distance of
+	 * calculateGeodeticMeasurement(), which follows the curve of an ellipsoid
+	 * through the average elevation. The slant range is always the shorter of
+	 * the two. For a surface distance s on an earth of radius R they differ by
+	 * about s^3 / (24 R^2): roughly a millimeter at 10 km, a meter at 100 km and
+	 * a kilometer at 1000 km. Use the slant range for line of sight
+	 * calculations, such as radio links and sensor coverage, and the geodetic
+	 * measurement for distances travelled.
+	 * </p>
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param start
+	 *            starting position
+	 * @param end
+	 *            ending position
+	 * @return straight line distance in meters
+	 */
+	public double calculateSlantRange(Ellipsoid ellipsoid, GlobalPosition start, GlobalPosition end)
+	{
+		double[] xyz = new double[6];
+
+		toCartesian(ellipsoid, start.getLatitude(), start.getLongitude(), start.getElevation(), xyz, 0);
+		toCartesian(ellipsoid, end.getLatitude(), end.getLongitude(), end.getElevation(), xyz, 3);
+
+		return distance(xyz, 0, xyz, 3);
+	}
+
+	/**
+	 * Calculate the straight line distances through space for a batch of
+	 * position pairs held in primitive arrays, using the layout of
+	 * calculateGeodeticMeasurements(). See calculateSlantRange() for how this
+	 * differs from the point-to-point distance of a geodetic measurement.
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param starts
+	 *            starting positions (3 * count elements)
+	 * @param ends
+	 *            ending positions (3 * count elements)
+	 * @param count
+	 *            number of position pairs
+	 * @param ranges
+	 *            receives the straight line distances in meters (count
+	 *            elements)
+	 */
+	public void calculateSlantRanges(Ellipsoid ellipsoid, double[] starts, double[] ends, int count, double[] ranges)
+	{
+		double[] xyz = new double[6];
+
+		for (int i = 0; i < count; i++)
+		{
+			toCartesian(ellipsoid, starts[3 * i], starts[3 * i + 1], starts[3 * i + 2], xyz, 0);
+			toCartesian(ellipsoid, ends[3 * i], ends[3 * i + 1], ends[3 * i + 2], xyz, 3);
+
+			ranges[i] = distance(xyz, 0, xyz, 3);
+		}
+	}
+
+	/**
+	 * Calculate the geodetic curve between two positions across an ellipsoid
+	 * expanded or contracted to pass through their average elevation. See
+	 * calculateGeodeticMeasurement().
+	 * 
+	 * @param refEllipsoid
+	 *            reference ellipsoid to use
+	 * @param latitude1
+	 *            starting latitude (degrees)
+	 * @param longitude1
+	 *            starting longitude (degrees)
+	 * @param elevation1
+	 *            starting elevation (meters)
+	 * @param latitude2
+	 *            ending latitude (degrees)
+	 * @param longitude2
+	 *            ending longitude (degrees)
+	 * @param elevation2
+	 *            ending elevation (meters)
+	 * @param curve
+	 *            receives the ellipsoidal distance, azimuth and reverse azimuth
+	 * @param offset
+	 *            index of the ellipsoidal distance in 'curve'
+	 */
+	private void measure(Ellipsoid refEllipsoid, double latitude1, double longitude1, double elevation1, double latitude2, double longitude2, double elevation2, double[] curve, int offset)
+	{
+		// calculate average elevation
+		double elev12 = (elevation1 + elevation2) / 2.0;
+
+		// calculate average latitude
+		double phi1 = Angle.toRadians(latitude1);
+		double phi2 = Angle.toRadians(latitude2);
+		double phi12 = (phi1 + phi2) / 2.0;
+
+		// scale the reference ellipsoid to accommodate average elevation
+		double refA = refEllipsoid.getSemiMajorAxis();
+		double f = refEllipsoid.getFlattening();
+		double a = refA + elev12 * (1.0 + f * sin(phi12));
+		double b = (1.0 - f) * a;
+
+		// calculate the curve at the average elevation
+		inverse(a, b, f, latitude1, longitude1, latitude2, longitude2, curve, offset, 3);
+
+		if (mStatistics != null) mStatistics.recordMeasurement();
+	}
+
 	/**
-	 * Calculate the destination and final bearing after traveling a specified
-	 * distance, and a specified starting bearing, for an initial location. This
-	 * is the solution to the direct geodetic problem.
+	 * Convert a position to earth centered, earth fixed cartesian coordinates,
+	 * with StrictMath if this calculator is deterministic.
 	 * 
 	 * @param ellipsoid
-	 *            reference ellipsoid to use
-	 * @param start
-	 *            starting location
+	 *            reference ellipsoid
+	 * @param latitude
+	 *            latitude in degrees
+	 * @param longitude
+	 *            longitude in degrees
+	 * @param elevation
+	 *            elevation, in meters, above the ellipsoid
+	 * @param xyz
+	 *            receives the X, Y, and Z coordinates in meters
+	 * @param offset
+	 *            index of the X coordinate in 'xyz'
+	 */
+	private void toCartesian(Ellipsoid ellipsoid, double latitude, double longitude, double elevation, double[] xyz, int offset)
+	{
+		if (mDeterministic)
+		{
+			double f = ellipsoid.getFlattening();
+
+			Geocentric.toCartesianStrict(ellipsoid.getSemiMajorAxis(), f * (2.0 - f), latitude, longitude, elevation, xyz, offset);
+		}
+		else
+		{
+			Geocentric.toCartesian(ellipsoid, latitude, longitude, elevation, xyz, offset);
+		}
+	}
+
+	/**
+	 * Calculate the distance between two cartesian points.
+	 * 
+	 * @param xyz1
+	 *            array holding the first point
+	 * @param offset1
+	 *            index of the first point's X coordinate
+	 * @param xyz2
+	 *            array holding the second point
+	 * @param offset2
+	 *            index of the second point's X coordinate
+	 * @return distance between the points
+	 */
+	static private double distance(double[] xyz1, int offset1, double[] xyz2, int offset2)
+	{
+		double dx = xyz2[offset2] - xyz1[offset1];
+		double dy = xyz2[offset2 + 1] - xyz1[offset1 + 1];
+		double dz = xyz2[offset2 + 2] - xyz1[offset1 + 2];
+
+		return Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	/**
+	 * Solve the direct geodetic problem on an ellipsoid described by its
+	 * constants. The starting point is given by the tangent of its reduced
+	 * latitude, which may be shared by many solutions from the same point. The
+	 * ending latitude and canonicalized longitude are written to 'coords' at
+	 * 'offset' and 'offset + 1'.
+	 * 
+	 * @param a
+	 *            semi major axis (meters)
+	 * @param b
+	 *            semi minor axis (meters)
+	 * @param f
+	 *            flattening
+	 * @param tanU1
+	 *            tangent of the reduced latitude of the starting point
+	 * @param longitude
+	 *            starting longitude (degrees)
 	 * @param startBearing
 	 *            starting bearing (degrees)
 	 * @param distance
 	 *            distance to travel (meters)
-	 * @param endBearing
-	 *            bearing at destination (degrees) element at index 0 will be
-	 *            populated with the result
-	 * @return solution to the direct geodetic problem
+	 * @param coords
+	 *            receives the ending coordinates
+	 * @param offset
+	 *            index of the ending latitude in 'coords'
+	 * @return bearing at destination (degrees)
 	 */
-	public GlobalCoordinates calculateEndingGlobalCoordinates(Ellipsoid ellipsoid, GlobalCoordinates start, double startBearing, double distance, double[] endBearing)
+	private double direct(double a, double b, double f, double tanU1, double longitude, double startBearing, double distance, double[] coords, int offset)
+	{
+		return direct(a, b, f, tanU1, longitude, startBearing, distance, null, 1, coords, offset);
+	}
+
+	/**
+	 * Solve the direct geodetic problem for several distances along the same
+	 * geodesic. The constants of the geodesic are found once and shared. Each
+	 * distance is 'distance' multiplied by the corresponding fraction, and the
+	 * ending coordinates are written as consecutive latitude/longitude pairs
+	 * from 'offset', and the call is recorded in the statistics, if any. See
+	 * direct().
+	 * 
+	 * @param a
+	 *            semi major axis (meters)
+	 * @param b
+	 *            semi minor axis (meters)
+	 * @param f
+	 *            flattening
+	 * @param tanU1
+	 *            tangent of the reduced latitude of the starting point
+	 * @param longitude
+	 *            starting longitude (degrees)
+	 * @param startBearing
+	 *            starting bearing (degrees)
+	 * @param distance
+	 *            distance to scale (meters)
+	 * @param fractions
+	 *            fractions of 'distance' to travel, or null to travel
+	 *            'distance' once
+	 * @param count
+	 *            number of fractions
+	 * @param coords
+	 *            receives the ending coordinates (2 * count elements)
+	 * @param offset
+	 *            index of the first ending latitude in 'coords'
+	 * @return bearing at the last destination (degrees)
+	 */
+	private double direct(double a, double b, double f, double tanU1, double longitude, double startBearing, double distance, double[] fractions, int count, double[] coords, int offset)
+	{
+		if (mStatistics == null) return solveDirect(a, b, f, tanU1, longitude, startBearing, distance, fractions, count, coords, offset);
+
+		long start = System.nanoTime();
+		double endBearing = solveDirect(a, b, f, tanU1, longitude, startBearing, distance, fractions, count, coords, offset);
+		long nanos = System.nanoTime() - start;
+		int nans = 0;
+
+		for (int i = 0; i < count; i++)
+			if (Double.isNaN(coords[offset + 2 * i])) nans++;
+
+		mStatistics.recordDirect(count, nans, nanos);
+
+		return endBearing;
+	}
+
+	/**
+	 * Solve the direct geodetic problem for several distances along the same
+	 * geodesic without recording statistics. See direct().
+	 * 
+	 * @param a
+	 *            semi major axis (meters)
+	 * @param b
+	 *            semi minor axis (meters)
+	 * @param f
+	 *            flattening
+	 * @param tanU1
+	 *            tangent of the reduced latitude of the starting point
+	 * @param longitude
+	 *            starting longitude (degrees)
+	 * @param startBearing
+	 *            starting bearing (degrees)
+	 * @param distance
+	 *            distance to scale (meters)
+	 * @param fractions
+	 *            fractions of 'distance' to travel, or null to travel
+	 *            'distance' once
+	 * @param count
+	 *            number of fractions
+	 * @param coords
+	 *            receives the ending coordinates (2 * count elements)
+	 * @param offset
+	 *            index of the first ending latitude in 'coords'
+	 * @return bearing at the last destination (degrees)
+	 */
+	private double solveDirect(double a, double b, double f, double tanU1, double longitude, double startBearing, double distance, double[] fractions, int count, double[] coords, int offset)
 	{
-		double a = ellipsoid.getSemiMajorAxis();
-		double b = ellipsoid.getSemiMinorAxis();
 		double aSquared = a * a;
 		double bSquared = b * b;
-		double f = ellipsoid.getFlattening();
-		double phi1 = Angle.toRadians(start.getLatitude());
 		double alpha1 = Angle.toRadians(startBearing);
-		double cosAlpha1 = Math.cos(alpha1);
-		double sinAlpha1 = Math.sin(alpha1);
-		double s = distance;
-		double tanU1 = (1.0 - f) * Math.tan(phi1);
+		double cosAlpha1 = cos(alpha1);
+		double sinAlpha1 = sin(alpha1);
 		double cosU1 = 1.0 / Math.sqrt(1.0 + tanU1 * tanU1);
 		double sinU1 = tanU1 * cosU1;
 
-		// eq. 1
-		double sigma1 = Math.atan2(tanU1, cosAlpha1);
-
 		// eq. 2
 		double sinAlpha = cosU1 * sinAlpha1;
 
@@ -87,46 +1061,157 @@ public class GeodeticCalculator
 		// eq. 4
 		double B = (uSquared / 1024) * (256 + uSquared * (-128 + uSquared * (74 - 47 * uSquared)));
 
-		// iterate until there is a negligible change in sigma
-		double deltaSigma;
+		// eq. 1 (a single short hop never needs it)
+		double sigma1 = ((fractions == null) && isShortHop(distance / (b * A), B)) ? 0.0 : atan2(tanU1, cosAlpha1);
+
+		double endBearing = Double.NaN;
+
+		for (int i = 0; i < count; i++)
+		{
+			double s = (fractions == null) ? distance : distance * fractions[i];
+
+			endBearing = direct(b, f, sinU1, cosU1, sinAlpha1, cosAlpha1, sigma1, sinAlpha, cos2Alpha, A, B, longitude, s, coords, offset + 2 * i);
+		}
+
+		return endBearing;
+	}
+
+	/**
+	 * Finish the direct geodetic problem once the constants of the geodesic
+	 * have been found. Many distances along the same geodesic can share them.
+	 * See direct().
+	 * 
+	 * @param b
+	 *            semi minor axis (meters)
+	 * @param f
+	 *            flattening
+	 * @param sinU1
+	 *            sine of the reduced latitude of the starting point
+	 * @param cosU1
+	 *            cosine of the reduced latitude of the starting point
+	 * @param sinAlpha1
+	 *            sine of the starting bearing
+	 * @param cosAlpha1
+	 *            cosine of the starting bearing
+	 * @param sigma1
+	 *            angular distance from the equator to the starting point
+	 *            (eq. 1)
+	 * @param sinAlpha
+	 *            sine of the azimuth at the equator (eq. 2)
+	 * @param cos2Alpha
+	 *            square of the cosine of the azimuth at the equator
+	 * @param A
+	 *            series coefficient A (eq. 3)
+	 * @param B
+	 *            series coefficient B (eq. 4)
+	 * @param longitude
+	 *            starting longitude (degrees)
+	 * @param distance
+	 *            distance to travel (meters)
+	 * @param coords
+	 *            receives the ending coordinates
+	 * @param offset
+	 *            index of the ending latitude in 'coords'
+	 * @return bearing at destination (degrees)
+	 */
+	private double direct(double b, double f, double sinU1, double cosU1, double sinAlpha1, double cosAlpha1, double sigma1, double sinAlpha, double cos2Alpha, double A, double B, double longitude, double distance, double[] coords, int offset)
+	{
+		double s = distance;
+		double sin2Alpha = sinAlpha * sinAlpha;
+
 		double sOverbA = s / (b * A);
-		double sigma = sOverbA;
+		double sigma;
 		double sinSigma;
-		double prevSigma = sOverbA;
-		double sigmaM2;
+		double cosSigma;
 		double cosSigmaM2;
-		double cos2SigmaM2;
 
-		while (!Double.isNaN(prevSigma))
+		if (isShortHop(sOverbA, B))
 		{
-			// eq. 5
-			sigmaM2 = 2.0 * sigma1 + sigma;
-			cosSigmaM2 = Math.cos(sigmaM2);
-			cos2SigmaM2 = cosSigmaM2 * cosSigmaM2;
-			sinSigma = Math.sin(sigma);
-			double cosSignma = Math.cos(sigma);
+			// A short hop needs no iteration and no trigonometry until eq. 8.
+			// The double angle of sigma1 follows from its tangent (eq. 1),
+			// sigma is small enough for its sine and cosine to be short
+			// polynomials, and eq. 7 is substituted into itself three times.
+			// Each substitution shrinks the error by a factor of about B, so
+			// sigma ends within B^4 * sigma of the fixed point.
+			double sin2U1 = sinU1 * sinU1;
+			double cos2U1cos2Alpha1 = cosU1 * cosU1 * cosAlpha1 * cosAlpha1;
+			double r2 = sin2U1 + cos2U1cos2Alpha1;
+			double sin2Sigma1 = (r2 == 0.0) ? 0.0 : 2.0 * sinU1 * cosU1 * cosAlpha1 / r2;
+			double cos2Sigma1 = (r2 == 0.0) ? 1.0 : (cos2U1cos2Alpha1 - sin2U1) / r2;
 
-			// eq. 6
-			deltaSigma = B * sinSigma * (cosSigmaM2 + (B / 4.0) * (cosSignma * (-1 + 2 * cos2SigmaM2) - (B / 6.0) * cosSigmaM2 * (-3 + 4 * sinSigma * sinSigma) * (-3 + 4 * cos2SigmaM2)));
+			sigma = sOverbA + shortDeltaSigma(B, sOverbA, sin2Sigma1, cos2Sigma1);
+			sigma = sOverbA + shortDeltaSigma(B, sigma, sin2Sigma1, cos2Sigma1);
+			sigma = sOverbA + shortDeltaSigma(B, sigma, sin2Sigma1, cos2Sigma1);
+
+			sinSigma = shortSin(sigma);
+			cosSigma = shortCos(sigma);
+			cosSigmaM2 = cos2Sigma1 * cosSigma - sin2Sigma1 * sinSigma;
+		}
+		else
+		{
+			// iterate until there is a negligible change in sigma
+			double deltaSigma;
+			double prevSigma = sOverbA;
+			double sigmaM2;
+			double cos2SigmaM2;
 
-			// eq. 7
-			sigma = sOverbA + deltaSigma;
+			sigma = sOverbA;
+			double tolerance = mProfile.getDirectTolerance();
+			int maxIterations = mProfile.getDirectMaxIterations();
+			boolean converged = false;
 
-			// break after converging to tolerance
-			if (Math.abs(sigma - prevSigma) < 0.0000000000001) break;
+			for (int i = 0; (i < maxIterations) && !Double.isNaN(prevSigma); i++)
+			{
+				// eq. 5
+				sigmaM2 = 2.0 * sigma1 + sigma;
+				cosSigmaM2 = cos(sigmaM2);
+				cos2SigmaM2 = cosSigmaM2 * cosSigmaM2;
+				sinSigma = sin(sigma);
+				double cosSignma = cos(sigma);
 
-			prevSigma = sigma;
-		}
+				// eq. 6
+				deltaSigma = B * sinSigma * (cosSigmaM2 + (B / 4.0) * (cosSignma * (-1 + 2 * cos2SigmaM2) - (B / 6.0) * cosSigmaM2 * (-3 + 4 * sinSigma * sinSigma) * (-3 + 4 * cos2SigmaM2)));
+
+				// eq. 7
+				sigma = sOverbA + deltaSigma;
+
+				// break after converging to tolerance
+				if (Math.abs(sigma - prevSigma) < tolerance)
+				{
+					converged = true;
+					break;
+				}
+
+				prevSigma = sigma;
+			}
 
-		sigmaM2 = 2.0 * sigma1 + sigma;
-		cosSigmaM2 = Math.cos(sigmaM2);
-		cos2SigmaM2 = cosSigmaM2 * cosSigmaM2;
+			// out of iterations? (NaN input isn't a convergence failure)
+			if (!converged && !Double.isNaN(sigma))
+			{
+				if (mStatistics != null) mStatistics.recordNonConvergence();
+
+				switch (mProfile.getNonConvergence())
+				{
+				case NAN:
+					sigma = Double.NaN;
+					break;
+				case EXCEPTION:
+					throw new ArithmeticException("direct solution did not converge in " + maxIterations + " iterations");
+				default:
+					break;
+				}
+			}
+
+			sigmaM2 = 2.0 * sigma1 + sigma;
+			cosSigmaM2 = cos(sigmaM2);
+			cosSigma = cos(sigma);
+			sinSigma = sin(sigma);
+		}
 
-		double cosSigma = Math.cos(sigma);
-		sinSigma = Math.sin(sigma);
+		double cos2SigmaM2 = cosSigmaM2 * cosSigmaM2;
 
 		// eq. 8
-		double phi2 = Math.atan2(sinU1 * cosSigma + cosU1 * sinSigma * cosAlpha1, (1.0 - f) * Math.sqrt(sin2Alpha + Math.pow(sinU1 * sinSigma - cosU1 * cosSigma * cosAlpha1, 2.0)));
+		double phi2 = atan2(sinU1 * cosSigma + cosU1 * sinSigma * cosAlpha1, (1.0 - f) * Math.sqrt(sin2Alpha + pow(sinU1 * sinSigma - cosU1 * cosSigma * cosAlpha1, 2.0)));
 
 		// eq. 9
 		// This fixes the pole crossing defect spotted by Matt Feemster. When a
@@ -139,7 +1224,7 @@ public class GeodeticCalculator
 		// double tanLambda = sinSigma * sinAlpha1 / (cosU1 * cosSigma - sinU1 *
 		// sinSigma * cosAlpha1);
 		// double lambda = Math.atan(tanLambda);
-		double lambda = Math.atan2(sinSigma * sinAlpha1, (cosU1 * cosSigma - sinU1 * sinSigma * cosAlpha1));
+		double lambda = atan2(sinSigma * sinAlpha1, (cosU1 * cosSigma - sinU1 * sinSigma * cosAlpha1));
 
 		// eq. 10
 		double C = (f / 16) * cos2Alpha * (4 + f * (4 - 3 * cos2Alpha));
@@ -148,69 +1233,209 @@ public class GeodeticCalculator
 		double L = lambda - (1 - C) * f * sinAlpha * (sigma + C * sinSigma * (cosSigmaM2 + C * cosSigma * (-1 + 2 * cos2SigmaM2)));
 
 		// eq. 12
-		double alpha2 = Math.atan2(sinAlpha, -sinU1 * sinSigma + cosU1 * cosSigma * cosAlpha1);
+		double alpha2 = atan2(sinAlpha, -sinU1 * sinSigma + cosU1 * cosSigma * cosAlpha1);
 
 		// build result
-		double latitude = Angle.toDegrees(phi2);
-		double longitude = start.getLongitude() + Angle.toDegrees(L);
+		coords[offset] = Angle.toDegrees(phi2);
+		coords[offset + 1] = GlobalCoordinates.canonicalLongitude(longitude + Angle.toDegrees(L));
 
-		if ((endBearing != null) && (endBearing.length > 0))
-		{
-			endBearing[0] = Angle.toDegrees(alpha2);
-		}
+		return Angle.toDegrees(alpha2);
+	}
+
+	/**
+	 * Determine if a direct problem can be solved as a short hop. The angular
+	 * distance must be small enough for the polynomial sine and cosine, and
+	 * the error left by substituting eq. 7 into itself three times must be
+	 * within the direct tolerance of the precision profile.
+	 * 
+	 * @param sOverbA
+	 *            first approximation of sigma (radians)
+	 * @param B
+	 *            series coefficient B (eq. 4)
+	 * @return true if the short hop solution is accurate enough
+	 */
+	private boolean isShortHop(double sOverbA, double B)
+	{
+		double sigma = Math.abs(sOverbA);
+		double B2 = B * B;
 
-		return new GlobalCoordinates(latitude, longitude);
+		return (sigma <= SHORT_SIGMA) && (B2 * B2 * sigma < mProfile.getDirectTolerance());
 	}
 
 	/**
-	 * Calculate the destination after traveling a specified distance, and a
-	 * specified starting bearing, for an initial location. This is the solution
-	 * to the direct geodetic problem.
+	 * Evaluate eq. 6 for a short hop, with the sine and cosine of sigma from
+	 * polynomials and the cosine of 2 * sigmaM from the angle sum formula.
 	 * 
-	 * @param ellipsoid
-	 *            reference ellipsoid to use
-	 * @param start
-	 *            starting location
-	 * @param startBearing
-	 *            starting bearing (degrees)
-	 * @param distance
-	 *            distance to travel (meters)
-	 * @return solution to the direct geodetic problem
+	 * @param B
+	 *            series coefficient B (eq. 4)
+	 * @param sigma
+	 *            angular distance on the auxiliary sphere (radians)
+	 * @param sin2Sigma1
+	 *            sine of twice sigma1
+	 * @param cos2Sigma1
+	 *            cosine of twice sigma1
+	 * @return delta sigma (radians)
 	 */
-	public GlobalCoordinates calculateEndingGlobalCoordinates(Ellipsoid ellipsoid, GlobalCoordinates start, double startBearing, double distance)
+	static private double shortDeltaSigma(double B, double sigma, double sin2Sigma1, double cos2Sigma1)
 	{
-		return calculateEndingGlobalCoordinates(ellipsoid, start, startBearing, distance, null);
+		double sinSigma = shortSin(sigma);
+		double cosSigma = shortCos(sigma);
+		double cosSigmaM2 = cos2Sigma1 * cosSigma - sin2Sigma1 * sinSigma;
+		double cos2SigmaM2 = cosSigmaM2 * cosSigmaM2;
+
+		return B * sinSigma * (cosSigmaM2 + (B / 4.0) * (cosSigma * (-1 + 2 * cos2SigmaM2) - (B / 6.0) * cosSigmaM2 * (-3 + 4 * sinSigma * sinSigma) * (-3 + 4 * cos2SigmaM2)));
 	}
 
 	/**
-	 * Calculate the geodetic curve between two points on a specified reference
-	 * ellipsoid. This is the solution to the inverse geodetic problem.
+	 * Sine of an angle no larger than a short hop. The first omitted term is
+	 * below 1e-32.
 	 * 
-	 * @param ellipsoid
-	 *            reference ellipsoid to use
-	 * @param start
-	 *            starting coordinates
-	 * @param end
-	 *            ending coordinates
-	 * @return solution to the inverse geodetic problem
+	 * @param x
+	 *            angle in radians
+	 * @return sine of the angle
 	 */
-	public GeodeticCurve calculateGeodeticCurve(Ellipsoid ellipsoid, GlobalCoordinates start, GlobalCoordinates end)
+	static private double shortSin(double x)
+	{
+		double x2 = x * x;
+
+		return x * (1.0 - x2 / 6.0 * (1.0 - x2 / 20.0 * (1.0 - x2 / 42.0)));
+	}
+
+	/**
+	 * Cosine of an angle no larger than a short hop. The first omitted term
+	 * is below 1e-28.
+	 * 
+	 * @param x
+	 *            angle in radians
+	 * @return cosine of the angle
+	 */
+	static private double shortCos(double x)
+	{
+		double x2 = x * x;
+
+		return 1.0 - x2 / 2.0 * (1.0 - x2 / 12.0 * (1.0 - x2 / 30.0));
+	}
+
+	/**
+	 * Solve the inverse geodetic problem on an ellipsoid described by its
+	 * constants. The ellipsoidal distance is written to 'curve' at 'offset'.
+	 * If 'outputs' is 2 or 3, the azimuth follows it at 'offset + 1', and if
+	 * 'outputs' is 3 the reverse azimuth follows at 'offset + 2'. The
+	 * solution is recorded in the statistics, if any.
+	 * 
+	 * @param a
+	 *            semi major axis (meters)
+	 * @param b
+	 *            semi minor axis (meters)
+	 * @param f
+	 *            flattening
+	 * @param latitude1
+	 *            starting latitude (degrees)
+	 * @param longitude1
+	 *            starting longitude (degrees)
+	 * @param latitude2
+	 *            ending latitude (degrees)
+	 * @param longitude2
+	 *            ending longitude (degrees)
+	 * @param curve
+	 *            receives the solution
+	 * @param offset
+	 *            index of the ellipsoidal distance in 'curve'
+	 * @param outputs
+	 *            number of results to calculate (1 to 3)
+	 * @return number of iterations performed
+	 */
+	private int inverse(double a, double b, double f, double latitude1, double longitude1, double latitude2, double longitude2, double[] curve, int offset, int outputs)
+	{
+		return inverse(a, b, f, latitude1, longitude1, latitude2, longitude2, Double.NaN, Double.NaN, curve, offset, outputs);
+	}
+
+	/**
+	 * Solve the inverse geodetic problem, reusing the reduced latitude of the
+	 * ending point if it is known. See inverse().
+	 * 
+	 * @param a
+	 *            semi major axis (meters)
+	 * @param b
+	 *            semi minor axis (meters)
+	 * @param f
+	 *            flattening
+	 * @param latitude1
+	 *            starting latitude (degrees)
+	 * @param longitude1
+	 *            starting longitude (degrees)
+	 * @param latitude2
+	 *            ending latitude (degrees)
+	 * @param longitude2
+	 *            ending longitude (degrees)
+	 * @param sinU2
+	 *            sine of the reduced latitude of the ending point from
+	 *            reducedLatitude(), or NaN to calculate it
+	 * @param cosU2
+	 *            cosine of the reduced latitude of the ending point
+	 * @param curve
+	 *            receives the solution
+	 * @param offset
+	 *            index of the ellipsoidal distance in 'curve'
+	 * @param outputs
+	 *            number of results to calculate (1 to 3)
+	 * @return number of iterations performed
+	 */
+	private int inverse(double a, double b, double f, double latitude1, double longitude1, double latitude2, double longitude2, double sinU2, double cosU2, double[] curve, int offset, int outputs)
+	{
+		if (mStatistics == null) return solveInverse(a, b, f, latitude1, longitude1, latitude2, longitude2, sinU2, cosU2, curve, offset, outputs);
+
+		long start = System.nanoTime();
+		int iterations = solveInverse(a, b, f, latitude1, longitude1, latitude2, longitude2, sinU2, cosU2, curve, offset, outputs);
+
+		mStatistics.recordInverse(curve[offset], System.nanoTime() - start);
+
+		return iterations;
+	}
+
+	/**
+	 * Solve the inverse geodetic problem without recording statistics. See
+	 * inverse().
+	 * 
+	 * @param a
+	 *            semi major axis (meters)
+	 * @param b
+	 *            semi minor axis (meters)
+	 * @param f
+	 *            flattening
+	 * @param latitude1
+	 *            starting latitude (degrees)
+	 * @param longitude1
+	 *            starting longitude (degrees)
+	 * @param latitude2
+	 *            ending latitude (degrees)
+	 * @param longitude2
+	 *            ending longitude (degrees)
+	 * @param knownSinU2
+	 *            sine of the reduced latitude of the ending point from
+	 *            reducedLatitude(), or NaN to calculate it
+	 * @param knownCosU2
+	 *            cosine of the reduced latitude of the ending point
+	 * @param curve
+	 *            receives the solution
+	 * @param offset
+	 *            index of the ellipsoidal distance in 'curve'
+	 * @param outputs
+	 *            number of results to calculate (1 to 3)
+	 * @return number of iterations performed
+	 */
+	private int solveInverse(double a, double b, double f, double latitude1, double longitude1, double latitude2, double longitude2, double knownSinU2, double knownCosU2, double[] curve, int offset, int outputs)
 	{
 		//
 		// All equation numbers refer back to Vincenty's publication:
 		// See http://www.ngs.noaa.gov/PUBS_LIB/inverse.pdf
 		//
 
-		// get constants
-		double a = ellipsoid.getSemiMajorAxis();
-		double b = ellipsoid.getSemiMinorAxis();
-		double f = ellipsoid.getFlattening();
-
 		// get parameters as radians
-		double phi1 = Angle.toRadians(start.getLatitude());
-		double lambda1 = Angle.toRadians(start.getLongitude());
-		double phi2 = Angle.toRadians(end.getLatitude());
-		double lambda2 = Angle.toRadians(end.getLongitude());
+		double phi1 = Angle.toRadians(latitude1);
+		double lambda1 = Angle.toRadians(longitude1);
+		double phi2 = Angle.toRadians(latitude2);
+		double lambda2 = Angle.toRadians(longitude2);
 
 		// calculations
 		double a2 = a * a;
@@ -219,17 +1444,41 @@ public class GeodeticCalculator
 
 		double omega = lambda2 - lambda1;
 
-		double tanphi1 = Math.tan(phi1);
-		double tanU1 = (1.0 - f) * tanphi1;
-		double U1 = Math.atan(tanU1);
-		double sinU1 = Math.sin(U1);
-		double cosU1 = Math.cos(U1);
+		double sinU1;
+		double cosU1;
+		double sinU2;
+		double cosU2;
+
+		// look up the reduced latitudes if they're tabulated
+		if ((mTable != null) && !mDeterministic && mTable.covers(a, f) && (Math.abs(latitude1) <= 90.0) && (Math.abs(latitude2) <= 90.0))
+		{
+			sinU1 = mTable.sin(latitude1);
+			cosU1 = mTable.cos(latitude1);
+			sinU2 = mTable.sin(latitude2);
+			cosU2 = mTable.cos(latitude2);
+		}
+		else
+		{
+			double tanphi1 = tan(phi1);
+			double tanU1 = (1.0 - f) * tanphi1;
+			double U1 = atan(tanU1);
+			sinU1 = sin(U1);
+			cosU1 = cos(U1);
 
-		double tanphi2 = Math.tan(phi2);
-		double tanU2 = (1.0 - f) * tanphi2;
-		double U2 = Math.atan(tanU2);
-		double sinU2 = Math.sin(U2);
-		double cosU2 = Math.cos(U2);
+			if (Double.isNaN(knownSinU2))
+			{
+				double tanphi2 = tan(phi2);
+				double tanU2 = (1.0 - f) * tanphi2;
+				double U2 = atan(tanU2);
+				sinU2 = sin(U2);
+				cosU2 = cos(U2);
+			}
+			else
+			{
+				sinU2 = knownSinU2;
+				cosU2 = knownCosU2;
+			}
+		}
 
 		double sinU1sinU2 = sinU1 * sinU2;
 		double cosU1sinU2 = cosU1 * sinU2;
@@ -245,14 +1494,18 @@ public class GeodeticCalculator
 		double sigma = 0.0;
 		double deltasigma = 0.0;
 		double lambda0;
+		int iterations = 0;
 		boolean converged = false;
+		double tolerance = mProfile.getInverseTolerance();
+		int maxIterations = mProfile.getInverseMaxIterations();
 
-		for (int i = 0; i < 20; i++)
+		for (int i = 0; i < maxIterations; i++)
 		{
 			lambda0 = lambda;
+			iterations++;
 
-			double sinlambda = Math.sin(lambda);
-			double coslambda = Math.cos(lambda);
+			double sinlambda = sin(lambda);
+			double coslambda = cos(lambda);
 
 			// eq. 14
 			double sin2sigma = (cosU2 * sinlambda * cosU2 * sinlambda) + (cosU1sinU2 - sinU1cosU2 * coslambda) * (cosU1sinU2 - sinU1cosU2 * coslambda);
@@ -262,12 +1515,12 @@ public class GeodeticCalculator
 			double cossigma = sinU1sinU2 + (cosU1cosU2 * coslambda);
 
 			// eq. 16
-			sigma = Math.atan2(sinsigma, cossigma);
+			sigma = atan2(sinsigma, cossigma);
 
 			// eq. 17 Careful! sin2sigma might be almost 0!
 			double sinalpha = (sin2sigma == 0) ? 0.0 : cosU1cosU2 * sinlambda / sinsigma;
-			double alpha = Math.asin(sinalpha);
-			double cosalpha = Math.cos(alpha);
+			double alpha = asin(sinalpha);
+			double cosalpha = cos(alpha);
 			double cos2alpha = cosalpha * cosalpha;
 
 			// eq. 18 Careful! cos2alpha might be almost 0!
@@ -294,15 +1547,43 @@ public class GeodeticCalculator
 			// see how much improvement we got
 			double change = Math.abs((lambda - lambda0) / lambda);
 
-			if ((i > 1) && (change < 0.0000000000001))
+			if ((i > 1) && (change < tolerance))
 			{
 				converged = true;
 				break;
 			}
+
+			// lambda stays at exactly zero along a meridian, so further
+			// iterations would only repeat this one
+			if ((lambda == 0.0) && (lambda0 == 0.0)) break;
+		}
+
+		// Out of iterations? Paths along a meridian never register as converged
+		// (lambda stays at zero), and NaN input isn't a convergence failure, so
+		// those always take the north/south solution below.
+		if (!converged && (lambda != 0.0) && !Double.isNaN(lambda))
+		{
+			if (mStatistics != null) mStatistics.recordNonConvergence();
+
+			switch (mProfile.getNonConvergence())
+			{
+			case NAN:
+				curve[offset] = Double.NaN;
+				if (outputs > 1) curve[offset + 1] = Double.NaN;
+				if (outputs > 2) curve[offset + 2] = Double.NaN;
+				return iterations;
+			case EXCEPTION:
+				throw new ArithmeticException("inverse solution did not converge in " + maxIterations + " iterations");
+			default:
+				break;
+			}
 		}
 
 		// eq. 19
-		double s = b * A * (sigma - deltasigma);
+		curve[offset] = b * A * (sigma - deltasigma);
+
+		if (outputs == 1) return iterations;
+
 		double alpha1;
 		double alpha2;
 
@@ -332,67 +1613,118 @@ public class GeodeticCalculator
 			double radians;
 
 			// eq. 20
-			radians = Math.atan2(cosU2 * Math.sin(lambda), (cosU1sinU2 - sinU1cosU2 * Math.cos(lambda)));
+			radians = atan2(cosU2 * sin(lambda), (cosU1sinU2 - sinU1cosU2 * cos(lambda)));
 			if (radians < 0.0) radians += TwoPi;
 			alpha1 = Angle.toDegrees(radians);
 
 			// eq. 21
-			radians = Math.atan2(cosU1 * Math.sin(lambda), (-sinU1cosU2 + cosU1sinU2 * Math.cos(lambda))) + Math.PI;
-			if (radians < 0.0) radians += TwoPi;
-			alpha2 = Angle.toDegrees(radians);
+			if (outputs > 2)
+			{
+				radians = atan2(cosU1 * sin(lambda), (-sinU1cosU2 + cosU1sinU2 * cos(lambda))) + Math.PI;
+				if (radians < 0.0) radians += TwoPi;
+				alpha2 = Angle.toDegrees(radians);
+			}
+			else
+			{
+				alpha2 = 0.0;
+			}
 		}
 
 		if (alpha1 >= 360.0) alpha1 -= 360.0;
 		if (alpha2 >= 360.0) alpha2 -= 360.0;
 
-		return new GeodeticCurve(s, alpha1, alpha2);
+		curve[offset + 1] = alpha1;
+		if (outputs > 2) curve[offset + 2] = alpha2;
+
+		return iterations;
 	}
 
 	/**
-	 * <p>
-	 * Calculate the three dimensional geodetic measurement between two
-	 * positions measured in reference to a specified ellipsoid.
-	 * </p>
-	 * <p>
-	 * This calculation is performed by first computing a new ellipsoid by
-	 * expanding or contracting the reference ellipsoid such that the new
-	 * ellipsoid passes through the average elevation of the two positions. A
-	 * geodetic curve across the new ellisoid is calculated. The point-to-point
-	 * distance is calculated as the hypotenuse of a right triangle where the
-	 * length of one side is the ellipsoidal distance and the other is the
-	 * difference in elevation.
-	 * </p>
+	 * Sine, with StrictMath if this calculator is deterministic.
 	 * 
-	 * @param refEllipsoid
-	 *            reference ellipsoid to use
-	 * @param start
-	 *            starting position
-	 * @param end
-	 *            ending position
-	 * @return solution to the inverse geodetic problem
+	 * @param x
+	 *            angle in radians
+	 * @return sine of x
 	 */
-	public GeodeticMeasurement calculateGeodeticMeasurement(Ellipsoid refEllipsoid, GlobalPosition start, GlobalPosition end)
+	private double sin(double x)
 	{
-		// calculate elevation differences
-		double elev1 = start.getElevation();
-		double elev2 = end.getElevation();
-		double elev12 = (elev1 + elev2) / 2.0;
+		return mDeterministic ? StrictMath.sin(x) : Math.sin(x);
+	}
 
-		// calculate latitude differences
-		double phi1 = Angle.toRadians(start.getLatitude());
-		double phi2 = Angle.toRadians(end.getLatitude());
-		double phi12 = (phi1 + phi2) / 2.0;
+	/**
+	 * Cosine, with StrictMath if this calculator is deterministic.
+	 * 
+	 * @param x
+	 *            angle in radians
+	 * @return cosine of x
+	 */
+	private double cos(double x)
+	{
+		return mDeterministic ? StrictMath.cos(x) : Math.cos(x);
+	}
 
-		// calculate a new ellipsoid to accommodate average elevation
-		double refA = refEllipsoid.getSemiMajorAxis();
-		double f = refEllipsoid.getFlattening();
-		double a = refA + elev12 * (1.0 + f * Math.sin(phi12));
-		Ellipsoid ellipsoid = Ellipsoid.fromAAndF(a, f);
+	/**
+	 * Tangent, with StrictMath if this calculator is deterministic.
+	 * 
+	 * @param x
+	 *            angle in radians
+	 * @return tangent of x
+	 */
+	private double tan(double x)
+	{
+		return mDeterministic ? StrictMath.tan(x) : Math.tan(x);
+	}
 
-		// calculate the curve at the average elevation
-		GeodeticCurve averageCurve = calculateGeodeticCurve(ellipsoid, start, end);
+	/**
+	 * Arc sine, with StrictMath if this calculator is deterministic.
+	 * 
+	 * @param x
+	 *            sine of the angle
+	 * @return angle in radians
+	 */
+	private double asin(double x)
+	{
+		return mDeterministic ? StrictMath.asin(x) : Math.asin(x);
+	}
 
-		// return the measurement
-		return new GeodeticMeasurement(averageCurve, elev2 - elev1);
+	/**
+	 * Arc tangent, with StrictMath if this calculator is deterministic.
+	 * 
+	 * @param x
+	 *            tangent of the angle
+	 * @return angle in radians
+	 */
+	private double atan(double x)
+	{
+		return mDeterministic ? StrictMath.atan(x) : Math.atan(x);
+	}
+
+	/**
+	 * Two argument arc tangent, with StrictMath if this calculator is
+	 * deterministic.
+	 * 
+	 * @param y
+	 *            ordinate
+	 * @param x
+	 *            abscissa
+	 * @return angle in radians
+	 */
+	private double atan2(double y, double x)
+	{
+		return mDeterministic ? StrictMath.atan2(y, x) : Math.atan2(y, x);
+	}
+
+	/**
+	 * Power, with StrictMath if this calculator is deterministic.
+	 * 
+	 * @param x
+	 *            base
+	 * @param y
+	 *            exponent
+	 * @return x raised to the power y
+	 */
+	private double pow(double x, double y)
+	{
+		return mDeterministic ? StrictMath.pow(x, y) : Math.pow(x, y);
 	}
 }
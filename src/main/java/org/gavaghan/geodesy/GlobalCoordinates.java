@@ -73,9 +73,23 @@ public class GlobalCoordinates implements Comparable<GlobalCoordinates>, Seriali
 			mLongitude += 180;
 		}
 
-		mLongitude = ((mLongitude + 180) % 360);
-		if (mLongitude <= 0) mLongitude += 360;
-		mLongitude -= 180;
+		mLongitude = canonicalLongitude(mLongitude);
+	}
+
+	/**
+	 * Canonicalize a longitude such that -180 &lt; longitude &lt;= +180. This
+	 * is the same adjustment applied by the constructor, made available to
+	 * calculations that work on primitive coordinate arrays.
+	 * 
+	 * @param longitude
+	 *            longitude in degrees
+	 * @return canonical longitude in degrees
+	 */
+	static double canonicalLongitude(double longitude)
+	{
+		longitude = ((longitude + 180) % 360);
+		if (longitude <= 0) longitude += 360;
+		return longitude - 180;
 	}
 
 	/**
@@ -0,0 +1,231 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * A histogram of latencies in nanoseconds that many threads can record into
+ * at once without contending.
+ * </p>
+ * <p>
+ * Buckets are laid out as in HdrHistogram: values below 16 get a bucket each,
+ * and every power of two above that is split into 16 equal buckets, so a
+ * value is known to within 1/16 of itself whatever its magnitude. Values of
+ * 2^40 nanoseconds (about 18 minutes) or more share the last bucket. Each
+ * bucket is a LongAdder, which spreads updates from different threads over
+ * separate cells and only sums them when read.
+ * </p>
+ * <p>
+ * Reads are not atomic snapshots: a value recorded while the histogram is
+ * being read may be counted in some totals and not others.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class LatencyHistogram
+{
+	/** Bits of each value kept below its leading bit. */
+	static private final int SUB_BUCKET_BITS = 4;
+
+	/** Buckets per power of two. */
+	static private final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/** Leading bit of the largest value with a bucket of its own. */
+	static private final int MAX_MAGNITUDE = 39;
+
+	/** Number of buckets. */
+	static private final int BUCKETS = SUB_BUCKETS + (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	/** Count of each bucket. */
+	private final LongAdder[] mBuckets = new LongAdder[BUCKETS];
+
+	/** Sum of all values recorded. */
+	private final LongAdder mSum = new LongAdder();
+
+	/**
+	 * Create a new, empty LatencyHistogram.
+	 */
+	public LatencyHistogram()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+			mBuckets[i] = new LongAdder();
+	}
+
+	/**
+	 * Find the bucket of a value.
+	 * 
+	 * @param value
+	 *            latency in nanoseconds
+	 * @return index of the bucket
+	 */
+	static private int bucketOf(long value)
+	{
+		if (value < SUB_BUCKETS) return (value < 0) ? 0 : (int) value;
+
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		if (magnitude > MAX_MAGNITUDE) return BUCKETS - 1;
+
+		int shift = magnitude - SUB_BUCKET_BITS;
+		int sub = (int) (value >>> shift) - SUB_BUCKETS;
+
+		return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Record a latency.
+	 * 
+	 * @param nanos
+	 *            latency in nanoseconds; negative values count as zero
+	 */
+	public void record(long nanos)
+	{
+		mBuckets[bucketOf(nanos)].increment();
+		mSum.add(Math.max(nanos, 0L));
+	}
+
+	/**
+	 * Get the number of buckets.
+	 * 
+	 * @return number of buckets
+	 */
+	public int getBucketCount()
+	{
+		return BUCKETS;
+	}
+
+	/**
+	 * Get the smallest value counted in a bucket.
+	 * 
+	 * @param bucket
+	 *            index of the bucket
+	 * @return lower bound in nanoseconds (inclusive)
+	 */
+	public long getLowerBound(int bucket)
+	{
+		if (bucket < SUB_BUCKETS) return bucket;
+
+		int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+		int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+
+		return ((long) (SUB_BUCKETS + sub)) << shift;
+	}
+
+	/**
+	 * Get the value just past the largest counted in a bucket.
+	 * 
+	 * @param bucket
+	 *            index of the bucket
+	 * @return upper bound in nanoseconds (exclusive), or Long.MAX_VALUE for
+	 *         the last bucket
+	 */
+	public long getUpperBound(int bucket)
+	{
+		return (bucket == BUCKETS - 1) ? Long.MAX_VALUE : getLowerBound(bucket + 1);
+	}
+
+	/**
+	 * Get the number of values counted in a bucket.
+	 * 
+	 * @param bucket
+	 *            index of the bucket
+	 * @return number of values
+	 */
+	public long getCount(int bucket)
+	{
+		return mBuckets[bucket].sum();
+	}
+
+	/**
+	 * Get the number of values recorded.
+	 * 
+	 * @return number of values
+	 */
+	public long getCount()
+	{
+		long count = 0;
+
+		for (LongAdder bucket : mBuckets)
+			count += bucket.sum();
+
+		return count;
+	}
+
+	/**
+	 * Get the sum of the values recorded.
+	 * 
+	 * @return sum in nanoseconds
+	 */
+	public long getSum()
+	{
+		return mSum.sum();
+	}
+
+	/**
+	 * Estimate the value below which a fraction of the recorded values fall.
+	 * 
+	 * @param quantile
+	 *            fraction from 0 to 1, such as 0.99 for the 99th percentile
+	 * @return upper bound of the bucket holding that value in nanoseconds, or
+	 *         0 if nothing has been recorded
+	 */
+	public long getValueAtQuantile(double quantile)
+	{
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			counts[i] = mBuckets[i].sum();
+			total += counts[i];
+		}
+
+		if (total == 0) return 0L;
+
+		long rank = Math.max(1L, (long) Math.ceil(Math.min(Math.max(quantile, 0.0), 1.0) * total));
+		long seen = 0;
+
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += counts[i];
+			if (seen >= rank) return (i < SUB_BUCKETS) ? i : getUpperBound(i) - 1;
+		}
+
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Forget all recorded values.
+	 */
+	public void reset()
+	{
+		for (LongAdder bucket : mBuckets)
+			bucket.reset();
+
+		mSum.reset();
+	}
+}
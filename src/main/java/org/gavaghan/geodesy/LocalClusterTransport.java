@@ -0,0 +1,216 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * A PartitionedDistanceMatrix.Transport that simulates a cluster of worker
+ * nodes inside one process. Each node has its own DistanceMatrixWorker and
+ * its own fixed pool of threads, and tiles are dealt to the nodes in turn.
+ * </p>
+ * <p>
+ * Requests and responses are copied as they cross between the caller and a
+ * node, exactly as they would be on a network, so a node never shares memory
+ * with the caller. The bytes carried each way and the tiles processed by
+ * each node are counted, so the effect of tile size and node count can be
+ * measured on one machine before moving to a real transport.
+ * </p>
+ * <p>
+ * The transport must be closed when it is no longer needed to stop the node
+ * threads.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class LocalClusterTransport implements PartitionedDistanceMatrix.Transport, Closeable
+{
+	/** Thread pool of each node. */
+	private final ExecutorService[] mNodes;
+
+	/** Worker of each node. */
+	private final DistanceMatrixWorker[] mWorkers;
+
+	/** Number of tiles processed by each node. */
+	private final AtomicLongArray mTiles;
+
+	/** Node that receives the next tile. */
+	private final AtomicInteger mNext = new AtomicInteger();
+
+	/** Bytes carried to the nodes. */
+	private final AtomicLong mBytesSent = new AtomicLong();
+
+	/** Bytes carried back from the nodes. */
+	private final AtomicLong mBytesReceived = new AtomicLong();
+
+	/**
+	 * Create a new LocalClusterTransport with one thread per node.
+	 * 
+	 * @param nodes
+	 *            number of simulated nodes
+	 * @param calculator
+	 *            calculator used by every node
+	 */
+	public LocalClusterTransport(int nodes, GeodeticCalculator calculator)
+	{
+		this(nodes, 1, calculator);
+	}
+
+	/**
+	 * Create a new LocalClusterTransport.
+	 * 
+	 * @param nodes
+	 *            number of simulated nodes
+	 * @param threadsPerNode
+	 *            number of threads each node solves tiles with
+	 * @param calculator
+	 *            calculator used by every node
+	 */
+	public LocalClusterTransport(int nodes, int threadsPerNode, GeodeticCalculator calculator)
+	{
+		if (nodes < 1) throw new IllegalArgumentException("nodes must be positive");
+		if (threadsPerNode < 1) throw new IllegalArgumentException("threadsPerNode must be positive");
+
+		mNodes = new ExecutorService[nodes];
+		mWorkers = new DistanceMatrixWorker[nodes];
+		mTiles = new AtomicLongArray(nodes);
+
+		for (int n = 0; n < nodes; n++)
+		{
+			String name = "geodesy-node-" + n;
+			AtomicInteger threads = new AtomicInteger();
+
+			mWorkers[n] = new DistanceMatrixWorker(calculator);
+			mNodes[n] = Executors.newFixedThreadPool(threadsPerNode, runnable ->
+			{
+				Thread thread = new Thread(runnable, name + "-" + threads.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Deliver a tile request to the next node.
+	 * 
+	 * @param request
+	 *            the tile request
+	 * @return future holding the node's response
+	 */
+	@Override
+	public CompletableFuture<ByteBuffer> send(ByteBuffer request)
+	{
+		int node = Math.floorMod(mNext.getAndIncrement(), mNodes.length);
+		ByteBuffer wire = copy(request);
+
+		mBytesSent.addAndGet(wire.remaining());
+
+		return CompletableFuture.supplyAsync(() ->
+		{
+			ByteBuffer response = copy(mWorkers[node].process(wire));
+
+			mTiles.incrementAndGet(node);
+			mBytesReceived.addAndGet(response.remaining());
+			return response;
+		}, mNodes[node]);
+	}
+
+	/**
+	 * Get the number of simulated nodes.
+	 * 
+	 * @return number of nodes
+	 */
+	public int getNodeCount()
+	{
+		return mNodes.length;
+	}
+
+	/**
+	 * Get the number of tiles a node has processed.
+	 * 
+	 * @param node
+	 *            index of the node
+	 * @return number of tiles processed
+	 */
+	public long getTilesProcessed(int node)
+	{
+		return mTiles.get(node);
+	}
+
+	/**
+	 * Get the number of bytes carried to the nodes.
+	 * 
+	 * @return bytes of requests
+	 */
+	public long getBytesSent()
+	{
+		return mBytesSent.get();
+	}
+
+	/**
+	 * Get the number of bytes carried back from the nodes.
+	 * 
+	 * @return bytes of responses
+	 */
+	public long getBytesReceived()
+	{
+		return mBytesReceived.get();
+	}
+
+	/**
+	 * Stop the node threads. Tiles already delivered are still processed.
+	 */
+	@Override
+	public void close()
+	{
+		for (ExecutorService node : mNodes)
+			node.shutdown();
+	}
+
+	/**
+	 * Copy the remaining bytes of a buffer, as a network would.
+	 * 
+	 * @param buffer
+	 *            buffer to copy, from its position to its limit
+	 * @return a new buffer holding the copy, ready to read
+	 */
+	static private ByteBuffer copy(ByteBuffer buffer)
+	{
+		ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+
+		copy.put(buffer.duplicate());
+		copy.flip();
+		return copy;
+	}
+}
@@ -0,0 +1,271 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>
+ * A matrix of distances held in a memory-mapped file. The file holds nothing
+ * but the distances, row by row, as little-endian doubles, so cell (row,
+ * column) is at byte 8 * (row * columns + column) and the file can be read by
+ * other tools without a decoder.
+ * </p>
+ * <p>
+ * A single mapping is limited to 2GB, so the file is mapped as a number of
+ * bands of whole rows. Matrices much larger than physical memory can be
+ * written, since the operating system pages bands in and out as needed.
+ * </p>
+ * <p>
+ * Any number of threads may write disjoint cells at the same time. The
+ * matrix must be closed when it is no longer needed, after which every
+ * method except close() throws IllegalStateException. The library targets
+ * Java 8, so the mappings themselves are released when the collector
+ * reclaims them rather than at the moment of closing.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class MappedDistanceMatrix implements Closeable
+{
+	/** Bytes per cell. */
+	static public final int CELL_SIZE = 8;
+
+	/** Largest number of bytes in a band that holds more than one row. */
+	static private final long MAX_BAND_BYTES = 1L << 30;
+
+	/** The mapped file. */
+	private final RandomAccessFile mFile;
+
+	/** Number of rows. */
+	private final int mRows;
+
+	/** Number of columns. */
+	private final int mColumns;
+
+	/** Number of rows per band. */
+	private final int mBandRows;
+
+	/** Mapped bands of whole rows. */
+	private final MappedByteBuffer[] mMappings;
+
+	/** Little-endian views of the mapped bands. */
+	private final DoubleBuffer[] mBands;
+
+	/** Has the matrix been closed? */
+	private volatile boolean mClosed;
+
+	/**
+	 * Create a matrix, or open an existing one, in a file. The file is sized
+	 * to hold exactly rows * columns cells; cells that are never written read
+	 * as zero in a new file.
+	 * 
+	 * @param file
+	 *            file holding the matrix
+	 * @param rows
+	 *            number of rows
+	 * @param columns
+	 *            number of columns
+	 * @throws IOException
+	 *             if the file cannot be sized or mapped
+	 */
+	public MappedDistanceMatrix(File file, int rows, int columns) throws IOException
+	{
+		if (rows < 0) throw new IllegalArgumentException("rows must not be negative");
+		if (columns < 1) throw new IllegalArgumentException("columns must be positive");
+		if ((long) columns * CELL_SIZE > Integer.MAX_VALUE) throw new IllegalArgumentException("too many columns to map a row");
+
+		long rowBytes = (long) columns * CELL_SIZE;
+
+		mRows = rows;
+		mColumns = columns;
+		mBandRows = (int) Math.max(1, Math.min(rows, MAX_BAND_BYTES / rowBytes));
+		mMappings = new MappedByteBuffer[(rows + mBandRows - 1) / mBandRows];
+		mBands = new DoubleBuffer[mMappings.length];
+		mFile = new RandomAccessFile(file, "rw");
+
+		try
+		{
+			mFile.setLength(rows * rowBytes);
+
+			FileChannel channel = mFile.getChannel();
+			for (int b = 0; b < mBands.length; b++)
+			{
+				long first = (long) b * mBandRows;
+				long count = Math.min(mBandRows, rows - first);
+				mMappings[b] = channel.map(FileChannel.MapMode.READ_WRITE, first * rowBytes, count * rowBytes);
+				mBands[b] = mMappings[b].order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+			}
+		}
+		catch (IOException | RuntimeException ex)
+		{
+			mFile.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Get the number of rows.
+	 * 
+	 * @return number of rows
+	 */
+	public int getRowCount()
+	{
+		return mRows;
+	}
+
+	/**
+	 * Get the number of columns.
+	 * 
+	 * @return number of columns
+	 */
+	public int getColumnCount()
+	{
+		return mColumns;
+	}
+
+	/**
+	 * Get one distance.
+	 * 
+	 * @param row
+	 *            row of the cell
+	 * @param column
+	 *            column of the cell
+	 * @return distance held in the cell
+	 */
+	public double get(int row, int column)
+	{
+		checkCell(row, column, 1);
+
+		return mBands[row / mBandRows].get((row % mBandRows) * mColumns + column);
+	}
+
+	/**
+	 * Copy consecutive distances from one row into a primitive array.
+	 * 
+	 * @param row
+	 *            row of the cells
+	 * @param column
+	 *            column of the first cell
+	 * @param distances
+	 *            receives the distances
+	 * @param offset
+	 *            index of the first distance in 'distances'
+	 * @param count
+	 *            number of cells
+	 */
+	public void read(int row, int column, double[] distances, int offset, int count)
+	{
+		checkCell(row, column, count);
+
+		DoubleBuffer band = mBands[row / mBandRows].duplicate();
+		band.position((row % mBandRows) * mColumns + column);
+		band.get(distances, offset, count);
+	}
+
+	/**
+	 * Copy consecutive distances from a primitive array into one row.
+	 * 
+	 * @param row
+	 *            row of the cells
+	 * @param column
+	 *            column of the first cell
+	 * @param distances
+	 *            distances to write
+	 * @param offset
+	 *            index of the first distance in 'distances'
+	 * @param count
+	 *            number of cells
+	 */
+	public void write(int row, int column, double[] distances, int offset, int count)
+	{
+		checkCell(row, column, count);
+
+		DoubleBuffer band = mBands[row / mBandRows].duplicate();
+		band.position((row % mBandRows) * mColumns + column);
+		band.put(distances, offset, count);
+	}
+
+	/**
+	 * Write every modified band back to the file.
+	 */
+	public void flush()
+	{
+		checkOpen();
+
+		for (MappedByteBuffer mapping : mMappings)
+			mapping.force();
+	}
+
+	/**
+	 * Flush the matrix and close the file.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be closed
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (mClosed) return;
+
+		flush();
+		mClosed = true;
+		mFile.close();
+	}
+
+	/**
+	 * Check that a run of cells lies within one row of the matrix.
+	 * 
+	 * @param row
+	 *            row of the cells
+	 * @param column
+	 *            column of the first cell
+	 * @param count
+	 *            number of cells
+	 */
+	private void checkCell(int row, int column, int count)
+	{
+		checkOpen();
+
+		if ((row < 0) || (row >= mRows)) throw new IndexOutOfBoundsException("row " + row);
+		if ((column < 0) || (count < 0) || (column > mColumns - count)) throw new IndexOutOfBoundsException("columns " + column + " to " + (column + count));
+	}
+
+	/**
+	 * Check that the matrix is still open.
+	 */
+	private void checkOpen()
+	{
+		if (mClosed) throw new IllegalStateException("matrix is closed");
+	}
+}
@@ -0,0 +1,403 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * <p>
+ * Prepared set of candidate coordinates that can be visited in order of
+ * increasing ellipsoidal distance from an arbitrary origin.
+ * </p>
+ * <p>
+ * The straight line (chord) distance between two points on the ellipsoid can
+ * never exceed the length of the geodetic curve between them, so it serves as
+ * a cheap lower bound. Each candidate's earth centered cartesian position is
+ * computed once, up front. A query orders the candidates by chord distance and
+ * only solves the inverse problem for a candidate once its lower bound is
+ * small enough that it might be the next nearest. Stopping after the first few
+ * results therefore costs only a handful of Vincenty solutions.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class NearestNeighborSearch
+{
+	/** Calculator for exact distances. */
+	private final GeodeticCalculator mCalculator;
+
+	/** Reference ellipsoid. */
+	private final Ellipsoid mEllipsoid;
+
+	/** Interleaved latitude/longitude pairs of the candidates. */
+	private final double[] mLatLon;
+
+	/** Cartesian coordinates of the candidates. */
+	private final double[] mXyz;
+
+	/** Number of candidates. */
+	private final int mCount;
+
+	/**
+	 * Create a new NearestNeighborSearch over candidates held in an array of
+	 * interleaved latitude/longitude pairs. The array is copied.
+	 * 
+	 * @param calculator
+	 *            calculator for exact distances
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 * @param latLon
+	 *            candidate coordinates (2 * count elements)
+	 * @param count
+	 *            number of candidates
+	 */
+	public NearestNeighborSearch(GeodeticCalculator calculator, Ellipsoid ellipsoid, double[] latLon, int count)
+	{
+		mCalculator = calculator;
+		mEllipsoid = ellipsoid;
+		mCount = count;
+		mLatLon = new double[2 * count];
+		mXyz = new double[3 * count];
+
+		System.arraycopy(latLon, 0, mLatLon, 0, 2 * count);
+
+		for (int i = 0; i < count; i++)
+		{
+			Geocentric.toCartesian(ellipsoid, mLatLon[2 * i], mLatLon[2 * i + 1], 0.0, mXyz, 3 * i);
+		}
+	}
+
+	/**
+	 * Create a new NearestNeighborSearch over a list of candidates.
+	 * 
+	 * @param calculator
+	 *            calculator for exact distances
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 * @param candidates
+	 *            candidate coordinates
+	 */
+	public NearestNeighborSearch(GeodeticCalculator calculator, Ellipsoid ellipsoid, List<? extends GlobalCoordinates> candidates)
+	{
+		this(calculator, ellipsoid, toLatLon(candidates), candidates.size());
+	}
+
+	/**
+	 * Get the number of candidates.
+	 * 
+	 * @return number of candidates
+	 */
+	public int size()
+	{
+		return mCount;
+	}
+
+	/**
+	 * Get an iterator that yields candidate indices in order of increasing
+	 * ellipsoidal distance from an origin.
+	 * 
+	 * @param origin
+	 *            origin of the search
+	 * @return nearest-first iterator
+	 */
+	public NearestNeighborIterator nearest(GlobalCoordinates origin)
+	{
+		return new NearestNeighborIterator(origin.getLatitude(), origin.getLongitude());
+	}
+
+	/**
+	 * Convert a list of coordinates to interleaved latitude/longitude pairs.
+	 * 
+	 * @param coords
+	 *            coordinates to convert
+	 * @return interleaved pairs
+	 */
+	static private double[] toLatLon(List<? extends GlobalCoordinates> coords)
+	{
+		double[] latLon = new double[2 * coords.size()];
+		int i = 0;
+
+		for (GlobalCoordinates c : coords)
+		{
+			latLon[i++] = c.getLatitude();
+			latLon[i++] = c.getLongitude();
+		}
+
+		return latLon;
+	}
+
+	/**
+	 * Lazily yields candidate indices in order of increasing ellipsoidal
+	 * distance from a fixed origin. Instances are not thread safe.
+	 */
+	public class NearestNeighborIterator implements PrimitiveIterator.OfInt
+	{
+		/** Candidates not yet solved, keyed by chord distance. */
+		private final Heap mBounds;
+
+		/** Candidates already solved, keyed by ellipsoidal distance. */
+		private final Heap mSolved = new Heap(16);
+
+		/** Origin used for the exact distance calculation. */
+		private final double[] mStart = new double[2];
+
+		/** Candidate used for the exact distance calculation. */
+		private final double[] mEnd = new double[2];
+
+		/** Receives the exact distance. */
+		private final double[] mDistance = new double[1];
+
+		/** Distance of the candidate most recently returned. */
+		private double mLastDistance = Double.NaN;
+
+		/** Number of exact distances calculated. */
+		private int mSolutions;
+
+		/**
+		 * Create a new NearestNeighborIterator.
+		 * 
+		 * @param latitude
+		 *            latitude of the origin in degrees
+		 * @param longitude
+		 *            longitude of the origin in degrees
+		 */
+		NearestNeighborIterator(double latitude, double longitude)
+		{
+			double[] origin = new double[3];
+
+			Geocentric.toCartesian(mEllipsoid, latitude, longitude, 0.0, origin, 0);
+			mStart[0] = latitude;
+			mStart[1] = longitude;
+
+			mBounds = new Heap(mCount);
+
+			for (int i = 0; i < mCount; i++)
+			{
+				double dx = mXyz[3 * i] - origin[0];
+				double dy = mXyz[3 * i + 1] - origin[1];
+				double dz = mXyz[3 * i + 2] - origin[2];
+
+				mBounds.append(Math.sqrt(dx * dx + dy * dy + dz * dz), i);
+			}
+
+			mBounds.heapify();
+		}
+
+		/**
+		 * Determine if there are more candidates.
+		 * 
+		 * @return 'true' if nextInt() will return a candidate
+		 */
+		public boolean hasNext()
+		{
+			return (mBounds.size() > 0) || (mSolved.size() > 0);
+		}
+
+		/**
+		 * Get the index of the next nearest candidate.
+		 * 
+		 * @return index of the candidate
+		 */
+		public int nextInt()
+		{
+			if (!hasNext()) throw new NoSuchElementException();
+
+			// solve every candidate whose lower bound beats the best solution
+			while ((mBounds.size() > 0) && ((mSolved.size() == 0) || (mBounds.peekKey() < mSolved.peekKey())))
+			{
+				int index = mBounds.peekValue();
+
+				mBounds.pop();
+				mEnd[0] = mLatLon[2 * index];
+				mEnd[1] = mLatLon[2 * index + 1];
+				mCalculator.calculateEllipsoidalDistances(mEllipsoid, mStart, mEnd, 1, mDistance);
+				mSolved.push(mDistance[0], index);
+				mSolutions++;
+			}
+
+			int index = mSolved.peekValue();
+
+			mLastDistance = mSolved.peekKey();
+			mSolved.pop();
+
+			return index;
+		}
+
+		/**
+		 * Get the ellipsoidal distance to the candidate most recently returned
+		 * by nextInt().
+		 * 
+		 * @return ellipsoidal distance in meters
+		 */
+		public double getDistance()
+		{
+			return mLastDistance;
+		}
+
+		/**
+		 * Get the latitude of a candidate.
+		 * 
+		 * @param index
+		 *            index of the candidate
+		 * @return latitude in degrees
+		 */
+		public double getLatitude(int index)
+		{
+			return mLatLon[2 * index];
+		}
+
+		/**
+		 * Get the longitude of a candidate.
+		 * 
+		 * @param index
+		 *            index of the candidate
+		 * @return longitude in degrees
+		 */
+		public double getLongitude(int index)
+		{
+			return mLatLon[2 * index + 1];
+		}
+
+		/**
+		 * Get the number of exact distances calculated so far.
+		 * 
+		 * @return number of inverse solutions
+		 */
+		public int getSolutionCount()
+		{
+			return mSolutions;
+		}
+	}
+
+	/**
+	 * Binary min-heap of integer values keyed by double.
+	 */
+	static private final class Heap
+	{
+		private double[] mKeys;
+		private int[] mValues;
+		private int mSize;
+
+		Heap(int capacity)
+		{
+			mKeys = new double[Math.max(capacity, 1)];
+			mValues = new int[Math.max(capacity, 1)];
+		}
+
+		int size()
+		{
+			return mSize;
+		}
+
+		double peekKey()
+		{
+			return mKeys[0];
+		}
+
+		int peekValue()
+		{
+			return mValues[0];
+		}
+
+		/** Add an entry without restoring heap order. */
+		void append(double key, int value)
+		{
+			if (mSize == mKeys.length)
+			{
+				mKeys = Arrays.copyOf(mKeys, 2 * mSize);
+				mValues = Arrays.copyOf(mValues, 2 * mSize);
+			}
+
+			mKeys[mSize] = key;
+			mValues[mSize] = value;
+			mSize++;
+		}
+
+		/** Restore heap order after a series of appends. */
+		void heapify()
+		{
+			for (int i = (mSize >>> 1) - 1; i >= 0; i--)
+			{
+				siftDown(i);
+			}
+		}
+
+		void push(double key, int value)
+		{
+			append(key, value);
+
+			int i = mSize - 1;
+
+			while (i > 0)
+			{
+				int parent = (i - 1) >>> 1;
+
+				if (!(mKeys[i] < mKeys[parent])) break;
+
+				swap(i, parent);
+				i = parent;
+			}
+		}
+
+		void pop()
+		{
+			mSize--;
+			mKeys[0] = mKeys[mSize];
+			mValues[0] = mValues[mSize];
+			siftDown(0);
+		}
+
+		private void siftDown(int i)
+		{
+			for (;;)
+			{
+				int smallest = i;
+				int left = 2 * i + 1;
+				int right = left + 1;
+
+				if ((left < mSize) && (mKeys[left] < mKeys[smallest])) smallest = left;
+				if ((right < mSize) && (mKeys[right] < mKeys[smallest])) smallest = right;
+				if (smallest == i) return;
+
+				swap(i, smallest);
+				i = smallest;
+			}
+		}
+
+		private void swap(int i, int j)
+		{
+			double key = mKeys[i];
+			int value = mValues[i];
+
+			mKeys[i] = mKeys[j];
+			mValues[i] = mValues[j];
+			mKeys[j] = key;
+			mValues[j] = value;
+		}
+	}
+}
@@ -0,0 +1,438 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Append-only store of latitude/longitude pairs held outside the Java heap.
+ * Each point occupies 16 bytes of native memory in fixed size chunks, so the
+ * garbage collector only ever sees a handful of small objects regardless of
+ * how many points are resident.
+ * </p>
+ * <p>
+ * Points are stored as given, so callers should supply canonical coordinates
+ * (see GlobalCoordinates). Data can be copied out in blocks into primitive
+ * arrays laid out for the batch methods of GeodeticCalculator.
+ * </p>
+ * <p>
+ * The store must be closed when it is no longer needed. After closing, every
+ * method except close() throws IllegalStateException. The library targets
+ * Java 8, so the native memory of each chunk is released when the collector
+ * reclaims the chunk's buffer rather than at the moment of closing.
+ * </p>
+ * <p>
+ * Instances are not safe for concurrent modification, but any number of
+ * threads may read a store that is no longer being appended to.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class OffHeapCoordinateStore implements Closeable
+{
+	/** Log base 2 of the number of points per chunk. */
+	static private final int CHUNK_SHIFT = 20;
+
+	/** Number of points per chunk. */
+	static private final int CHUNK_POINTS = 1 << CHUNK_SHIFT;
+
+	/** Mask of a point's index within its chunk. */
+	static private final int CHUNK_MASK = CHUNK_POINTS - 1;
+
+	/** Number of points handed to the batch solvers at a time. */
+	static private final int BLOCK_POINTS = 1024;
+
+	/** Chunks of interleaved latitude/longitude pairs. */
+	private DoubleBuffer[] mChunks = new DoubleBuffer[4];
+
+	/** Number of chunks allocated. */
+	private int mChunkCount;
+
+	/** Number of points stored. */
+	private int mSize;
+
+	/** Has the store been closed? */
+	private boolean mClosed;
+
+	/**
+	 * Get the number of points in the store.
+	 * 
+	 * @return number of points
+	 */
+	public int size()
+	{
+		checkOpen();
+		return mSize;
+	}
+
+	/**
+	 * Append a point.
+	 * 
+	 * @param latitude
+	 *            latitude in degrees
+	 * @param longitude
+	 *            longitude in degrees
+	 * @return index of the new point
+	 */
+	public int append(double latitude, double longitude)
+	{
+		checkOpen();
+
+		if (mSize == Integer.MAX_VALUE) throw new IllegalStateException("store is full");
+
+		int index = mSize;
+		int chunk = index >>> CHUNK_SHIFT;
+
+		if (chunk == mChunkCount) allocateChunk();
+
+		DoubleBuffer buffer = mChunks[chunk];
+		int position = (index & CHUNK_MASK) << 1;
+		buffer.put(position, latitude);
+		buffer.put(position + 1, longitude);
+
+		mSize++;
+		return index;
+	}
+
+	/**
+	 * Append a point.
+	 * 
+	 * @param coords
+	 *            coordinates to append
+	 * @return index of the new point
+	 */
+	public int append(GlobalCoordinates coords)
+	{
+		return append(coords.getLatitude(), coords.getLongitude());
+	}
+
+	/**
+	 * Append a block of interleaved latitude/longitude pairs.
+	 * 
+	 * @param latLon
+	 *            source array
+	 * @param offset
+	 *            index of the first point in the source array
+	 * @param count
+	 *            number of points to append
+	 */
+	public void append(double[] latLon, int offset, int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			append(latLon[2 * (offset + i)], latLon[2 * (offset + i) + 1]);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Append a block of interleaved latitude/longitude pairs sorted in the
+	 * order defined by GlobalCoordinates.compareTo() (west to east, then south
+	 * to north). The source array is left untouched.
+	 * </p>
+	 * <p>
+	 * Loading data in this order keeps nearby points close together in memory,
+	 * which improves locality for scans that follow spatial order.
+	 * </p>
+	 * 
+	 * @param latLon
+	 *            source array
+	 * @param offset
+	 *            index of the first point in the source array
+	 * @param count
+	 *            number of points to append
+	 */
+	public void appendSorted(double[] latLon, int offset, int count)
+	{
+		double[] sorted = Arrays.copyOfRange(latLon, 2 * offset, 2 * (offset + count));
+
+		sortPairs(sorted, 0, count - 1);
+		append(sorted, 0, count);
+	}
+
+	/**
+	 * Get the latitude of a point.
+	 * 
+	 * @param index
+	 *            index of the point
+	 * @return latitude in degrees
+	 */
+	public double getLatitude(int index)
+	{
+		checkIndex(index);
+		return mChunks[index >>> CHUNK_SHIFT].get((index & CHUNK_MASK) << 1);
+	}
+
+	/**
+	 * Get the longitude of a point.
+	 * 
+	 * @param index
+	 *            index of the point
+	 * @return longitude in degrees
+	 */
+	public double getLongitude(int index)
+	{
+		checkIndex(index);
+		return mChunks[index >>> CHUNK_SHIFT].get(((index & CHUNK_MASK) << 1) + 1);
+	}
+
+	/**
+	 * Get a point as a new GlobalCoordinates.
+	 * 
+	 * @param index
+	 *            index of the point
+	 * @return coordinates of the point
+	 */
+	public GlobalCoordinates getGlobalCoordinates(int index)
+	{
+		return new GlobalCoordinates(getLatitude(index), getLongitude(index));
+	}
+
+	/**
+	 * Copy a block of points into an array of interleaved latitude/longitude
+	 * pairs, as used by the batch methods of GeodeticCalculator.
+	 * 
+	 * @param from
+	 *            index of the first point to copy
+	 * @param latLon
+	 *            destination array
+	 * @param offset
+	 *            index of the first point in the destination array
+	 * @param count
+	 *            number of points to copy
+	 */
+	public void read(int from, double[] latLon, int offset, int count)
+	{
+		checkOpen();
+
+		if ((from < 0) || (count < 0) || (from > mSize - count)) throw new IndexOutOfBoundsException("from=" + from + ";count=" + count + ";size=" + mSize);
+
+		while (count > 0)
+		{
+			int position = from & CHUNK_MASK;
+			int n = Math.min(count, CHUNK_POINTS - position);
+			DoubleBuffer buffer = mChunks[from >>> CHUNK_SHIFT].duplicate();
+
+			buffer.position(position << 1);
+			buffer.get(latLon, offset << 1, n << 1);
+
+			from += n;
+			offset += n;
+			count -= n;
+		}
+	}
+
+	/**
+	 * Calculate the ellipsoidal distances from an origin to a range of points
+	 * in the store. Points are handed to the calculator's batch solver in
+	 * blocks, so the heap used is small and independent of 'count'.
+	 * 
+	 * @param calculator
+	 *            calculator to use
+	 * @param ellipsoid
+	 *            reference ellipsoid to use
+	 * @param origin
+	 *            starting coordinates
+	 * @param from
+	 *            index of the first point
+	 * @param count
+	 *            number of points
+	 * @param distances
+	 *            receives the ellipsoidal distances in meters (count elements)
+	 */
+	public void calculateEllipsoidalDistances(GeodeticCalculator calculator, Ellipsoid ellipsoid, GlobalCoordinates origin, int from, int count, double[] distances)
+	{
+		int block = Math.min(count, BLOCK_POINTS);
+		double[] starts = new double[2 * block];
+		double[] ends = new double[2 * block];
+		double[] blockDistances = new double[block];
+
+		for (int i = 0; i < block; i++)
+		{
+			starts[2 * i] = origin.getLatitude();
+			starts[2 * i + 1] = origin.getLongitude();
+		}
+
+		for (int done = 0; done < count; done += block)
+		{
+			int n = Math.min(block, count - done);
+
+			read(from + done, ends, 0, n);
+			calculator.calculateEllipsoidalDistances(ellipsoid, starts, ends, n, blockDistances);
+			System.arraycopy(blockDistances, 0, distances, done, n);
+		}
+	}
+
+	/**
+	 * Release the store. Closing an already closed store has no effect.
+	 */
+	public void close()
+	{
+		mClosed = true;
+		mChunks = null;
+		mChunkCount = 0;
+		mSize = 0;
+	}
+
+	/**
+	 * Allocate another chunk of native memory.
+	 */
+	private void allocateChunk()
+	{
+		if (mChunkCount == mChunks.length) mChunks = Arrays.copyOf(mChunks, 2 * mChunks.length);
+
+		ByteBuffer bytes = ByteBuffer.allocateDirect(CHUNK_POINTS * 16).order(ByteOrder.nativeOrder());
+
+		mChunks[mChunkCount++] = bytes.asDoubleBuffer();
+	}
+
+	/**
+	 * Sort a range of interleaved latitude/longitude pairs in place, by
+	 * longitude and then latitude.
+	 * 
+	 * @param latLon
+	 *            pairs to sort
+	 * @param lo
+	 *            index of the first pair in the range
+	 * @param hi
+	 *            index of the last pair in the range
+	 */
+	static private void sortPairs(double[] latLon, int lo, int hi)
+	{
+		while (hi - lo > 16)
+		{
+			// partition around the middle pair
+			int mid = (lo + hi) >>> 1;
+			double pivotLat = latLon[2 * mid];
+			double pivotLon = latLon[2 * mid + 1];
+			int i = lo;
+			int j = hi;
+
+			while (i <= j)
+			{
+				while (comparePair(latLon, i, pivotLat, pivotLon) < 0) i++;
+				while (comparePair(latLon, j, pivotLat, pivotLon) > 0) j--;
+
+				if (i <= j) swapPairs(latLon, i++, j--);
+			}
+
+			// recurse into the smaller side to bound stack depth
+			if (j - lo < hi - i)
+			{
+				sortPairs(latLon, lo, j);
+				lo = i;
+			}
+			else
+			{
+				sortPairs(latLon, i, hi);
+				hi = j;
+			}
+		}
+
+		for (int i = lo + 1; i <= hi; i++)
+		{
+			for (int j = i; (j > lo) && (comparePair(latLon, j, latLon[2 * j - 2], latLon[2 * j - 1]) < 0); j--)
+			{
+				swapPairs(latLon, j, j - 1);
+			}
+		}
+	}
+
+	/**
+	 * Compare a pair in an array against a given latitude and longitude, in
+	 * the order used by GlobalCoordinates.compareTo().
+	 * 
+	 * @param latLon
+	 *            array of pairs
+	 * @param index
+	 *            index of the pair
+	 * @param latitude
+	 *            latitude to compare against
+	 * @param longitude
+	 *            longitude to compare against
+	 * @return -1, 0, or +1 as per Comparable contract
+	 */
+	static private int comparePair(double[] latLon, int index, double latitude, double longitude)
+	{
+		double lon = latLon[2 * index + 1];
+
+		if (lon < longitude) return -1;
+		if (lon > longitude) return +1;
+
+		double lat = latLon[2 * index];
+
+		if (lat < latitude) return -1;
+		if (lat > latitude) return +1;
+
+		return 0;
+	}
+
+	/**
+	 * Swap two pairs in an array.
+	 * 
+	 * @param latLon
+	 *            array of pairs
+	 * @param i
+	 *            index of the first pair
+	 * @param j
+	 *            index of the second pair
+	 */
+	static private void swapPairs(double[] latLon, int i, int j)
+	{
+		double lat = latLon[2 * i];
+		double lon = latLon[2 * i + 1];
+
+		latLon[2 * i] = latLon[2 * j];
+		latLon[2 * i + 1] = latLon[2 * j + 1];
+		latLon[2 * j] = lat;
+		latLon[2 * j + 1] = lon;
+	}
+
+	/**
+	 * Make sure the store hasn't been closed.
+	 */
+	private void checkOpen()
+	{
+		if (mClosed) throw new IllegalStateException("store is closed");
+	}
+
+	/**
+	 * Make sure an index refers to a stored point.
+	 * 
+	 * @param index
+	 *            index to check
+	 */
+	private void checkIndex(int index)
+	{
+		checkOpen();
+
+		if ((index < 0) || (index >= mSize)) throw new IndexOutOfBoundsException("index=" + index + ";size=" + mSize);
+	}
+}
@@ -0,0 +1,285 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * Computes an origin-destination matrix of ellipsoidal distances that is too
+ * large for one machine. The matrix is split into square tiles, each tile's
+ * origins and destinations are encoded as a compact, self-contained request
+ * (see DistanceMatrixWorker), and the requests are handed to a Transport that
+ * delivers them to workers wherever they run. Responses are written into a
+ * MappedDistanceMatrix as they arrive, in any order.
+ * </p>
+ * <p>
+ * A request carries 16 bytes per coordinate while its response carries 8
+ * bytes per cell, so for tiles of a few hundred points or more nearly all of
+ * the traffic is results. The number of tiles in flight is bounded, which
+ * bounds the memory held by requests and responses.
+ * </p>
+ * <p>
+ * LocalClusterTransport simulates several worker nodes in one process, so
+ * partitioning and scaling can be tested without a cluster.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class PartitionedDistanceMatrix
+{
+	/**
+	 * Carries tile requests to workers and their responses back.
+	 */
+	public interface Transport
+	{
+		/**
+		 * Deliver a tile request to a worker.
+		 * 
+		 * @param request
+		 *            the tile request, from its position to its limit; it is
+		 *            not touched again by the caller
+		 * @return future holding the worker's response, from its position to
+		 *         its limit, or completed exceptionally if the tile failed
+		 */
+		CompletableFuture<ByteBuffer> send(ByteBuffer request);
+	}
+
+	/**
+	 * Largest number of points along a side of a tile, so that the response
+	 * to a full tile is no larger than a worker will build.
+	 */
+	static public final int MAX_TILE_SIZE = (int) Math.sqrt((DistanceMatrixWorker.MAX_RESPONSE_SIZE - DistanceMatrixWorker.RESPONSE_HEADER_SIZE) / DistanceMatrixWorker.CELL_SIZE);
+
+	/** Reference ellipsoid. */
+	private final Ellipsoid mEllipsoid;
+
+	/** Interleaved latitude/longitude pairs of the origins. */
+	private final double[] mOrigins;
+
+	/** Number of origins (rows). */
+	private final int mOriginCount;
+
+	/** Interleaved latitude/longitude pairs of the destinations. */
+	private final double[] mDestinations;
+
+	/** Number of destinations (columns). */
+	private final int mDestinationCount;
+
+	/** Number of points along a side of a tile. */
+	private final int mTileSize;
+
+	/** Number of tiles down the matrix. */
+	private final int mTileRows;
+
+	/** Number of tiles across the matrix. */
+	private final int mTileColumns;
+
+	/**
+	 * Create a new PartitionedDistanceMatrix. The coordinate arrays are not
+	 * copied and must not change while the matrix is computed.
+	 * 
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 * @param origins
+	 *            origin coordinates (2 * originCount elements)
+	 * @param originCount
+	 *            number of origins, which are the rows of the matrix
+	 * @param destinations
+	 *            destination coordinates (2 * destinationCount elements)
+	 * @param destinationCount
+	 *            number of destinations, which are the columns of the matrix
+	 * @param tileSize
+	 *            number of points along a side of a tile
+	 */
+	public PartitionedDistanceMatrix(Ellipsoid ellipsoid, double[] origins, int originCount, double[] destinations, int destinationCount, int tileSize)
+	{
+		if (ellipsoid == null) throw new IllegalArgumentException("ellipsoid must not be null");
+		if ((originCount < 0) || (origins.length < 2L * originCount)) throw new IllegalArgumentException("origins must hold originCount coordinates");
+		if ((destinationCount < 0) || (destinations.length < 2L * destinationCount)) throw new IllegalArgumentException("destinations must hold destinationCount coordinates");
+		if ((tileSize < 1) || (tileSize > MAX_TILE_SIZE)) throw new IllegalArgumentException("tileSize must be between 1 and " + MAX_TILE_SIZE);
+		if ((long) ((originCount + tileSize - 1) / tileSize) * ((destinationCount + tileSize - 1) / tileSize) > Integer.MAX_VALUE) throw new IllegalArgumentException("tileSize too small for the matrix");
+
+		mEllipsoid = ellipsoid;
+		mOrigins = origins;
+		mOriginCount = originCount;
+		mDestinations = destinations;
+		mDestinationCount = destinationCount;
+		mTileSize = tileSize;
+		mTileRows = (originCount + tileSize - 1) / tileSize;
+		mTileColumns = (destinationCount + tileSize - 1) / tileSize;
+	}
+
+	/**
+	 * Get the number of tiles. Tiles are numbered row by row.
+	 * 
+	 * @return number of tiles
+	 */
+	public int getTileCount()
+	{
+		return mTileRows * mTileColumns;
+	}
+
+	/**
+	 * Encode the request for one tile.
+	 * 
+	 * @param tile
+	 *            index of the tile
+	 * @return the request, ready to read
+	 */
+	public ByteBuffer encodeTile(int tile)
+	{
+		if ((tile < 0) || (tile >= getTileCount())) throw new IndexOutOfBoundsException("tile " + tile);
+
+		int firstOrigin = (tile / mTileColumns) * mTileSize;
+		int firstDestination = (tile % mTileColumns) * mTileSize;
+		int originCount = Math.min(mTileSize, mOriginCount - firstOrigin);
+		int destinationCount = Math.min(mTileSize, mDestinationCount - firstDestination);
+		ByteBuffer request = ByteBuffer.allocate(DistanceMatrixWorker.REQUEST_HEADER_SIZE + 16 * (originCount + destinationCount)).order(ByteOrder.LITTLE_ENDIAN);
+
+		request.putInt(tile);
+		request.putDouble(mEllipsoid.getSemiMajorAxis());
+		request.putDouble(mEllipsoid.getFlattening());
+		request.putInt(originCount);
+		request.putInt(destinationCount);
+		GeodesyCodec.write(request, mOrigins, 2 * firstOrigin, 2 * originCount);
+		GeodesyCodec.write(request, mDestinations, 2 * firstDestination, 2 * destinationCount);
+
+		request.flip();
+		return request;
+	}
+
+	/**
+	 * Write the response for one tile into the output matrix.
+	 * 
+	 * @param response
+	 *            the response, from its position to its limit
+	 * @param output
+	 *            receives the tile's distances
+	 * @return index of the tile
+	 */
+	public int decodeTile(ByteBuffer response, MappedDistanceMatrix output)
+	{
+		ByteBuffer in = response.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		if (in.remaining() < DistanceMatrixWorker.RESPONSE_HEADER_SIZE) throw new IllegalArgumentException("truncated tile response");
+
+		int tile = in.getInt();
+		int originCount = in.getInt();
+		int destinationCount = in.getInt();
+
+		if ((tile < 0) || (tile >= getTileCount())) throw new IllegalArgumentException("unknown tile " + tile);
+
+		int firstOrigin = (tile / mTileColumns) * mTileSize;
+		int firstDestination = (tile % mTileColumns) * mTileSize;
+
+		if ((originCount != Math.min(mTileSize, mOriginCount - firstOrigin)) || (destinationCount != Math.min(mTileSize, mDestinationCount - firstDestination))
+				|| (in.remaining() != (long) DistanceMatrixWorker.CELL_SIZE * originCount * destinationCount))
+		{
+			throw new IllegalArgumentException("malformed response for tile " + tile);
+		}
+
+		double[] row = new double[destinationCount];
+		for (int i = 0; i < originCount; i++)
+		{
+			GeodesyCodec.read(in, row, 0, destinationCount);
+			output.write(firstOrigin + i, firstDestination, row, 0, destinationCount);
+		}
+
+		return tile;
+	}
+
+	/**
+	 * Compute every tile of the matrix through a transport and write the
+	 * results into a memory-mapped matrix. This returns once every tile has
+	 * been written, or throws once the tiles in flight have settled after
+	 * the first failure.
+	 * 
+	 * @param transport
+	 *            carries the tiles to workers
+	 * @param output
+	 *            receives the distances (originCount rows by
+	 *            destinationCount columns)
+	 * @param maxInFlight
+	 *            largest number of tiles sent but not yet written
+	 * @throws IOException
+	 *             if any tile fails
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for tiles
+	 */
+	public void compute(Transport transport, MappedDistanceMatrix output, int maxInFlight) throws IOException, InterruptedException
+	{
+		if ((output.getRowCount() != mOriginCount) || (output.getColumnCount() != mDestinationCount)) throw new IllegalArgumentException("output must be originCount by destinationCount");
+		if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be positive");
+
+		Semaphore inFlight = new Semaphore(maxInFlight);
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		for (int t = 0; (t < getTileCount()) && (failure.get() == null); t++)
+		{
+			inFlight.acquire();
+
+			CompletableFuture<ByteBuffer> future;
+			try
+			{
+				future = transport.send(encodeTile(t));
+			}
+			catch (RuntimeException ex)
+			{
+				failure.compareAndSet(null, ex);
+				inFlight.release();
+				break;
+			}
+
+			future.whenComplete((response, ex) ->
+			{
+				try
+				{
+					if (ex != null) failure.compareAndSet(null, ex);
+					else decodeTile(response, output);
+				}
+				catch (RuntimeException decodeEx)
+				{
+					failure.compareAndSet(null, decodeEx);
+				}
+				finally
+				{
+					inFlight.release();
+				}
+			});
+		}
+
+		// wait for the tiles in flight to settle
+		inFlight.acquire(maxInFlight);
+		inFlight.release(maxInFlight);
+
+		if (failure.get() != null) throw new IOException("distance matrix tile failed", failure.get());
+	}
+}
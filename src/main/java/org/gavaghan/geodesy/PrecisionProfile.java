@@ -0,0 +1,244 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import java.io.Serializable;
+
+/**
+ * <p>
+ * Immutable description of how hard a GeodeticCalculator works to converge:
+ * the tolerance that ends each iterative loop, the most iterations allowed,
+ * and what to do when a loop runs out of iterations before converging.
+ * </p>
+ * <p>
+ * The inverse tolerance applies to the relative change in the longitude on the
+ * auxiliary sphere (lambda) between iterations. The direct tolerance applies to
+ * the change in the angular distance on the auxiliary sphere (sigma), in
+ * radians. A change of 1e-9 in either corresponds to a few millimeters on the
+ * surface of the Earth.
+ * </p>
+ * <p>
+ * A deterministic profile makes the calculator evaluate trigonometric
+ * functions with StrictMath, whose results are specified to the bit, instead
+ * of the faster Math intrinsics, whose results may differ in the last place
+ * between JVMs and processors. Use one when results are cached, compared or
+ * deduplicated across machines.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class PrecisionProfile implements Serializable
+{
+	/**
+	 * What to do when an iterative solution doesn't converge within the
+	 * allowed number of iterations.
+	 */
+	public enum NonConvergence
+	{
+		/**
+		 * Use the best available answer. For the inverse problem this is the
+		 * north/south solution used for nearly antipodal points; for the
+		 * direct problem it is the final iterate.
+		 */
+		FALLBACK,
+
+		/** Report NaN for every result. */
+		NAN,
+
+		/** Throw an ArithmeticException. */
+		EXCEPTION
+	}
+
+	/** Full precision, matching the original behavior of the calculator. */
+	static public final PrecisionProfile DEFAULT = new PrecisionProfile(1e-13, 20, 1e-13, 100, NonConvergence.FALLBACK);
+
+	/** Roughly centimeter precision, for workloads that don't need more. */
+	static public final PrecisionProfile CENTIMETER = new PrecisionProfile(1e-9, 20, 1e-9, 100, NonConvergence.FALLBACK);
+
+	/**
+	 * Full precision with bit-for-bit reproducible results on every JVM and
+	 * processor.
+	 */
+	static public final PrecisionProfile DETERMINISTIC = new PrecisionProfile(1e-13, 20, 1e-13, 100, NonConvergence.FALLBACK, true);
+
+	/** Convergence tolerance of the inverse solution. */
+	private final double mInverseTolerance;
+
+	/** Most iterations of the inverse solution. */
+	private final int mInverseMaxIterations;
+
+	/** Convergence tolerance of the direct solution. */
+	private final double mDirectTolerance;
+
+	/** Most iterations of the direct solution. */
+	private final int mDirectMaxIterations;
+
+	/** What to do on non-convergence. */
+	private final NonConvergence mNonConvergence;
+
+	/** True to evaluate trigonometric functions with StrictMath. */
+	private final boolean mDeterministic;
+
+	/**
+	 * Create a new PrecisionProfile.
+	 * 
+	 * @param inverseTolerance
+	 *            largest relative change in lambda that ends the inverse
+	 *            iteration
+	 * @param inverseMaxIterations
+	 *            most iterations of the inverse solution (at least 3)
+	 * @param directTolerance
+	 *            largest change in sigma (radians) that ends the direct
+	 *            iteration
+	 * @param directMaxIterations
+	 *            most iterations of the direct solution (at least 1)
+	 * @param nonConvergence
+	 *            what to do when a solution doesn't converge
+	 */
+	public PrecisionProfile(double inverseTolerance, int inverseMaxIterations, double directTolerance, int directMaxIterations, NonConvergence nonConvergence)
+	{
+		this(inverseTolerance, inverseMaxIterations, directTolerance, directMaxIterations, nonConvergence, false);
+	}
+
+	/**
+	 * Create a new PrecisionProfile that may require reproducible results.
+	 * 
+	 * @param inverseTolerance
+	 *            largest relative change in lambda that ends the inverse
+	 *            iteration
+	 * @param inverseMaxIterations
+	 *            most iterations of the inverse solution (at least 3)
+	 * @param directTolerance
+	 *            largest change in sigma (radians) that ends the direct
+	 *            iteration
+	 * @param directMaxIterations
+	 *            most iterations of the direct solution (at least 1)
+	 * @param nonConvergence
+	 *            what to do when a solution doesn't converge
+	 * @param deterministic
+	 *            true for bit-for-bit reproducible results
+	 */
+	public PrecisionProfile(double inverseTolerance, int inverseMaxIterations, double directTolerance, int directMaxIterations, NonConvergence nonConvergence, boolean deterministic)
+	{
+		if (!(inverseTolerance > 0.0)) throw new IllegalArgumentException("inverseTolerance must be positive");
+		if (inverseMaxIterations < 3) throw new IllegalArgumentException("inverseMaxIterations must be at least 3");
+		if (!(directTolerance > 0.0)) throw new IllegalArgumentException("directTolerance must be positive");
+		if (directMaxIterations < 1) throw new IllegalArgumentException("directMaxIterations must be positive");
+		if (nonConvergence == null) throw new IllegalArgumentException("nonConvergence must not be null");
+
+		mInverseTolerance = inverseTolerance;
+		mInverseMaxIterations = inverseMaxIterations;
+		mDirectTolerance = directTolerance;
+		mDirectMaxIterations = directMaxIterations;
+		mNonConvergence = nonConvergence;
+		mDeterministic = deterministic;
+	}
+
+	/**
+	 * Get the convergence tolerance of the inverse solution.
+	 * 
+	 * @return largest relative change in lambda that ends the iteration
+	 */
+	public double getInverseTolerance()
+	{
+		return mInverseTolerance;
+	}
+
+	/**
+	 * Get the most iterations of the inverse solution.
+	 * 
+	 * @return maximum number of iterations
+	 */
+	public int getInverseMaxIterations()
+	{
+		return mInverseMaxIterations;
+	}
+
+	/**
+	 * Get the convergence tolerance of the direct solution.
+	 * 
+	 * @return largest change in sigma (radians) that ends the iteration
+	 */
+	public double getDirectTolerance()
+	{
+		return mDirectTolerance;
+	}
+
+	/**
+	 * Get the most iterations of the direct solution.
+	 * 
+	 * @return maximum number of iterations
+	 */
+	public int getDirectMaxIterations()
+	{
+		return mDirectMaxIterations;
+	}
+
+	/**
+	 * Get what to do when a solution doesn't converge.
+	 * 
+	 * @return non-convergence policy
+	 */
+	public NonConvergence getNonConvergence()
+	{
+		return mNonConvergence;
+	}
+
+	/**
+	 * Determine whether results are reproducible bit-for-bit across JVMs.
+	 * 
+	 * @return true if trigonometric functions are evaluated with StrictMath
+	 */
+	public boolean isDeterministic()
+	{
+		return mDeterministic;
+	}
+
+	/**
+	 * Get the profile as a string.
+	 * 
+	 * @return string representation of the profile
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuffer buffer = new StringBuffer();
+
+		buffer.append("inverse=");
+		buffer.append(mInverseTolerance);
+		buffer.append('/');
+		buffer.append(mInverseMaxIterations);
+		buffer.append(";direct=");
+		buffer.append(mDirectTolerance);
+		buffer.append('/');
+		buffer.append(mDirectMaxIterations);
+		buffer.append(";nonConvergence=");
+		buffer.append(mNonConvergence);
+		buffer.append(";");
+		if (mDeterministic) buffer.append("deterministic;");
+
+		return buffer.toString();
+	}
+}
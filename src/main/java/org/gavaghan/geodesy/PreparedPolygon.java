@@ -0,0 +1,639 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * A polygon with geodesic edges, prepared for fast containment tests.
+ * </p>
+ * <p>
+ * Containment is decided by counting the edges that cross the meridian of a
+ * point north of it. To make that cheap, each edge is split when the polygon
+ * is prepared into pieces short enough to treat as straight in latitude and
+ * longitude, and the largest departure of each piece from its geodesic is
+ * measured and kept as a margin. Pieces are indexed by longitude band, so a
+ * query only looks at the few pieces above and below it. A point that falls
+ * within the margin of a piece is settled exactly by comparing its azimuth
+ * from the start of the edge with the azimuth of the edge itself, which costs
+ * one inverse solution. Points outside the bounding box of the polygon are
+ * rejected without looking at any edges.
+ * </p>
+ * <p>
+ * Edges follow the shorter geodesic between consecutive vertices, and the
+ * last vertex joins the first. Either winding order may be used. Polygons
+ * may cross the 180th meridian but may not enclose a pole. Points that lie
+ * exactly on an edge may be reported either way.
+ * </p>
+ * <p>
+ * A PreparedPolygon is immutable once created and may be queried from any
+ * number of threads.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class PreparedPolygon
+{
+	/** Longest piece of an edge (meters). */
+	static private final double PIECE_LENGTH = 10000.0;
+
+	/** Smallest margin around a piece (degrees). */
+	static private final double MARGIN = 1e-9;
+
+	/** Most longitude bands in the index. */
+	static private final int MAX_BANDS = 4096;
+
+	/** Points tested by each task of a parallel batch. */
+	static private final int BLOCK = 4096;
+
+	/** Calculator for the exact tests. */
+	private final GeodeticCalculator mCalculator;
+
+	/** Reference ellipsoid. */
+	private final Ellipsoid mEllipsoid;
+
+	/** Number of edges. */
+	private final int mEdges;
+
+	/** Latitude of the start of each edge. */
+	private final double[] mEdgeLatitude;
+
+	/** Longitude of the start of each edge. */
+	private final double[] mEdgeLongitude;
+
+	/** Azimuth of each edge at its start. */
+	private final double[] mEdgeAzimuth;
+
+	/** True if each edge runs east. */
+	private final boolean[] mEdgeEastward;
+
+	/** Number of pieces. */
+	private final int mPieces;
+
+	/**
+	 * Start and end of each piece: latitude and unwrapped longitude of the
+	 * start, then of the end.
+	 */
+	private final double[] mPiece;
+
+	/** Margin of each piece (degrees of latitude). */
+	private final double[] mPieceMargin;
+
+	/** Edge each piece belongs to. */
+	private final int[] mPieceEdge;
+
+	/** Southern edge of the bounding box. */
+	private final double mMinLatitude;
+
+	/** Northern edge of the bounding box. */
+	private final double mMaxLatitude;
+
+	/** Western edge of the bounding box (unwrapped). */
+	private final double mMinLongitude;
+
+	/** Eastern edge of the bounding box (unwrapped). */
+	private final double mMaxLongitude;
+
+	/** Longitude bands per degree. */
+	private final double mBandScale;
+
+	/** Number of longitude bands. */
+	private final int mBands;
+
+	/** Index in mBandPieces of the first piece of each band, and the end. */
+	private final int[] mBandStarts;
+
+	/** Pieces of each band. */
+	private final int[] mBandPieces;
+
+	/**
+	 * Prepare a polygon given as interleaved latitude/longitude pairs.
+	 * 
+	 * @param calculator
+	 *            calculator for the geodesics
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 * @param vertices
+	 *            vertices of the polygon (2 * count elements, degrees)
+	 * @param count
+	 *            number of vertices
+	 * @throws IllegalArgumentException
+	 *             if the polygon encloses a pole
+	 */
+	public PreparedPolygon(GeodeticCalculator calculator, Ellipsoid ellipsoid, double[] vertices, int count)
+	{
+		mCalculator = calculator;
+		mEllipsoid = ellipsoid;
+
+		// ignore a closing vertex that repeats the first
+		if ((count > 1) && (vertices[0] == vertices[2 * count - 2]) && (vertices[1] == vertices[2 * count - 1])) count--;
+
+		// split the edges into pieces
+		double[] curve = new double[3];
+		double[] point = new double[2];
+		Pieces pieces = new Pieces(Math.max(count, 1));
+		int edges = 0;
+
+		mEdgeLatitude = new double[count];
+		mEdgeLongitude = new double[count];
+		mEdgeAzimuth = new double[count];
+		mEdgeEastward = new boolean[count];
+
+		double unwrapped = (count > 0) ? vertices[1] : 0.0;
+		double first = unwrapped;
+		double maxMargin = MARGIN;
+
+		for (int i = 0; i < count; i++)
+		{
+			int k = (i + 1) % count;
+			double lat1 = vertices[2 * i];
+			double lon1 = vertices[2 * i + 1];
+
+			calculator.calculateGeodeticCurve(ellipsoid, lat1, lon1, vertices[2 * k], vertices[2 * k + 1], curve, 0);
+
+			double length = curve[0];
+			double azimuth = curve[1];
+
+			if (!(length > 0.0)) continue;
+
+			int edge = edges++;
+			int steps = (int) Math.ceil(length / PIECE_LENGTH);
+			double step = length / steps;
+			double startLatitude = lat1;
+			double startLongitude = unwrapped;
+
+			mEdgeLatitude[edge] = lat1;
+			mEdgeLongitude[edge] = lon1;
+			mEdgeAzimuth[edge] = azimuth;
+
+			for (int j = 1; j <= steps; j++)
+			{
+				// exact end of the piece
+				double endLatitude;
+				double endLongitude;
+
+				if (j == steps)
+				{
+					endLatitude = vertices[2 * k];
+					endLongitude = unwrap(vertices[2 * k + 1], startLongitude);
+				}
+				else
+				{
+					calculator.calculateEndingCoordinates(ellipsoid, lat1, lon1, azimuth, j * step, point, 0);
+					endLatitude = point[0];
+					endLongitude = unwrap(point[1], startLongitude);
+				}
+
+				// how far the geodesic strays from a straight line at the
+				// middle of the piece
+				calculator.calculateEndingCoordinates(ellipsoid, lat1, lon1, azimuth, (j - 0.5) * step, point, 0);
+
+				double middleLongitude = unwrap(point[1], startLongitude);
+				double deviation = 0.0;
+
+				if (endLongitude != startLongitude)
+				{
+					double straight = startLatitude + (endLatitude - startLatitude) * (middleLongitude - startLongitude) / (endLongitude - startLongitude);
+					deviation = Math.abs(point[0] - straight);
+				}
+
+				pieces.add(edge, startLatitude, startLongitude, endLatitude, endLongitude, 2.0 * deviation + MARGIN);
+				maxMargin = Math.max(maxMargin, 2.0 * deviation + MARGIN);
+
+				startLatitude = endLatitude;
+				startLongitude = endLongitude;
+			}
+
+			mEdgeEastward[edge] = startLongitude > unwrapped;
+			unwrapped = startLongitude;
+		}
+
+		if ((count > 0) && (Math.abs(unwrapped - first) > 180.0)) throw new IllegalArgumentException("polygon encloses a pole");
+
+		mEdges = edges;
+		mPieces = pieces.mCount;
+		mPiece = pieces.mPiece;
+		mPieceMargin = pieces.mMargin;
+		mPieceEdge = pieces.mEdge;
+		mMinLongitude = pieces.mMinLongitude;
+		mMaxLongitude = pieces.mMaxLongitude;
+
+		// index the pieces by longitude band
+		double span = mMaxLongitude - mMinLongitude;
+
+		if (span > 0.0)
+		{
+			mMinLatitude = pieces.mMinLatitude - maxMargin;
+			mMaxLatitude = pieces.mMaxLatitude + maxMargin;
+			mBands = Math.max(1, Math.min(mPieces, MAX_BANDS));
+			mBandScale = mBands / span;
+			mBandStarts = new int[mBands + 1];
+			mBandPieces = buildIndex();
+		}
+		else
+		{
+			// nothing has any area
+			mMinLatitude = Double.POSITIVE_INFINITY;
+			mMaxLatitude = Double.NEGATIVE_INFINITY;
+			mBands = 1;
+			mBandScale = 0.0;
+			mBandStarts = new int[2];
+			mBandPieces = new int[0];
+		}
+	}
+
+	/**
+	 * Prepare a polygon given as a list of vertices.
+	 * 
+	 * @param calculator
+	 *            calculator for the geodesics
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 * @param vertices
+	 *            vertices of the polygon
+	 * @throws IllegalArgumentException
+	 *             if the polygon encloses a pole
+	 */
+	public PreparedPolygon(GeodeticCalculator calculator, Ellipsoid ellipsoid, List<? extends GlobalCoordinates> vertices)
+	{
+		this(calculator, ellipsoid, toArray(vertices), vertices.size());
+	}
+
+	/**
+	 * Copy a list of vertices into interleaved latitude/longitude pairs.
+	 * 
+	 * @param vertices
+	 *            vertices of the polygon
+	 * @return the pairs
+	 */
+	static private double[] toArray(List<? extends GlobalCoordinates> vertices)
+	{
+		double[] latLon = new double[2 * vertices.size()];
+
+		for (int i = 0; i < vertices.size(); i++)
+		{
+			latLon[2 * i] = vertices.get(i).getLatitude();
+			latLon[2 * i + 1] = vertices.get(i).getLongitude();
+		}
+
+		return latLon;
+	}
+
+	/**
+	 * Test if the polygon contains a point.
+	 * 
+	 * @param coordinates
+	 *            point to test
+	 * @return true if the point is inside
+	 */
+	public boolean contains(GlobalCoordinates coordinates)
+	{
+		return contains(coordinates.getLatitude(), coordinates.getLongitude(), null);
+	}
+
+	/**
+	 * Test if the polygon contains a point.
+	 * 
+	 * @param latitude
+	 *            latitude of the point (degrees)
+	 * @param longitude
+	 *            longitude of the point (degrees)
+	 * @return true if the point is inside
+	 */
+	public boolean contains(double latitude, double longitude)
+	{
+		return contains(latitude, longitude, null);
+	}
+
+	/**
+	 * Test a batch of points held in a primitive array of interleaved
+	 * latitude/longitude pairs.
+	 * 
+	 * @param points
+	 *            points to test (2 * count elements)
+	 * @param count
+	 *            number of points
+	 * @param results
+	 *            receives true for each point inside (count elements)
+	 * @return number of points inside
+	 */
+	public int contains(double[] points, int count, boolean[] results)
+	{
+		return contains(points, 0, count, results, new double[3]);
+	}
+
+	/**
+	 * Test a batch of points on the common fork-join pool. See
+	 * contains(double[], int, boolean[]).
+	 * 
+	 * @param points
+	 *            points to test (2 * count elements)
+	 * @param count
+	 *            number of points
+	 * @param results
+	 *            receives true for each point inside (count elements)
+	 * @return number of points inside
+	 */
+	public int containsParallel(final double[] points, final int count, final boolean[] results)
+	{
+		int blocks = (count + BLOCK - 1) / BLOCK;
+
+		return IntStream.range(0, blocks).parallel().map(block -> {
+			int from = block * BLOCK;
+
+			return contains(points, from, Math.min(BLOCK, count - from), results, new double[3]);
+		}).sum();
+	}
+
+	/**
+	 * Test a range of points.
+	 * 
+	 * @param points
+	 *            points to test
+	 * @param from
+	 *            index of the first point
+	 * @param count
+	 *            number of points
+	 * @param results
+	 *            receives true for each point inside
+	 * @param curve
+	 *            scratch space of 3 elements
+	 * @return number of points inside
+	 */
+	private int contains(double[] points, int from, int count, boolean[] results, double[] curve)
+	{
+		int inside = 0;
+
+		for (int i = from; i < from + count; i++)
+		{
+			results[i] = contains(points[2 * i], points[2 * i + 1], curve);
+			if (results[i]) inside++;
+		}
+
+		return inside;
+	}
+
+	/**
+	 * Test if the polygon contains a point.
+	 * 
+	 * @param latitude
+	 *            latitude of the point (degrees)
+	 * @param longitude
+	 *            longitude of the point (degrees)
+	 * @param curve
+	 *            scratch space of 3 elements, or null to allocate if needed
+	 * @return true if the point is inside
+	 */
+	private boolean contains(double latitude, double longitude, double[] curve)
+	{
+		if (!(latitude >= mMinLatitude && latitude <= mMaxLatitude)) return false;
+
+		// bring the longitude into the unwrapped range of the polygon
+		double x = longitude - mMinLongitude;
+		x -= 360.0 * Math.floor(x / 360.0);
+		if (x > mMaxLongitude - mMinLongitude) return false;
+		x += mMinLongitude;
+
+		int band = Math.min((int) ((x - mMinLongitude) * mBandScale), mBands - 1);
+		boolean inside = false;
+
+		for (int j = mBandStarts[band]; j < mBandStarts[band + 1]; j++)
+		{
+			int piece = mBandPieces[j];
+			double lat1 = mPiece[4 * piece];
+			double lon1 = mPiece[4 * piece + 1];
+			double lat2 = mPiece[4 * piece + 2];
+			double lon2 = mPiece[4 * piece + 3];
+
+			// half open, so a meridian through a vertex crosses only once
+			if ((lon1 <= x && x < lon2) || (lon2 <= x && x < lon1))
+			{
+				double edgeLatitude = lat1 + (lat2 - lat1) * (x - lon1) / (lon2 - lon1);
+				double margin = mPieceMargin[piece];
+
+				if (latitude < edgeLatitude - margin)
+				{
+					inside = !inside;
+				}
+				else if (latitude <= edgeLatitude + margin)
+				{
+					if (curve == null) curve = new double[3];
+					if (isSouthOf(mPieceEdge[piece], latitude, longitude, curve)) inside = !inside;
+				}
+			}
+		}
+
+		return inside;
+	}
+
+	/**
+	 * Decide exactly whether a point lies south of an edge. The meridian of
+	 * the point must cross the edge.
+	 * 
+	 * @param edge
+	 *            index of the edge
+	 * @param latitude
+	 *            latitude of the point (degrees)
+	 * @param longitude
+	 *            longitude of the point (degrees)
+	 * @param curve
+	 *            scratch space of 3 elements
+	 * @return true if the point lies south of the edge
+	 */
+	private boolean isSouthOf(int edge, double latitude, double longitude, double[] curve)
+	{
+		mCalculator.calculateGeodeticCurve(mEllipsoid, mEdgeLatitude[edge], mEdgeLongitude[edge], latitude, longitude, curve, 0);
+
+		if (curve[0] == 0.0) return true;
+
+		// south is to the right of an edge running east
+		double side = Math.sin(Angle.toRadians(curve[1] - mEdgeAzimuth[edge]));
+
+		return mEdgeEastward[edge] ? (side > 0.0) : (side < 0.0);
+	}
+
+	/**
+	 * Fill mBandStarts with the index in the returned array of the first
+	 * piece of each band, and the end.
+	 * 
+	 * @return pieces of each band
+	 */
+	private int[] buildIndex()
+	{
+		// count the pieces in each band, then fill
+		for (int p = 0; p < mPieces; p++)
+		{
+			for (int band = firstBand(p); band <= lastBand(p); band++)
+				mBandStarts[band + 1]++;
+		}
+
+		for (int band = 0; band < mBands; band++)
+			mBandStarts[band + 1] += mBandStarts[band];
+
+		int[] next = Arrays.copyOf(mBandStarts, mBands);
+		int[] bandPieces = new int[mBandStarts[mBands]];
+
+		for (int p = 0; p < mPieces; p++)
+		{
+			for (int band = firstBand(p); band <= lastBand(p); band++)
+				bandPieces[next[band]++] = p;
+		}
+
+		return bandPieces;
+	}
+
+	/**
+	 * Get the first band a piece reaches.
+	 * 
+	 * @param piece
+	 *            index of the piece
+	 * @return index of the band
+	 */
+	private int firstBand(int piece)
+	{
+		double lon = Math.min(mPiece[4 * piece + 1], mPiece[4 * piece + 3]);
+
+		return Math.min((int) ((lon - mMinLongitude) * mBandScale), mBands - 1);
+	}
+
+	/**
+	 * Get the last band a piece reaches.
+	 * 
+	 * @param piece
+	 *            index of the piece
+	 * @return index of the band
+	 */
+	private int lastBand(int piece)
+	{
+		double lon = Math.max(mPiece[4 * piece + 1], mPiece[4 * piece + 3]);
+
+		return Math.min((int) ((lon - mMinLongitude) * mBandScale), mBands - 1);
+	}
+
+	/**
+	 * Unwrap a longitude to within 180 degrees of a reference.
+	 * 
+	 * @param longitude
+	 *            longitude to unwrap (degrees)
+	 * @param reference
+	 *            unwrapped longitude nearby (degrees)
+	 * @return unwrapped longitude
+	 */
+	static private double unwrap(double longitude, double reference)
+	{
+		double delta = longitude - reference;
+
+		delta -= 360.0 * Math.floor((delta + 180.0) / 360.0);
+
+		return reference + delta;
+	}
+
+	/**
+	 * Pieces of edges gathered while a polygon is prepared, with their
+	 * bounding box.
+	 */
+	static private final class Pieces
+	{
+		/** Number of pieces. */
+		private int mCount;
+
+		/** Start and end of each piece. See mPiece. */
+		private double[] mPiece;
+
+		/** Margin of each piece (degrees of latitude). */
+		private double[] mMargin;
+
+		/** Edge each piece belongs to. */
+		private int[] mEdge;
+
+		/** Southern edge of the bounding box. */
+		private double mMinLatitude = Double.POSITIVE_INFINITY;
+
+		/** Northern edge of the bounding box. */
+		private double mMaxLatitude = Double.NEGATIVE_INFINITY;
+
+		/** Western edge of the bounding box (unwrapped). */
+		private double mMinLongitude = Double.POSITIVE_INFINITY;
+
+		/** Eastern edge of the bounding box (unwrapped). */
+		private double mMaxLongitude = Double.NEGATIVE_INFINITY;
+
+		/**
+		 * Create an empty set of pieces.
+		 * 
+		 * @param capacity
+		 *            number of pieces to make room for
+		 */
+		Pieces(int capacity)
+		{
+			mPiece = new double[4 * capacity];
+			mMargin = new double[capacity];
+			mEdge = new int[capacity];
+		}
+
+		/**
+		 * Add a piece of an edge, growing the arrays as needed.
+		 * 
+		 * @param edge
+		 *            edge the piece belongs to
+		 * @param lat1
+		 *            latitude of the start
+		 * @param lon1
+		 *            unwrapped longitude of the start
+		 * @param lat2
+		 *            latitude of the end
+		 * @param lon2
+		 *            unwrapped longitude of the end
+		 * @param margin
+		 *            margin of the piece
+		 */
+		void add(int edge, double lat1, double lon1, double lat2, double lon2, double margin)
+		{
+			if (mCount == mEdge.length)
+			{
+				mPiece = Arrays.copyOf(mPiece, 8 * mCount);
+				mMargin = Arrays.copyOf(mMargin, 2 * mCount);
+				mEdge = Arrays.copyOf(mEdge, 2 * mCount);
+			}
+
+			int p = mCount++;
+
+			mPiece[4 * p] = lat1;
+			mPiece[4 * p + 1] = lon1;
+			mPiece[4 * p + 2] = lat2;
+			mPiece[4 * p + 3] = lon2;
+			mMargin[p] = margin;
+			mEdge[p] = edge;
+
+			mMinLatitude = Math.min(mMinLatitude, Math.min(lat1, lat2));
+			mMaxLatitude = Math.max(mMaxLatitude, Math.max(lat1, lat2));
+			mMinLongitude = Math.min(mMinLongitude, Math.min(lon1, lon2));
+			mMaxLongitude = Math.max(mMaxLongitude, Math.max(lon1, lon2));
+		}
+	}
+}
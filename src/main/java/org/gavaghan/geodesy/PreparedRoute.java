@@ -0,0 +1,393 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+import java.util.List;
+
+/**
+ * <p>
+ * A route of geodesic legs, prepared for repeated distance along route
+ * queries.
+ * </p>
+ * <p>
+ * The inverse solution of every leg is found once when the route is
+ * prepared, and the distance from the start of the route to each vertex is
+ * kept as a running sum. The leg holding any distance along the route is
+ * then found by binary search, and the position at that distance costs a
+ * single direct solution from the start of the leg.
+ * </p>
+ * <p>
+ * Snapping a point to the route finds the nearest leg. The distances from
+ * the point to every vertex give a lower bound on its distance to each leg,
+ * so only legs that could be nearer than the best found so far are
+ * projected.
+ * </p>
+ * <p>
+ * A PreparedRoute is immutable once created and may be queried from any
+ * number of threads.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class PreparedRoute
+{
+	/** Calculator for the direct and inverse solutions. */
+	private final GeodeticCalculator mCalculator;
+
+	/** Reference ellipsoid. */
+	private final Ellipsoid mEllipsoid;
+
+	/** Projection for snapping points to legs. */
+	private final GeodesicProjection mProjection;
+
+	/** Number of legs. */
+	private final int mLegs;
+
+	/** Vertices as interleaved latitude/longitude pairs. */
+	private final double[] mVertices;
+
+	/** Curve of each leg: ellipsoidal distance, azimuth and reverse azimuth. */
+	private final double[] mCurves;
+
+	/** Distance from the start of the route to each vertex (meters). */
+	private final double[] mDistances;
+
+	/**
+	 * Prepare a route given as interleaved latitude/longitude pairs.
+	 * 
+	 * @param calculator
+	 *            calculator for the geodesics
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 * @param vertices
+	 *            vertices of the route (2 * count elements, degrees)
+	 * @param count
+	 *            number of vertices
+	 * @throws IllegalArgumentException
+	 *             if there are fewer than two vertices
+	 */
+	public PreparedRoute(GeodeticCalculator calculator, Ellipsoid ellipsoid, double[] vertices, int count)
+	{
+		if (count < 2) throw new IllegalArgumentException("a route needs at least two vertices");
+
+		mCalculator = calculator;
+		mEllipsoid = ellipsoid;
+		mProjection = new GeodesicProjection(calculator, ellipsoid);
+		mLegs = count - 1;
+		mVertices = new double[2 * count];
+		mCurves = new double[3 * mLegs];
+		mDistances = new double[count];
+
+		System.arraycopy(vertices, 0, mVertices, 0, 2 * count);
+
+		for (int i = 0; i < mLegs; i++)
+		{
+			calculator.calculateGeodeticCurve(ellipsoid, mVertices[2 * i], mVertices[2 * i + 1], mVertices[2 * i + 2], mVertices[2 * i + 3], mCurves, 3 * i);
+			mDistances[i + 1] = mDistances[i] + mCurves[3 * i];
+		}
+	}
+
+	/**
+	 * Prepare a route given as a list of vertices.
+	 * 
+	 * @param calculator
+	 *            calculator for the geodesics
+	 * @param ellipsoid
+	 *            reference ellipsoid
+	 * @param vertices
+	 *            vertices of the route
+	 * @throws IllegalArgumentException
+	 *             if there are fewer than two vertices
+	 */
+	public PreparedRoute(GeodeticCalculator calculator, Ellipsoid ellipsoid, List<? extends GlobalCoordinates> vertices)
+	{
+		this(calculator, ellipsoid, toArray(vertices), vertices.size());
+	}
+
+	/**
+	 * Copy a list of vertices into interleaved latitude/longitude pairs.
+	 * 
+	 * @param vertices
+	 *            vertices of the route
+	 * @return the pairs
+	 */
+	static private double[] toArray(List<? extends GlobalCoordinates> vertices)
+	{
+		double[] latLon = new double[2 * vertices.size()];
+
+		for (int i = 0; i < vertices.size(); i++)
+		{
+			latLon[2 * i] = vertices.get(i).getLatitude();
+			latLon[2 * i + 1] = vertices.get(i).getLongitude();
+		}
+
+		return latLon;
+	}
+
+	/**
+	 * Get the number of legs.
+	 * 
+	 * @return number of legs, one fewer than the number of vertices
+	 */
+	public int getLegCount()
+	{
+		return mLegs;
+	}
+
+	/**
+	 * Get the total length of the route.
+	 * 
+	 * @return length in meters
+	 */
+	public double getLength()
+	{
+		return mDistances[mLegs];
+	}
+
+	/**
+	 * Get the distance along the route to a vertex.
+	 * 
+	 * @param vertex
+	 *            index of the vertex, from 0 to getLegCount()
+	 * @return distance from the start of the route in meters
+	 */
+	public double getDistanceToVertex(int vertex)
+	{
+		return mDistances[vertex];
+	}
+
+	/**
+	 * Get the curve of a leg.
+	 * 
+	 * @param leg
+	 *            index of the leg
+	 * @param curve
+	 *            receives the ellipsoidal distance, azimuth and reverse
+	 *            azimuth (3 elements from 'offset')
+	 * @param offset
+	 *            index of the ellipsoidal distance in 'curve'
+	 */
+	public void getLegCurve(int leg, double[] curve, int offset)
+	{
+		System.arraycopy(mCurves, 3 * leg, curve, offset, 3);
+	}
+
+	/**
+	 * Find the leg that holds a distance along the route. A distance that
+	 * falls exactly on a vertex belongs to the leg ending there, and legs of
+	 * zero length are passed over.
+	 * 
+	 * @param distance
+	 *            distance from the start of the route (meters)
+	 * @return index of the leg, clamped to the first or last leg for
+	 *         distances off either end of the route
+	 */
+	public int findLeg(double distance)
+	{
+		// largest leg that starts before the distance
+		int low = 0;
+		int high = mLegs - 1;
+
+		while (low < high)
+		{
+			int mid = (low + high + 1) >>> 1;
+
+			if (mDistances[mid] < distance) low = mid;
+			else high = mid - 1;
+		}
+
+		return low;
+	}
+
+	/**
+	 * Calculate the position at a distance along the route.
+	 * 
+	 * @param distance
+	 *            distance from the start of the route (meters)
+	 * @return the position, clamped to the ends of the route
+	 */
+	public GlobalCoordinates calculatePositionAtDistance(double distance)
+	{
+		double[] coords = new double[2];
+
+		calculatePositionAtDistance(distance, coords, 0);
+
+		return new GlobalCoordinates(coords[0], coords[1]);
+	}
+
+	/**
+	 * Calculate the position and heading at a distance along the route given
+	 * as primitives. Distances off either end of the route are clamped to the
+	 * ends. Costs a binary search and one direct solution.
+	 * 
+	 * @param distance
+	 *            distance from the start of the route (meters)
+	 * @param coords
+	 *            receives the latitude and longitude (2 elements from
+	 *            'offset')
+	 * @param offset
+	 *            index of the latitude in 'coords'
+	 * @return heading along the route at the position (degrees)
+	 */
+	public double calculatePositionAtDistance(double distance, double[] coords, int offset)
+	{
+		int leg = findLeg(distance);
+		double along = Math.min(Math.max(distance - mDistances[leg], 0.0), mCurves[3 * leg]);
+
+		return mCalculator.calculateEndingCoordinates(mEllipsoid, mVertices[2 * leg], mVertices[2 * leg + 1], mCurves[3 * leg + 1], along, coords, offset);
+	}
+
+	/**
+	 * Calculate the positions at many distances along the route, held in
+	 * primitive arrays.
+	 * 
+	 * @param distances
+	 *            distances from the start of the route (count elements)
+	 * @param count
+	 *            number of distances
+	 * @param coords
+	 *            receives the positions as interleaved latitude/longitude
+	 *            pairs (2 * count elements)
+	 * @param headings
+	 *            receives the heading at each position (count elements), or
+	 *            null if not wanted
+	 */
+	public void calculatePositionsAtDistances(double[] distances, int count, double[] coords, double[] headings)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			double heading = calculatePositionAtDistance(distances[i], coords, 2 * i);
+
+			if (headings != null) headings[i] = heading;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Snap a point to the nearest leg of the route.
+	 * </p>
+	 * <p>
+	 * The result is written to 'result' starting at 'offset' in the layout of
+	 * GeodesicProjection.projectOntoSegment(), except that ALONG_TRACK is the
+	 * distance from the start of the route rather than from the start of the
+	 * leg. FRACTION remains the fraction of the leg.
+	 * </p>
+	 * 
+	 * @param latitude
+	 *            latitude of the point (degrees)
+	 * @param longitude
+	 *            longitude of the point (degrees)
+	 * @param result
+	 *            receives GeodesicProjection.RESULT_SIZE elements
+	 * @param offset
+	 *            index of the first element written
+	 * @return index of the nearest leg
+	 */
+	public int snap(double latitude, double longitude, double[] result, int offset)
+	{
+		int vertices = mLegs + 1;
+		double[] toVertex = new double[vertices];
+		double[] curve = new double[3];
+		double[] candidate = new double[GeodesicProjection.RESULT_SIZE];
+
+		for (int i = 0; i < vertices; i++)
+			mCalculator.calculateEllipsoidalDistance(mEllipsoid, latitude, longitude, mVertices[2 * i], mVertices[2 * i + 1], toVertex, i);
+
+		// no point on a leg is nearer than half of the amount by which the
+		// distances to its ends exceed its length
+		double[] bound = new double[mLegs];
+		int first = 0;
+
+		for (int i = 0; i < mLegs; i++)
+		{
+			bound[i] = 0.5 * (toVertex[i] + toVertex[i + 1] - mCurves[3 * i]);
+			if (bound[i] < bound[first]) first = i;
+		}
+
+		// project the most promising leg first, then only legs that could
+		// beat it
+		int best = first;
+		project(first, latitude, longitude, result, offset, curve);
+		double nearest = Math.abs(result[offset + GeodesicProjection.CROSS_TRACK]);
+
+		for (int i = 0; i < mLegs; i++)
+		{
+			if ((i == first) || !(bound[i] < nearest)) continue;
+
+			project(i, latitude, longitude, candidate, 0, curve);
+
+			double distance = Math.abs(candidate[GeodesicProjection.CROSS_TRACK]);
+
+			if (distance < nearest)
+			{
+				nearest = distance;
+				best = i;
+				System.arraycopy(candidate, 0, result, offset, GeodesicProjection.RESULT_SIZE);
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Snap a point to the nearest leg of the route. See snap().
+	 * 
+	 * @param point
+	 *            point to snap
+	 * @param result
+	 *            receives GeodesicProjection.RESULT_SIZE elements
+	 * @param offset
+	 *            index of the first element written
+	 * @return index of the nearest leg
+	 */
+	public int snap(GlobalCoordinates point, double[] result, int offset)
+	{
+		return snap(point.getLatitude(), point.getLongitude(), result, offset);
+	}
+
+	/**
+	 * Project a point onto one leg, measuring along track from the start of
+	 * the route.
+	 * 
+	 * @param leg
+	 *            index of the leg
+	 * @param latitude
+	 *            latitude of the point (degrees)
+	 * @param longitude
+	 *            longitude of the point (degrees)
+	 * @param result
+	 *            receives GeodesicProjection.RESULT_SIZE elements
+	 * @param offset
+	 *            index of the first element written
+	 * @param curve
+	 *            scratch space of 3 elements
+	 */
+	private void project(int leg, double latitude, double longitude, double[] result, int offset, double[] curve)
+	{
+		mProjection.projectOntoSegment(mVertices[2 * leg], mVertices[2 * leg + 1], mVertices[2 * leg + 2], mVertices[2 * leg + 3], latitude, longitude, result, offset, curve);
+		result[offset + GeodesicProjection.ALONG_TRACK] += mDistances[leg];
+	}
+}
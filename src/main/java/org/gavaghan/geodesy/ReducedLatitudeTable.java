@@ -0,0 +1,221 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+/**
+ * <p>
+ * Table of the sine and cosine of the reduced latitude U on an ellipsoid,
+ * where tan(U) = (1 - f) tan(latitude). Giving one to a GeodeticCalculator
+ * lets the inverse solution look up both endpoints instead of evaluating
+ * tan(), atan(), sin() and cos() for each.
+ * </p>
+ * <p>
+ * Values are tabulated every 1/STEPS_PER_DEGREE degrees together with their
+ * derivatives, and interpolated between with cubic Hermite polynomials.
+ * Latitudes on the table's grid are returned exactly as tabulated. Elsewhere
+ * the interpolation error is at most M h<sup>4</sup>/384, where h is the
+ * spacing in radians and M bounds the fourth derivatives of sin(U) and cos(U).
+ * Writing both as (1 - f) sin(latitude)/w and cos(latitude)/w, with w =
+ * sqrt(1 - e<sup>2</sup> sin<sup>2</sup>(latitude)), their derivatives
+ * differ from those of the sphere by terms in e<sup>2</sup>, and M is no
+ * more than 1 + 32 e<sup>2</sup>/(1 - e<sup>2</sup>)<sup>4</sup> for any
+ * flattening up to 0.01. For WGS84 the bound from getErrorBound() is below
+ * 3e-16, under the rounding error of evaluating the functions directly.
+ * </p>
+ * <p>
+ * The coefficients A, B and C of Vincenty's series are low order polynomials
+ * in u<sup>2</sup> and cos<sup>2</sup>(alpha) that cost less to evaluate than
+ * to interpolate, so they are not tabulated.
+ * </p>
+ * <p>
+ * Tables are immutable and may be shared between calculators and threads.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class ReducedLatitudeTable
+{
+	/** Table entries per degree of latitude. */
+	static public final int STEPS_PER_DEGREE = 32;
+
+	/** Spacing of the table in radians. */
+	static private final double STEP = Math.PI / (180.0 * STEPS_PER_DEGREE);
+
+	/** Index of the last entry. */
+	static private final int LAST = 180 * STEPS_PER_DEGREE;
+
+	/** Ellipsoid the table describes. */
+	private final Ellipsoid mEllipsoid;
+
+	/** Semi major axis of the ellipsoid, to recognize it. */
+	private final double mSemiMajorAxis;
+
+	/** Flattening of the ellipsoid, to recognize it. */
+	private final double mFlattening;
+
+	/** sin(U) at each entry. */
+	private final double[] mSin = new double[LAST + 1];
+
+	/** cos(U) at each entry. */
+	private final double[] mCos = new double[LAST + 1];
+
+	/** dU/dlatitude at each entry, scaled by the spacing. */
+	private final double[] mSlope = new double[LAST + 1];
+
+	/**
+	 * Create a new ReducedLatitudeTable.
+	 * 
+	 * @param ellipsoid
+	 *            ellipsoid to tabulate
+	 * @throws IllegalArgumentException
+	 *             if the flattening is greater than 0.01, where the error
+	 *             bound no longer holds
+	 */
+	public ReducedLatitudeTable(Ellipsoid ellipsoid)
+	{
+		double f = ellipsoid.getFlattening();
+
+		if (!(f >= 0.0 && f <= 0.01)) throw new IllegalArgumentException("flattening out of range: " + f);
+
+		mEllipsoid = ellipsoid;
+		mSemiMajorAxis = ellipsoid.getSemiMajorAxis();
+		mFlattening = f;
+
+		double e2 = f * (2.0 - f);
+
+		for (int i = 0; i <= LAST; i++)
+		{
+			double phi = Angle.toRadians(i / (double) STEPS_PER_DEGREE - 90.0);
+			double sinPhi = (i == LAST / 2) ? 0.0 : Math.sin(phi);
+			double cosPhi = (i == 0 || i == LAST) ? 0.0 : Math.cos(phi);
+			double w2 = 1.0 - e2 * sinPhi * sinPhi;
+			double w = Math.sqrt(w2);
+
+			mSin[i] = (1.0 - f) * sinPhi / w;
+			mCos[i] = cosPhi / w;
+			mSlope[i] = STEP * (1.0 - f) / w2;
+		}
+	}
+
+	/**
+	 * Get the ellipsoid the table describes.
+	 * 
+	 * @return ellipsoid
+	 */
+	public Ellipsoid getEllipsoid()
+	{
+		return mEllipsoid;
+	}
+
+	/**
+	 * Get the largest error in an interpolated value, excluding rounding.
+	 * 
+	 * @return error bound
+	 */
+	public double getErrorBound()
+	{
+		double e2 = mFlattening * (2.0 - mFlattening);
+		double d = 1.0 - e2;
+		double m = 1.0 + 32.0 * e2 / (d * d * d * d);
+
+		return m * STEP * STEP * STEP * STEP / 384.0;
+	}
+
+	/**
+	 * Determine if the table describes an ellipsoid with the given constants.
+	 * 
+	 * @param a
+	 *            semi major axis (meters)
+	 * @param f
+	 *            flattening
+	 * @return true if the table applies
+	 */
+	boolean covers(double a, double f)
+	{
+		return (a == mSemiMajorAxis) && (f == mFlattening);
+	}
+
+	/**
+	 * Interpolate sin(U).
+	 * 
+	 * @param latitude
+	 *            latitude in degrees, from -90 to 90
+	 * @return sine of the reduced latitude
+	 */
+	double sin(double latitude)
+	{
+		double x = (latitude + 90.0) * STEPS_PER_DEGREE;
+		int i = Math.min((int) x, LAST - 1);
+		double t = x - i;
+
+		if (t == 0.0) return mSin[i];
+
+		// derivative of sin(U) is cos(U) dU/dlatitude
+		return hermite(t, mSin[i], mCos[i] * mSlope[i], mSin[i + 1], mCos[i + 1] * mSlope[i + 1]);
+	}
+
+	/**
+	 * Interpolate cos(U).
+	 * 
+	 * @param latitude
+	 *            latitude in degrees, from -90 to 90
+	 * @return cosine of the reduced latitude
+	 */
+	double cos(double latitude)
+	{
+		double x = (latitude + 90.0) * STEPS_PER_DEGREE;
+		int i = Math.min((int) x, LAST - 1);
+		double t = x - i;
+
+		if (t == 0.0) return mCos[i];
+
+		// derivative of cos(U) is -sin(U) dU/dlatitude
+		return hermite(t, mCos[i], -mSin[i] * mSlope[i], mCos[i + 1], -mSin[i + 1] * mSlope[i + 1]);
+	}
+
+	/**
+	 * Evaluate a cubic Hermite polynomial on the unit interval.
+	 * 
+	 * @param t
+	 *            position in the interval, from 0 to 1
+	 * @param y0
+	 *            value at 0
+	 * @param d0
+	 *            derivative at 0
+	 * @param y1
+	 *            value at 1
+	 * @param d1
+	 *            derivative at 1
+	 * @return interpolated value
+	 */
+	static private double hermite(double t, double y0, double d0, double y1, double d1)
+	{
+		double dy = y1 - y0;
+		double c2 = 3.0 * dy - 2.0 * d0 - d1;
+		double c3 = d0 + d1 - 2.0 * dy;
+
+		return FusedMath.fma(t, FusedMath.fma(t, FusedMath.fma(t, c3, c2), d0), y0);
+	}
+}
@@ -0,0 +1,487 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+/**
+ * <p>
+ * Reorders coordinates held in primitive arrays so that points near each
+ * other on Earth sit near each other in memory. Batches solved in this order
+ * touch their inputs, outputs and any per point index data with far better
+ * locality than batches in arbitrary order, and indexes and memory mapped
+ * files built in this order are scanned sequentially.
+ * </p>
+ * <p>
+ * Each point is given a 62 bit key from its position along a space filling
+ * curve over latitude and longitude: either a Hilbert curve, whose
+ * consecutive cells always share an edge, or a Morton (Z order) curve, which
+ * is cheaper to compute but jumps at the boundaries of its quadrants. Points
+ * with equal keys, which lie within about a centimeter of each other, fall
+ * back to the ordering of GlobalCoordinates.compareTo(): by longitude, then by
+ * latitude. Coordinates containing NaN sort last.
+ * </p>
+ * <p>
+ * Every method returns or takes a permutation: the i'th point in the new
+ * order is point permutation[i] of the original order. gather() applies a
+ * permutation to other arrays, and scatter() returns results computed in the
+ * new order to the original order.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class SpatialOrdering
+{
+	/**
+	 * Orders in which points can be arranged.
+	 */
+	public enum Curve
+	{
+		/** Along a Hilbert curve. */
+		HILBERT,
+
+		/** Along a Morton (Z order) curve. */
+		MORTON,
+
+		/** By longitude, then latitude, as GlobalCoordinates.compareTo(). */
+		COORDINATES
+	}
+
+	/** Bits of each coordinate in a key. */
+	static private final int ORDER = 31;
+
+	/** Number of cells along each axis. */
+	static private final double CELLS = 1L << ORDER;
+
+	/** Key of coordinates containing NaN. */
+	static private final long NAN_KEY = Long.MAX_VALUE;
+
+	/** Runs this short are sorted by insertion. */
+	static private final int INSERTION_RUN = 16;
+
+	/**
+	 * Disallow instantiation.
+	 */
+	private SpatialOrdering()
+	{
+	}
+
+	/**
+	 * Calculate the Hilbert curve key of a point.
+	 * 
+	 * @param latitude
+	 *            latitude in degrees
+	 * @param longitude
+	 *            longitude in degrees
+	 * @return key from 0 to 2^62 - 1, or Long.MAX_VALUE for NaN coordinates
+	 */
+	static public long hilbertKey(double latitude, double longitude)
+	{
+		if (Double.isNaN(latitude) || Double.isNaN(longitude)) return NAN_KEY;
+
+		long x = cellOfLongitude(longitude);
+		long y = cellOfLatitude(latitude);
+		long key = 0;
+
+		for (long s = 1L << (ORDER - 1); s > 0; s >>>= 1)
+		{
+			long rx = ((x & s) != 0) ? 1 : 0;
+			long ry = ((y & s) != 0) ? 1 : 0;
+
+			key += s * s * ((3 * rx) ^ ry);
+
+			// rotate the quadrant so the curve inside it runs the right way
+			if (ry == 0)
+			{
+				if (rx == 1)
+				{
+					x = s - 1 - (x & (s - 1));
+					y = s - 1 - (y & (s - 1));
+				}
+
+				long t = x;
+				x = y;
+				y = t;
+			}
+		}
+
+		return key;
+	}
+
+	/**
+	 * Calculate the Morton (Z order) curve key of a point: the bits of its
+	 * longitude and latitude cells interleaved, longitude in the higher bit of
+	 * each pair.
+	 * 
+	 * @param latitude
+	 *            latitude in degrees
+	 * @param longitude
+	 *            longitude in degrees
+	 * @return key from 0 to 2^62 - 1, or Long.MAX_VALUE for NaN coordinates
+	 */
+	static public long mortonKey(double latitude, double longitude)
+	{
+		if (Double.isNaN(latitude) || Double.isNaN(longitude)) return NAN_KEY;
+
+		return (spread(cellOfLongitude(longitude)) << 1) | spread(cellOfLatitude(latitude));
+	}
+
+	/**
+	 * Spread the low 32 bits of a value into the even bits of a long.
+	 * 
+	 * @param value
+	 *            value to spread
+	 * @return spread bits
+	 */
+	static private long spread(long value)
+	{
+		long v = value & 0xFFFFFFFFL;
+
+		v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+		v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+		v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+		v = (v | (v << 2)) & 0x3333333333333333L;
+		v = (v | (v << 1)) & 0x5555555555555555L;
+
+		return v;
+	}
+
+	/**
+	 * Find the cell of a latitude.
+	 * 
+	 * @param latitude
+	 *            latitude in degrees
+	 * @return cell from 0 to 2^31 - 1
+	 */
+	static private long cellOfLatitude(double latitude)
+	{
+		double cell = Math.floor((latitude + 90.0) / 180.0 * CELLS);
+
+		return (long) Math.min(Math.max(cell, 0.0), CELLS - 1.0);
+	}
+
+	/**
+	 * Find the cell of a longitude.
+	 * 
+	 * @param longitude
+	 *            longitude in degrees
+	 * @return cell from 0 to 2^31 - 1
+	 */
+	static private long cellOfLongitude(double longitude)
+	{
+		double cell = Math.floor((GlobalCoordinates.canonicalLongitude(longitude) + 180.0) / 360.0 * CELLS);
+
+		return (long) Math.min(Math.max(cell, 0.0), CELLS - 1.0);
+	}
+
+	/**
+	 * Calculate the key of a point.
+	 * 
+	 * @param curve
+	 *            curve to follow
+	 * @param latitude
+	 *            latitude in degrees
+	 * @param longitude
+	 *            longitude in degrees
+	 * @return the key
+	 */
+	static private long keyOf(Curve curve, double latitude, double longitude)
+	{
+		switch (curve)
+		{
+		case HILBERT:
+			return hilbertKey(latitude, longitude);
+		case MORTON:
+			return mortonKey(latitude, longitude);
+		default:
+			return (Double.isNaN(latitude) || Double.isNaN(longitude)) ? NAN_KEY : 0L;
+		}
+	}
+
+	/**
+	 * Find the order of points along a curve without moving them.
+	 * 
+	 * @param coords
+	 *            interleaved latitude/longitude pairs (2 * count elements)
+	 * @param count
+	 *            number of points
+	 * @param curve
+	 *            curve to follow
+	 * @return permutation: element i is the original index of the i'th point
+	 *         in the new order
+	 */
+	static public int[] order(double[] coords, int count, Curve curve)
+	{
+		return order(coords, null, count, curve);
+	}
+
+	/**
+	 * Find the order of pairs of points, such as the starts and ends of
+	 * inverse problems. Pairs are ordered by their starting points, and pairs
+	 * with the same starting point by their ending points.
+	 * 
+	 * @param starts
+	 *            interleaved latitude/longitude pairs (2 * count elements)
+	 * @param ends
+	 *            interleaved latitude/longitude pairs (2 * count elements)
+	 * @param count
+	 *            number of pairs
+	 * @param curve
+	 *            curve to follow
+	 * @return permutation: element i is the original index of the i'th pair
+	 *         in the new order
+	 */
+	static public int[] order(double[] starts, double[] ends, int count, Curve curve)
+	{
+		long[] keys = new long[count];
+		long[] endKeys = (ends == null) ? null : new long[count];
+		int[] permutation = new int[count];
+
+		for (int i = 0; i < count; i++)
+		{
+			keys[i] = keyOf(curve, starts[2 * i], starts[2 * i + 1]);
+			if (endKeys != null) endKeys[i] = keyOf(curve, ends[2 * i], ends[2 * i + 1]);
+			permutation[i] = i;
+		}
+
+		sort(permutation, new int[count], 0, count, keys, endKeys, starts, ends);
+
+		return permutation;
+	}
+
+	/**
+	 * Reorder points along a curve in place.
+	 * 
+	 * @param coords
+	 *            interleaved latitude/longitude pairs (2 * count elements),
+	 *            reordered on return
+	 * @param count
+	 *            number of points
+	 * @param curve
+	 *            curve to follow
+	 * @return permutation: element i is the original index of the i'th point
+	 *         in the new order
+	 */
+	static public int[] sort(double[] coords, int count, Curve curve)
+	{
+		int[] permutation = order(coords, null, count, curve);
+
+		gather(coords.clone(), 2, permutation, count, coords);
+
+		return permutation;
+	}
+
+	/**
+	 * Reorder pairs of points in place. See order(double[], double[], int,
+	 * Curve).
+	 * 
+	 * @param starts
+	 *            interleaved latitude/longitude pairs (2 * count elements),
+	 *            reordered on return
+	 * @param ends
+	 *            interleaved latitude/longitude pairs (2 * count elements),
+	 *            reordered on return
+	 * @param count
+	 *            number of pairs
+	 * @param curve
+	 *            curve to follow
+	 * @return permutation: element i is the original index of the i'th pair
+	 *         in the new order
+	 */
+	static public int[] sort(double[] starts, double[] ends, int count, Curve curve)
+	{
+		int[] permutation = order(starts, ends, count, curve);
+
+		gather(starts.clone(), 2, permutation, count, starts);
+		gather(ends.clone(), 2, permutation, count, ends);
+
+		return permutation;
+	}
+
+	/**
+	 * Apply a permutation to an array of records, such as positions or
+	 * per point attributes: record i of 'out' is record permutation[i] of
+	 * 'values'. The arrays must not be the same.
+	 * 
+	 * @param values
+	 *            records in the original order (width * count elements)
+	 * @param width
+	 *            elements per record
+	 * @param permutation
+	 *            the permutation
+	 * @param count
+	 *            number of records
+	 * @param out
+	 *            receives the records in the new order
+	 */
+	static public void gather(double[] values, int width, int[] permutation, int count, double[] out)
+	{
+		for (int i = 0; i < count; i++)
+			System.arraycopy(values, width * permutation[i], out, width * i, width);
+	}
+
+	/**
+	 * Undo a permutation, typically to return results computed in the new
+	 * order to the original order: record permutation[i] of 'out' is record i
+	 * of 'values'. The arrays must not be the same.
+	 * 
+	 * @param values
+	 *            records in the new order (width * count elements)
+	 * @param width
+	 *            elements per record, such as 3 for geodetic curves
+	 * @param permutation
+	 *            the permutation
+	 * @param count
+	 *            number of records
+	 * @param out
+	 *            receives the records in the original order
+	 */
+	static public void scatter(double[] values, int width, int[] permutation, int count, double[] out)
+	{
+		for (int i = 0; i < count; i++)
+			System.arraycopy(values, width * i, out, width * permutation[i], width);
+	}
+
+	/**
+	 * Compare two points or pairs by key, then by coordinates.
+	 * 
+	 * @param i
+	 *            original index of the first
+	 * @param j
+	 *            original index of the second
+	 * @param keys
+	 *            keys of the (starting) points
+	 * @param endKeys
+	 *            keys of the ending points, or null
+	 * @param starts
+	 *            coordinates of the (starting) points
+	 * @param ends
+	 *            coordinates of the ending points, or null
+	 * @return negative, zero or positive as the first sorts before, with or
+	 *         after the second
+	 */
+	static private int compare(int i, int j, long[] keys, long[] endKeys, double[] starts, double[] ends)
+	{
+		int c = Long.compare(keys[i], keys[j]);
+		if (c != 0) return c;
+
+		c = compareCoordinates(starts, i, j);
+		if ((c != 0) || (ends == null)) return c;
+
+		c = Long.compare(endKeys[i], endKeys[j]);
+		if (c != 0) return c;
+
+		return compareCoordinates(ends, i, j);
+	}
+
+	/**
+	 * Compare two points as GlobalCoordinates.compareTo() does.
+	 * 
+	 * @param coords
+	 *            interleaved latitude/longitude pairs
+	 * @param i
+	 *            index of the first point
+	 * @param j
+	 *            index of the second point
+	 * @return negative, zero or positive as the first sorts before, with or
+	 *         after the second
+	 */
+	static private int compareCoordinates(double[] coords, int i, int j)
+	{
+		double lon1 = coords[2 * i + 1];
+		double lon2 = coords[2 * j + 1];
+
+		if (lon1 < lon2) return -1;
+		if (lon1 > lon2) return +1;
+
+		double lat1 = coords[2 * i];
+		double lat2 = coords[2 * j];
+
+		if (lat1 < lat2) return -1;
+		if (lat1 > lat2) return +1;
+
+		return 0;
+	}
+
+	/**
+	 * Stable merge sort of a range of a permutation.
+	 * 
+	 * @param permutation
+	 *            the permutation
+	 * @param buffer
+	 *            scratch space as large as the permutation
+	 * @param from
+	 *            first index of the range
+	 * @param to
+	 *            index past the range
+	 * @param keys
+	 *            keys of the (starting) points
+	 * @param endKeys
+	 *            keys of the ending points, or null
+	 * @param starts
+	 *            coordinates of the (starting) points
+	 * @param ends
+	 *            coordinates of the ending points, or null
+	 */
+	static private void sort(int[] permutation, int[] buffer, int from, int to, long[] keys, long[] endKeys, double[] starts, double[] ends)
+	{
+		if (to - from <= INSERTION_RUN)
+		{
+			for (int i = from + 1; i < to; i++)
+			{
+				int p = permutation[i];
+				int j = i - 1;
+
+				while ((j >= from) && (compare(permutation[j], p, keys, endKeys, starts, ends) > 0))
+				{
+					permutation[j + 1] = permutation[j];
+					j--;
+				}
+
+				permutation[j + 1] = p;
+			}
+
+			return;
+		}
+
+		int mid = (from + to) >>> 1;
+
+		sort(permutation, buffer, from, mid, keys, endKeys, starts, ends);
+		sort(permutation, buffer, mid, to, keys, endKeys, starts, ends);
+
+		// already in order?
+		if (compare(permutation[mid - 1], permutation[mid], keys, endKeys, starts, ends) <= 0) return;
+
+		System.arraycopy(permutation, from, buffer, from, to - from);
+
+		int i = from;
+		int j = mid;
+
+		for (int k = from; k < to; k++)
+		{
+			if ((j >= to) || ((i < mid) && (compare(buffer[i], buffer[j], keys, endKeys, starts, ends) <= 0))) permutation[k] = buffer[i++];
+			else permutation[k] = buffer[j++];
+		}
+	}
+}
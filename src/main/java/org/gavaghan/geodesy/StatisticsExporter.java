@@ -0,0 +1,69 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+/**
+ * <p>
+ * Receives the values of a CalculatorStatistics when it is exported. A JMX,
+ * Prometheus or logging adapter implements this interface and passes itself
+ * to CalculatorStatistics.export(); the library itself depends on no
+ * monitoring framework.
+ * </p>
+ * <p>
+ * Names use lower case words separated by underscores and carry their unit,
+ * so they are legal Prometheus metric names and JMX attribute names as they
+ * stand.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public interface StatisticsExporter
+{
+	/**
+	 * Receive a counter, which only ever increases until it is reset.
+	 * 
+	 * @param name
+	 *            name of the counter
+	 * @param help
+	 *            one line description
+	 * @param value
+	 *            current value
+	 */
+	void counter(String name, String help, double value);
+
+	/**
+	 * Receive a latency histogram. Read its buckets with
+	 * LatencyHistogram.getBucketCount(), getUpperBound() and getCount().
+	 * 
+	 * @param name
+	 *            name of the histogram
+	 * @param help
+	 *            one line description
+	 * @param histogram
+	 *            the histogram
+	 */
+	void histogram(String name, String help, LatencyHistogram histogram);
+}
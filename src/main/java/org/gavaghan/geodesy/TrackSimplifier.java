@@ -0,0 +1,261 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Reduces the number of points in a track while keeping every dropped point
+ * within a tolerance, in meters, of the simplified track. Distances are
+ * measured from each point to the geodesic segment that replaces it, using
+ * GeodesicProjection.
+ * </p>
+ * <p>
+ * Whole tracks held in memory can be simplified with the Douglas-Peucker
+ * algorithm by douglasPeucker(). Tracks that arrive a point at a time can be
+ * simplified as they stream in by an instance of this class, which uses an
+ * opening window: the current segment is stretched from the last kept point
+ * for as long as every point it skips stays within tolerance. The window is
+ * capped, so the memory used does not depend on the length of the track.
+ * </p>
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+public class TrackSimplifier
+{
+	/**
+	 * Receives the points kept by a streaming TrackSimplifier.
+	 */
+	public interface Sink
+	{
+		/**
+		 * Accept a kept point.
+		 * 
+		 * @param latitude
+		 *            latitude in degrees
+		 * @param longitude
+		 *            longitude in degrees
+		 */
+		void accept(double latitude, double longitude);
+	}
+
+	/** Projection used to measure deviations. */
+	private final GeodesicProjection mProjection;
+
+	/** Largest allowed deviation in meters. */
+	private final double mTolerance;
+
+	/** Receives the kept points. */
+	private final Sink mSink;
+
+	/** Points skipped by the current segment, plus the latest point. */
+	private final double[] mWindow;
+
+	/** Number of points in the window. */
+	private int mWindowCount;
+
+	/** Latitude of the last kept point. */
+	private double mAnchorLatitude;
+
+	/** Longitude of the last kept point. */
+	private double mAnchorLongitude;
+
+	/** Has the first point been seen? */
+	private boolean mStarted;
+
+	/** Receives projections. */
+	private final double[] mResult = new double[GeodesicProjection.RESULT_SIZE];
+
+	/** Scratch space for projections. */
+	private final double[] mCurve = new double[3];
+
+	/**
+	 * Create a new streaming TrackSimplifier.
+	 * 
+	 * @param projection
+	 *            projection used to measure deviations
+	 * @param tolerance
+	 *            largest allowed deviation in meters
+	 * @param maxWindow
+	 *            most points a single segment may skip (at least 1)
+	 * @param sink
+	 *            receives the kept points
+	 */
+	public TrackSimplifier(GeodesicProjection projection, double tolerance, int maxWindow, Sink sink)
+	{
+		if (maxWindow < 1) throw new IllegalArgumentException("maxWindow must be positive");
+
+		mProjection = projection;
+		mTolerance = tolerance;
+		mSink = sink;
+		mWindow = new double[2 * (maxWindow + 1)];
+	}
+
+	/**
+	 * Add the next point of the track. Points that turn out to be needed are
+	 * passed to the sink, in order, as soon as that is known.
+	 * 
+	 * @param latitude
+	 *            latitude in degrees
+	 * @param longitude
+	 *            longitude in degrees
+	 */
+	public void add(double latitude, double longitude)
+	{
+		if (!mStarted)
+		{
+			mStarted = true;
+			keep(latitude, longitude);
+			return;
+		}
+
+		// would stretching the segment to this point strand a skipped one?
+		boolean fits = (mWindowCount < mWindow.length / 2);
+
+		for (int i = 0; fits && (i < mWindowCount); i++)
+		{
+			mProjection.projectOntoSegment(mAnchorLatitude, mAnchorLongitude, latitude, longitude, mWindow[2 * i], mWindow[2 * i + 1], mResult, 0, mCurve);
+
+			fits = Math.abs(mResult[GeodesicProjection.CROSS_TRACK]) <= mTolerance;
+		}
+
+		if (!fits)
+		{
+			// the previous point ends the segment and anchors the next one
+			keep(mWindow[2 * mWindowCount - 2], mWindow[2 * mWindowCount - 1]);
+		}
+
+		mWindow[2 * mWindowCount] = latitude;
+		mWindow[2 * mWindowCount + 1] = longitude;
+		mWindowCount++;
+	}
+
+	/**
+	 * Finish the track, passing its final point to the sink.
+	 */
+	public void finish()
+	{
+		if (mWindowCount > 0) keep(mWindow[2 * mWindowCount - 2], mWindow[2 * mWindowCount - 1]);
+	}
+
+	/**
+	 * Keep a point and make it the anchor of the next segment.
+	 * 
+	 * @param latitude
+	 *            latitude in degrees
+	 * @param longitude
+	 *            longitude in degrees
+	 */
+	private void keep(double latitude, double longitude)
+	{
+		mSink.accept(latitude, longitude);
+		mAnchorLatitude = latitude;
+		mAnchorLongitude = longitude;
+		mWindowCount = 0;
+	}
+
+	/**
+	 * Simplify a track with the Douglas-Peucker algorithm. The first and last
+	 * points are always kept.
+	 * 
+	 * @param projection
+	 *            projection used to measure deviations
+	 * @param latLon
+	 *            interleaved latitude/longitude pairs of the track (2 * count
+	 *            elements)
+	 * @param count
+	 *            number of points in the track
+	 * @param tolerance
+	 *            largest allowed deviation in meters
+	 * @param simplified
+	 *            receives the kept points (up to 2 * count elements)
+	 * @return number of points kept
+	 */
+	static public int douglasPeucker(GeodesicProjection projection, double[] latLon, int count, double tolerance, double[] simplified)
+	{
+		if (count <= 2)
+		{
+			System.arraycopy(latLon, 0, simplified, 0, 2 * count);
+			return count;
+		}
+
+		boolean[] keep = new boolean[count];
+		int[] stack = new int[64];
+		int top = 0;
+		double[] result = new double[GeodesicProjection.RESULT_SIZE];
+		double[] curve = new double[3];
+
+		keep[0] = true;
+		keep[count - 1] = true;
+		stack[top++] = 0;
+		stack[top++] = count - 1;
+
+		while (top > 0)
+		{
+			int last = stack[--top];
+			int first = stack[--top];
+			int farthest = -1;
+			double maxDeviation = tolerance;
+
+			for (int i = first + 1; i < last; i++)
+			{
+				projection.projectOntoSegment(latLon[2 * first], latLon[2 * first + 1], latLon[2 * last], latLon[2 * last + 1], latLon[2 * i], latLon[2 * i + 1], result, 0, curve);
+
+				double deviation = Math.abs(result[GeodesicProjection.CROSS_TRACK]);
+
+				if (deviation > maxDeviation)
+				{
+					maxDeviation = deviation;
+					farthest = i;
+				}
+			}
+
+			if (farthest < 0) continue;
+
+			keep[farthest] = true;
+
+			if (top + 4 > stack.length) stack = Arrays.copyOf(stack, 2 * stack.length);
+
+			stack[top++] = first;
+			stack[top++] = farthest;
+			stack[top++] = farthest;
+			stack[top++] = last;
+		}
+
+		int kept = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			if (!keep[i]) continue;
+
+			simplified[2 * kept] = latLon[2 * i];
+			simplified[2 * kept + 1] = latLon[2 * i + 1];
+			kept++;
+		}
+
+		return kept;
+	}
+}
@@ -0,0 +1,58 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+/**
+ * Fused multiply-add for the Hermite interpolation in ReducedLatitudeTable.
+ * This is the version for Java 9 and later, which rounds once with
+ * Math.fma().
+ * 
+ * @author <a href="mailto:mike@gavaghan.org">Mike Gavaghan</a>
+ */
+final class FusedMath
+{
+	/**
+	 * Disallow instantiation.
+	 */
+	private FusedMath()
+	{
+	}
+
+	/**
+	 * Calculate a * b + c with a single rounding.
+	 * 
+	 * @param a
+	 *            first factor
+	 * @param b
+	 *            second factor
+	 * @param c
+	 *            addend
+	 * @return a * b + c
+	 */
+	static double fma(double a, double b, double c)
+	{
+		return Math.fma(a, b, c);
+	}
+}
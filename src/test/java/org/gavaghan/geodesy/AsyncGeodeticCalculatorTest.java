@@ -0,0 +1,254 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class AsyncGeodeticCalculatorTest
+{
+   @Test(timeout=10000)
+   public void testMicroBatches() throws Exception
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      Ellipsoid reference = Ellipsoid.WGS84;
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+
+      try
+      {
+         // small limits so that submission has to wait on completions
+         AsyncGeodeticCalculator async = new AsyncGeodeticCalculator(geoCalc, reference, executor, 8, 16, 2);
+
+         GlobalCoordinates lincolnMemorial = new GlobalCoordinates(38.88922, -77.04978);
+         List<CompletableFuture<GeodeticCurve>> curves = new ArrayList<CompletableFuture<GeodeticCurve>>();
+         List<CompletableFuture<GlobalCoordinates>> dests = new ArrayList<CompletableFuture<GlobalCoordinates>>();
+
+         for (int i = 0; i < 500; i++)
+         {
+            GlobalCoordinates end = new GlobalCoordinates(48.85889 - i * 0.01, 2.29583 + i * 0.01);
+            curves.add(async.calculateGeodeticCurve(lincolnMemorial, end));
+            dests.add(async.calculateEndingGlobalCoordinates(lincolnMemorial, i * 0.5, 1000.0 * i));
+         }
+
+         for (int i = 0; i < 500; i++)
+         {
+            GlobalCoordinates end = new GlobalCoordinates(48.85889 - i * 0.01, 2.29583 + i * 0.01);
+            GeodeticCurve expected = geoCalc.calculateGeodeticCurve(reference, lincolnMemorial, end);
+            GlobalCoordinates dest = geoCalc.calculateEndingGlobalCoordinates(reference, lincolnMemorial, i * 0.5, 1000.0 * i);
+
+            assertEquals(expected.getEllipsoidalDistance(), curves.get(i).get().getEllipsoidalDistance(), 0.0);
+            assertEquals(expected.getAzimuth(), curves.get(i).get().getAzimuth(), 0.0);
+            assertEquals(dest.getLatitude(), dests.get(i).get().getLatitude(), 0.0);
+            assertEquals(dest.getLongitude(), dests.get(i).get().getLongitude(), 0.0);
+         }
+
+         // bulk submission is split into chunks
+         double[] starts = new double[2 * 100];
+         double[] ends = new double[2 * 100];
+         for (int i = 0; i < 100; i++)
+         {
+            starts[2 * i] = lincolnMemorial.getLatitude();
+            starts[2 * i + 1] = lincolnMemorial.getLongitude();
+            ends[2 * i] = -45 + i * 0.9;
+            ends[2 * i + 1] = 100 - i;
+         }
+
+         double[] expected = new double[3 * 100];
+         geoCalc.calculateGeodeticCurves(reference, starts, ends, 100, expected);
+
+         double[] actual = async.calculateGeodeticCurves(starts, ends, 100).get();
+
+         for (int i = 0; i < expected.length; i++)
+         {
+            assertEquals(expected[i], actual[i], 0.0);
+         }
+
+         assertEquals(16, async.getAvailableCapacity());
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   public void testCoalescing() throws Exception
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      Ellipsoid reference = Ellipsoid.WGS84;
+
+      // an executor that holds tasks until we run them
+      List<Runnable> tasks = new ArrayList<Runnable>();
+      AsyncGeodeticCalculator async = new AsyncGeodeticCalculator(geoCalc, reference, tasks::add, 8, 64, 1);
+      CoalescingGeodeticCalculator coalescing = new CoalescingGeodeticCalculator(async);
+
+      GlobalCoordinates lincolnMemorial = new GlobalCoordinates(38.88922, -77.04978);
+      GlobalCoordinates eiffelTower = new GlobalCoordinates(48.85889, 2.29583);
+      List<CompletableFuture<GeodeticCurve>> curves = new ArrayList<CompletableFuture<GeodeticCurve>>();
+
+      for (int i = 0; i < 10; i++)
+      {
+         curves.add(coalescing.calculateGeodeticCurve(lincolnMemorial, new GlobalCoordinates(48.85889, 2.29583)));
+      }
+      CompletableFuture<GlobalCoordinates> dest1 = coalescing.calculateEndingGlobalCoordinates(lincolnMemorial, 51.7679, 6179016.13586);
+      CompletableFuture<GlobalCoordinates> dest2 = coalescing.calculateEndingGlobalCoordinates(lincolnMemorial, 51.7679, 6179016.13586);
+
+      // only one of each problem was handed to the calculator
+      assertEquals(2, coalescing.getInFlightCount());
+      assertEquals(62, async.getAvailableCapacity());
+
+      while (!tasks.isEmpty())
+      {
+         tasks.remove(0).run();
+      }
+
+      GeodeticCurve expected = geoCalc.calculateGeodeticCurve(reference, lincolnMemorial, eiffelTower);
+
+      for (CompletableFuture<GeodeticCurve> curve : curves)
+      {
+         assertEquals(expected.getEllipsoidalDistance(), curve.get().getEllipsoidalDistance(), 0.0);
+      }
+
+      assertEquals(dest1.get(), dest2.get());
+      assertEquals(0, coalescing.getInFlightCount());
+      assertEquals(64, async.getAvailableCapacity());
+   }
+
+   @Test(timeout=10000)
+   public void testCoalescingSynchronousFailure() throws Exception
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      List<Runnable> tasks = new ArrayList<Runnable>();
+
+      // a calculator that throws on its first call instead of returning
+      AsyncGeodeticCalculator async = new AsyncGeodeticCalculator(geoCalc, Ellipsoid.WGS84, tasks::add, 8, 64, 1)
+      {
+         private boolean mFailed;
+
+         @Override
+         public CompletableFuture<GeodeticCurve> calculateGeodeticCurve(GlobalCoordinates start, GlobalCoordinates end)
+         {
+            if (!mFailed)
+            {
+               mFailed = true;
+               throw new IllegalStateException("refused");
+            }
+            return super.calculateGeodeticCurve(start, end);
+         }
+      };
+      CoalescingGeodeticCalculator coalescing = new CoalescingGeodeticCalculator(async);
+
+      GlobalCoordinates lincolnMemorial = new GlobalCoordinates(38.88922, -77.04978);
+      GlobalCoordinates eiffelTower = new GlobalCoordinates(48.85889, 2.29583);
+
+      try
+      {
+         coalescing.calculateGeodeticCurve(lincolnMemorial, eiffelTower);
+         fail("expected IllegalStateException");
+      }
+      catch (IllegalStateException ex)
+      {
+         assertEquals("refused", ex.getMessage());
+      }
+
+      // the failed request isn't left behind for later ones to join
+      assertEquals(0, coalescing.getInFlightCount());
+
+      CompletableFuture<GeodeticCurve> curve = coalescing.calculateGeodeticCurve(lincolnMemorial, eiffelTower);
+      while (!tasks.isEmpty())
+      {
+         tasks.remove(0).run();
+      }
+
+      assertEquals(geoCalc.calculateGeodeticCurve(Ellipsoid.WGS84, lincolnMemorial, eiffelTower).getEllipsoidalDistance(), curve.get().getEllipsoidalDistance(), 0.0);
+   }
+
+   @Test(timeout=10000)
+   public void testErrors() throws Exception
+   {
+      // a calculator that fails with an error rather than an exception
+      GeodeticCalculator broken = new GeodeticCalculator()
+      {
+         @Override
+         public void calculateGeodeticCurves(Ellipsoid ellipsoid, double[] starts, double[] ends, int count, double[] curves)
+         {
+            throw new AssertionError("broken");
+         }
+      };
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+
+      try
+      {
+         AsyncGeodeticCalculator async = new AsyncGeodeticCalculator(broken, Ellipsoid.WGS84, executor, 8, 16, 2);
+         GlobalCoordinates lincolnMemorial = new GlobalCoordinates(38.88922, -77.04978);
+         List<CompletableFuture<GeodeticCurve>> curves = new ArrayList<CompletableFuture<GeodeticCurve>>();
+
+         // more than the in-flight limit, so permits must come back
+         for (int i = 0; i < 100; i++)
+         {
+            curves.add(async.calculateGeodeticCurve(lincolnMemorial, new GlobalCoordinates(48.85889 - i * 0.01, 2.29583)));
+         }
+
+         for (CompletableFuture<GeodeticCurve> curve : curves)
+         {
+            try
+            {
+               curve.get();
+               fail("expected ExecutionException");
+            }
+            catch (ExecutionException ex)
+            {
+               assertTrue(ex.getCause() instanceof AssertionError);
+            }
+         }
+
+         try
+         {
+            async.calculateGeodeticCurves(new double[200], new double[200], 100).get();
+            fail("expected ExecutionException");
+         }
+         catch (ExecutionException ex)
+         {
+            assertTrue(ex.getCause() instanceof AssertionError);
+         }
+
+         assertEquals(16, async.getAvailableCapacity());
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+}
@@ -0,0 +1,171 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CalculatorStatisticsTest
+{
+   @Test
+   public void testCounting()
+   {
+      CalculatorStatistics stats = new CalculatorStatistics();
+      PrecisionProfile nan = new PrecisionProfile(1e-13, 20, 1e-13, 100, PrecisionProfile.NonConvergence.NAN);
+      GeodeticCalculator geoCalc = new GeodeticCalculator(nan, null, stats);
+      Ellipsoid reference = Ellipsoid.WGS84;
+
+      assertNull(new GeodeticCalculator().getStatistics());
+      assertTrue(geoCalc.getStatistics() == stats);
+
+      GlobalCoordinates lincolnMemorial = new GlobalCoordinates(38.88922, -77.04978);
+      GlobalCoordinates eiffelTower = new GlobalCoordinates(48.85889, 2.29583);
+
+      GeodeticCurve geoCurve = geoCalc.calculateGeodeticCurve(reference, lincolnMemorial, eiffelTower);
+      geoCalc.calculateEndingGlobalCoordinates(reference, lincolnMemorial, geoCurve.getAzimuth(), geoCurve.getEllipsoidalDistance());
+      geoCalc.calculateGeodeticMeasurement(reference, new GlobalPosition(lincolnMemorial, 0.0), new GlobalPosition(eiffelTower, 100.0));
+
+      // one inverse and three directs along the same geodesic
+      double[] fractions = { 0.25, 0.5, 0.75 };
+      double[] coords = new double[6];
+      geoCalc.calculateIntermediateCoordinates(reference, 38.88922, -77.04978, 48.85889, 2.29583, fractions, 3, coords, 0);
+
+      // a non-converging inverse reported as NaN, and NaN input
+      geoCalc.calculateGeodeticCurve(reference, new GlobalCoordinates(0, 0), new GlobalCoordinates(0.5, 179.7));
+      geoCalc.calculateGeodeticCurve(reference, 0.0, 0.0, Double.NaN, 0.0, new double[3], 0);
+
+      assertEquals(5, stats.getInverseCount());
+      assertEquals(4, stats.getDirectCount());
+      assertEquals(2, stats.getCurveCount());
+      assertEquals(1, stats.getMeasurementCount());
+      assertEquals(1, stats.getNonConvergenceCount());
+      assertEquals(2, stats.getNaNCount());
+      assertEquals(5, stats.getInverseLatency().getCount());
+      assertEquals(2, stats.getDirectLatency().getCount());
+      // the measurement is taken 50 meters up
+      assertEquals(3 * geoCurve.getEllipsoidalDistance(), stats.getTotalDistance(), 100.0);
+
+      stats.reset();
+      assertEquals(0, stats.getInverseCount());
+      assertEquals(0.0, stats.getTotalDistance(), 0.0);
+      assertEquals(0, stats.getInverseLatency().getCount());
+   }
+
+   @Test
+   public void testConcurrentUpdates() throws InterruptedException
+   {
+      final CalculatorStatistics stats = new CalculatorStatistics();
+      final int threads = 8;
+      final int calls = 2000;
+      Thread[] workers = new Thread[threads];
+
+      for (int t = 0; t < threads; t++)
+      {
+         workers[t] = new Thread(() -> {
+            GeodeticCalculator geoCalc = new GeodeticCalculator(PrecisionProfile.DEFAULT, null, stats);
+            double[] curve = new double[3];
+
+            for (int i = 0; i < calls; i++)
+               geoCalc.calculateGeodeticCurve(Ellipsoid.WGS84, 0.0, 0.0, 0.0, 1.0, curve, 0);
+         });
+         workers[t].start();
+      }
+
+      for (Thread worker : workers)
+         worker.join();
+
+      assertEquals(threads * calls, stats.getInverseCount());
+      assertEquals(threads * calls, stats.getInverseLatency().getCount());
+      assertEquals(threads * calls * 111319.49079327357, stats.getTotalDistance(), 1e-3);
+   }
+
+   @Test
+   public void testHistogram()
+   {
+      LatencyHistogram histogram = new LatencyHistogram();
+
+      // buckets tile the values without gaps, each within 1/16 of its values
+      assertEquals(0, histogram.getLowerBound(0));
+      for (int i = 0; i < histogram.getBucketCount() - 1; i++)
+      {
+         long lower = histogram.getLowerBound(i);
+         long upper = histogram.getUpperBound(i);
+
+         assertEquals(upper, histogram.getLowerBound(i + 1));
+         assertTrue(upper - lower <= Math.max(1, lower / 16));
+      }
+      assertEquals(Long.MAX_VALUE, histogram.getUpperBound(histogram.getBucketCount() - 1));
+
+      for (int i = 1; i <= 1000; i++)
+         histogram.record(1000L * i);
+      histogram.record(-5L);
+      assertEquals(500500000L, histogram.getSum());
+
+      histogram.record(Long.MAX_VALUE);
+      assertEquals(1002, histogram.getCount());
+      assertEquals(1, histogram.getCount(0));
+      assertEquals(1, histogram.getCount(histogram.getBucketCount() - 1));
+      assertEquals(500000.0, histogram.getValueAtQuantile(0.5), 500000.0 / 16);
+      assertEquals(990000.0, histogram.getValueAtQuantile(0.99), 990000.0 / 16);
+      assertEquals(0L, histogram.getValueAtQuantile(0.0));
+   }
+
+   @Test
+   public void testExport()
+   {
+      CalculatorStatistics stats = new CalculatorStatistics();
+      GeodeticCalculator geoCalc = new GeodeticCalculator(PrecisionProfile.DEFAULT, null, stats);
+      geoCalc.calculateGeodeticCurve(Ellipsoid.WGS84, new GlobalCoordinates(0, 0), new GlobalCoordinates(0, 1));
+
+      final List<String> lines = new ArrayList<String>();
+      stats.export(new StatisticsExporter()
+      {
+         @Override
+         public void counter(String name, String help, double value)
+         {
+            lines.add(name + " " + value);
+         }
+
+         @Override
+         public void histogram(String name, String help, LatencyHistogram histogram)
+         {
+            lines.add(name + "_count " + histogram.getCount());
+         }
+      });
+
+      assertEquals(9, lines.size());
+      assertTrue(lines.contains("geodesy_inverse_solutions_total 1.0"));
+      assertTrue(lines.contains("geodesy_curves_total 1.0"));
+      assertTrue(lines.contains("geodesy_inverse_latency_nanoseconds_count 1"));
+      assertTrue(lines.contains("geodesy_direct_latency_nanoseconds_count 0"));
+   }
+}
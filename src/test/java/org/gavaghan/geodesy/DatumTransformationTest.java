@@ -0,0 +1,134 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DatumTransformationTest
+{
+   @Test
+   public void testGeocentricRoundTrip()
+   {
+      Random random = new Random(3);
+      double[] xyz = new double[3];
+      double[] position = new double[3];
+
+      for (int i = 0; i < 1000; i++)
+      {
+         double lat = random.nextDouble() * 180.0 - 90.0;
+         double lon = random.nextDouble() * 360.0 - 180.0;
+         double elevation = random.nextDouble() * 11000.0 - 1000.0;
+
+         Geocentric.toCartesian(Ellipsoid.WGS84, lat, lon, elevation, xyz, 0);
+         Geocentric.toGeodetic(Ellipsoid.WGS84, xyz[0], xyz[1], xyz[2], position, 0);
+
+         assertEquals(lat, position[0], 0.000000001);
+         assertEquals(lon, position[1], 0.000000001);
+         assertEquals(elevation, position[2], 0.0001);
+      }
+   }
+
+   @Test
+   public void testTransformation()
+   {
+      // the Royal Observatory, Greenwich
+      DatumTransformation toOSGB36 = DatumRegistry.getTransformation("wgs84", "osgb36");
+      GlobalPosition greenwich = new GlobalPosition(51.47788, -0.00147, 0.0);
+      GlobalPosition airy = toOSGB36.transform(greenwich);
+
+      assertEquals(51.4774, airy.getLatitude(), 0.0001);
+      assertEquals(0.0001, airy.getLongitude(), 0.0001);
+
+      // there and back again
+      DatumTransformation toWGS84 = DatumRegistry.getTransformation(Datum.OSGB36, Datum.WGS84);
+      GlobalPosition back = toWGS84.transform(airy);
+
+      assertEquals(greenwich.getLatitude(), back.getLatitude(), 0.000000001);
+      assertEquals(greenwich.getLongitude(), back.getLongitude(), 0.000000001);
+      assertEquals(greenwich.getElevation(), back.getElevation(), 0.0001);
+
+      // between two datums other than WGS84, through WGS84
+      GlobalPosition ed50 = DatumRegistry.getTransformation(Datum.OSGB36, Datum.ED50).transform(airy);
+      GlobalPosition direct = DatumRegistry.getTransformation(Datum.WGS84, Datum.ED50).transform(greenwich);
+
+      assertEquals(direct.getLatitude(), ed50.getLatitude(), 0.000000001);
+      assertEquals(direct.getLongitude(), ed50.getLongitude(), 0.000000001);
+      assertEquals(direct.getElevation(), ed50.getElevation(), 0.0001);
+
+      // batch matches single
+      int count = 100;
+      double[] positions = new double[3 * count];
+      double[] coordinates = new double[2 * count];
+      for (int i = 0; i < count; i++)
+      {
+         positions[3 * i] = coordinates[2 * i] = 49.0 + 0.1 * i;
+         positions[3 * i + 1] = coordinates[2 * i + 1] = -8.0 + 0.1 * i;
+         positions[3 * i + 2] = 10.0 * i;
+      }
+
+      double[] results = new double[3 * count];
+      toWGS84.transformPositions(positions, count, results);
+      toWGS84.transformCoordinates(coordinates, count, coordinates);
+
+      for (int i = 0; i < count; i++)
+      {
+         GlobalPosition single = toWGS84.transform(new GlobalPosition(positions[3 * i], positions[3 * i + 1], positions[3 * i + 2]));
+
+         assertEquals(single.getLatitude(), results[3 * i], 0.0000001);
+         assertEquals(single.getLongitude(), results[3 * i + 1], 0.0000001);
+         assertEquals(single.getElevation(), results[3 * i + 2], 0.0001);
+
+         // without elevation the horizontal shift barely changes
+         assertEquals(results[3 * i], coordinates[2 * i], 0.00001);
+         assertEquals(results[3 * i + 1], coordinates[2 * i + 1], 0.00001);
+      }
+   }
+
+   @Test
+   public void testRegistry()
+   {
+      assertSame(Ellipsoid.Clarke1880, DatumRegistry.getEllipsoid("CLARKE1880"));
+      assertSame(Datum.NAD83, DatumRegistry.getDatum("nad83"));
+      assertNull(DatumRegistry.getDatum("unknown"));
+      assertSame(DatumRegistry.getTransformation(Datum.WGS72, Datum.NAD83), DatumRegistry.getTransformation("WGS72", "NAD83"));
+
+      Datum local = new Datum("Local", Ellipsoid.GRS80, 1.0, 2.0, 3.0, 0.0, 0.0, 0.0, 0.0);
+      DatumRegistry.registerDatum(local);
+
+      assertSame(local, DatumRegistry.getDatum("LOCAL"));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testUnknownDatum()
+   {
+      DatumRegistry.getTransformation("WGS84", "unknown");
+   }
+}
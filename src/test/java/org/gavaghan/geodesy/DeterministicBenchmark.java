@@ -0,0 +1,103 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+import java.util.Random;
+
+/**
+ * Compares the throughput of the fast and deterministic precision profiles.
+ * Not a unit test; run it by hand after 'mvn test-compile':
+ * 
+ * <pre>
+ * java -cp target/classes:target/test-classes org.gavaghan.geodesy.DeterministicBenchmark
+ * </pre>
+ */
+public class DeterministicBenchmark
+{
+   static private final int COUNT = 100000;
+   static private final int ROUNDS = 10;
+
+   static private double sink;
+
+   static private double inverse(GeodeticCalculator geoCalc, double[] starts, double[] ends, double[] curves)
+   {
+      long start = System.nanoTime();
+      geoCalc.calculateGeodeticCurves(Ellipsoid.WGS84, starts, ends, COUNT, curves);
+      long elapsed = System.nanoTime() - start;
+
+      sink += curves[0];
+      return COUNT * 1e9 / elapsed;
+   }
+
+   static private double direct(GeodeticCalculator geoCalc, double[] starts, double[] bearings, double[] distances, double[] destinations, double[] endBearings)
+   {
+      long start = System.nanoTime();
+      geoCalc.calculateEndingCoordinates(Ellipsoid.WGS84, starts, bearings, distances, COUNT, destinations, endBearings);
+      long elapsed = System.nanoTime() - start;
+
+      sink += destinations[0];
+      return COUNT * 1e9 / elapsed;
+   }
+
+   static public void main(String[] args)
+   {
+      Random random = new Random(42);
+      double[] starts = new double[2 * COUNT];
+      double[] ends = new double[2 * COUNT];
+      double[] bearings = new double[COUNT];
+      double[] distances = new double[COUNT];
+      double[] curves = new double[3 * COUNT];
+      double[] destinations = new double[2 * COUNT];
+      double[] endBearings = new double[COUNT];
+
+      for (int i = 0; i < COUNT; i++)
+      {
+         starts[2 * i] = random.nextDouble() * 160.0 - 80.0;
+         starts[2 * i + 1] = random.nextDouble() * 360.0 - 180.0;
+         ends[2 * i] = random.nextDouble() * 160.0 - 80.0;
+         ends[2 * i + 1] = random.nextDouble() * 360.0 - 180.0;
+         bearings[i] = random.nextDouble() * 360.0;
+         distances[i] = random.nextDouble() * 1e7;
+      }
+
+      GeodeticCalculator fast = new GeodeticCalculator(PrecisionProfile.DEFAULT);
+      GeodeticCalculator strict = new GeodeticCalculator(PrecisionProfile.DETERMINISTIC);
+
+      double[] best = new double[4];
+      for (int round = 0; round < ROUNDS; round++)
+      {
+         best[0] = Math.max(best[0], inverse(fast, starts, ends, curves));
+         best[1] = Math.max(best[1], inverse(strict, starts, ends, curves));
+         best[2] = Math.max(best[2], direct(fast, starts, bearings, distances, destinations, endBearings));
+         best[3] = Math.max(best[3], direct(strict, starts, bearings, distances, destinations, endBearings));
+      }
+
+      System.out.println(String.format("%-8s %16s %16s %8s", "problem", "fast (ops/s)", "strict (ops/s)", "cost"));
+      System.out.println(String.format("%-8s %16.0f %16.0f %7.1f%%", "inverse", best[0], best[1], 100.0 * (1.0 - best[1] / best[0])));
+      System.out.println(String.format("%-8s %16.0f %16.0f %7.1f%%", "direct", best[2], best[3], 100.0 * (1.0 - best[3] / best[2])));
+      System.out.println("(checksum " + sink + ")");
+   }
+}
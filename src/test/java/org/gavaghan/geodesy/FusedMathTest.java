@@ -0,0 +1,76 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+public class FusedMathTest
+{
+   /** a * b rounds to 1, so only a fused multiply-add sees the low bits */
+   static private final double A = 1.0 + Math.scalb(1.0, -30);
+   static private final double B = 1.0 - Math.scalb(1.0, -30);
+
+   @Test
+   public void testBaseline()
+   {
+      assertEquals(0.0, FusedMath.fma(A, B, -1.0), 0.0);
+   }
+
+   @Test
+   public void testJava9Version() throws Exception
+   {
+      // tests run against the baseline in target/classes, so load the
+      // multi-release version from beside it directly
+      assumeFalse(System.getProperty("java.specification.version").startsWith("1."));
+
+      File classes = new File(FusedMath.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+      File versioned = new File(classes, "META-INF/versions/9/org/gavaghan/geodesy/FusedMath.class");
+      assumeTrue(versioned.isFile());
+
+      final byte[] bytes = Files.readAllBytes(versioned.toPath());
+      ClassLoader loader = new ClassLoader(null)
+      {
+         @Override
+         protected Class<?> findClass(String name) throws ClassNotFoundException
+         {
+            if (!name.equals(FusedMath.class.getName())) throw new ClassNotFoundException(name);
+            return defineClass(name, bytes, 0, bytes.length);
+         }
+      };
+
+      Method fma = loader.loadClass(FusedMath.class.getName()).getDeclaredMethod("fma", double.class, double.class, double.class);
+      fma.setAccessible(true);
+
+      assertEquals(-Math.scalb(1.0, -60), (Double) fma.invoke(null, A, B, -1.0), 0.0);
+   }
+}
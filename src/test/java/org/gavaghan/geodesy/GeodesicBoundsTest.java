@@ -0,0 +1,154 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class GeodesicBoundsTest
+{
+   private final GeodeticCalculator mCalc = new GeodeticCalculator();
+   private final GeodesicBounds mBounds = new GeodesicBounds(mCalc, Ellipsoid.WGS84);
+
+   @Test
+   public void testCircleBounds()
+   {
+      Random random = new Random(3);
+      double[] point = new double[2];
+
+      for (int t = 0; t < 200; t++)
+      {
+         GlobalCoordinates center = new GlobalCoordinates(random.nextDouble() * 170.0 - 85.0, random.nextDouble() * 360.0 - 180.0);
+         double latitude = center.getLatitude();
+         double longitude = center.getLongitude();
+         double radius = Math.pow(10.0, 1.0 + random.nextDouble() * 6.0);
+         double[] box = mBounds.calculateCircleBounds(center, radius);
+
+         // every point on the circle is inside, and the edges are reached
+         double north = -90.0;
+         double south = 90.0;
+         double east = 0.0;
+         for (int k = 0; k < 720; k++)
+         {
+            mCalc.calculateEndingCoordinates(Ellipsoid.WGS84, latitude, longitude, k * 0.5, radius, point, 0);
+            assertTrue(GeodesicBounds.contains(box, 0, point[0], point[1]));
+
+            north = Math.max(north, point[0]);
+            south = Math.min(south, point[0]);
+            east = Math.max(east, GlobalCoordinates.canonicalLongitude(point[1] - longitude));
+         }
+
+         if (box[GeodesicBounds.NORTH] < 90.0) assertEquals(north, box[GeodesicBounds.NORTH], 1e-12);
+         if (box[GeodesicBounds.SOUTH] > -90.0) assertEquals(south, box[GeodesicBounds.SOUTH], 1e-12);
+         if (box[GeodesicBounds.EAST] != 180.0) assertEquals(east, GlobalCoordinates.canonicalLongitude(box[GeodesicBounds.EAST] - longitude), 1e-4 * east);
+      }
+   }
+
+   @Test
+   public void testPolesAndAntimeridian()
+   {
+      // a circle around a point near the north pole takes in the pole
+      double[] box = mBounds.calculateCircleBounds(new GlobalCoordinates(89.0, 30.0), 200000.0);
+      assertEquals(90.0, box[GeodesicBounds.NORTH], 0.0);
+      assertEquals(-180.0, box[GeodesicBounds.WEST], 0.0);
+      assertEquals(180.0, box[GeodesicBounds.EAST], 0.0);
+      assertEquals(87.2, box[GeodesicBounds.SOUTH], 0.05);
+
+      // a circle on the antimeridian wraps
+      box = mBounds.calculateCircleBounds(new GlobalCoordinates(-16.5, 179.5), 100000.0);
+      assertTrue(box[GeodesicBounds.WEST] > box[GeodesicBounds.EAST]);
+      assertTrue(GeodesicBounds.contains(box, 0, -16.5, -179.9));
+      assertFalse(GeodesicBounds.contains(box, 0, -16.5, 0.0));
+
+      double[] split = new double[8];
+      int[] sources = new int[2];
+      assertEquals(2, GeodesicBounds.splitAtAntimeridian(box, 1, split, sources));
+      assertEquals(180.0, split[GeodesicBounds.EAST], 0.0);
+      assertEquals(-180.0, split[GeodesicBounds.BOX_SIZE + GeodesicBounds.WEST], 0.0);
+      assertEquals(box[GeodesicBounds.EAST], split[GeodesicBounds.BOX_SIZE + GeodesicBounds.EAST], 0.0);
+      assertArrayEquals(new int[] { 0, 0 }, sources);
+
+      // a segment across the antimeridian
+      box = mBounds.calculateSegmentBounds(new GlobalCoordinates(10.0, 170.0), new GlobalCoordinates(12.0, -170.0));
+      assertEquals(170.0, box[GeodesicBounds.WEST], 0.0);
+      assertEquals(-170.0, box[GeodesicBounds.EAST], 0.0);
+
+      // and one over the pole
+      box = mBounds.calculateSegmentBounds(new GlobalCoordinates(80.0, 0.0), new GlobalCoordinates(80.0, 180.0));
+      assertEquals(90.0, box[GeodesicBounds.NORTH], 0.0);
+      assertEquals(80.0, box[GeodesicBounds.SOUTH], 0.0);
+      assertEquals(-180.0, box[GeodesicBounds.WEST], 0.0);
+   }
+
+   @Test
+   public void testSegmentBounds()
+   {
+      // great circle routes bulge toward the pole
+      GlobalCoordinates lincolnMemorial = new GlobalCoordinates(38.88922, -77.04978);
+      GlobalCoordinates eiffelTower = new GlobalCoordinates(48.85889, 2.29583);
+      double[] box = mBounds.calculateSegmentBounds(lincolnMemorial, eiffelTower);
+
+      double[] fractions = new double[1001];
+      for (int i = 0; i < fractions.length; i++)
+         fractions[i] = i / 1000.0;
+
+      double[] points = new double[2 * fractions.length];
+      mCalc.calculateIntermediateCoordinates(Ellipsoid.WGS84, lincolnMemorial.getLatitude(), lincolnMemorial.getLongitude(), eiffelTower.getLatitude(), eiffelTower.getLongitude(), fractions, fractions.length, points, 0);
+
+      double north = -90.0;
+      for (int i = 0; i < fractions.length; i++)
+      {
+         assertTrue(GeodesicBounds.contains(box, 0, points[2 * i], points[2 * i + 1]));
+         north = Math.max(north, points[2 * i]);
+      }
+
+      assertTrue(box[GeodesicBounds.NORTH] > 51.0);
+      assertEquals(north, box[GeodesicBounds.NORTH], 1e-5);
+      assertEquals(lincolnMemorial.getLatitude(), box[GeodesicBounds.SOUTH], 0.0);
+      assertEquals(lincolnMemorial.getLongitude(), box[GeodesicBounds.WEST], 0.0);
+      assertEquals(eiffelTower.getLongitude(), box[GeodesicBounds.EAST], 0.0);
+
+      // batches match single segments
+      double[] starts = { lincolnMemorial.getLatitude(), lincolnMemorial.getLongitude(), -33.8688, 151.2093 };
+      double[] ends = { eiffelTower.getLatitude(), eiffelTower.getLongitude(), 51.5074, -0.1278 };
+      double[] boxes = new double[8];
+      mBounds.segmentBounds(starts, ends, 2, boxes);
+
+      for (int i = 0; i < 4; i++)
+         assertEquals(box[i], boxes[i], 0.0);
+
+      double[] single = new double[4];
+      mBounds.segmentBounds(-33.8688, 151.2093, 51.5074, -0.1278, single, 0);
+      for (int i = 0; i < 4; i++)
+         assertEquals(single[i], boxes[4 + i], 0.0);
+   }
+}
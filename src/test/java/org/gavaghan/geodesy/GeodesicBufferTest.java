@@ -0,0 +1,99 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class GeodesicBufferTest
+{
+   @Test
+   public void testCircle()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      Ellipsoid reference = Ellipsoid.WGS84;
+      GeodesicBuffer buffer = new GeodesicBuffer(geoCalc, reference);
+
+      GlobalCoordinates lincolnMemorial = new GlobalCoordinates(38.88922, -77.04978);
+      double radius = 25000.0;
+      double maxError = 1.0;
+
+      double[] ring = buffer.circle(lincolnMemorial, radius, maxError);
+      int n = ring.length / 2;
+
+      // finer tolerances need more vertices
+      assertTrue(buffer.getCircleVertexCount(radius, 0.1) > n);
+
+      for (int i = 0; i < n; i++)
+      {
+         GlobalCoordinates vertex = new GlobalCoordinates(ring[2 * i], ring[2 * i + 1]);
+         GlobalCoordinates next = new GlobalCoordinates(ring[(2 * i + 2) % ring.length], ring[(2 * i + 3) % ring.length]);
+
+         // every vertex is on the circle
+         assertEquals(radius, geoCalc.calculateGeodeticCurve(reference, lincolnMemorial, vertex).getEllipsoidalDistance(), 0.001);
+
+         // and the middle of every edge is within the chord error
+         GeodeticCurve edge = geoCalc.calculateGeodeticCurve(reference, vertex, next);
+         GlobalCoordinates middle = geoCalc.calculateEndingGlobalCoordinates(reference, vertex, edge.getAzimuth(), edge.getEllipsoidalDistance() / 2);
+         double sagitta = radius - geoCalc.calculateGeodeticCurve(reference, lincolnMemorial, middle).getEllipsoidalDistance();
+
+         assertTrue(sagitta >= 0.0);
+         assertTrue(sagitta <= maxError);
+      }
+   }
+
+   @Test
+   public void testCorridor()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      Ellipsoid reference = Ellipsoid.WGS84;
+      GeodesicBuffer buffer = new GeodesicBuffer(geoCalc, reference);
+
+      // a zig-zag, with a repeated point
+      double[] polyline = { 38.0, -77.0, 38.1, -77.0, 38.1, -77.0, 38.2, -76.9, 38.2, -77.1 };
+      double halfWidth = 500.0;
+
+      double[] outline = buffer.corridor(polyline, 5, halfWidth, 0.5);
+
+      assertTrue(outline.length > 20);
+
+      for (int i = 0; i < outline.length / 2; i++)
+      {
+         GlobalCoordinates vertex = new GlobalCoordinates(outline[2 * i], outline[2 * i + 1]);
+         double nearest = Double.MAX_VALUE;
+
+         for (int j = 0; j < 5; j++)
+         {
+            GlobalCoordinates point = new GlobalCoordinates(polyline[2 * j], polyline[2 * j + 1]);
+            nearest = Math.min(nearest, geoCalc.calculateGeodeticCurve(reference, point, vertex).getEllipsoidalDistance());
+         }
+
+         // every vertex is offset from a point of the polyline
+         assertEquals(halfWidth, nearest, 0.001);
+      }
+   }
+}
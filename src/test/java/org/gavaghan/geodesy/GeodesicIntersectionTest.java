@@ -0,0 +1,158 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class GeodesicIntersectionTest
+{
+   @Test
+   public void testIntersection()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      Ellipsoid reference = Ellipsoid.WGS84;
+      GeodesicIntersection intersection = new GeodesicIntersection(geoCalc, reference);
+
+      // cross two geodesics at a known point
+      GlobalCoordinates lincolnMemorial = new GlobalCoordinates(38.88922, -77.04978);
+      GlobalCoordinates crossing = geoCalc.calculateEndingGlobalCoordinates(reference, lincolnMemorial, 52.0, 700000.0);
+      GlobalCoordinates other = geoCalc.calculateEndingGlobalCoordinates(reference, crossing, 170.0, 400000.0);
+      double otherBearing = geoCalc.calculateGeodeticCurve(reference, other, crossing).getAzimuth();
+
+      GlobalCoordinates found = intersection.calculateIntersection(lincolnMemorial, 52.0, other, otherBearing);
+
+      assertEquals(crossing.getLatitude(), found.getLatitude(), 0.00000001);
+      assertEquals(crossing.getLongitude(), found.getLongitude(), 0.00000001);
+
+      double[] result = new double[GeodesicIntersection.INTERSECTION_SIZE];
+      assertTrue(intersection.intersect(lincolnMemorial.getLatitude(), lincolnMemorial.getLongitude(), 52.0, other.getLatitude(), other.getLongitude(), otherBearing, result, 0));
+      assertEquals(700000.0, result[GeodesicIntersection.DISTANCE_1], 0.001);
+      assertEquals(400000.0, result[GeodesicIntersection.DISTANCE_2], 0.001);
+
+      // looking away from the crossing puts it behind
+      intersection.intersect(lincolnMemorial.getLatitude(), lincolnMemorial.getLongitude(), 232.0, other.getLatitude(), other.getLongitude(), otherBearing, result, 0);
+      assertEquals(-700000.0, result[GeodesicIntersection.DISTANCE_1], 0.001);
+
+      // the same geodesic twice doesn't intersect
+      double[] bearing = new double[1];
+      GlobalCoordinates further = geoCalc.calculateEndingGlobalCoordinates(reference, lincolnMemorial, 52.0, 100000.0, bearing);
+      assertNull(intersection.calculateIntersection(lincolnMemorial, 52.0, further, bearing[0]));
+      assertFalse(intersection.intersect(0.0, 0.0, 90.0, 0.0, 30.0, 270.0, result, 0));
+
+      // batch matches single
+      int count = 50;
+      double[] geodesics1 = new double[3 * count];
+      double[] geodesics2 = new double[3 * count];
+      for (int i = 0; i < count; i++)
+      {
+         geodesics1[3 * i] = -60.0 + 2.4 * i;
+         geodesics1[3 * i + 1] = 10.0 + 0.5 * i;
+         geodesics1[3 * i + 2] = 7.0 * i;
+         geodesics2[3 * i] = -50.0 + 2.0 * i;
+         geodesics2[3 * i + 1] = 25.0 - 0.3 * i;
+         geodesics2[3 * i + 2] = 100.0 + 3.0 * i;
+      }
+
+      double[] results = new double[GeodesicIntersection.INTERSECTION_SIZE * count];
+      intersection.intersect(geodesics1, geodesics2, count, results);
+
+      for (int i = 0; i < count; i++)
+      {
+         intersection.intersect(geodesics1[3 * i], geodesics1[3 * i + 1], geodesics1[3 * i + 2], geodesics2[3 * i], geodesics2[3 * i + 1], geodesics2[3 * i + 2], result, 0);
+
+         for (int j = 0; j < GeodesicIntersection.INTERSECTION_SIZE; j++)
+            assertEquals(result[j], results[GeodesicIntersection.INTERSECTION_SIZE * i + j], 0.0);
+
+         // the intersection really is on both geodesics
+         if (!Double.isNaN(result[0]))
+         {
+            GlobalCoordinates start1 = new GlobalCoordinates(geodesics1[3 * i], geodesics1[3 * i + 1]);
+            GlobalCoordinates start2 = new GlobalCoordinates(geodesics2[3 * i], geodesics2[3 * i + 1]);
+            GlobalCoordinates end1 = geoCalc.calculateEndingGlobalCoordinates(reference, start1, geodesics1[3 * i + 2], result[GeodesicIntersection.DISTANCE_1]);
+            GlobalCoordinates end2 = geoCalc.calculateEndingGlobalCoordinates(reference, start2, geodesics2[3 * i + 2], result[GeodesicIntersection.DISTANCE_2]);
+
+            assertEquals(0.0, geoCalc.calculateGeodeticCurve(reference, end1, end2).getEllipsoidalDistance(), 0.001);
+         }
+      }
+   }
+
+   @Test
+   public void testClosestApproach()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      Ellipsoid reference = Ellipsoid.WGS84;
+      GeodesicIntersection intersection = new GeodesicIntersection(geoCalc, reference);
+
+      // two tracks that arrive at the same point at the same time
+      GlobalCoordinates meeting = new GlobalCoordinates(51.47, -0.45);
+      double[] bearing = new double[1];
+      GlobalCoordinates start1 = geoCalc.calculateEndingGlobalCoordinates(reference, meeting, 225.0, 100000.0, bearing);
+      double bearing1 = bearing[0] + 180.0;
+      GlobalCoordinates start2 = geoCalc.calculateEndingGlobalCoordinates(reference, meeting, 315.0, 50000.0, bearing);
+      double bearing2 = bearing[0] - 180.0;
+
+      double[] result = new double[GeodesicIntersection.APPROACH_SIZE];
+      intersection.closestApproach(start1.getLatitude(), start1.getLongitude(), bearing1, 200.0, start2.getLatitude(), start2.getLongitude(), bearing2, 100.0, 3600.0, result, 0);
+
+      assertEquals(500.0, result[GeodesicIntersection.TIME], 0.001);
+      assertEquals(0.0, result[GeodesicIntersection.SEPARATION], 0.1);
+      assertEquals(meeting.getLatitude(), result[GeodesicIntersection.LATITUDE_1], 0.000001);
+      assertEquals(meeting.getLongitude(), result[GeodesicIntersection.LONGITUDE_2], 0.000001);
+
+      // a short horizon stops the search
+      assertEquals(300.0, intersection.calculateClosestApproachTime(start1, bearing1, 200.0, start2, bearing2, 100.0, 300.0), 0.0);
+
+      // tracks moving apart are closest now
+      assertEquals(0.0, intersection.calculateClosestApproachTime(start1, bearing1 + 180.0, 200.0, start2, bearing2 + 180.0, 100.0, 3600.0), 0.0);
+
+      // the separation at closest approach is a minimum
+      intersection.closestApproach(start1.getLatitude(), start1.getLongitude(), bearing1, 200.0, start2.getLatitude(), start2.getLongitude(), bearing2 + 20.0, 120.0, 3600.0, result, 0);
+
+      double time = result[GeodesicIntersection.TIME];
+      double separation = result[GeodesicIntersection.SEPARATION];
+      for (double dt : new double[] { -10.0, 10.0 })
+      {
+         GlobalCoordinates p1 = geoCalc.calculateEndingGlobalCoordinates(reference, start1, bearing1, 200.0 * (time + dt));
+         GlobalCoordinates p2 = geoCalc.calculateEndingGlobalCoordinates(reference, start2, bearing2 + 20.0, 120.0 * (time + dt));
+
+         assertTrue(geoCalc.calculateGeodeticCurve(reference, p1, p2).getEllipsoidalDistance() > separation);
+      }
+
+      // batch matches single
+      double[] tracks1 = { start1.getLatitude(), start1.getLongitude(), bearing1, 200.0, start1.getLatitude(), start1.getLongitude(), bearing1, 200.0 };
+      double[] tracks2 = { start2.getLatitude(), start2.getLongitude(), bearing2, 100.0, start2.getLatitude(), start2.getLongitude(), bearing2 + 20.0, 120.0 };
+      double[] results = new double[2 * GeodesicIntersection.APPROACH_SIZE];
+      intersection.closestApproaches(tracks1, tracks2, 2, 3600.0, results);
+
+      for (int j = 0; j < GeodesicIntersection.APPROACH_SIZE; j++)
+         assertEquals(result[j], results[GeodesicIntersection.APPROACH_SIZE + j], 0.0);
+      assertEquals(500.0, results[GeodesicIntersection.TIME], 0.001);
+   }
+}
@@ -0,0 +1,215 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class GeodesicProjectionTest
+{
+   @Test
+   public void testCrossAndAlongTrack()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      Ellipsoid reference = Ellipsoid.WGS84;
+      GeodesicProjection projection = new GeodesicProjection(geoCalc, reference);
+
+      GlobalCoordinates lincolnMemorial = new GlobalCoordinates(38.88922, -77.04978);
+      GlobalCoordinates eiffelTower = new GlobalCoordinates(48.85889, 2.29583);
+      GeodeticCurve geoCurve = geoCalc.calculateGeodeticCurve(reference, lincolnMemorial, eiffelTower);
+
+      // walk a third of the way, then step 10 km off to the right
+      double along = geoCurve.getEllipsoidalDistance() / 3;
+      double[] bearing = new double[1];
+      GlobalCoordinates foot = geoCalc.calculateEndingGlobalCoordinates(reference, lincolnMemorial, geoCurve.getAzimuth(), along, bearing);
+      GlobalCoordinates right = geoCalc.calculateEndingGlobalCoordinates(reference, foot, bearing[0] + 90, 10000);
+      GlobalCoordinates left = geoCalc.calculateEndingGlobalCoordinates(reference, foot, bearing[0] - 90, 10000);
+
+      assertEquals(10000.0, projection.calculateCrossTrackDistance(lincolnMemorial, eiffelTower, right), 0.001);
+      assertEquals(-10000.0, projection.calculateCrossTrackDistance(lincolnMemorial, eiffelTower, left), 0.001);
+      assertEquals(along, projection.calculateAlongTrackDistance(lincolnMemorial, eiffelTower, right), 0.001);
+
+      double[] result = new double[GeodesicProjection.RESULT_SIZE];
+      projection.projectOntoSegment(lincolnMemorial.getLatitude(), lincolnMemorial.getLongitude(), eiffelTower.getLatitude(), eiffelTower.getLongitude(), right.getLatitude(), right.getLongitude(), result, 0);
+
+      assertEquals(1.0 / 3.0, result[GeodesicProjection.FRACTION], 0.0000001);
+      assertEquals(foot.getLatitude(), result[GeodesicProjection.LATITUDE], 0.0000001);
+      assertEquals(foot.getLongitude(), result[GeodesicProjection.LONGITUDE], 0.0000001);
+
+      // beyond the end of the segment, the end itself is the nearest point
+      projection.projectOntoSegment(lincolnMemorial.getLatitude(), lincolnMemorial.getLongitude(), foot.getLatitude(), foot.getLongitude(), eiffelTower.getLatitude(), eiffelTower.getLongitude(), result, 0);
+
+      assertEquals(1.0, result[GeodesicProjection.FRACTION], 0.0);
+      assertEquals(geoCurve.getEllipsoidalDistance() - along, Math.abs(result[GeodesicProjection.CROSS_TRACK]), 0.001);
+   }
+
+   @Test
+   public void testSimplify()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      Ellipsoid reference = Ellipsoid.WGS84;
+      GeodesicProjection projection = new GeodesicProjection(geoCalc, reference);
+      Random random = new Random(7);
+
+      // a noisy trace with a 90 degree turn in the middle
+      int count = 400;
+      double[] track = new double[2 * count];
+      double[] coords = new double[2];
+      for (int i = 0; i < count; i++)
+      {
+         double bearing = (i < count / 2) ? 45.0 : 135.0;
+         double lat = (i == 0) ? 38.88922 : track[2 * i - 2];
+         double lon = (i == 0) ? -77.04978 : track[2 * i - 1];
+
+         geoCalc.calculateEndingCoordinates(reference, lat, lon, bearing, 10.0, coords, 0);
+         geoCalc.calculateEndingCoordinates(reference, coords[0], coords[1], random.nextDouble() * 360, random.nextDouble() * 0.01, track, 2 * i);
+      }
+
+      double tolerance = 2.0;
+      double[] simplified = new double[2 * count];
+      int kept = TrackSimplifier.douglasPeucker(projection, track, count, tolerance, simplified);
+
+      assertTrue(kept >= 3);
+      assertTrue(kept <= 10);
+
+      // the streaming simplifier gets a similar reduction
+      final List<double[]> streamed = new ArrayList<double[]>();
+      TrackSimplifier simplifier = new TrackSimplifier(projection, tolerance, 1000, (latitude, longitude) -> streamed.add(new double[] { latitude, longitude }));
+
+      for (int i = 0; i < count; i++)
+      {
+         simplifier.add(track[2 * i], track[2 * i + 1]);
+      }
+      simplifier.finish();
+
+      assertTrue(streamed.size() >= 3);
+      assertTrue(streamed.size() <= 10);
+      assertEquals(track[0], streamed.get(0)[0], 0.0);
+      assertEquals(track[2 * count - 1], streamed.get(streamed.size() - 1)[1], 0.0);
+
+      // and every original point is within tolerance of the streamed track
+      double[] result = new double[GeodesicProjection.RESULT_SIZE];
+      for (int i = 0; i < count; i++)
+      {
+         double best = Double.MAX_VALUE;
+         for (int s = 0; s < streamed.size() - 1; s++)
+         {
+            projection.projectOntoSegment(streamed.get(s)[0], streamed.get(s)[1], streamed.get(s + 1)[0], streamed.get(s + 1)[1], track[2 * i], track[2 * i + 1], result, 0);
+            best = Math.min(best, Math.abs(result[GeodesicProjection.CROSS_TRACK]));
+         }
+         assertTrue(best <= tolerance);
+      }
+   }
+
+   @Test
+   public void testBatchProjection()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      Ellipsoid reference = Ellipsoid.WGS84;
+      GeodesicProjection projection = new GeodesicProjection(geoCalc, reference);
+      Random random = new Random(17);
+
+      // a small road network around a city
+      int segments = 300;
+      double[] starts = new double[2 * segments];
+      double[] ends = new double[2 * segments];
+      for (int i = 0; i < segments; i++)
+      {
+         starts[2 * i] = 48.80 + 0.1 * random.nextDouble();
+         starts[2 * i + 1] = 2.25 + 0.15 * random.nextDouble();
+         ends[2 * i] = starts[2 * i] + 0.004 * (random.nextDouble() - 0.5);
+         ends[2 * i + 1] = starts[2 * i + 1] + 0.006 * (random.nextDouble() - 0.5);
+      }
+      ends[0] = starts[0];
+      ends[1] = starts[1];
+
+      double[] curves = new double[3 * segments];
+      geoCalc.calculateGeodeticCurves(reference, starts, ends, segments, curves);
+
+      // one fix onto every segment matches one segment at a time exactly
+      double[] results = new double[GeodesicProjection.RESULT_SIZE * segments];
+      double[] withCurves = new double[GeodesicProjection.RESULT_SIZE * segments];
+      double[] single = new double[GeodesicProjection.RESULT_SIZE];
+      projection.projectOntoSegments(48.8566, 2.3522, starts, ends, null, segments, results);
+      projection.projectOntoSegments(48.8566, 2.3522, starts, ends, curves, segments, withCurves);
+
+      for (int i = 0; i < segments; i++)
+      {
+         projection.projectOntoSegment(starts[2 * i], starts[2 * i + 1], ends[2 * i], ends[2 * i + 1], 48.8566, 2.3522, single, 0);
+
+         for (int j = 0; j < GeodesicProjection.RESULT_SIZE; j++)
+         {
+            assertEquals(single[j], results[GeodesicProjection.RESULT_SIZE * i + j], 0.0);
+            assertEquals(single[j], withCurves[GeodesicProjection.RESULT_SIZE * i + j], 0.0);
+         }
+      }
+
+      // a trace of fixes, each with its own candidates
+      int fixCount = 500;
+      double[] fixes = new double[2 * fixCount];
+      int[] candidateStarts = new int[fixCount + 1];
+      List<Integer> candidateList = new ArrayList<Integer>();
+      for (int i = 0; i < fixCount; i++)
+      {
+         fixes[2 * i] = 48.80 + 0.1 * random.nextDouble();
+         fixes[2 * i + 1] = 2.25 + 0.15 * random.nextDouble();
+
+         int candidates = random.nextInt(20);
+         for (int k = 0; k < candidates; k++)
+            candidateList.add(random.nextInt(segments));
+         candidateStarts[i + 1] = candidateList.size();
+      }
+
+      int[] candidates = new int[candidateList.size()];
+      for (int k = 0; k < candidates.length; k++)
+         candidates[k] = candidateList.get(k);
+
+      double[] sequential = new double[GeodesicProjection.RESULT_SIZE * candidates.length];
+      double[] parallel = new double[GeodesicProjection.RESULT_SIZE * candidates.length];
+      projection.projectOntoCandidates(fixes, fixCount, candidateStarts, candidates, starts, ends, curves, sequential);
+      projection.projectOntoCandidatesParallel(fixes, fixCount, candidateStarts, candidates, starts, ends, null, parallel);
+
+      for (int i = 0; i < fixCount; i++)
+      {
+         for (int k = candidateStarts[i]; k < candidateStarts[i + 1]; k++)
+         {
+            int s = candidates[k];
+            projection.projectOntoSegment(starts[2 * s], starts[2 * s + 1], ends[2 * s], ends[2 * s + 1], fixes[2 * i], fixes[2 * i + 1], single, 0);
+
+            for (int j = 0; j < GeodesicProjection.RESULT_SIZE; j++)
+            {
+               assertEquals(single[j], sequential[GeodesicProjection.RESULT_SIZE * k + j], 0.0);
+               assertEquals(single[j], parallel[GeodesicProjection.RESULT_SIZE * k + j], 0.0);
+            }
+         }
+      }
+   }
+}
@@ -0,0 +1,100 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Spliterator;
+
+import org.junit.Test;
+
+public class GeodesicStreamsTest
+{
+   @Test
+   public void testDistances()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      Ellipsoid reference = Ellipsoid.WGS84;
+      GlobalCoordinates origin = new GlobalCoordinates(38.88922, -77.04978);
+
+      int count = 1000;
+      double[] starts = new double[2 * count];
+      double[] targets = new double[2 * count];
+      for (int i = 0; i < count; i++)
+      {
+         starts[2 * i] = origin.getLatitude();
+         starts[2 * i + 1] = origin.getLongitude();
+         targets[2 * i] = -80.0 + 0.16 * i;
+         targets[2 * i + 1] = -179.0 + 0.358 * i;
+      }
+
+      double[] expected = new double[count];
+      geoCalc.calculateEllipsoidalDistances(reference, starts, targets, count, expected);
+
+      assertArrayEquals(expected, GeodesicStreams.distances(geoCalc, reference, origin, targets, count).toArray(), 0.0);
+      assertArrayEquals(expected, GeodesicStreams.distances(geoCalc, reference, origin, targets, count).parallel().toArray(), 0.0);
+      assertArrayEquals(expected, GeodesicStreams.distances(geoCalc, reference, starts, targets, count).parallel().toArray(), 0.0);
+
+      // the track through the targets
+      double[] legs = new double[count - 1];
+      double[] ends = new double[2 * (count - 1)];
+      System.arraycopy(targets, 2, ends, 0, ends.length);
+      geoCalc.calculateEllipsoidalDistances(reference, targets, ends, count - 1, legs);
+
+      assertArrayEquals(legs, GeodesicStreams.pairwiseDistances(geoCalc, reference, targets, count).parallel().toArray(), 0.0);
+      assertEquals(0, GeodesicStreams.pairwiseDistances(geoCalc, reference, targets, 1).count());
+   }
+
+   @Test
+   public void testSplitting()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      double[] track = new double[2 * 101];
+
+      Spliterator.OfDouble spliterator = GeodesicStreams.pairwiseDistanceSpliterator(geoCalc, Ellipsoid.WGS84, track, 101);
+
+      assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED));
+      assertEquals(100, spliterator.getExactSizeIfKnown());
+
+      Spliterator.OfDouble prefix = spliterator.trySplit();
+
+      assertEquals(50, prefix.getExactSizeIfKnown());
+      assertEquals(50, spliterator.getExactSizeIfKnown());
+
+      // split down to single elements
+      while (prefix.getExactSizeIfKnown() > 1)
+         prefix = prefix.trySplit();
+      assertNull(prefix.trySplit());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testCountOutOfRange()
+   {
+      GeodesicStreams.distances(new GeodeticCalculator(), Ellipsoid.WGS84, new GlobalCoordinates(0, 0), new double[10], 6);
+   }
+}
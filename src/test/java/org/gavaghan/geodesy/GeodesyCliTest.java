@@ -0,0 +1,99 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class GeodesyCliTest
+{
+   private ByteArrayOutputStream mOut = new ByteArrayOutputStream();
+   private ByteArrayOutputStream mErr = new ByteArrayOutputStream();
+
+   private int run(String input, String... args) throws IOException
+   {
+      return GeodesyCli.run(args, new BufferedReader(new StringReader(input)), new PrintStream(mOut, true), new PrintStream(mErr, true));
+   }
+
+   private double[] parse(String line)
+   {
+      String[] fields = line.trim().split(" ");
+      double[] values = new double[fields.length];
+      for (int i = 0; i < fields.length; i++)
+         values[i] = Double.parseDouble(fields[i]);
+      return values;
+   }
+
+   @Test
+   public void testInverse() throws IOException
+   {
+      assertEquals(0, run("", "inverse", "38.88922", "-77.04978", "48.85889", "2.29583"));
+
+      GeodeticCurve curve = new GeodeticCalculator().calculateGeodeticCurve(Ellipsoid.WGS84, new GlobalCoordinates(38.88922, -77.04978), new GlobalCoordinates(48.85889, 2.29583));
+      double[] values = parse(mOut.toString());
+
+      assertEquals(curve.getEllipsoidalDistance(), values[0], 1e-6);
+      assertEquals(curve.getAzimuth(), values[1], 1e-8);
+      assertEquals(curve.getReverseAzimuth(), values[2], 1e-8);
+   }
+
+   @Test
+   public void testDirectFromInput() throws IOException
+   {
+      assertEquals(0, run("# comment\n\n38.88922 -77.04978 51.0 6000000\n0,0,90,1000\n", "direct", "-e", "GRS80"));
+
+      String[] lines = mOut.toString().trim().split("\\R");
+      assertEquals(2, lines.length);
+
+      double[] endBearing = new double[1];
+      GlobalCoordinates dest = new GeodeticCalculator().calculateEndingGlobalCoordinates(Ellipsoid.GRS80, new GlobalCoordinates(38.88922, -77.04978), 51.0, 6000000, endBearing);
+      double[] values = parse(lines[0]);
+
+      assertEquals(dest.getLatitude(), values[0], 1e-8);
+      assertEquals(dest.getLongitude(), values[1], 1e-8);
+      assertEquals(endBearing[0], values[2], 1e-8);
+      assertEquals(90.0, parse(lines[1])[2], 1e-8);
+   }
+
+   @Test
+   public void testErrors() throws IOException
+   {
+      assertEquals(GeodesyCli.USAGE_ERROR, run(""));
+      assertEquals(GeodesyCli.USAGE_ERROR, run("", "bogus"));
+      assertEquals(GeodesyCli.USAGE_ERROR, run("", "inverse", "1", "2", "3", "x"));
+      assertEquals(GeodesyCli.USAGE_ERROR, run("", "inverse", "1", "2", "3", "4", "Flat"));
+      assertEquals(GeodesyCli.USAGE_ERROR, run("1 2 3\n", "direct"));
+      assertTrue(mErr.toString().contains("line 1"));
+   }
+}
@@ -0,0 +1,176 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+public class GeodesyCodecTest
+{
+   @Test
+   public void testRecords()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      GlobalPosition lincolnMemorial = new GlobalPosition(38.88922, -77.04978, 1.0);
+      GlobalPosition eiffelTower = new GlobalPosition(48.85889, 2.29583, 292.0);
+      GeodeticCurve curve = geoCalc.calculateGeodeticCurve(Ellipsoid.WGS84, lincolnMemorial, eiffelTower);
+      GeodeticMeasurement measurement = geoCalc.calculateGeodeticMeasurement(Ellipsoid.WGS84, lincolnMemorial, eiffelTower);
+
+      for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN })
+      {
+         ByteBuffer buffer = ByteBuffer.allocate(256).order(order);
+
+         GeodesyCodec.write(buffer, (GlobalCoordinates) lincolnMemorial);
+         GeodesyCodec.write(buffer, eiffelTower);
+         GeodesyCodec.write(buffer, curve);
+         GeodesyCodec.write(buffer, measurement);
+
+         assertEquals(GeodesyCodec.COORDINATES_SIZE + GeodesyCodec.POSITION_SIZE + GeodesyCodec.CURVE_SIZE + GeodesyCodec.MEASUREMENT_SIZE, buffer.position());
+         assertEquals(order, buffer.order());
+
+         // little-endian whatever the buffer's order
+         assertEquals(lincolnMemorial.getLatitude(), ByteBuffer.wrap(buffer.array()).order(ByteOrder.LITTLE_ENDIAN).getDouble(0), 0.0);
+
+         buffer.flip();
+
+         assertEquals(new GlobalCoordinates(38.88922, -77.04978), GeodesyCodec.readCoordinates(buffer));
+         assertEquals(eiffelTower, GeodesyCodec.readPosition(buffer));
+
+         GeodeticCurve readCurve = GeodesyCodec.readCurve(buffer);
+         assertEquals(curve.getEllipsoidalDistance(), readCurve.getEllipsoidalDistance(), 0.0);
+         assertEquals(curve.getAzimuth(), readCurve.getAzimuth(), 0.0);
+         assertEquals(curve.getReverseAzimuth(), readCurve.getReverseAzimuth(), 0.0);
+
+         GeodeticMeasurement readMeasurement = GeodesyCodec.readMeasurement(buffer);
+         assertEquals(measurement.getPointToPointDistance(), readMeasurement.getPointToPointDistance(), 0.0);
+         assertEquals(measurement.getElevationChange(), readMeasurement.getElevationChange(), 0.0);
+         assertEquals(0, buffer.remaining());
+      }
+   }
+
+   @Test
+   public void testBulk()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      int count = 100;
+      double[] starts = new double[2 * count];
+      double[] ends = new double[2 * count];
+      for (int i = 0; i < count; i++)
+      {
+         starts[2 * i] = -45.0 + 0.9 * i;
+         starts[2 * i + 1] = 100.0 - 2.0 * i;
+         ends[2 * i] = 30.0 - 0.5 * i;
+         ends[2 * i + 1] = -20.0 + 1.5 * i;
+      }
+
+      double[] curves = new double[3 * count];
+      geoCalc.calculateGeodeticCurves(Ellipsoid.WGS84, starts, ends, count, curves);
+
+      ByteBuffer buffer = ByteBuffer.allocate(GeodesyCodec.CURVE_SIZE * count + 3);
+      buffer.put((byte) 1).put((byte) 2).put((byte) 3);
+      GeodesyCodec.write(buffer, curves, 0, 3 * count);
+      assertEquals(buffer.capacity(), buffer.position());
+
+      // primitive records read back as objects
+      buffer.position(3);
+      GeodeticCurve[] objects = new GeodeticCurve[count];
+      GeodesyCodec.readCurves(buffer, objects, 0, count);
+
+      for (int i = 0; i < count; i++)
+      {
+         assertEquals(curves[3 * i], objects[i].getEllipsoidalDistance(), 0.0);
+         assertEquals(curves[3 * i + 2], objects[i].getReverseAzimuth(), 0.0);
+      }
+
+      // and objects back as primitives
+      buffer.clear();
+      GeodesyCodec.write(buffer, objects, 0, count);
+      buffer.flip();
+
+      double[] decoded = new double[3 * count];
+      GeodesyCodec.read(buffer, decoded, 0, 3 * count);
+      assertArrayEquals(curves, decoded, 0.0);
+   }
+
+   @Test
+   public void testTrack()
+   {
+      // a track that crosses the date line and passes over the pole
+      int count = 2000;
+      double[] track = new double[2 * count];
+      for (int i = 0; i < count; i++)
+      {
+         track[2 * i] = Math.min(89.9999 + 0.00001 * i, 90.0);
+         track[2 * i + 1] = (i < count / 2) ? 179.99 + 0.00001 * i : -179.99 - 0.00001 * i;
+      }
+
+      ByteBuffer buffer = ByteBuffer.allocate(16 * count);
+      GeodesyCodec.writeTrack(buffer, track, 0, count);
+
+      // far smaller than fixed width records
+      assertTrue(buffer.position() < 4 * count);
+
+      buffer.flip();
+      double[] decoded = GeodesyCodec.readTrack(buffer);
+
+      assertEquals(0, buffer.remaining());
+      assertArrayEquals(track, decoded, GeodesyCodec.TRACK_RESOLUTION / 2);
+
+      buffer.rewind();
+      double[] into = new double[2 * count + 2];
+      assertEquals(count, GeodesyCodec.readTrack(buffer, into, 2));
+      assertEquals(track[2 * count - 1], into[2 * count + 1], GeodesyCodec.TRACK_RESOLUTION / 2);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testNegativeTrackCount()
+   {
+      // a ten byte varint with the top bit set
+      ByteBuffer buffer = ByteBuffer.allocate(16);
+      for (int i = 0; i < 9; i++) buffer.put((byte) 0xFF);
+      buffer.put((byte) 0x01);
+      buffer.flip();
+
+      GeodesyCodec.readTrack(buffer);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testTrackCountLongerThanBuffer()
+   {
+      // claims a billion points in a handful of bytes
+      ByteBuffer buffer = ByteBuffer.allocate(16);
+      buffer.put((byte) 0x80).put((byte) 0x94).put((byte) 0xEB).put((byte) 0xDC).put((byte) 0x03);
+      buffer.put((byte) 0x00).put((byte) 0x00);
+      buffer.flip();
+
+      GeodesyCodec.readTrack(buffer);
+   }
+}
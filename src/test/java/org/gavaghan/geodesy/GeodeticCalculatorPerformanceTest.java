@@ -0,0 +1,192 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Performance regression tests for the hot paths of GeodeticCalculator. These
+ * are excluded from the default build; run them with 'mvn test -Pperformance'.
+ */
+public class GeodeticCalculatorPerformanceTest
+{
+   static private final int COUNT = 16;
+   static private final int CALLS = 5000;
+
+   private final GeodeticCalculator mCalc = new GeodeticCalculator();
+   private final double[] mStarts = new double[2 * COUNT];
+   private final double[] mEnds = new double[2 * COUNT];
+   private final double[] mPositions1 = new double[3 * COUNT];
+   private final double[] mPositions2 = new double[3 * COUNT];
+   private final double[] mBearings = new double[COUNT];
+   private final double[] mDistances = new double[COUNT];
+   private final double[] mOutput = new double[4 * COUNT];
+   private final double[] mEndBearings = new double[COUNT];
+   private final double[] mFractions = { 0.25, 0.5, 0.75 };
+
+   public GeodeticCalculatorPerformanceTest()
+   {
+      Random random = new Random(5);
+      for (int i = 0; i < COUNT; i++)
+      {
+         mStarts[2 * i] = mPositions1[3 * i] = random.nextDouble() * 160.0 - 80.0;
+         mStarts[2 * i + 1] = mPositions1[3 * i + 1] = random.nextDouble() * 360.0 - 180.0;
+         mEnds[2 * i] = mPositions2[3 * i] = random.nextDouble() * 160.0 - 80.0;
+         mEnds[2 * i + 1] = mPositions2[3 * i + 1] = random.nextDouble() * 360.0 - 180.0;
+         mPositions1[3 * i + 2] = random.nextDouble() * 1000.0;
+         mPositions2[3 * i + 2] = random.nextDouble() * 1000.0;
+         mBearings[i] = random.nextDouble() * 360.0;
+         mDistances[i] = random.nextDouble() * 1e7;
+      }
+   }
+
+   /**
+    * Run a task until it has been compiled, then count the bytes the calling
+    * thread allocates over CALLS further runs.
+    */
+   static private long allocatedBytes(Runnable task)
+   {
+      java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+      com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+      assumeTrue(threads.isThreadAllocatedMemorySupported());
+      threads.setThreadAllocatedMemoryEnabled(true);
+
+      long id = Thread.currentThread().getId();
+      for (int round = 0; round < 3; round++)
+      {
+         for (int i = 0; i < CALLS; i++)
+            task.run();
+      }
+
+      long before = threads.getThreadAllocatedBytes(id);
+      for (int i = 0; i < CALLS; i++)
+         task.run();
+      long after = threads.getThreadAllocatedBytes(id);
+
+      return after - before;
+   }
+
+   /**
+    * Any allocation per call is at least 16 bytes, so fewer bytes than calls
+    * means nothing is allocated per call.
+    */
+   static private void assertNoAllocation(String path, Runnable task)
+   {
+      long bytes = allocatedBytes(task);
+      assertTrue(path + " allocated " + bytes + " bytes in " + CALLS + " calls", bytes < CALLS);
+   }
+
+   @Test
+   public void testBatchPathsDoNotAllocate()
+   {
+      assertNoAllocation("calculateGeodeticCurves", () -> mCalc.calculateGeodeticCurves(Ellipsoid.WGS84, mStarts, mEnds, COUNT, mOutput));
+      assertNoAllocation("calculateEllipsoidalDistances", () -> mCalc.calculateEllipsoidalDistances(Ellipsoid.WGS84, mStarts, mEnds, COUNT, mOutput));
+      assertNoAllocation("calculateEndingCoordinates", () -> mCalc.calculateEndingCoordinates(Ellipsoid.WGS84, mStarts, mBearings, mDistances, COUNT, mOutput, mEndBearings));
+      assertNoAllocation("calculateGeodeticMeasurements", () -> mCalc.calculateGeodeticMeasurements(Ellipsoid.WGS84, mPositions1, mPositions2, COUNT, mOutput));
+      assertNoAllocation("calculateSlantRanges", () -> mCalc.calculateSlantRanges(Ellipsoid.WGS84, mPositions1, mPositions2, COUNT, mOutput));
+      assertNoAllocation("calculateMidpoints", () -> mCalc.calculateMidpoints(Ellipsoid.WGS84, mStarts, mEnds, COUNT, mOutput));
+   }
+
+   @Test
+   public void testReusableResultPathsDoNotAllocate()
+   {
+      assertNoAllocation("calculateGeodeticCurve", () -> mCalc.calculateGeodeticCurve(Ellipsoid.WGS84, mStarts[0], mStarts[1], mEnds[0], mEnds[1], mOutput, 0));
+      assertNoAllocation("calculateEllipsoidalDistance", () -> mCalc.calculateEllipsoidalDistance(Ellipsoid.WGS84, mStarts[2], mStarts[3], mEnds[2], mEnds[3], mOutput, 0));
+      assertNoAllocation("calculateEndingCoordinates", () -> mEndBearings[0] = mCalc.calculateEndingCoordinates(Ellipsoid.WGS84, mStarts[4], mStarts[5], mBearings[2], mDistances[2], mOutput, 0));
+      assertNoAllocation("calculateIntermediateCoordinates", () -> mCalc.calculateIntermediateCoordinates(Ellipsoid.WGS84, mStarts[6], mStarts[7], mEnds[6], mEnds[7], mFractions, mFractions.length, mOutput, 0));
+   }
+
+   /**
+    * Check the number of iterations an inverse solution takes.
+    */
+   private void assertIterations(String name, int most, double lat1, double lon1, double lat2, double lon2)
+   {
+      int iterations = mCalc.calculateGeodeticCurveIterations(Ellipsoid.WGS84, lat1, lon1, lat2, lon2, mOutput, 0);
+
+      assertTrue(name + " took " + iterations + " iterations", (iterations >= 1) && (iterations <= most));
+      assertTrue(name + " distance", Double.isFinite(mOutput[0]));
+   }
+
+   /**
+    * Check that an inverse solution runs to the iteration limit and falls
+    * back to a finite result.
+    */
+   private void assertStopsAtLimit(String name, int max, double lat1, double lon1, double lat2, double lon2)
+   {
+      int iterations = mCalc.calculateGeodeticCurveIterations(Ellipsoid.WGS84, lat1, lon1, lat2, lon2, mOutput, 0);
+
+      assertEquals(name + " iterations", max, iterations);
+      assertTrue(name + " distance", Double.isFinite(mOutput[0]));
+   }
+
+   @Test
+   public void testIterationCounts()
+   {
+      int max = PrecisionProfile.DEFAULT.getInverseMaxIterations();
+
+      // meridians keep lambda at zero and need a single pass
+      assertIterations("meridian", 1, 10.0, 20.0, 50.0, 20.0);
+      assertIterations("pole to pole", 1, 90.0, 0.0, -90.0, 0.0);
+      assertIterations("near pole to near pole", 1, -89.0, 5.0, 89.0, 5.0);
+
+      // polar
+      assertIterations("across the pole", 4, 89.9, 0.0, 89.9, 180.0);
+      assertIterations("around the pole", 4, 88.0, 0.0, 88.0, 90.0);
+
+      // equatorial
+      assertIterations("equator short", 6, 0.0, 0.0, 0.0, 10.0);
+      assertIterations("equator quarter", 6, 0.0, 0.0, 0.0, 90.0);
+      assertIterations("equator long", 6, 0.0, 0.0, 0.0, 179.0);
+
+      // ordinary
+      assertIterations("Lincoln to Eiffel", 6, 38.88922, -77.04978, 48.85889, 2.29583);
+      assertIterations("Sydney to London", 6, -33.8688, 151.2093, 51.5074, -0.1278);
+
+      // near-antipodal points that still converge take longer
+      assertIterations("a degree from antipode", 6, 10.0, 0.0, -10.0, 179.0);
+      assertIterations("equator three degrees from antipode", 8, 0.0, 0.0, 1.0, 177.0);
+      assertIterations("equator five degrees from antipode", 11, 0.0, 0.0, 5.0, 178.0);
+      assertIterations("Wellington to Portugal", 12, -41.32, 174.81, 40.0, -7.0);
+
+      // closer ones don't converge, and must stop at the profile's limit
+      assertStopsAtLimit("equator near antipode", max, 0.0, 0.0, 0.0, 179.5);
+      assertStopsAtLimit("near antipode", max, 0.0, 0.0, 0.5, 179.5);
+      assertStopsAtLimit("Wellington to Spain", max, -41.32, 174.81, 40.96, -5.5);
+      assertStopsAtLimit("through both poles", max, 89.0, 10.0, -89.0, -170.0);
+
+      GeodeticCalculator coarse = new GeodeticCalculator(new PrecisionProfile(1e-9, 8, 1e-9, 100, PrecisionProfile.NonConvergence.FALLBACK));
+      assertEquals(8, coarse.calculateGeodeticCurveIterations(Ellipsoid.WGS84, 0.0, 0.0, 0.5, 179.5, mOutput, 0));
+   }
+}
@@ -24,6 +24,8 @@
 package org.gavaghan.geodesy;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import org.junit.Test;
 
@@ -237,4 +239,312 @@ public class GeodeticCalculatorTest
       geoCalc.calculateEndingGlobalCoordinates(reference, lincolnMemorial, 0, Double.NEGATIVE_INFINITY);
       geoCalc.calculateEndingGlobalCoordinates(reference, lincolnMemorial, Double.POSITIVE_INFINITY, 1);
    }
+
+   @Test
+   public void testBatchMatchesSingle()
+   {
+      // instantiate the calculator
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+
+      // select a reference elllipsoid
+      Ellipsoid reference = Ellipsoid.WGS84;
+
+      // Lincoln Memorial -> Eiffel Tower, and one of the antipodal cases
+      double[] starts = { 38.88922, -77.04978, 10, 80.6 };
+      double[] ends = { 48.85889, 2.29583, -10, -100 };
+      double[] curves = new double[6];
+      double[] distances = new double[2];
+
+      geoCalc.calculateGeodeticCurves(reference, starts, ends, 2, curves);
+      geoCalc.calculateEllipsoidalDistances(reference, starts, ends, 2, distances);
+
+      for (int i = 0; i < 2; i++)
+      {
+         GlobalCoordinates start = new GlobalCoordinates(starts[2 * i], starts[2 * i + 1]);
+         GlobalCoordinates end = new GlobalCoordinates(ends[2 * i], ends[2 * i + 1]);
+         GeodeticCurve geoCurve = geoCalc.calculateGeodeticCurve(reference, start, end);
+
+         assertEquals(geoCurve.getEllipsoidalDistance(), curves[3 * i], 0.000001);
+         assertEquals(geoCurve.getAzimuth(), curves[3 * i + 1], 0.0000001);
+         assertEquals(geoCurve.getReverseAzimuth(), curves[3 * i + 2], 0.0000001);
+         assertEquals(curves[3 * i], distances[i], 0.0);
+      }
+
+      // now, plug the results into the batch direct solution
+      double[] bearings = { curves[1], curves[4] };
+      double[] dest = new double[4];
+      double[] endBearings = new double[2];
+
+      geoCalc.calculateEndingCoordinates(reference, starts, bearings, distances, 2, dest, endBearings);
+
+      assertEquals(ends[0], dest[0], 0.0000001);
+      assertEquals(ends[1], dest[1], 0.0000001);
+      assertEquals(curves[2], endBearings[0] + 180.0, 0.0000001);
+   }
+
+   @Test
+   public void testBatchMeasurementAndSlantRange()
+   {
+      // instantiate the calculator
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+
+      // select a reference elllipsoid
+      Ellipsoid reference = Ellipsoid.WGS84;
+
+      // Pike's Peak -> Alcatraz Island, and a short hop up a hill
+      double[] starts = { 38.840511, -105.0445896, 4301.0, 38.840511, -105.0445896, 4301.0 };
+      double[] ends = { 37.826389, -122.4225, 0.0, 38.849511, -105.0445896, 4101.0 };
+      double[] measurements = new double[8];
+      double[] ranges = new double[2];
+
+      geoCalc.calculateGeodeticMeasurements(reference, starts, ends, 2, measurements);
+      geoCalc.calculateSlantRanges(reference, starts, ends, 2, ranges);
+
+      for (int i = 0; i < 2; i++)
+      {
+         GlobalPosition start = new GlobalPosition(starts[3 * i], starts[3 * i + 1], starts[3 * i + 2]);
+         GlobalPosition end = new GlobalPosition(ends[3 * i], ends[3 * i + 1], ends[3 * i + 2]);
+         GeodeticMeasurement geoMeasurement = geoCalc.calculateGeodeticMeasurement(reference, start, end);
+
+         assertEquals(geoMeasurement.getEllipsoidalDistance(), measurements[4 * i], 0.000001);
+         assertEquals(geoMeasurement.getAzimuth(), measurements[4 * i + 1], 0.0000001);
+         assertEquals(geoMeasurement.getReverseAzimuth(), measurements[4 * i + 2], 0.0000001);
+         assertEquals(geoMeasurement.getPointToPointDistance(), measurements[4 * i + 3], 0.000001);
+         assertEquals(geoCalc.calculateSlantRange(reference, start, end), ranges[i], 0.000001);
+      }
+
+      // the chord is shorter, by about s^3 / (24 R^2) over long distances
+      assertEquals(1521788.826 - 1521782.748 * 1521782.748 * 1521782.748 / (24 * 6371000.0 * 6371000.0), ranges[0], 200.0);
+
+      // over short distances the two agree closely
+      assertEquals(measurements[7], ranges[1], 0.01);
+   }
+
+   @Test
+   public void testPrecisionProfiles()
+   {
+      // select a reference elllipsoid
+      Ellipsoid reference = Ellipsoid.WGS84;
+
+      GlobalCoordinates lincolnMemorial = new GlobalCoordinates(38.88922, -77.04978);
+      GlobalCoordinates eiffelTower = new GlobalCoordinates(48.85889, 2.29583);
+
+      // a coarse profile is still good to a centimeter
+      GeodeticCalculator coarse = new GeodeticCalculator(PrecisionProfile.CENTIMETER);
+      GeodeticCurve geoCurve = coarse.calculateGeodeticCurve(reference, lincolnMemorial, eiffelTower);
+
+      assertEquals(6179016.136, geoCurve.getEllipsoidalDistance(), 0.01);
+
+      GlobalCoordinates dest = coarse.calculateEndingGlobalCoordinates(reference, lincolnMemorial, geoCurve.getAzimuth(), geoCurve.getEllipsoidalDistance());
+
+      assertEquals(eiffelTower.getLatitude(), dest.getLatitude(), 0.0000001);
+      assertEquals(eiffelTower.getLongitude(), dest.getLongitude(), 0.0000001);
+
+      // non-convergence can be reported as NaN ...
+      GlobalCoordinates p1 = new GlobalCoordinates(0, 0);
+      GlobalCoordinates p2 = new GlobalCoordinates(0.5, 179.7);
+      PrecisionProfile nan = new PrecisionProfile(1e-13, 20, 1e-13, 100, PrecisionProfile.NonConvergence.NAN);
+
+      geoCurve = new GeodeticCalculator(nan).calculateGeodeticCurve(reference, p1, p2);
+
+      assertTrue(Double.isNaN(geoCurve.getEllipsoidalDistance()));
+      assertTrue(Double.isNaN(geoCurve.getAzimuth()));
+
+      // ... or as an exception
+      PrecisionProfile strict = new PrecisionProfile(1e-13, 20, 1e-13, 100, PrecisionProfile.NonConvergence.EXCEPTION);
+      GeodeticCalculator strictCalc = new GeodeticCalculator(strict);
+
+      try
+      {
+         strictCalc.calculateGeodeticCurve(reference, p1, p2);
+         fail("expected ArithmeticException");
+      }
+      catch (ArithmeticException ex)
+      {
+         // expected
+      }
+
+      // but paths along a meridian are not a failure
+      geoCurve = strictCalc.calculateGeodeticCurve(reference, lincolnMemorial, new GlobalCoordinates(10, -77.04978));
+
+      assertEquals(180.0, geoCurve.getAzimuth(), 0.0);
+      assertEquals(0.0, geoCurve.getReverseAzimuth(), 0.0);
+   }
+
+   @Test
+   public void testInterpolation()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      Ellipsoid reference = Ellipsoid.WGS84;
+      GlobalCoordinates lincolnMemorial = new GlobalCoordinates(38.88922, -77.04978);
+      GlobalCoordinates eiffelTower = new GlobalCoordinates(48.85889, 2.29583);
+      GeodeticCurve geoCurve = geoCalc.calculateGeodeticCurve(reference, lincolnMemorial, eiffelTower);
+
+      // the midpoint is halfway from each end
+      GlobalCoordinates midpoint = geoCalc.calculateMidpoint(reference, lincolnMemorial, eiffelTower);
+      double half = geoCurve.getEllipsoidalDistance() / 2;
+
+      assertEquals(half, geoCalc.calculateGeodeticCurve(reference, lincolnMemorial, midpoint).getEllipsoidalDistance(), 0.000001);
+      assertEquals(half, geoCalc.calculateGeodeticCurve(reference, midpoint, eiffelTower).getEllipsoidalDistance(), 0.000001);
+
+      // fractions match direct solutions along the curve
+      double[] fractions = { 0.0, 0.1, 0.25, 0.5, 0.9, 1.0, 1.5 };
+      double[] coords = new double[2 * fractions.length + 2];
+      geoCalc.calculateIntermediateCoordinates(reference, lincolnMemorial.getLatitude(), lincolnMemorial.getLongitude(), eiffelTower.getLatitude(), eiffelTower.getLongitude(), fractions, fractions.length, coords, 2);
+
+      for (int i = 0; i < fractions.length; i++)
+      {
+         GlobalCoordinates expected = geoCalc.calculateEndingGlobalCoordinates(reference, lincolnMemorial, geoCurve.getAzimuth(), fractions[i] * geoCurve.getEllipsoidalDistance());
+
+         assertEquals(expected.getLatitude(), coords[2 * i + 2], 0.0000001);
+         assertEquals(expected.getLongitude(), coords[2 * i + 3], 0.0000001);
+      }
+
+      assertEquals(midpoint.getLatitude(), coords[8], 0.0000001);
+      assertEquals(eiffelTower.getLatitude(), coords[12], 0.0000001);
+      assertEquals(eiffelTower.getLongitude(), coords[13], 0.0000001);
+
+      // batches of pairs match single pairs
+      int pairs = 20;
+      double[] starts = new double[2 * pairs];
+      double[] ends = new double[2 * pairs];
+      for (int i = 0; i < pairs; i++)
+      {
+         starts[2 * i] = -60.0 + 6.0 * i;
+         starts[2 * i + 1] = 170.0 + 1.5 * i;
+         ends[2 * i] = 50.0 - 4.0 * i;
+         ends[2 * i + 1] = -100.0 + 9.0 * i;
+      }
+
+      double[] batch = new double[2 * fractions.length * pairs];
+      double[] midpoints = new double[2 * pairs];
+      double[] single = new double[2 * fractions.length];
+      geoCalc.calculateIntermediateCoordinates(reference, starts, ends, pairs, fractions, fractions.length, batch);
+      geoCalc.calculateMidpoints(reference, starts, ends, pairs, midpoints);
+
+      for (int i = 0; i < pairs; i++)
+      {
+         geoCalc.calculateIntermediateCoordinates(reference, starts[2 * i], starts[2 * i + 1], ends[2 * i], ends[2 * i + 1], fractions, fractions.length, single, 0);
+
+         for (int j = 0; j < single.length; j++)
+            assertEquals(single[j], batch[single.length * i + j], 0.0);
+
+         GlobalCoordinates expected = geoCalc.calculateMidpoint(reference, new GlobalCoordinates(starts[2 * i], starts[2 * i + 1]), new GlobalCoordinates(ends[2 * i], ends[2 * i + 1]));
+
+         assertEquals(expected.getLatitude(), midpoints[2 * i], 0.0000001);
+         assertEquals(expected.getLongitude(), midpoints[2 * i + 1], 0.0000001);
+      }
+   }
+
+   @Test
+   public void testDeterministic()
+   {
+      // StrictMath results are specified to the bit, so these hold on any JVM
+      GeodeticCalculator geoCalc = new GeodeticCalculator(PrecisionProfile.DETERMINISTIC, new ReducedLatitudeTable(Ellipsoid.WGS84));
+      assertTrue(PrecisionProfile.DETERMINISTIC.isDeterministic());
+      assertTrue(!PrecisionProfile.DEFAULT.isDeterministic());
+
+      double[] curve = new double[3];
+      geoCalc.calculateGeodeticCurve(Ellipsoid.WGS84, 38.88922, -77.04978, 48.85889, 2.29583, curve, 0);
+
+      assertEquals(0x1.7923208b1ebf5p22, curve[0], 0.0);
+      assertEquals(0x1.9e24b3fc760c5p5, curve[1], 0.0);
+      assertEquals(0x1.23c15ae780503p8, curve[2], 0.0);
+
+      double[] end = new double[2];
+      double endBearing = geoCalc.calculateEndingCoordinates(Ellipsoid.WGS84, 38.88922, -77.04978, 51.7679, 6179016.13586, end, 0);
+
+      assertEquals(0x1.86df0a53ec2aep5, end[0], 0.0);
+      assertEquals(0x1.25de15328c58p1, end[1], 0.0);
+      assertEquals(0x1.bf056a64f9d04p6, endBearing, 0.0);
+
+      // and agree with the fast mode to well under a millimeter
+      GeodeticCalculator fast = new GeodeticCalculator();
+      double[] expected = new double[3];
+      for (int i = 0; i < 100; i++)
+      {
+         double lat1 = -80.0 + 1.6 * i;
+         double lon1 = -179.0 + 3.3 * i;
+         double lat2 = 75.0 - 1.4 * i;
+         double lon2 = 10.0 + 1.7 * i;
+
+         geoCalc.calculateGeodeticCurve(Ellipsoid.WGS84, lat1, lon1, lat2, lon2, curve, 0);
+         fast.calculateGeodeticCurve(Ellipsoid.WGS84, lat1, lon1, lat2, lon2, expected, 0);
+
+         assertEquals(expected[0], curve[0], 1e-6);
+         assertEquals(expected[1], curve[1], 1e-9);
+      }
+   }
+
+   @Test
+   public void testShortHops()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      double[] end = new double[2];
+      double[] curve = new double[3];
+
+      // hops solved without iteration land where the inverse solution says
+      for (int i = 0; i < 200; i++)
+      {
+         double lat1 = -89.0 + 0.89 * i;
+         double lon1 = -179.5 + 1.79 * i;
+         double distance = (i % 2 == 0) ? 0.5 + i : 25.0 * i;
+         double bearing = 7.3 * i;
+
+         double endBearing = geoCalc.calculateEndingCoordinates(Ellipsoid.WGS84, lat1, lon1, bearing, distance, end, 0);
+         geoCalc.calculateGeodeticCurve(Ellipsoid.WGS84, lat1, lon1, end[0], end[1], curve, 0);
+
+         assertEquals(distance, curve[0], 1e-7);
+         assertEquals(0.0, Math.IEEEremainder(bearing - curve[1], 360.0), 1e-7);
+         assertEquals(0.0, Math.IEEEremainder(endBearing - curve[2] + 180.0, 360.0), 1e-7);
+      }
+
+      // and there is no seam where the iterative solution takes over
+      double[] longer = new double[2];
+      for (double distance = 6300.0; distance < 6450.0; distance += 0.5)
+      {
+         geoCalc.calculateEndingCoordinates(Ellipsoid.WGS84, 51.5, -0.12, 60.0, distance, end, 0);
+         geoCalc.calculateEndingCoordinates(Ellipsoid.WGS84, 51.5, -0.12, 60.0, distance + 0.000001, longer, 0);
+         assertEquals(end[0], longer[0], 1e-10);
+         assertEquals(end[1], longer[1], 1e-10);
+      }
+
+      // a hop due east along the equator
+      geoCalc.calculateEndingCoordinates(Ellipsoid.WGS84, 0.0, 0.0, 90.0, 1000.0, end, 0);
+      assertEquals(0.0, end[0], 1e-15);
+      assertEquals(1000.0 / 111319.49079327357, end[1], 1e-12);
+   }
+
+   @Test
+   public void testShortHopsOnFlattenedEllipsoid()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      Ellipsoid flattened = Ellipsoid.fromAAndF(6378137.0, 0.098);
+      double[] whole = new double[2];
+      double[] split = new double[2];
+
+      // two hops either side of 5 km land where one hop of 10 km does
+      double endBearing = geoCalc.calculateEndingCoordinates(flattened, 30.0, 10.0, 40.0, 10000.0, whole, 0);
+      double midBearing = geoCalc.calculateEndingCoordinates(flattened, 30.0, 10.0, 40.0, 4999.0, split, 0);
+      double splitBearing = geoCalc.calculateEndingCoordinates(flattened, split[0], split[1], midBearing, 5001.0, split, 0);
+
+      assertEquals(whole[0], split[0], 1e-11);
+      assertEquals(whole[1], split[1], 1e-11);
+      assertEquals(endBearing, splitBearing, 1e-9);
+   }
+
+   @Test
+   public void testLongHopOnSmallSphere()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      Ellipsoid small = Ellipsoid.fromAAndF(1000.0, 0.0);
+      double[] end = new double[2];
+
+      // 4 km due east is 4 radians around the equator
+      double endBearing = geoCalc.calculateEndingCoordinates(small, 0.0, 0.0, 90.0, 4000.0, end, 0);
+
+      assertEquals(0.0, end[0], 1e-12);
+      assertEquals(Math.toDegrees(4.0) - 360.0, end[1], 1e-9);
+      assertEquals(90.0, endBearing, 1e-9);
+   }
 }
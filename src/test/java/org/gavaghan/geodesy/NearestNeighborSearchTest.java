@@ -0,0 +1,99 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class NearestNeighborSearchTest
+{
+   @Test
+   public void testNearestFirst()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      Ellipsoid reference = Ellipsoid.WGS84;
+      Random random = new Random(42);
+
+      int count = 20000;
+      double[] latLon = new double[2 * count];
+
+      for (int i = 0; i < count; i++)
+      {
+         latLon[2 * i] = random.nextDouble() * 20 + 30;
+         latLon[2 * i + 1] = random.nextDouble() * 30 - 100;
+      }
+
+      NearestNeighborSearch search = new NearestNeighborSearch(geoCalc, reference, latLon, count);
+      GlobalCoordinates lincolnMemorial = new GlobalCoordinates(38.88922, -77.04978);
+
+      // brute force distances for comparison
+      double[] starts = new double[2 * count];
+      double[] distances = new double[count];
+      for (int i = 0; i < count; i++)
+      {
+         starts[2 * i] = lincolnMemorial.getLatitude();
+         starts[2 * i + 1] = lincolnMemorial.getLongitude();
+      }
+      geoCalc.calculateEllipsoidalDistances(reference, starts, latLon, count, distances);
+
+      double[] sorted = distances.clone();
+      Arrays.sort(sorted);
+
+      NearestNeighborSearch.NearestNeighborIterator iter = search.nearest(lincolnMemorial);
+
+      for (int k = 0; k < 5; k++)
+      {
+         assertTrue(iter.hasNext());
+
+         int index = iter.nextInt();
+
+         assertEquals(sorted[k], iter.getDistance(), 0.0);
+         assertEquals(distances[index], iter.getDistance(), 0.0);
+      }
+
+      // only a sliver of the candidates needed an exact solution
+      assertTrue(iter.getSolutionCount() < count / 100);
+
+      // and the remainder still comes out in order
+      int seen = 5;
+      double last = sorted[4];
+      while (iter.hasNext())
+      {
+         iter.nextInt();
+         assertTrue(iter.getDistance() >= last);
+         last = iter.getDistance();
+         seen++;
+      }
+
+      assertEquals(count, seen);
+      assertFalse(iter.hasNext());
+   }
+}
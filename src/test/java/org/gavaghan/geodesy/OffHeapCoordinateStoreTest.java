@@ -0,0 +1,120 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class OffHeapCoordinateStoreTest
+{
+   @Test
+   public void testAppendAndRead()
+   {
+      OffHeapCoordinateStore store = new OffHeapCoordinateStore();
+
+      try
+      {
+         // enough points to spill into a second chunk
+         int count = (1 << 20) + 100;
+
+         for (int i = 0; i < count; i++)
+         {
+            store.append((i % 180) - 89.5, (i % 360) - 179.5);
+         }
+
+         assertEquals(count, store.size());
+         assertEquals(-89.5 + 7, store.getLatitude(7), 0.0);
+         assertEquals(-179.5 + 7, store.getLongitude(7), 0.0);
+
+         // read a block that straddles the chunk boundary
+         int from = (1 << 20) - 5;
+         double[] latLon = new double[2 * 10];
+         store.read(from, latLon, 0, 10);
+
+         for (int i = 0; i < 10; i++)
+         {
+            assertEquals(((from + i) % 180) - 89.5, latLon[2 * i], 0.0);
+            assertEquals(((from + i) % 360) - 179.5, latLon[2 * i + 1], 0.0);
+         }
+      }
+      finally
+      {
+         store.close();
+      }
+   }
+
+   @Test
+   public void testSortedLoadAndDistances()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      Ellipsoid reference = Ellipsoid.WGS84;
+      OffHeapCoordinateStore store = new OffHeapCoordinateStore();
+
+      try
+      {
+         int count = 3000;
+         double[] latLon = new double[2 * count];
+
+         for (int i = 0; i < count; i++)
+         {
+            latLon[2 * i] = ((i * 37) % 170) - 85;
+            latLon[2 * i + 1] = ((i * 53) % 359) - 179;
+         }
+
+         store.appendSorted(latLon, 0, count);
+
+         for (int i = 1; i < count; i++)
+         {
+            assertTrue(store.getGlobalCoordinates(i - 1).compareTo(store.getGlobalCoordinates(i)) <= 0);
+         }
+
+         GlobalCoordinates lincolnMemorial = new GlobalCoordinates(38.88922, -77.04978);
+         double[] distances = new double[count];
+         store.calculateEllipsoidalDistances(geoCalc, reference, lincolnMemorial, 0, count, distances);
+
+         for (int i = 0; i < count; i += 97)
+         {
+            GeodeticCurve geoCurve = geoCalc.calculateGeodeticCurve(reference, lincolnMemorial, store.getGlobalCoordinates(i));
+            assertEquals(geoCurve.getEllipsoidalDistance(), distances[i], 0.001);
+         }
+      }
+      finally
+      {
+         store.close();
+      }
+   }
+
+   @Test(expected=IllegalStateException.class)
+   public void testClosed()
+   {
+      OffHeapCoordinateStore store = new OffHeapCoordinateStore();
+
+      store.append(1, 2);
+      store.close();
+      store.getLatitude(0);
+   }
+}
@@ -0,0 +1,187 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PartitionedDistanceMatrixTest
+{
+   @Rule
+   public TemporaryFolder mFolder = new TemporaryFolder();
+
+   static private double[] randomCoordinates(Random random, int count)
+   {
+      double[] coords = new double[2 * count];
+      for (int i = 0; i < count; i++)
+      {
+         coords[2 * i] = random.nextDouble() * 160.0 - 80.0;
+         coords[2 * i + 1] = random.nextDouble() * 360.0 - 180.0;
+      }
+      return coords;
+   }
+
+   @Test
+   public void testLocalCluster() throws IOException, InterruptedException
+   {
+      Random random = new Random(7);
+      int rows = 37;
+      int columns = 23;
+      double[] origins = randomCoordinates(random, rows);
+      double[] destinations = randomCoordinates(random, columns);
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      File file = mFolder.newFile("matrix.bin");
+
+      PartitionedDistanceMatrix matrix = new PartitionedDistanceMatrix(Ellipsoid.WGS84, origins, rows, destinations, columns, 8);
+      assertEquals(5 * 3, matrix.getTileCount());
+
+      try (LocalClusterTransport cluster = new LocalClusterTransport(3, 2, geoCalc); MappedDistanceMatrix output = new MappedDistanceMatrix(file, rows, columns))
+      {
+         matrix.compute(cluster, output, 4);
+
+         double[] expected = new double[1];
+         for (int i = 0; i < rows; i++)
+         {
+            for (int j = 0; j < columns; j++)
+            {
+               geoCalc.calculateEllipsoidalDistance(Ellipsoid.WGS84, origins[2 * i], origins[2 * i + 1], destinations[2 * j], destinations[2 * j + 1], expected, 0);
+               assertEquals(expected[0], output.get(i, j), 0.0);
+            }
+         }
+
+         // tiles are dealt evenly and the traffic is mostly results
+         assertEquals(5, cluster.getTilesProcessed(0));
+         assertEquals(5, cluster.getTilesProcessed(1));
+         assertEquals(5, cluster.getTilesProcessed(2));
+         assertEquals(15 * DistanceMatrixWorker.RESPONSE_HEADER_SIZE + 8L * rows * columns, cluster.getBytesReceived());
+         assertTrue(cluster.getBytesSent() > 0);
+      }
+
+      // the file holds nothing but little-endian distances
+      assertEquals(8L * rows * columns, file.length());
+
+      try (MappedDistanceMatrix reopened = new MappedDistanceMatrix(file, rows, columns))
+      {
+         double[] row = new double[columns];
+         reopened.read(rows - 1, 0, row, 0, columns);
+
+         double[] expected = new double[1];
+         geoCalc.calculateEllipsoidalDistance(Ellipsoid.WGS84, origins[2 * rows - 2], origins[2 * rows - 1], destinations[2 * columns - 2], destinations[2 * columns - 1], expected, 0);
+         assertEquals(expected[0], row[columns - 1], 0.0);
+      }
+   }
+
+   @Test
+   public void testWorkerRoundTrip()
+   {
+      double[] origins = { 38.88922, -77.04978 };
+      double[] destinations = { 48.85889, 2.29583, 38.88922, -77.04978 };
+      PartitionedDistanceMatrix matrix = new PartitionedDistanceMatrix(Ellipsoid.WGS84, origins, 1, destinations, 2, 4);
+
+      ByteBuffer response = new DistanceMatrixWorker(new GeodeticCalculator()).process(matrix.encodeTile(0));
+      assertEquals(DistanceMatrixWorker.RESPONSE_HEADER_SIZE + 16, response.remaining());
+
+      double[] distances = new double[2];
+      response.position(DistanceMatrixWorker.RESPONSE_HEADER_SIZE);
+      GeodesyCodec.read(response, distances, 0, 2);
+
+      assertEquals(6179016.136, distances[0], 0.001);
+      assertEquals(0.0, distances[1], 0.0);
+   }
+
+   @Test
+   public void testFailure() throws IOException, InterruptedException
+   {
+      Random random = new Random(11);
+      double[] coords = randomCoordinates(random, 20);
+      PartitionedDistanceMatrix matrix = new PartitionedDistanceMatrix(Ellipsoid.WGS84, coords, 20, coords, 20, 5);
+      DistanceMatrixWorker worker = new DistanceMatrixWorker(new GeodeticCalculator());
+
+      // a transport that loses the fourth tile
+      PartitionedDistanceMatrix.Transport flaky = new PartitionedDistanceMatrix.Transport()
+      {
+         private int mSent;
+
+         @Override
+         public CompletableFuture<ByteBuffer> send(ByteBuffer request)
+         {
+            CompletableFuture<ByteBuffer> future = new CompletableFuture<ByteBuffer>();
+            if (++mSent == 4) future.completeExceptionally(new IOException("connection reset"));
+            else future.complete(worker.process(request));
+            return future;
+         }
+      };
+
+      try (MappedDistanceMatrix output = new MappedDistanceMatrix(mFolder.newFile("failed.bin"), 20, 20))
+      {
+         matrix.compute(flaky, output, 2);
+         fail("expected IOException");
+      }
+      catch (IOException ex)
+      {
+         assertEquals("connection reset", ex.getCause().getMessage());
+      }
+   }
+
+   @Test
+   public void testLargestTile()
+   {
+      // a full tile of the largest size has a response a worker will build
+      int size = PartitionedDistanceMatrix.MAX_TILE_SIZE;
+      assertEquals(4096, size);
+      assertEquals(DistanceMatrixWorker.MAX_RESPONSE_SIZE, DistanceMatrixWorker.RESPONSE_HEADER_SIZE + (long) DistanceMatrixWorker.CELL_SIZE * size * size);
+
+      // a tall tile at the limit is solved, one point more is refused
+      Random random = new Random(5);
+      double[] origins = randomCoordinates(random, size + 1);
+      double[] destinations = randomCoordinates(random, 1);
+      PartitionedDistanceMatrix matrix = new PartitionedDistanceMatrix(Ellipsoid.WGS84, origins, size + 1, destinations, 1, size);
+
+      ByteBuffer response = new DistanceMatrixWorker(new GeodeticCalculator()).process(matrix.encodeTile(0));
+      assertEquals(DistanceMatrixWorker.RESPONSE_HEADER_SIZE + DistanceMatrixWorker.CELL_SIZE * size, response.remaining());
+
+      try
+      {
+         new PartitionedDistanceMatrix(Ellipsoid.WGS84, origins, size + 1, destinations, 1, size + 1);
+         fail("expected IllegalArgumentException");
+      }
+      catch (IllegalArgumentException ex)
+      {
+         assertTrue(ex.getMessage().contains(Integer.toString(size)));
+      }
+   }
+}
@@ -0,0 +1,149 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PreparedPolygonTest
+{
+   @Test
+   public void testGeodesicEdges()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+
+      // the northern edge bows well north of latitude 45 at longitude 0
+      double[] triangle = { 45.0, -30.0, 45.0, 30.0, 10.0, 0.0 };
+      PreparedPolygon polygon = new PreparedPolygon(geoCalc, Ellipsoid.WGS84, triangle, 3);
+
+      assertTrue(polygon.contains(47.0, 0.0));
+      assertTrue(polygon.contains(new GlobalCoordinates(20.0, 0.0)));
+      assertFalse(polygon.contains(50.0, 0.0));
+      assertFalse(polygon.contains(20.0, 40.0));
+      assertFalse(polygon.contains(-20.0, 0.0));
+
+      // a point just either side of the edge, found with the direct solution
+      GlobalCoordinates west = new GlobalCoordinates(45.0, -30.0);
+      GlobalCoordinates east = new GlobalCoordinates(45.0, 30.0);
+      GeodeticCurve edge = geoCalc.calculateGeodeticCurve(Ellipsoid.WGS84, west, east);
+      double[] bearing = new double[1];
+      GlobalCoordinates middle = geoCalc.calculateEndingGlobalCoordinates(Ellipsoid.WGS84, west, edge.getAzimuth(), 1234567.0, bearing);
+
+      assertTrue(polygon.contains(geoCalc.calculateEndingGlobalCoordinates(Ellipsoid.WGS84, middle, bearing[0] + 90.0, 0.001)));
+      assertFalse(polygon.contains(geoCalc.calculateEndingGlobalCoordinates(Ellipsoid.WGS84, middle, bearing[0] - 90.0, 0.001)));
+   }
+
+   @Test
+   public void testAgainstExactRayCasting()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      Random random = new Random(5);
+
+      // an irregular star around the date line, wound either way
+      int count = 40;
+      List<GlobalCoordinates> star = new ArrayList<GlobalCoordinates>();
+      for (int i = 0; i < count; i++)
+      {
+         double radius = (i % 2 == 0) ? 8.0 : 3.0 + 2.0 * random.nextDouble();
+         double angle = 2.0 * Math.PI * i / count;
+         star.add(new GlobalCoordinates(-30.0 + radius * Math.sin(angle), 178.0 + radius * Math.cos(angle)));
+      }
+
+      PreparedPolygon polygon = new PreparedPolygon(geoCalc, Ellipsoid.WGS84, star);
+
+      int points = 20000;
+      double[] latLon = new double[2 * points];
+      boolean[] expected = new boolean[points];
+      int inside = 0;
+      for (int i = 0; i < points; i++)
+      {
+         latLon[2 * i] = -40.0 + 20.0 * random.nextDouble();
+         latLon[2 * i + 1] = 168.0 + 20.0 * random.nextDouble();
+         expected[i] = rayCast(geoCalc, star, latLon[2 * i], latLon[2 * i + 1]);
+         if (expected[i]) inside++;
+      }
+
+      assertTrue(inside > 1000);
+
+      boolean[] results = new boolean[points];
+      assertEquals(inside, polygon.contains(latLon, points, results));
+      assertArrayEquals(expected, results);
+
+      boolean[] parallel = new boolean[points];
+      assertEquals(inside, polygon.containsParallel(latLon, points, parallel));
+      assertArrayEquals(expected, parallel);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testPoleEnclosed()
+   {
+      double[] cap = { 80.0, 0.0, 80.0, 90.0, 80.0, 180.0, 80.0, -90.0 };
+      new PreparedPolygon(new GeodeticCalculator(), Ellipsoid.WGS84, cap, 4);
+   }
+
+   /**
+    * Exact ray casting against every edge, deciding each crossing with an
+    * inverse solution.
+    */
+   static private boolean rayCast(GeodeticCalculator geoCalc, List<GlobalCoordinates> vertices, double latitude, double longitude)
+   {
+      boolean inside = false;
+      GlobalCoordinates point = new GlobalCoordinates(latitude, longitude);
+
+      for (int i = 0; i < vertices.size(); i++)
+      {
+         GlobalCoordinates a = vertices.get(i);
+         GlobalCoordinates b = vertices.get((i + 1) % vertices.size());
+
+         // longitudes relative to the start of the edge
+         double lonB = wrap(b.getLongitude() - a.getLongitude());
+         double lonP = wrap(longitude - a.getLongitude());
+
+         if ((0.0 <= lonP && lonP < lonB) || (lonB <= lonP && lonP < 0.0))
+         {
+            double azimuth = geoCalc.calculateGeodeticCurve(Ellipsoid.WGS84, a, b).getAzimuth();
+            double toPoint = geoCalc.calculateGeodeticCurve(Ellipsoid.WGS84, a, point).getAzimuth();
+            double side = Math.sin(Math.toRadians(toPoint - azimuth));
+
+            if ((lonB > 0.0) ? (side > 0.0) : (side < 0.0)) inside = !inside;
+         }
+      }
+
+      return inside;
+   }
+
+   static private double wrap(double longitude)
+   {
+      return longitude - 360.0 * Math.floor((longitude + 180.0) / 360.0);
+   }
+}
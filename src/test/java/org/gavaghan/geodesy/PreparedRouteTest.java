@@ -0,0 +1,138 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PreparedRouteTest
+{
+   private final GeodeticCalculator mCalc = new GeodeticCalculator();
+
+   /** A zigzag across the Pacific, with a repeated vertex and the 180th meridian. */
+   private final double[] mVertices = { 21.3069, -157.8583, 13.4443, 144.7937, 13.4443, 144.7937, 35.6762, 139.6503, 37.5665, 126.9780, 22.3193, 114.1694 };
+
+   @Test
+   public void testPositionAtDistance()
+   {
+      PreparedRoute route = new PreparedRoute(mCalc, Ellipsoid.WGS84, mVertices, 6);
+      assertEquals(5, route.getLegCount());
+
+      double[] curve = new double[3];
+      double total = 0.0;
+      for (int i = 0; i < 5; i++)
+      {
+         mCalc.calculateGeodeticCurve(Ellipsoid.WGS84, mVertices[2 * i], mVertices[2 * i + 1], mVertices[2 * i + 2], mVertices[2 * i + 3], curve, 0);
+         assertEquals(total, route.getDistanceToVertex(i), 0.0);
+         total += curve[0];
+      }
+      assertEquals(total, route.getLength(), 0.0);
+
+      // vertices are reached exactly, and the empty leg is passed over
+      double[] coords = new double[2];
+      for (int i = 0; i < 6; i++)
+      {
+         route.calculatePositionAtDistance(route.getDistanceToVertex(i), coords, 0);
+         assertEquals(mVertices[2 * i], coords[0], 1e-9);
+         assertEquals(mVertices[2 * i + 1], coords[1], 1e-9);
+      }
+      assertEquals(0, route.findLeg(route.getDistanceToVertex(2)));
+      assertEquals(2, route.findLeg(route.getDistanceToVertex(2) + 1.0));
+
+      // part way along a leg matches a direct solution from its start
+      route.getLegCurve(3, curve, 0);
+      double heading = route.calculatePositionAtDistance(route.getDistanceToVertex(3) + 1000.0, coords, 0);
+      double[] expected = new double[2];
+      double expectedHeading = mCalc.calculateEndingCoordinates(Ellipsoid.WGS84, mVertices[6], mVertices[7], curve[1], 1000.0, expected, 0);
+      assertEquals(expected[0], coords[0], 0.0);
+      assertEquals(expected[1], coords[1], 0.0);
+      assertEquals(expectedHeading, heading, 0.0);
+
+      // off the ends
+      GlobalCoordinates before = route.calculatePositionAtDistance(-5000.0);
+      GlobalCoordinates after = route.calculatePositionAtDistance(total + 5000.0);
+      assertEquals(21.3069, before.getLatitude(), 1e-9);
+      assertEquals(-157.8583, before.getLongitude(), 1e-9);
+      assertEquals(22.3193, after.getLatitude(), 1e-9);
+      assertEquals(114.1694, after.getLongitude(), 1e-9);
+
+      // batches match single queries
+      double[] distances = { 0.0, 0.25 * total, 0.5 * total, 0.75 * total, total };
+      double[] batch = new double[10];
+      double[] headings = new double[5];
+      route.calculatePositionsAtDistances(distances, 5, batch, headings);
+      for (int i = 0; i < 5; i++)
+      {
+         assertEquals(route.calculatePositionAtDistance(distances[i], coords, 0), headings[i], 0.0);
+         assertEquals(coords[0], batch[2 * i], 0.0);
+         assertEquals(coords[1], batch[2 * i + 1], 0.0);
+      }
+   }
+
+   @Test
+   public void testSnap()
+   {
+      PreparedRoute route = new PreparedRoute(mCalc, Ellipsoid.WGS84, Arrays.asList(new GlobalCoordinates(21.3069, -157.8583), new GlobalCoordinates(13.4443, 144.7937), new GlobalCoordinates(13.4443, 144.7937),
+            new GlobalCoordinates(35.6762, 139.6503), new GlobalCoordinates(37.5665, 126.9780), new GlobalCoordinates(22.3193, 114.1694)));
+      GeodesicProjection projection = new GeodesicProjection(mCalc, Ellipsoid.WGS84);
+      Random random = new Random(11);
+      double[] result = new double[GeodesicProjection.RESULT_SIZE];
+      double[] expected = new double[GeodesicProjection.RESULT_SIZE];
+
+      for (int t = 0; t < 50; t++)
+      {
+         double latitude = 10.0 + 30.0 * random.nextDouble();
+         double longitude = 110.0 + 90.0 * random.nextDouble();
+         int leg = route.snap(latitude, longitude, result, 0);
+
+         // compare with projecting onto every leg
+         double nearest = Double.POSITIVE_INFINITY;
+         int best = -1;
+         for (int i = 0; i < 5; i++)
+         {
+            projection.projectOntoSegment(mVertices[2 * i], mVertices[2 * i + 1], mVertices[2 * i + 2], mVertices[2 * i + 3], latitude, longitude, expected, 0);
+            if (Math.abs(expected[GeodesicProjection.CROSS_TRACK]) < nearest)
+            {
+               nearest = Math.abs(expected[GeodesicProjection.CROSS_TRACK]);
+               best = i;
+            }
+         }
+
+         assertEquals(nearest, Math.abs(result[GeodesicProjection.CROSS_TRACK]), 1e-6);
+
+         if (best == leg)
+         {
+            projection.projectOntoSegment(mVertices[2 * leg], mVertices[2 * leg + 1], mVertices[2 * leg + 2], mVertices[2 * leg + 3], latitude, longitude, expected, 0);
+            assertEquals(route.getDistanceToVertex(leg) + expected[GeodesicProjection.ALONG_TRACK], result[GeodesicProjection.ALONG_TRACK], 1e-6);
+            assertEquals(expected[GeodesicProjection.LATITUDE], result[GeodesicProjection.LATITUDE], 1e-9);
+         }
+      }
+   }
+}
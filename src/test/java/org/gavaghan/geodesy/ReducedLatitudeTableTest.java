@@ -0,0 +1,108 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ReducedLatitudeTableTest
+{
+   @Test
+   public void testInterpolation()
+   {
+      for (Ellipsoid ellipsoid : new Ellipsoid[] { Ellipsoid.WGS84, Ellipsoid.Clarke1880, Ellipsoid.Sphere })
+      {
+         ReducedLatitudeTable table = new ReducedLatitudeTable(ellipsoid);
+         double f = ellipsoid.getFlattening();
+         double e2 = f * (2.0 - f);
+
+         assertTrue(table.getErrorBound() < 3e-16);
+
+         // sample densely, including points on the grid and at the poles
+         for (int i = 0; i <= 1800000; i++)
+         {
+            double latitude = i / 10000.0 - 90.0;
+            double phi = Math.toRadians(latitude);
+            double w = Math.sqrt(1.0 - e2 * Math.sin(phi) * Math.sin(phi));
+
+            // allow a few ulps for rounding
+            assertEquals((1.0 - f) * Math.sin(phi) / w, table.sin(latitude), table.getErrorBound() + 1e-15);
+            assertEquals(Math.cos(phi) / w, table.cos(latitude), table.getErrorBound() + 1e-15);
+         }
+      }
+   }
+
+   @Test
+   public void testCalculator()
+   {
+      ReducedLatitudeTable table = new ReducedLatitudeTable(Ellipsoid.WGS84);
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      GeodeticCalculator tableCalc = new GeodeticCalculator(PrecisionProfile.DEFAULT, table);
+      Random random = new Random(11);
+      double[] expected = new double[3];
+      double[] actual = new double[3];
+
+      assertSame(table, tableCalc.getReducedLatitudeTable());
+
+      for (int i = 0; i < 10000; i++)
+      {
+         double lat1 = random.nextDouble() * 180.0 - 90.0;
+         double lon1 = random.nextDouble() * 360.0 - 180.0;
+         double lat2 = random.nextDouble() * 180.0 - 90.0;
+         double lon2 = random.nextDouble() * 360.0 - 180.0;
+
+         // round some to a 1e-5 degree grid
+         if ((i & 1) == 0)
+         {
+            lat1 = Math.rint(lat1 * 1e5) / 1e5;
+            lat2 = Math.rint(lat2 * 1e5) / 1e5;
+         }
+
+         geoCalc.calculateGeodeticCurve(Ellipsoid.WGS84, lat1, lon1, lat2, lon2, expected, 0);
+         tableCalc.calculateGeodeticCurve(Ellipsoid.WGS84, lat1, lon1, lat2, lon2, actual, 0);
+
+         assertEquals(expected[0], actual[0], 0.000001);
+         assertEquals(expected[1], actual[1], 0.0000001);
+         assertEquals(expected[2], actual[2], 0.0000001);
+      }
+
+      // other ellipsoids are solved without the table
+      GlobalCoordinates lincolnMemorial = new GlobalCoordinates(38.88922, -77.04978);
+      GlobalCoordinates eiffelTower = new GlobalCoordinates(48.85889, 2.29583);
+
+      assertEquals(geoCalc.calculateGeodeticCurve(Ellipsoid.GRS67, lincolnMemorial, eiffelTower).getEllipsoidalDistance(), tableCalc.calculateGeodeticCurve(Ellipsoid.GRS67, lincolnMemorial, eiffelTower).getEllipsoidalDistance(), 0.0);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testFlatteningOutOfRange()
+   {
+      new ReducedLatitudeTable(Ellipsoid.fromAAndInverseF(6378137.0, 50.0));
+   }
+}
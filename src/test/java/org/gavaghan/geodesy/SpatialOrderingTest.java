@@ -0,0 +1,178 @@
+/* 
+ *  Geodesy by Mike Gavaghan
+ * 
+ *      http://www.gavaghan.org/blog/free-source-code/geodesy-library-vincentys-formula/
+ * 
+ *  Copyright 2007 Mike Gavaghan - mike@gavaghan.org
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+/*
+ * BitCoin tips graciously accepted at 1FB63FYQMy7hpC2ANVhZ5mSgAZEtY1aVLf
+ */
+package org.gavaghan.geodesy;
+
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SpatialOrderingTest
+{
+   @Test
+   public void testHilbertCurveIsContinuous()
+   {
+      // the centers of a 64 x 64 grid are visited one neighbor at a time
+      int n = 64;
+      double[] coords = new double[2 * n * n];
+      for (int i = 0; i < n; i++)
+      {
+         for (int j = 0; j < n; j++)
+         {
+            coords[2 * (i * n + j)] = -90.0 + (j + 0.5) * 180.0 / n;
+            coords[2 * (i * n + j) + 1] = -180.0 + (i + 0.5) * 360.0 / n;
+         }
+      }
+
+      int[] permutation = SpatialOrdering.order(coords, n * n, SpatialOrdering.Curve.HILBERT);
+
+      for (int k = 1; k < n * n; k++)
+      {
+         int a = permutation[k - 1];
+         int b = permutation[k];
+         int steps = Math.abs(a / n - b / n) + Math.abs(a % n - b % n);
+
+         assertEquals(1, steps);
+      }
+
+      // whereas the Morton curve jumps
+      permutation = SpatialOrdering.order(coords, n * n, SpatialOrdering.Curve.MORTON);
+      assertEquals(1, permutation[1] - permutation[0]);
+      assertEquals(n, permutation[2] - permutation[0]);
+   }
+
+   @Test
+   public void testKeys()
+   {
+      assertEquals(0L, SpatialOrdering.mortonKey(-90.0, -179.9999999));
+      assertEquals((1L << 62) - 1, SpatialOrdering.mortonKey(90.0, 180.0));
+      assertEquals(1L << 61, SpatialOrdering.mortonKey(-90.0, 0.0));
+      assertEquals(1L << 60, SpatialOrdering.mortonKey(0.0, -179.9999999));
+      assertEquals(Long.MAX_VALUE, SpatialOrdering.hilbertKey(Double.NaN, 0.0));
+      assertEquals(Long.MAX_VALUE, SpatialOrdering.mortonKey(0.0, Double.NaN));
+
+      // the Hilbert curve starts and ends in the western corners
+      assertEquals(0L, SpatialOrdering.hilbertKey(-90.0, -179.9999999));
+      assertEquals((1L << 62) - 1, SpatialOrdering.hilbertKey(-90.0, 180.0));
+   }
+
+   @Test
+   public void testSortAndScatter()
+   {
+      GeodeticCalculator geoCalc = new GeodeticCalculator();
+      Random random = new Random(5);
+      int count = 5000;
+      double[] starts = new double[2 * count];
+      double[] ends = new double[2 * count];
+
+      for (int i = 0; i < 2 * count; i += 2)
+      {
+         starts[i] = random.nextDouble() * 180.0 - 90.0;
+         starts[i + 1] = random.nextDouble() * 360.0 - 180.0;
+         ends[i] = random.nextDouble() * 180.0 - 90.0;
+         ends[i + 1] = random.nextDouble() * 360.0 - 180.0;
+      }
+
+      // a duplicate start, and NaN
+      starts[2] = starts[0];
+      starts[3] = starts[1];
+      starts[4] = Double.NaN;
+
+      double[] expected = new double[3 * count];
+      geoCalc.calculateGeodeticCurves(Ellipsoid.WGS84, starts, ends, count, expected);
+
+      double[] sortedStarts = starts.clone();
+      double[] sortedEnds = ends.clone();
+      int[] permutation = SpatialOrdering.sort(sortedStarts, sortedEnds, count, SpatialOrdering.Curve.HILBERT);
+
+      // it is a permutation, and NaN sorts last
+      boolean[] seen = new boolean[count];
+      for (int p : permutation)
+         seen[p] = true;
+      for (boolean s : seen)
+         assertTrue(s);
+      assertEquals(2, permutation[count - 1]);
+
+      // consecutive starts are close together
+      double tour = 0.0;
+      double randomTour = 0.0;
+      double[] distance = new double[1];
+      for (int i = 1; i < count - 1; i++)
+      {
+         geoCalc.calculateEllipsoidalDistance(Ellipsoid.WGS84, sortedStarts[2 * i - 2], sortedStarts[2 * i - 1], sortedStarts[2 * i], sortedStarts[2 * i + 1], distance, 0);
+         tour += distance[0];
+         geoCalc.calculateEllipsoidalDistance(Ellipsoid.WGS84, ends[2 * i - 2], ends[2 * i - 1], ends[2 * i], ends[2 * i + 1], distance, 0);
+         randomTour += distance[0];
+      }
+      assertTrue(tour * 20 < randomTour);
+
+      // results solved in the new order scatter back to the original order
+      double[] curves = new double[3 * count];
+      double[] scattered = new double[3 * count];
+      geoCalc.calculateGeodeticCurves(Ellipsoid.WGS84, sortedStarts, sortedEnds, count, curves);
+      SpatialOrdering.scatter(curves, 3, permutation, count, scattered);
+
+      for (int i = 0; i < 3 * count; i++)
+         assertEquals(expected[i], scattered[i], 0.0);
+
+      double[] gathered = new double[2 * count];
+      SpatialOrdering.gather(ends, 2, permutation, count, gathered);
+      for (int i = 0; i < 2 * count; i++)
+         assertEquals(sortedEnds[i], gathered[i], 0.0);
+   }
+
+   @Test
+   public void testCoordinatesOrder()
+   {
+      Random random = new Random(9);
+      int count = 1000;
+      double[] coords = new double[2 * count];
+      List<GlobalCoordinates> list = new ArrayList<GlobalCoordinates>();
+
+      for (int i = 0; i < count; i++)
+      {
+         // few distinct longitudes, so latitude has to break ties
+         GlobalCoordinates c = new GlobalCoordinates(random.nextDouble() * 180.0 - 90.0, random.nextInt(10) * 10.0);
+         coords[2 * i] = c.getLatitude();
+         coords[2 * i + 1] = c.getLongitude();
+         list.add(c);
+      }
+
+      Collections.sort(list);
+      SpatialOrdering.sort(coords, count, SpatialOrdering.Curve.COORDINATES);
+
+      for (int i = 0; i < count; i++)
+      {
+         assertEquals(list.get(i).getLatitude(), coords[2 * i], 0.0);
+         assertEquals(list.get(i).getLongitude(), coords[2 * i + 1], 0.0);
+      }
+   }
+}